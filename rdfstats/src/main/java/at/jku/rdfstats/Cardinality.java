@@ -0,0 +1,166 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.hp.hpl.jena.sparql.core.Var;
+
+/**
+ * @author dorgon
+ *
+ * Estimated cardinality of an intermediate result: minimum, average, and maximum number of solutions and the
+ * number of distinct values of each variable.
+ *
+ * Joins are estimated by |R join S| = |R| * |S| / max(V(R,a), V(S,a)) for each join variable a, assuming
+ * independent join variables and that the values of the smaller side are contained in the other side.
+ * Variables without a known number of distinct values are assumed to be unique in their result.
+ *
+ * Subject stars are estimated as a whole from the characteristic sets, see {@link #star(Var, double, double, List)}.
+ */
+class Cardinality {
+
+	private static final int MIN = 0;
+	private static final int AVG = 1;
+	private static final int MAX = 2;
+
+	final double min;
+	final double avg;
+	final double max;
+
+	/** variable => distinct values, at most avg */
+	private final Map<Var, Double> distinct;
+
+	/**
+	 * @param min
+	 * @param avg
+	 * @param max
+	 * @param distinct variable => distinct values, values greater than avg are reduced to avg
+	 */
+	Cardinality(double min, double avg, double max, Map<Var, Double> distinct) {
+		this.min = min;
+		this.avg = avg;
+		this.max = max;
+		this.distinct = new HashMap<Var, Double>(distinct.size());
+		for (Map.Entry<Var, Double> e : distinct.entrySet()) {
+			double d = Math.min(e.getValue(), avg);
+			if (d < 1 && avg >= 1)
+				d = 1; // at least one value if there is a solution
+			this.distinct.put(e.getKey(), d);
+		}
+	}
+
+	/**
+	 * @param estimate {min, avg, max}
+	 * @param distinct
+	 */
+	Cardinality(Integer[] estimate, Map<Var, Double> distinct) {
+		this(estimate[MIN], estimate[AVG], estimate[MAX], distinct);
+	}
+
+	/**
+	 * @param estimate {min, avg, max}
+	 * @return this cardinality adjusted to estimate, e.g. after applying a filter, distinct values are kept where possible
+	 */
+	Cardinality withEstimate(Integer[] estimate) {
+		return new Cardinality(estimate, distinct);
+	}
+
+	/**
+	 * @param v
+	 * @return distinct values of v, avg if unknown
+	 */
+	double getDistinct(Var v) {
+		Double d = distinct.get(v);
+		return (d != null) ? d : avg;
+	}
+
+	/**
+	 * @param other
+	 * @return variables with known distinct values on both sides
+	 */
+	Set<Var> sharedVars(Cardinality other) {
+		Set<Var> shared = new HashSet<Var>(distinct.keySet());
+		shared.retainAll(other.distinct.keySet());
+		return shared;
+	}
+
+	/**
+	 * @param other
+	 * @param joinVars join variables, a cross product if empty
+	 * @return the estimated cardinality of the join of this and other
+	 */
+	Cardinality join(Cardinality other, Set<Var> joinVars) {
+		double joined = avg * other.avg;
+		Map<Var, Double> d = new HashMap<Var, Double>(other.distinct);
+		d.putAll(distinct);
+		for (Var v : joinVars) {
+			double l = getDistinct(v);
+			double r = other.getDistinct(v);
+			if (l > 0 && r > 0)
+				joined /= Math.max(l, r);
+			d.put(v, Math.min(l, r));
+		}
+
+		if (joinVars.isEmpty())
+			return new Cardinality(min * other.min, joined, max * other.max, d);
+		else
+			return new Cardinality(0, joined, max * other.max, d); // MAX in case all values left and right are equal
+	}
+
+	/**
+	 * @param subject the subject variable of the star
+	 * @param subjects estimated distinct subjects of the star
+	 * @param results estimated solutions of the star
+	 * @param patterns cardinalities of the triple patterns of the star
+	 * @return the cardinality of the star, the distinct values of the object variables are taken from the patterns
+	 */
+	static Cardinality star(Var subject, double subjects, double results, List<Cardinality> patterns) {
+		double max = 1;
+		Map<Var, Double> d = new HashMap<Var, Double>();
+		for (Cardinality c : patterns) {
+			max *= c.max;
+			for (Map.Entry<Var, Double> e : c.distinct.entrySet()) {
+				Double prev = d.get(e.getKey());
+				if (prev == null || e.getValue() < prev)
+					d.put(e.getKey(), e.getValue());
+			}
+		}
+		d.put(subject, subjects);
+		return new Cardinality(0, Math.min(results, max), max, d);
+	}
+
+	/**
+	 * @return {min, avg, max} rounded up to integers, at most Integer.MAX_VALUE
+	 */
+	Integer[] toEstimate() {
+		return new Integer[] { toInt(min), toInt(avg), toInt(max) };
+	}
+
+	private static int toInt(double d) {
+		return (d >= Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) Math.ceil(d);
+	}
+
+	@Override
+	public String toString() {
+		return "[" + min + ", " + avg + ", " + max + "] " + distinct;
+	}
+
+}
@@ -0,0 +1,267 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import at.jku.rdfstats.hist.builder.CompactDataInput;
+import at.jku.rdfstats.hist.builder.CompactDataOutput;
+
+import com.hp.hpl.jena.sparql.util.Base64;
+
+/**
+ * @author dorgon
+ *
+ * Characteristic sets of a dataset: the distinct combinations of properties used by the subjects, each with the
+ * number of subjects and the number of triples of each of its properties. Only the most frequent sets are kept,
+ * the subjects of all other sets are summarized by a residual which stores the number of subjects, and for each
+ * property the number of subjects and triples.
+ *
+ * Star-shaped BGPs (?s p1 ?o1 . ?s p2 ?o2 ...) are estimated by summing up over all sets containing the properties
+ * of the star: subjects(S) * triples(S, p1) / subjects(S) * triples(S, p2) / subjects(S) ... For the residual,
+ * properties are assumed to be independent.
+ *
+ * Instances are immutable and created by the generators, they are stored base64-encoded in the statistics model.
+ */
+public class CharacteristicSets {
+
+	/** byte stream version, encoded for compatibility checks */
+	public static final int VERSION = 20100401;
+
+	/** property URIs, sorted */
+	private final String[] properties;
+
+	/** sets as sorted indexes into properties */
+	private final int[][] sets;
+
+	/** subjects of each set */
+	private final long[] subjects;
+
+	/** triples of each property of each set, in the order of sets[i] */
+	private final long[][] occurrences;
+
+	/** subjects not counted by sets */
+	private final long residualSubjects;
+
+	/** subjects of the residual having each property, indexed like properties */
+	private final long[] residualPropertySubjects;
+
+	/** triples of the residual for each property, indexed like properties */
+	private final long[] residualOccurrences;
+
+	/**
+	 * @param properties property URIs, sorted
+	 * @param sets sets as sorted indexes into properties
+	 * @param subjects subjects of each set
+	 * @param occurrences triples of each property of each set
+	 * @param residualSubjects
+	 * @param residualPropertySubjects indexed like properties
+	 * @param residualOccurrences indexed like properties
+	 */
+	public CharacteristicSets(String[] properties, int[][] sets, long[] subjects, long[][] occurrences,
+			long residualSubjects, long[] residualPropertySubjects, long[] residualOccurrences) {
+		this.properties = properties;
+		this.sets = sets;
+		this.subjects = subjects;
+		this.occurrences = occurrences;
+		this.residualSubjects = residualSubjects;
+		this.residualPropertySubjects = residualPropertySubjects;
+		this.residualOccurrences = residualOccurrences;
+	}
+
+	/** @return number of sets, excluding the residual */
+	public int size() {
+		return sets.length;
+	}
+
+	/** @return the property URIs of set i */
+	public String[] getProperties(int i) {
+		String[] props = new String[sets[i].length];
+		for (int j = 0; j < props.length; j++)
+			props[j] = properties[sets[i][j]];
+		return props;
+	}
+
+	/** @return subjects of set i */
+	public long getSubjects(int i) {
+		return subjects[i];
+	}
+
+	/** @return triples of the j-th property of set i */
+	public long getOccurrences(int i, int j) {
+		return occurrences[i][j];
+	}
+
+	/** @return subjects merged into the residual */
+	public long getResidualSubjects() {
+		return residualSubjects;
+	}
+
+	/**
+	 * @param props properties of a subject star
+	 * @return estimated number of subjects having all properties
+	 */
+	public double estimateSubjects(List<String> props) {
+		return estimate(props, null, false);
+	}
+
+	/**
+	 * @param props properties of a subject star, a property may occur more than once
+	 * @param selectivities fraction of the triples of each property matched by its pattern, null if all match
+	 * @return estimated number of solutions of the star
+	 */
+	public double estimateResults(List<String> props, double[] selectivities) {
+		return estimate(props, selectivities, true);
+	}
+
+	private double estimate(List<String> props, double[] selectivities, boolean results) {
+		int[] idx = new int[props.size()];
+		for (int i = 0; i < idx.length; i++) {
+			idx[i] = Arrays.binarySearch(properties, props.get(i));
+			if (idx[i] < 0)
+				return 0; // no subject has this property
+		}
+		int[] required = distinctSorted(idx);
+
+		double sum = 0;
+		for (int s = 0; s < sets.length; s++) {
+			if (!containsAll(sets[s], required))
+				continue;
+			double n = subjects[s];
+			if (results)
+				for (int i = 0; i < idx.length; i++)
+					n *= (double) occurrences[s][Arrays.binarySearch(sets[s], idx[i])] / subjects[s] * selectivity(selectivities, i);
+			sum += n;
+		}
+
+		if (residualSubjects > 0) {
+			double n = residualSubjects;
+			for (int p : required)
+				n *= (double) residualPropertySubjects[p] / residualSubjects;
+			if (results && n > 0)
+				for (int i = 0; i < idx.length; i++)
+					n *= (double) residualOccurrences[idx[i]] / residualPropertySubjects[idx[i]] * selectivity(selectivities, i);
+			sum += n;
+		}
+		return sum;
+	}
+
+	private static double selectivity(double[] selectivities, int i) {
+		return (selectivities != null) ? selectivities[i] : 1;
+	}
+
+	private static int[] distinctSorted(int[] idx) {
+		int[] sorted = idx.clone();
+		Arrays.sort(sorted);
+		int n = 0;
+		for (int i = 0; i < sorted.length; i++)
+			if (i == 0 || sorted[i] != sorted[n-1])
+				sorted[n++] = sorted[i];
+		if (n == sorted.length)
+			return sorted;
+		int[] distinct = new int[n];
+		System.arraycopy(sorted, 0, distinct, 0, n);
+		return distinct;
+	}
+
+	/** @return true if the sorted array set contains all elements of the sorted array required */
+	private static boolean containsAll(int[] set, int[] required) {
+		if (required.length > set.length)
+			return false;
+		int j = 0;
+		for (int i = 0; i < set.length && j < required.length; i++) {
+			if (set[i] == required[j])
+				j++;
+			else if (set[i] > required[j])
+				return false;
+		}
+		return j == required.length;
+	}
+
+// codec
+
+	/**
+	 * @return the characteristic sets as a base64 string
+	 */
+	public String base64encode() {
+		CompactDataOutput out = new CompactDataOutput();
+		out.writeVarInt(VERSION);
+		out.writeVarInt(properties.length);
+		out.writeStringArray(properties);
+		out.writeVarInt(sets.length);
+		for (int s = 0; s < sets.length; s++) {
+			out.writeVarInt(sets[s].length);
+			out.writeIntArray(sets[s]);
+			out.writeVarLong(subjects[s]);
+			for (long occ : occurrences[s])
+				out.writeVarLong(occ - subjects[s]); // each subject has at least one triple of each property
+		}
+		out.writeVarLong(residualSubjects);
+		for (int p = 0; p < properties.length; p++) {
+			out.writeVarLong(residualPropertySubjects[p]);
+			out.writeVarLong(residualOccurrences[p] - residualPropertySubjects[p]);
+		}
+		return Base64.encodeBytes(out.toByteArray());
+	}
+
+	/**
+	 * @param encoded
+	 * @return the decoded characteristic sets
+	 * @throws RDFStatsModelException if encoded is corrupt or has been encoded with another version
+	 */
+	public static CharacteristicSets base64decode(String encoded) throws RDFStatsModelException {
+		try {
+			CompactDataInput in = new CompactDataInput(ByteBuffer.wrap(Base64.decode(encoded)));
+			int version = in.readVarInt();
+			if (version != VERSION)
+				throw new RDFStatsModelException("Version missmatch: the characteristic sets were encoded with version " + version + " but you are running version " + VERSION + ".");
+
+			String[] properties = in.readStringArray(in.readVarInt());
+			int[][] sets = new int[in.readVarInt()][];
+			long[] subjects = new long[sets.length];
+			long[][] occurrences = new long[sets.length][];
+			for (int s = 0; s < sets.length; s++) {
+				sets[s] = in.readIntArray(in.readVarInt());
+				subjects[s] = in.readVarLong();
+				occurrences[s] = new long[sets[s].length];
+				for (int j = 0; j < sets[s].length; j++)
+					occurrences[s][j] = in.readVarLong() + subjects[s];
+			}
+			long residualSubjects = in.readVarLong();
+			long[] residualPropertySubjects = new long[properties.length];
+			long[] residualOccurrences = new long[properties.length];
+			for (int p = 0; p < properties.length; p++) {
+				residualPropertySubjects[p] = in.readVarLong();
+				residualOccurrences[p] = in.readVarLong() + residualPropertySubjects[p];
+			}
+			return new CharacteristicSets(properties, sets, subjects, occurrences, residualSubjects, residualPropertySubjects, residualOccurrences);
+		} catch (BufferUnderflowException e) {
+			throw new RDFStatsModelException("Cannot decode characteristic sets: unexpected end of data.", e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int s = 0; s < sets.length; s++)
+			sb.append(Arrays.toString(getProperties(s))).append(": ").append(subjects[s]).append("\n");
+		return sb.append("residual: ").append(residualSubjects).toString();
+	}
+
+}
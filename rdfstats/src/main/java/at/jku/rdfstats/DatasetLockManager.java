@@ -0,0 +1,184 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.rdf.model.Model;
+
+/**
+ * @author dorgon
+ *
+ * Per-dataset exclusive write locks of a statistics model, identified by the source URL of the dataset.
+ * A null source URL denotes all statistics.
+ *
+ * Every dataset has its own fair {@link ReentrantReadWriteLock}, so writers of different datasets do not block each other.
+ * Locking a dataset additionally acquires the read lock of a global lock, the write lock of the global lock is the
+ * lock for all statistics. Hence, a thread holding a dataset lock must not request the lock for all statistics.
+ *
+ * Locks are owned by threads and must be returned by the thread which acquired them. All RDFStatsModels wrapping the same
+ * graph share one lock manager.
+ */
+public class DatasetLockManager {
+
+	/** lock managers of all graphs */
+	private static final Map<Graph, DatasetLockManager> managers = new WeakHashMap<Graph, DatasetLockManager>();
+
+	/** read lock: some dataset is locked, write lock: all statistics are locked */
+	private final OwnedLock global = new OwnedLock();
+
+	/** source URL => lock */
+	private final ConcurrentHashMap<String, OwnedLock> locks = new ConcurrentHashMap<String, OwnedLock>();
+
+	/**
+	 * @param model
+	 * @return the lock manager shared by all statistics models wrapping the graph of model
+	 */
+	public static synchronized DatasetLockManager getLockManager(Model model) {
+		Graph g = model.getGraph();
+		DatasetLockManager m = managers.get(g);
+		if (m == null) {
+			m = new DatasetLockManager();
+			managers.put(g, m);
+		}
+		return m;
+	}
+
+	/**
+	 * acquires the write lock for sourceUrl, waits at most timeout
+	 *
+	 * @param sourceUrl the source URL or null for all statistics
+	 * @param timeout
+	 * @param unit
+	 * @return true if the lock has been acquired
+	 * @throws InterruptedException
+	 */
+	public boolean tryLock(String sourceUrl, long timeout, TimeUnit unit) throws InterruptedException {
+		if (sourceUrl == null) {
+			if (global.getReadHoldCount() > 0)
+				throw new IllegalStateException("Thread " + Thread.currentThread().getName() + " holds a dataset lock and cannot lock all statistics.");
+			return global.writeLock().tryLock(timeout, unit);
+		}
+
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		if (!global.readLock().tryLock(timeout, unit))
+			return false;
+
+		boolean locked = false;
+		try {
+			locked = getLock(sourceUrl).writeLock().tryLock(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			return locked;
+		} finally {
+			if (!locked)
+				global.readLock().unlock();
+		}
+	}
+
+	/**
+	 * releases the write lock for sourceUrl
+	 *
+	 * @param sourceUrl the source URL or null for all statistics
+	 * @throws IllegalMonitorStateException if the current thread does not hold the lock
+	 */
+	public void unlock(String sourceUrl) {
+		if (sourceUrl == null) {
+			global.writeLock().unlock();
+			return;
+		}
+
+		OwnedLock l = locks.get(sourceUrl);
+		if (l == null || !l.isWriteLockedByCurrentThread())
+			throw new IllegalMonitorStateException("Thread " + Thread.currentThread().getName() + " does not hold the lock for <" + sourceUrl + ">.");
+		l.writeLock().unlock();
+		global.readLock().unlock();
+	}
+
+	/**
+	 * @param sourceUrl the source URL or null for all statistics
+	 * @return true if the current thread holds the write lock for sourceUrl or for all statistics
+	 */
+	public boolean isLockedByCurrentThread(String sourceUrl) {
+		if (global.isWriteLockedByCurrentThread())
+			return true;
+		if (sourceUrl == null)
+			return false;
+		OwnedLock l = locks.get(sourceUrl);
+		return l != null && l.isWriteLockedByCurrentThread();
+	}
+
+	/**
+	 * @param sourceUrl the source URL or null for all statistics
+	 * @return the number of holds of the current thread on the write lock for sourceUrl
+	 */
+	public int getHoldCount(String sourceUrl) {
+		if (sourceUrl == null)
+			return global.getWriteHoldCount();
+		OwnedLock l = locks.get(sourceUrl);
+		return (l != null) ? l.getWriteHoldCount() : 0;
+	}
+
+	/**
+	 * @param sourceUrl the source URL or null for all statistics
+	 * @return the thread holding the write lock for sourceUrl (or for all statistics), or null if not locked
+	 */
+	public Thread getOwner(String sourceUrl) {
+		Thread t = global.owner();
+		if (t != null || sourceUrl == null)
+			return t;
+		OwnedLock l = locks.get(sourceUrl);
+		return (l != null) ? l.owner() : null;
+	}
+
+	/**
+	 * @param sourceUrl the source URL or null for all statistics
+	 * @return true if there are threads waiting for the lock
+	 */
+	public boolean hasQueuedThreads(String sourceUrl) {
+		if (sourceUrl == null)
+			return global.hasQueuedThreads();
+		OwnedLock l = locks.get(sourceUrl);
+		return l != null && l.hasQueuedThreads();
+	}
+
+	private OwnedLock getLock(String sourceUrl) {
+		OwnedLock l = locks.get(sourceUrl);
+		if (l == null) {
+			OwnedLock created = new OwnedLock();
+			l = locks.putIfAbsent(sourceUrl, created);
+			if (l == null)
+				l = created;
+		}
+		return l;
+	}
+
+	/** fair read-write lock exposing the owner of the write lock */
+	@SuppressWarnings("serial")
+	private static class OwnedLock extends ReentrantReadWriteLock {
+		OwnedLock() {
+			super(true);
+		}
+
+		Thread owner() {
+			return getOwner();
+		}
+	}
+
+}
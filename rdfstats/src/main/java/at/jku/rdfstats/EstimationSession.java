@@ -0,0 +1,201 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.expr.Expr;
+import com.hp.hpl.jena.sparql.expr.ExprFunction;
+import com.hp.hpl.jena.sparql.util.FmtUtils;
+
+/**
+ * @author dorgon
+ *
+ * Memoizes triple pattern estimates of a dataset across multiple estimation requests, e.g. for an optimizer
+ * enumerating overlapping query plans. Estimates are keyed by the triple pattern and the filter expressions
+ * applicable to it, variables are renamed in order of appearance, so { ?s :p ?o FILTER (?o < 5) } and
+ * { ?x :p ?y FILTER (?y < 5) } share an estimate.
+ *
+ * All memoized estimates are discarded as soon as the statistics of the dataset are modified. A session may be
+ * used by multiple threads concurrently, an estimate is only memoized if the statistics version it has been
+ * requested for is still the version of the session.
+ *
+ * @see QueryStatistics#createEstimationSession()
+ */
+public class EstimationSession {
+
+	/** memoized n/a (null) estimate */
+	static final Integer NOT_AVAILABLE = new Integer(-1);
+
+	private final String sourceUrl;
+
+	/** dataset node of the dataset the session belongs to */
+	final Node dataset;
+
+	/** canonical pattern key => estimate */
+	private final Map<String, Integer> estimates = new ConcurrentHashMap<String, Integer>();
+
+	/** statistics version the memoized estimates are based on */
+	private long version;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @param dataset dataset node
+	 * @param sourceUrl source URL of the dataset
+	 * @param version current statistics version of the dataset
+	 */
+	EstimationSession(Node dataset, String sourceUrl, long version) {
+		this.dataset = dataset;
+		this.sourceUrl = sourceUrl;
+		this.version = version;
+	}
+
+	/**
+	 * @return the source URL of the dataset the session belongs to
+	 */
+	public String getSourceUrl() {
+		return sourceUrl;
+	}
+
+	/**
+	 * @return number of memoized estimates
+	 */
+	public int size() {
+		return estimates.size();
+	}
+
+	/**
+	 * discards all memoized estimates
+	 */
+	public void clear() {
+		estimates.clear();
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * discards all memoized estimates if the statistics version has changed
+	 *
+	 * @param current current statistics version of the dataset
+	 * @return current, to be passed to {@link #put(String, Integer, long)}
+	 */
+	synchronized long validate(long current) {
+		if (current != version) {
+			estimates.clear();
+			version = current;
+		}
+		return current;
+	}
+
+	/**
+	 * @param key
+	 * @return the memoized estimate, {@link #NOT_AVAILABLE} for a memoized null estimate, or null if not memoized
+	 */
+	Integer get(String key) {
+		Integer l = estimates.get(key);
+		if (l != null)
+			hits.incrementAndGet();
+		else
+			misses.incrementAndGet();
+		return l;
+	}
+
+	/**
+	 * memoizes an estimate unless the session has been validated for another statistics version meanwhile
+	 * 
+	 * @param key
+	 * @param l estimate or null if not available
+	 * @param version statistics version returned by {@link #validate(long)} before estimating
+	 */
+	synchronized void put(String key, Integer l, long version) {
+		if (version == this.version)
+			estimates.put(key, (l != null) ? l : NOT_AVAILABLE);
+	}
+
+	/**
+	 * @param t triple pattern
+	 * @param pFilter filter expression exclusively mentioning the predicate variable or null
+	 * @param oFilter filter expression exclusively mentioning the object variable or null
+	 * @return a key which is equal for patterns and filters only differing in variable names
+	 */
+	static String key(Triple t, Expr pFilter, Expr oFilter) {
+		Map<Var, String> names = new HashMap<Var, String>(4);
+		StringBuilder sb = new StringBuilder();
+		append(t.getSubject(), names, sb);
+		sb.append(' ');
+		append(t.getPredicate(), names, sb);
+		sb.append(' ');
+		append(t.getObject(), names, sb);
+		if (pFilter != null) {
+			sb.append(" P:");
+			append(pFilter, names, sb);
+		}
+		if (oFilter != null) {
+			sb.append(" O:");
+			append(oFilter, names, sb);
+		}
+		return sb.toString();
+	}
+
+	private static void append(Node n, Map<Var, String> names, StringBuilder sb) {
+		if (n.isVariable()) {
+			Var v = Var.alloc(n);
+			String name = names.get(v);
+			if (name == null) {
+				name = "?" + names.size();
+				names.put(v, name);
+			}
+			sb.append(name);
+		} else
+			sb.append(FmtUtils.stringForNode(n));
+	}
+
+	private static void append(Expr e, Map<Var, String> names, StringBuilder sb) {
+		if (e.isVariable())
+			append(e.asVar(), names, sb);
+		else if (e.isConstant())
+			sb.append(FmtUtils.stringForNode(e.getConstant().asNode()));
+		else if (e.isFunction()) {
+			ExprFunction f = e.getFunction();
+			sb.append(f.getFunctionSymbol().getSymbol());
+			if (f.getFunctionIRI() != null)
+				sb.append('<').append(f.getFunctionIRI()).append('>');
+			sb.append('(');
+			for (int i=1; i<=f.numArgs(); i++) {
+				if (i > 1)
+					sb.append(',');
+				append(f.getArg(i), names, sb);
+			}
+			sb.append(')');
+		} else
+			sb.append(e); // unknown expression type, no renaming
+	}
+
+}
@@ -15,25 +15,69 @@
  */
 package at.jku.rdfstats;
 
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import at.jku.rdfstats.generator.RDFStatsGeneratorDoc;
+import at.jku.rdfstats.generator.RDFStatsGeneratorBase;
 import at.jku.rdfstats.generator.RDFStatsGeneratorFactory;
-import at.jku.rdfstats.generator.RDFStatsGeneratorSPARQL;
 
 import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.util.FileUtils;
 
 /**
  * @author dorgon
  *
  * Generates statistics for multiple SPARQL endpoints and RDF documents
  * (uris specified in the configuration) at once into a single model
+ * 
+ * Up to {@link RDFStatsConfiguration#getSourceThreads()} sources are processed concurrently, but at most
+ * {@link RDFStatsConfiguration#getSourceThreadsPerHost()} of the same host (local documents are only limited by
+ * the former). Sources without statistics come first, followed by those with the oldest statistics.
+ * 
+ * Each source is generated into a private model, which initially contains the previous statistics of the source,
+ * and only copied into the statistics model if the source succeeded. A source exceeding
+ * {@link RDFStatsConfiguration#getSourceTimeout()} is interrupted and skipped, its thread is abandoned (a generator
+ * blocked in I/O may not react to the interrupt), but it never writes into the statistics model nor holds any of its
+ * locks. An abandoned thread no longer counts against {@link RDFStatsConfiguration#getSourceThreads()}, hence the
+ * number of threads is not bounded while abandoned threads are running, but it keeps its host slot until it actually
+ * terminates, so a host is never queried by more than {@link RDFStatsConfiguration#getSourceThreadsPerHost()}
+ * threads. The timing and outcome of each source are logged and available by {@link #getResults()} afterwards.
  */
 public class GeneratorMultiple {
 	private static final Log log = LogFactory.getLog(GeneratorMultiple.class);
+	
+	/** interval in milliseconds to check whether abandoned threads have terminated */
+	private static final long ABANDONED_CHECK_INTERVAL = 100;
 	protected final RDFStatsConfiguration config;
 	
+	/** outcome of processing a source */
+	public enum Outcome { SUCCEEDED, FAILED, TIMED_OUT, CANCELLED }
+	
+	/** results of the last run, in order of completion */
+	private final List<SourceResult> results = new ArrayList<SourceResult>();
+	
 	public GeneratorMultiple(RDFStatsConfiguration config) {
 		this.config = config;
 	}
@@ -41,40 +85,373 @@ public class GeneratorMultiple {
 	/** generates statistics into configured model and returns the model
 	 * 
 	 * @return the configured assembler model
-	 * @throws GeneratorException
+	 * @throws GeneratorException if interrupted while waiting for the sources
 	 */
 	public Model generate() throws GeneratorException {
 		Model stats = config.getStatsModel(); // generate into configured assembler model
+		results.clear();
+		
+		List<SourceResult> pending = prioritize();
+		int threads = Math.min(config.getSourceThreads(), pending.size());
+		if (threads == 0)
+			return stats;
+		if (log.isInfoEnabled())
+			log.info("Processing " + pending.size() + " sources with up to " + threads + " concurrently (" + config.getSourceThreadsPerHost() + " per host)...");
+		
+		ExecutorService pool = Executors.newCachedThreadPool(new SourceThreadFactory());
+		CompletionService<SourceResult> completed = new ExecutorCompletionService<SourceResult>(pool);
+		Map<Future<SourceResult>, SourceResult> running = new HashMap<Future<SourceResult>, SourceResult>();
+		List<SourceResult> abandoned = new ArrayList<SourceResult>(); // timed out, but still holding their host slots
+		Map<String, Integer> hostLoad = new HashMap<String, Integer>();
+		long timeout = config.getSourceTimeout() * 1000L;
+		
+		try {
+			while (!pending.isEmpty() || !running.isEmpty()) {
+				// release the host slots of abandoned sources whose threads have terminated meanwhile
+				for (Iterator<SourceResult> it = abandoned.iterator(); it.hasNext(); ) {
+					SourceResult r = it.next();
+					if (!r.isActive()) {
+						it.remove();
+						release(hostLoad, r);
+					}
+				}
+				
+				// start sources in order of priority as long as the limits permit
+				for (Iterator<SourceResult> it = pending.iterator(); it.hasNext() && running.size() < threads; ) {
+					SourceResult r = it.next();
+					if (r.host != null && load(hostLoad, r.host) >= config.getSourceThreadsPerHost())
+						continue;
+					it.remove();
+					if (r.host != null)
+						hostLoad.put(r.host, load(hostLoad, r.host) + 1);
+					r.started = System.currentTimeMillis();
+					running.put(completed.submit(new SourceTask(r)), r);
+				}
+				
+				// wait for the next source to complete or time out
+				Future<SourceResult> f;
+				if (timeout > 0) {
+					long deadline = Long.MAX_VALUE;
+					for (SourceResult r : running.values())
+						if (!r.isCommitting()) // copying the statistics isn't interrupted
+							deadline = Math.min(deadline, r.started + timeout);
+					if (!abandoned.isEmpty() && !pending.isEmpty())
+						deadline = Math.min(deadline, System.currentTimeMillis() + ABANDONED_CHECK_INTERVAL);
+					f = completed.poll(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+				} else
+					f = completed.take();
+				
+				if (f != null) {
+					SourceResult r = running.remove(f);
+					if (r != null) { // null if already timed out
+						try {
+							f.get();
+							finished(r, Outcome.SUCCEEDED, null, hostLoad);
+						} catch (ExecutionException e) {
+							finished(r, Outcome.FAILED, e.getCause(), hostLoad);
+						}
+					}
+				}
+				
+				if (timeout > 0) {
+					long now = System.currentTimeMillis();
+					for (Iterator<Map.Entry<Future<SourceResult>, SourceResult>> it = running.entrySet().iterator(); it.hasNext(); ) {
+						Map.Entry<Future<SourceResult>, SourceResult> e = it.next();
+						if (now - e.getValue().started >= timeout && e.getValue().abandon()) {
+							e.getKey().cancel(true);
+							it.remove();
+							finished(e.getValue(), Outcome.TIMED_OUT, null, hostLoad);
+							abandoned.add(e.getValue());
+						}
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			for (Map.Entry<Future<SourceResult>, SourceResult> r : running.entrySet()) {
+				if (!r.getValue().abandon())
+					awaitCommit(r.getKey()); // no writes after returning
+				r.getKey().cancel(true);
+				finished(r.getValue(), Outcome.CANCELLED, null, hostLoad);
+			}
+			Thread.currentThread().interrupt();
+			throw new GeneratorException("Interrupted while generating statistics for multiple sources.", e);
+		} finally {
+			pool.shutdownNow();
+			logSummary();
+		}
 
-		// handle endpoints
-		for (String endpointUri : config.getEndpoints()) {
+		return stats;
+	}
+	
+	/**
+	 * generates the statistics of a single source, called by the worker threads
+	 * 
+	 * @param sourceConfig configuration of the source, with a private statistics model
+	 * @param sourceUrl
+	 * @param endpoint true if sourceUrl is a SPARQL endpoint, false if it is an RDF document
+	 * @throws Exception
+	 */
+	protected void generate(RDFStatsConfiguration sourceConfig, String sourceUrl, boolean endpoint) throws Exception {
+		RDFStatsGeneratorBase generator = (endpoint) ?
+				RDFStatsGeneratorFactory.generatorSPARQL(sourceConfig, sourceUrl) :
+				RDFStatsGeneratorFactory.generatorDocument(sourceConfig, sourceUrl);
+		generator.generate();
+		
+		// track times
+		generator.printRetrievalDetails();
+	}
+	
+	/**
+	 * @return the results of the last run in order of completion, cancelled sources are not included
+	 */
+	public List<SourceResult> getResults() {
+		return Collections.unmodifiableList(results);
+	}
+	
+	/**
+	 * @return all configured sources, the ones without statistics first, then by ascending date of the statistics
+	 */
+	private List<SourceResult> prioritize() {
+		RDFStatsModel stats = RDFStatsModelFactory.create(config.getStatsModel());
+		List<SourceResult> sources = new ArrayList<SourceResult>();
+		for (String endpointUri : config.getEndpoints())
+			sources.add(new SourceResult(endpointUri, true));
+		for (String docUrl : config.getDocumentURLs())
+			sources.add(new SourceResult(docUrl, false));
+		for (SourceResult r : sources)
+			r.lastGenerated = lastGenerated(stats, r.datasetUrl);
+		
+		// stable, configured order is kept for equal dates
+		Collections.sort(sources, new Comparator<SourceResult>() {
+			public int compare(SourceResult a, SourceResult b) {
+				if (a.lastGenerated == null || b.lastGenerated == null)
+					return (a.lastGenerated == null) ? ((b.lastGenerated == null) ? 0 : -1) : 1;
+				return a.lastGenerated.compareTo(b.lastGenerated);
+			}
+		});
+		return sources;
+	}
+	
+	private static Date lastGenerated(RDFStatsModel stats, String sourceUrl) {
+		try {
+			RDFStatsDataset ds = stats.getDataset(sourceUrl);
+			return (ds != null) ? ds.getDate() : null;
+		} catch (RDFStatsModelException e) {
+			log.warn("Couldn't determine the date of the statistics for <" + sourceUrl + ">, processing it first.", e);
+			return null;
+		}
+	}
+	
+	/** waits until the source has copied its statistics, interrupts are deferred */
+	private static void awaitCommit(Future<SourceResult> f) {
+		boolean interrupted = false;
+		while (true) {
 			try {
-				RDFStatsGeneratorSPARQL generator = RDFStatsGeneratorFactory.generatorSPARQL(config, endpointUri);
-				generator.generate();
-				
-				// track times
-		    	generator.printRetrievalDetails();
+				f.get();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
 			} catch (Exception e) {
-				log.error("Error occured while precssing endpoint <" + endpointUri + ">... skipped.", e);
-				continue; // resume with next endpoint on errors
+				break; // failed, logged by the caller
 			}
 		}
-
-		// handle documents
-		for (String docUrl : config.getDocumentURLs()) {
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+	
+	private static int load(Map<String, Integer> hostLoad, String host) {
+		Integer n = hostLoad.get(host);
+		return (n != null) ? n : 0;
+	}
+	
+	private static void release(Map<String, Integer> hostLoad, SourceResult r) {
+		if (r.host != null)
+			hostLoad.put(r.host, load(hostLoad, r.host) - 1);
+	}
+	
+	/** records the outcome, the host slot of a timed out source is released when its thread has terminated */
+	private void finished(SourceResult r, Outcome outcome, Throwable error, Map<String, Integer> hostLoad) {
+		r.duration = System.currentTimeMillis() - r.started;
+		r.outcome = outcome;
+		r.error = error;
+		if (outcome != Outcome.TIMED_OUT)
+			release(hostLoad, r);
+		if (outcome != Outcome.CANCELLED)
+			results.add(r);
+		
+		String type = (r.endpoint) ? "endpoint" : "document";
+		if (outcome == Outcome.FAILED)
+			log.error("Error occured while precssing " + type + " <" + r.sourceUrl + ">... skipped.", error);
+		else if (outcome == Outcome.TIMED_OUT)
+			log.error("Timeout of " + config.getSourceTimeout() + " s exceeded while processing " + type + " <" + r.sourceUrl + ">... skipped.");
+		else if (log.isInfoEnabled())
+			log.info(r.toString());
+	}
+	
+	private void logSummary() {
+		if (!log.isInfoEnabled() || results.isEmpty())
+			return;
+		
+		int[] counts = new int[Outcome.values().length];
+		for (SourceResult r : results)
+			counts[r.outcome.ordinal()]++;
+		StringBuilder sb = new StringBuilder("Processed " + results.size() + " sources: ");
+		for (Outcome o : Outcome.values())
+			if (counts[o.ordinal()] > 0)
+				sb.append(counts[o.ordinal()]).append(' ').append(o).append(", ");
+		sb.setLength(sb.length() - 2);
+		log.info(sb.toString());
+		for (SourceResult r : results)
+			log.info("  " + r);
+	}
+	
+	/** timing and outcome of a source */
+	public static class SourceResult {
+		private final String sourceUrl;
+		private final boolean endpoint;
+		private final String datasetUrl;
+		private Date lastGenerated;
+		private final String host;
+		private long started;
+		private long duration;
+		private Outcome outcome;
+		private Throwable error;
+		
+		/** true while the statistics are copied, false if abandoned */
+		private boolean committing = false;
+		private boolean abandoned = false;
+		/** true while a thread processes the source, also after it has been abandoned */
+		private boolean active = false;
+		
+		SourceResult(String sourceUrl, boolean endpoint) {
+			this.sourceUrl = sourceUrl;
+			this.endpoint = endpoint;
+			this.datasetUrl = (!endpoint && FileUtils.isFile(sourceUrl)) ? FileUtils.toURL(sourceUrl) : sourceUrl; // as stored by the generator
+			this.host = host(sourceUrl);
+		}
+		
+		/** @return false if the source has been abandoned before its thread started processing it */
+		synchronized boolean begin() {
+			if (!abandoned)
+				active = true;
+			return active;
+		}
+		
+		synchronized void end() {
+			active = false;
+		}
+		
+		synchronized boolean isActive() {
+			return active;
+		}
+		
+		/** @return false if the source has been abandoned, otherwise it must not be abandoned anymore */
+		synchronized boolean startCommit() {
+			if (!abandoned)
+				committing = true;
+			return committing;
+		}
+		
+		/** @return false if the source is copying its statistics and cannot be abandoned anymore */
+		synchronized boolean abandon() {
+			if (!committing)
+				abandoned = true;
+			return abandoned;
+		}
+		
+		synchronized boolean isCommitting() {
+			return committing;
+		}
+		
+		/** @return host of the source, null for local documents, which are not limited per host */
+		private static String host(String url) {
+			if (FileUtils.isFile(url))
+				return null;
 			try {
-				RDFStatsGeneratorDoc generator = RDFStatsGeneratorFactory.generatorDocument(config, docUrl);
-				generator.generate();
+				String host = new URI(url).getHost();
+				return (host != null) ? host.toLowerCase() : null;
+			} catch (URISyntaxException e) {
+				return null;
+			}
+		}
+		
+		public String getSourceUrl() {
+			return sourceUrl;
+		}
+		
+		/** @return true for SPARQL endpoints, false for RDF documents */
+		public boolean isEndpoint() {
+			return endpoint;
+		}
+		
+		/** @return date of the previous statistics, null if there were none */
+		public Date getLastGenerated() {
+			return lastGenerated;
+		}
+		
+		/** @return start time in milliseconds */
+		public long getStarted() {
+			return started;
+		}
+		
+		/** @return processing time in milliseconds (until the timeout for timed out sources) */
+		public long getDuration() {
+			return duration;
+		}
+		
+		public Outcome getOutcome() {
+			return outcome;
+		}
+		
+		/** @return cause of the failure, null unless failed */
+		public Throwable getError() {
+			return error;
+		}
+		
+		@Override
+		public String toString() {
+			return ((endpoint) ? "endpoint" : "document") + " <" + sourceUrl + ">: " + outcome + " after " + duration + " ms" +
+				((error != null) ? " (" + error.getMessage() + ")" : "");
+		}
+	}
+	
+	private class SourceTask implements Callable<SourceResult> {
+		private final SourceResult source;
+		
+		SourceTask(SourceResult source) {
+			this.source = source;
+		}
+		
+		public SourceResult call() throws Exception {
+			if (!source.begin())
+				return source; // timed out before it started
+			try {
+				RDFStatsModel stats = RDFStatsModelFactory.create(config.getStatsModel());
+				Model privateModel = ModelFactory.createDefaultModel();
+				RDFStatsUpdatableModel privateStats = RDFStatsModelFactory.createUpdatable(privateModel);
+				if (stats.getDataset(source.datasetUrl) != null)
+					privateStats.updateFrom(source.datasetUrl, stats, false); // previous statistics, e.g. for the quick mode
 				
-				// track times
-		    	generator.printRetrievalDetails();
-			} catch (Exception e) {
-				log.error("Error occured while precssing document <" + docUrl + ">... skipped.", e);
-				continue; // resume with next document on errors
+				generate(config.withStatsModel(privateModel), source.sourceUrl, source.endpoint);
+				
+				if (source.startCommit() && privateStats.getDataset(source.datasetUrl) != null)
+					stats.asUpdatableModel().updateFrom(source.datasetUrl, privateStats, false);
+				return source;
+			} finally {
+				source.end();
 			}
 		}
-
-		return stats;
+	}
+	
+	/** daemon threads, an abandoned source doesn't prevent the JVM from exiting */
+	private static class SourceThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+		
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "rdfstats-source-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
 	}
 
 }
@@ -28,6 +28,10 @@ public interface GlobalGraphStatistics {
 	 * @throws RDFStatsModelException */
 	public List<RDFStatsDataset> getDatasetsDescribingResource(String r) throws RDFStatsModelException;
 
+	/** get datasets that have statistics for property p 
+	 * @throws RDFStatsModelException */
+	public List<RDFStatsDataset> getDatasetsUsingProperty(String p) throws RDFStatsModelException;
+
 	/** get the set of all properties 
 	 * @throws RDFStatsModelException */
 	public Set<String> getProperties() throws RDFStatsModelException;
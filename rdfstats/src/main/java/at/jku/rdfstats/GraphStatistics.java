@@ -15,11 +15,13 @@
  */
 package at.jku.rdfstats;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 
 import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.sparql.expr.ExprList;
 
 /**
@@ -71,6 +73,16 @@ public interface GraphStatistics {
 	 * @throws RDFStatsModelException */
 	public Integer triplesForFilteredPattern(Node s, Node p, Node o, ExprList filter) throws RDFStatsModelException;
 
+	/**
+	 * estimates multiple triple patterns in one call, lookups shared by all patterns are resolved only once and
+	 * large batches are estimated concurrently
+	 * 
+	 * @param patterns triple patterns
+	 * @param filter a list of filter expressions applied to all patterns, may be null
+	 * @return estimated amount of triples for each pattern in the order of patterns, an entry is null if not available
+	 * @throws RDFStatsModelException */
+	public List<Integer> triplesForPatterns(List<Triple> patterns, ExprList filter) throws RDFStatsModelException;
+
 	/**
 	 * get the entropy of a property in [0;1]
 	 * @param p property URI
@@ -0,0 +1,321 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats;
+
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import at.jku.rdfstats.hist.Histogram;
+
+/**
+ * @author dorgon
+ *
+ * Bounded cache of decoded histograms keyed by (sourceUrl, property, range). Subject histograms use a null property.
+ *
+ * The cache is split into segments selected by the key hash, each segment is an access-ordered LRU map
+ * guarded by its own monitor, so concurrent readers only contend if they hit the same segment. If soft values are
+ * enabled, the garbage collector may additionally drop cached histograms under memory pressure.
+ */
+public class HistogramCache {
+
+	/** default maximum number of cached histograms */
+	public static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+	/** number of segments */
+	private static final int SEGMENTS = 16;
+
+	private final Segment[] segments;
+
+	private volatile boolean softValues;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * creates a cache holding up to {@link #DEFAULT_MAXIMUM_SIZE} histograms
+	 */
+	public HistogramCache() {
+		this(DEFAULT_MAXIMUM_SIZE, false);
+	}
+
+	/**
+	 * @param maximumSize maximum number of cached histograms
+	 * @param softValues if true, histograms are only softly referenced
+	 */
+	public HistogramCache(int maximumSize, boolean softValues) {
+		this.softValues = softValues;
+		this.segments = new Segment[SEGMENTS];
+		for (int i=0; i<SEGMENTS; i++)
+			segments[i] = new Segment();
+		setMaximumSize(maximumSize);
+	}
+
+	/**
+	 * sets the maximum number of cached histograms, evicts least recently used histograms if necessary
+	 *
+	 * @param maximumSize
+	 */
+	public void setMaximumSize(int maximumSize) {
+		if (maximumSize < 0)
+			throw new IllegalArgumentException("Maximum size must not be negative.");
+
+		// distribute evenly, the first (maximumSize % SEGMENTS) segments take one more
+		for (int i=0; i<SEGMENTS; i++)
+			segments[i].setCapacity(maximumSize / SEGMENTS + ((i < maximumSize % SEGMENTS) ? 1 : 0));
+	}
+
+	/**
+	 * @return the maximum number of cached histograms
+	 */
+	public int getMaximumSize() {
+		int size = 0;
+		for (Segment s : segments)
+			size += s.capacity;
+		return size;
+	}
+
+	/**
+	 * @param softValues if true, histograms cached from now on are only softly referenced
+	 */
+	public void setSoftValues(boolean softValues) {
+		this.softValues = softValues;
+	}
+
+	/**
+	 * @return true if histograms are softly referenced
+	 */
+	public boolean isSoftValues() {
+		return softValues;
+	}
+
+	/**
+	 * @param sourceUrl
+	 * @param p property URI or null for subject histograms
+	 * @param rangeUri
+	 * @return the cached histogram or null
+	 */
+	public Histogram<?> get(String sourceUrl, String p, String rangeUri) {
+		Key k = new Key(sourceUrl, p, rangeUri);
+		Histogram<?> h = segmentFor(k).get(k);
+		if (h != null)
+			hits.incrementAndGet();
+		else
+			misses.incrementAndGet();
+		return h;
+	}
+
+	/**
+	 * @param sourceUrl
+	 * @param p property URI or null for subject histograms
+	 * @param rangeUri
+	 * @param h
+	 */
+	public void put(String sourceUrl, String p, String rangeUri, Histogram<?> h) {
+		Key k = new Key(sourceUrl, p, rangeUri);
+		segmentFor(k).put(k, (softValues) ? new SoftReference<Histogram<?>>(h) : h);
+	}
+
+	/**
+	 * @param sourceUrl
+	 * @param p property URI or null for subject histograms
+	 * @param rangeUri
+	 */
+	public void remove(String sourceUrl, String p, String rangeUri) {
+		Key k = new Key(sourceUrl, p, rangeUri);
+		segmentFor(k).remove(k);
+	}
+
+	/**
+	 * removes all histograms of a dataset
+	 *
+	 * @param sourceUrl
+	 */
+	public void removeAll(String sourceUrl) {
+		for (Segment s : segments)
+			s.removeAll(sourceUrl);
+	}
+
+	/**
+	 * removes all histograms
+	 */
+	public void clear() {
+		for (Segment s : segments)
+			s.clear();
+	}
+
+	/**
+	 * @return number of cached histograms (including softly referenced histograms that may have been collected already)
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment s : segments)
+			size += s.size();
+		return size;
+	}
+
+	/** @return number of lookups that returned a cached histogram */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/** @return number of lookups that did not return a cached histogram */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/** @return number of histograms evicted due to the size limit or collected by the garbage collector */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return hits / lookups or 0 if there were no lookups yet
+	 */
+	public float getHitRate() {
+		long h = hits.get();
+		long total = h + misses.get();
+		return (total > 0) ? h / (float) total : 0f;
+	}
+
+	/**
+	 * resets the hit, miss and eviction counters
+	 */
+	public void resetStatistics() {
+		hits.set(0);
+		misses.set(0);
+		evictions.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return "HistogramCache [size=" + size() + ", maximumSize=" + getMaximumSize() + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "]";
+	}
+
+	private Segment segmentFor(Key k) {
+		int h = k.hash;
+		h ^= (h >>> 16); // spread higher bits
+		return segments[h & (SEGMENTS-1)];
+	}
+
+	/** access-ordered LRU map, values are histograms or soft references to histograms */
+	private class Segment {
+		int capacity;
+
+		@SuppressWarnings("serial")
+		final LinkedHashMap<Key, Object> map = new LinkedHashMap<Key, Object>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+				if (size() > capacity) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+
+		synchronized void setCapacity(int capacity) {
+			this.capacity = capacity;
+			Iterator<Object> it = map.values().iterator();
+			while (map.size() > capacity && it.hasNext()) {
+				it.next();
+				it.remove();
+				evictions.incrementAndGet();
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		synchronized Histogram<?> get(Key k) {
+			Object v = map.get(k);
+			if (v instanceof SoftReference) {
+				Histogram<?> h = ((SoftReference<Histogram<?>>) v).get();
+				if (h == null) {
+					map.remove(k);
+					evictions.incrementAndGet();
+				}
+				return h;
+			}
+			return (Histogram<?>) v;
+		}
+
+		synchronized void put(Key k, Object v) {
+			if (capacity > 0)
+				map.put(k, v);
+		}
+
+		synchronized void remove(Key k) {
+			map.remove(k);
+		}
+
+		synchronized void removeAll(String sourceUrl) {
+			Iterator<Key> it = map.keySet().iterator();
+			while (it.hasNext()) {
+				Key k = it.next();
+				if (sourceUrl == null ? k.sourceUrl == null : sourceUrl.equals(k.sourceUrl))
+					it.remove();
+			}
+		}
+
+		synchronized void clear() {
+			map.clear();
+		}
+
+		synchronized int size() {
+			return map.size();
+		}
+	}
+
+	/** composite key, compares all components (unlike a combined hash code) */
+	private static final class Key {
+		final String sourceUrl;
+		final String p;
+		final String rangeUri;
+		final int hash;
+
+		Key(String sourceUrl, String p, String rangeUri) {
+			this.sourceUrl = sourceUrl;
+			this.p = p;
+			this.rangeUri = rangeUri;
+			int h = (sourceUrl != null) ? sourceUrl.hashCode() : 0;
+			h = 31 * h + ((p != null) ? p.hashCode() : 0);
+			h = 31 * h + ((rangeUri != null) ? rangeUri.hashCode() : 0);
+			this.hash = h;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key o = (Key) obj;
+			return hash == o.hash && eq(sourceUrl, o.sourceUrl) && eq(p, o.p) && eq(rangeUri, o.rangeUri);
+		}
+
+		private static boolean eq(String a, String b) {
+			return (a == null) ? b == null : a.equals(b);
+		}
+	}
+
+}
@@ -15,6 +15,8 @@
  */
 package at.jku.rdfstats;
 
+import java.util.List;
+
 import com.hp.hpl.jena.query.Query;
 import com.hp.hpl.jena.sparql.algebra.Op;
 import com.hp.hpl.jena.sparql.core.BasicPattern;
@@ -33,8 +35,53 @@ public interface QueryStatistics {
 
 	public Integer[] triplesForBGP(BasicPattern bgp) throws RDFStatsModelException;
 	public Integer[] triplesForFilteredBGP(BasicPattern bgp, ExprList exprs) throws RDFStatsModelException;
+	
+	/**
+	 * estimates multiple BGPs in one call, e.g. all candidates of a plan enumeration; lookups and triple patterns
+	 * shared by the BGPs are resolved only once and large batches are estimated concurrently
+	 * 
+	 * @param bgps
+	 * @return estimates in the order of bgps, an entry is null if not available
+	 * @throws RDFStatsModelException
+	 */
+	public List<Integer[]> triplesForBGPs(List<BasicPattern> bgps) throws RDFStatsModelException;
+	
+	/**
+	 * @param bgps
+	 * @param exprs filter expressions of each BGP (same size as bgps), the list or an entry may be null
+	 * @return estimates in the order of bgps, an entry is null if not available
+	 * @throws RDFStatsModelException
+	 * @see #triplesForBGPs(List)
+	 */
+	public List<Integer[]> triplesForFilteredBGPs(List<BasicPattern> bgps, List<ExprList> exprs) throws RDFStatsModelException;
 	public Integer[] triplesForQuery(String qry) throws RDFStatsModelException;
 	public Integer[] triplesForQuery(Query qry) throws RDFStatsModelException;
 	public Integer[] triplesForQueryPlan(Op plan) throws RDFStatsModelException;
 	
+	/**
+	 * @return a new session for memoizing triple pattern estimates across multiple requests
+	 * @throws RDFStatsModelException
+	 */
+	public EstimationSession createEstimationSession() throws RDFStatsModelException;
+	
+	/**
+	 * estimates a query plan reusing the estimates memoized by session, new estimates are added to session
+	 * 
+	 * @param plan
+	 * @param session created by {@link #createEstimationSession()} of this dataset
+	 * @return the estimate
+	 * @throws RDFStatsModelException
+	 */
+	public Integer[] triplesForQueryPlan(Op plan, EstimationSession session) throws RDFStatsModelException;
+	
+	/**
+	 * @param bgps
+	 * @param exprs filter expressions of each BGP (same size as bgps), the list or an entry may be null
+	 * @param session created by {@link #createEstimationSession()} of this dataset
+	 * @return estimates in the order of bgps, an entry is null if not available
+	 * @throws RDFStatsModelException
+	 * @see #triplesForBGPs(List)
+	 */
+	public List<Integer[]> triplesForFilteredBGPs(List<BasicPattern> bgps, List<ExprList> exprs, EstimationSession session) throws RDFStatsModelException;
+	
 }
@@ -19,7 +19,10 @@ import java.io.InputStreamReader;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.TimeZone;
 
 import org.apache.commons.logging.Log;
@@ -78,6 +81,17 @@ public class RDFStatsConfiguration {
 	private final String localHostname;
 	private final boolean quickMode;
 	private final TimeZone defaultTimeZone;
+	private final int generatorThreads;
+	private final boolean approximateHistograms;
+	private final Set<String> equiDepthTypes;
+	private final int uriHistogramNodeBudget;
+	private final int characteristicSetsSize;
+	private final double subjectFilterFalsePositiveRate;
+	private final int pageSize;
+	private final String checkpointDirectory;
+	private final int sourceThreads;
+	private final int sourceThreadsPerHost;
+	private final int sourceTimeout;
 	
 //	public static final boolean DEFAULT_CLASSSPECIFIC = false;
 	public static final int DEFAULT_PREFSIZE = 50;
@@ -85,6 +99,16 @@ public class RDFStatsConfiguration {
 	public static final String DEFAULT_OUTFORMAT = "N3";
 	public static final int DEFAULT_STRHIST_MAXLEN = Integer.MAX_VALUE;
 	public static final boolean DEFAULT_QUICK_MODE = false;
+	public static final int DEFAULT_GENERATOR_THREADS = 1;
+	public static final boolean DEFAULT_APPROXIMATE_HISTOGRAMS = false;
+	public static final int DEFAULT_URIHIST_NODE_BUDGET = 10000;
+	public static final int DEFAULT_CHARACTERISTIC_SETS_SIZE = 0; // disabled, requires a full scan of each source
+	public static final double DEFAULT_SUBJECT_FILTER_FP_RATE = 0; // disabled
+	public static final int DEFAULT_PAGE_SIZE = 0; // no paging
+	public static final String DEFAULT_CHECKPOINT_DIRECTORY = null; // no checkpoints
+	public static final int DEFAULT_SOURCE_THREADS = 1; // one source after the other
+	public static final int DEFAULT_SOURCE_THREADS_PER_HOST = 1;
+	public static final int DEFAULT_SOURCE_TIMEOUT = 0; // no timeout
 	
 	public static RDFStatsConfiguration create(Model statsModel,
 			List<String> endpoints,
@@ -97,9 +121,16 @@ public class RDFStatsConfiguration {
 			boolean quickMode,
 			TimeZone timeZone) {
 		
-		return new RDFStatsConfiguration(statsModel, endpoints, documentURLs,
-//				classSpecific, 
-				prefSize, outFile, outFormat, strHistMaxLen, quickMode, timeZone);
+		return builder().statsModel(statsModel).endpoints(endpoints).documentURLs(documentURLs)
+//				.classSpecific(classSpecific)
+				.prefSize(prefSize).outFile(outFile).outFormat(outFormat).strHistMaxLength(strHistMaxLen).quickMode(quickMode).defaultTimeZone(timeZone).build();
+	}
+	
+	/**
+	 * @return a builder for a new configuration, options which are not set (or set to null) take their defaults
+	 */
+	public static Builder builder() {
+		return new Builder();
 	}
 	
 	public static RDFStatsConfiguration create(Model cfgModel) throws ConfigurationException {
@@ -140,45 +171,82 @@ public class RDFStatsConfiguration {
 		Integer strHistMaxLength = (cfg.hasProperty(Config.stringHistMaxLength)) ? cfg.getProperty(Config.stringHistMaxLength).getInt() : DEFAULT_STRHIST_MAXLEN;
 		boolean quickMode = (cfg.hasProperty(Config.quickMode)) ? cfg.getProperty(Config.quickMode).getBoolean() : DEFAULT_QUICK_MODE;
 		TimeZone timeZone = (cfg.hasProperty(Config.defaultTimezone)) ? TimeZone.getTimeZone(cfg.getProperty(Config.defaultTimezone).getString()) : TimeZone.getDefault();
+		Integer generatorThreads = (cfg.hasProperty(Config.generatorThreads)) ? cfg.getProperty(Config.generatorThreads).getInt() : DEFAULT_GENERATOR_THREADS;
+		boolean approximateHistograms = (cfg.hasProperty(Config.approximateHistograms)) ? cfg.getProperty(Config.approximateHistograms).getBoolean() : DEFAULT_APPROXIMATE_HISTOGRAMS;
+
+		List<String> equiDepthTypes = new ArrayList<String>();
+		StmtIterator it3 = cfg.getModel().listStatements(cfg, Config.equiDepthDatatype, (RDFNode) null);
+		while (it3.hasNext())
+			equiDepthTypes.add(it3.nextStatement().getResource().getURI());
+		Integer uriHistogramNodeBudget = (cfg.hasProperty(Config.uriHistogramNodeBudget)) ? cfg.getProperty(Config.uriHistogramNodeBudget).getInt() : DEFAULT_URIHIST_NODE_BUDGET;
+		Integer characteristicSetsSize = (cfg.hasProperty(Config.characteristicSetsSize)) ? cfg.getProperty(Config.characteristicSetsSize).getInt() : DEFAULT_CHARACTERISTIC_SETS_SIZE;
+		Double subjectFilterFalsePositiveRate = (cfg.hasProperty(Config.subjectFilterFalsePositiveRate)) ? cfg.getProperty(Config.subjectFilterFalsePositiveRate).getDouble() : DEFAULT_SUBJECT_FILTER_FP_RATE;
+		Integer pageSize = (cfg.hasProperty(Config.pageSize)) ? cfg.getProperty(Config.pageSize).getInt() : DEFAULT_PAGE_SIZE;
+		String checkpointDirectory = (cfg.hasProperty(Config.checkpointDirectory)) ? cfg.getProperty(Config.checkpointDirectory).getString() : DEFAULT_CHECKPOINT_DIRECTORY;
+		Integer sourceThreads = (cfg.hasProperty(Config.sourceThreads)) ? cfg.getProperty(Config.sourceThreads).getInt() : DEFAULT_SOURCE_THREADS;
+		Integer sourceThreadsPerHost = (cfg.hasProperty(Config.sourceThreadsPerHost)) ? cfg.getProperty(Config.sourceThreadsPerHost).getInt() : DEFAULT_SOURCE_THREADS_PER_HOST;
+		Integer sourceTimeout = (cfg.hasProperty(Config.sourceTimeout)) ? cfg.getProperty(Config.sourceTimeout).getInt() : DEFAULT_SOURCE_TIMEOUT;
 
-		return new RDFStatsConfiguration(statsModel, endpoints, documentURLs, 
-//				classSpecific, 
-				prefSize, outFile, outFormat, strHistMaxLength, quickMode, timeZone);
+		return builder().statsModel(statsModel).endpoints(endpoints).documentURLs(documentURLs)
+//				.classSpecific(classSpecific)
+				.prefSize(prefSize).outFile(outFile).outFormat(outFormat).strHistMaxLength(strHistMaxLength).quickMode(quickMode).defaultTimeZone(timeZone)
+				.generatorThreads(generatorThreads).approximateHistograms(approximateHistograms).equiDepthTypes(equiDepthTypes)
+				.uriHistogramNodeBudget(uriHistogramNodeBudget).characteristicSetsSize(characteristicSetsSize).subjectFilterFalsePositiveRate(subjectFilterFalsePositiveRate)
+				.pageSize(pageSize).checkpointDirectory(checkpointDirectory)
+				.sourceThreads(sourceThreads).sourceThreadsPerHost(sourceThreadsPerHost).sourceTimeout(sourceTimeout).build();
 	}
 	
-	private RDFStatsConfiguration(
-			Model statsModel,
-			List<String> endpoints,
-			List<String> documentURLs,
-//			boolean classSpecific,
-			Integer prefSize,
-			String outFile,
-			String outFormat,
-			Integer strHistMaxLen,
-			boolean quickMode,
-			TimeZone timeZone) {
-		
-		this.statsModel = (statsModel != null) ? statsModel : ModelFactory.createDefaultModel();
-		this.endpoints = (endpoints != null) ? endpoints : new ArrayList<String>();
-		this.documentURLs = (documentURLs != null) ? documentURLs : new ArrayList<String>();
-//		this.classSpecific = classSpecific;
-		this.prefSize = (prefSize != null) ? prefSize : DEFAULT_PREFSIZE;
-		this.outFile = (outFile != null) ? outFile : DEFAULT_OUTFILE;
-		this.outFormat = (outFormat != null) ? outFormat : DEFAULT_OUTFORMAT;
-		this.strHistMaxLength = (strHistMaxLen != null) ? strHistMaxLen : DEFAULT_STRHIST_MAXLEN;
-		this.quickMode = quickMode;
-		this.defaultTimeZone = (timeZone != null) ? timeZone : TimeZone.getDefault();
+	private RDFStatsConfiguration(Builder b) {
+		this.statsModel = (b.statsModel != null) ? b.statsModel : ModelFactory.createDefaultModel();
+		this.endpoints = (b.endpoints != null) ? b.endpoints : new ArrayList<String>();
+		this.documentURLs = (b.documentURLs != null) ? b.documentURLs : new ArrayList<String>();
+//		this.classSpecific = b.classSpecific;
+		this.prefSize = (b.prefSize != null) ? b.prefSize : DEFAULT_PREFSIZE;
+		this.outFile = (b.outFile != null) ? b.outFile : DEFAULT_OUTFILE;
+		this.outFormat = (b.outFormat != null) ? b.outFormat : DEFAULT_OUTFORMAT;
+		this.strHistMaxLength = (b.strHistMaxLength != null) ? b.strHistMaxLength : DEFAULT_STRHIST_MAXLEN;
+		this.quickMode = b.quickMode;
+		this.defaultTimeZone = (b.defaultTimeZone != null) ? b.defaultTimeZone : TimeZone.getDefault();
 		TimeZone.setDefault(this.defaultTimeZone);
+		this.generatorThreads = (b.generatorThreads != null && b.generatorThreads > 0) ? b.generatorThreads : DEFAULT_GENERATOR_THREADS;
+		this.approximateHistograms = b.approximateHistograms;
+		this.equiDepthTypes = (b.equiDepthTypes != null) ? new HashSet<String>(b.equiDepthTypes) : new HashSet<String>();
+		this.uriHistogramNodeBudget = (b.uriHistogramNodeBudget != null && b.uriHistogramNodeBudget > 0) ? b.uriHistogramNodeBudget : DEFAULT_URIHIST_NODE_BUDGET;
+		this.characteristicSetsSize = (b.characteristicSetsSize != null && b.characteristicSetsSize >= 0) ? b.characteristicSetsSize : DEFAULT_CHARACTERISTIC_SETS_SIZE;
+		this.subjectFilterFalsePositiveRate = (b.subjectFilterFalsePositiveRate != null && b.subjectFilterFalsePositiveRate > 0 && b.subjectFilterFalsePositiveRate < 1) ? b.subjectFilterFalsePositiveRate : DEFAULT_SUBJECT_FILTER_FP_RATE;
+		this.pageSize = (b.pageSize != null && b.pageSize >= 0) ? b.pageSize : DEFAULT_PAGE_SIZE;
+		this.checkpointDirectory = (b.checkpointDirectory != null) ? b.checkpointDirectory : DEFAULT_CHECKPOINT_DIRECTORY;
+		this.sourceThreads = (b.sourceThreads != null && b.sourceThreads > 0) ? b.sourceThreads : DEFAULT_SOURCE_THREADS;
+		this.sourceThreadsPerHost = (b.sourceThreadsPerHost != null && b.sourceThreadsPerHost > 0) ? b.sourceThreadsPerHost : DEFAULT_SOURCE_THREADS_PER_HOST;
+		this.sourceTimeout = (b.sourceTimeout != null && b.sourceTimeout >= 0) ? b.sourceTimeout : DEFAULT_SOURCE_TIMEOUT;
 		
 		String hostname = "";
 		try { hostname = InetAddress.getLocalHost().getHostName(); } catch (UnknownHostException ignore) {}
 		finally { this.localHostname = hostname; }
 	}
 	
+	/**
+	 * @param statsModel
+	 * @return a copy of this configuration generating into statsModel
+	 */
+	public RDFStatsConfiguration withStatsModel(Model statsModel) {
+		return toBuilder().statsModel(statsModel).build();
+	}
+	
+	/**
+	 * @return a builder initialized with the options of this configuration
+	 */
+	public Builder toBuilder() {
+		return builder().statsModel(statsModel).endpoints(endpoints).documentURLs(documentURLs)
+				.prefSize(prefSize).outFile(outFile).outFormat(outFormat).strHistMaxLength(strHistMaxLength).quickMode(quickMode).defaultTimeZone(defaultTimeZone)
+				.generatorThreads(generatorThreads).approximateHistograms(approximateHistograms).equiDepthTypes(equiDepthTypes)
+				.uriHistogramNodeBudget(uriHistogramNodeBudget).characteristicSetsSize(characteristicSetsSize).subjectFilterFalsePositiveRate(subjectFilterFalsePositiveRate)
+				.pageSize(pageSize).checkpointDirectory(checkpointDirectory)
+				.sourceThreads(sourceThreads).sourceThreadsPerHost(sourceThreadsPerHost).sourceTimeout(sourceTimeout);
+	}
+	
 	public static RDFStatsConfiguration getDefault() {
-		return new RDFStatsConfiguration(ModelFactory.createDefaultModel(), null, null, 
-//				DEFAULT_CLASSSPECIFIC, 
-				DEFAULT_PREFSIZE, DEFAULT_OUTFILE, DEFAULT_OUTFORMAT, DEFAULT_STRHIST_MAXLEN, DEFAULT_QUICK_MODE, null);
+		return builder().build();
 	}
 
 	private static Resource findConfiguration(Model cfgModel) {
@@ -235,6 +303,61 @@ public class RDFStatsConfiguration {
 	public TimeZone getDefaultTimeZone() {
 		return defaultTimeZone;
 	}
+	
+	/** @return number of worker threads used to generate property histograms concurrently and to read local N-Triples/N-Quads documents in parallel */
+	public int getGeneratorThreads() {
+		return generatorThreads;
+	}
+	
+	/** @return true if bounded-memory approximate builders should be used for numeric, date and URI values */
+	public boolean approximateHistograms() {
+		return approximateHistograms;
+	}
+	
+	/** @return data type URIs for which equi-depth instead of equi-width histograms are built */
+	public Set<String> getEquiDepthTypes() {
+		return equiDepthTypes;
+	}
+	
+	/** @return maximum number of prefix nodes kept by the approximate URI histogram builder */
+	public int getUriHistogramNodeBudget() {
+		return uriHistogramNodeBudget;
+	}
+	
+	/** @return maximum number of characteristic sets stored per dataset, 0 if they are not generated */
+	public int getCharacteristicSetsSize() {
+		return characteristicSetsSize;
+	}
+	
+	/** @return targeted false positive rate of the Bloom filters over URI subjects, 0 if they are not generated */
+	public double getSubjectFilterFalsePositiveRate() {
+		return subjectFilterFalsePositiveRate;
+	}
+	
+	/** @return initial number of solutions per query page (adapted to the response times), 0 if queries are not paged */
+	public int getPageSize() {
+		return pageSize;
+	}
+	
+	/** @return directory for checkpoint files allowing interrupted generator runs to be resumed, null if disabled */
+	public String getCheckpointDirectory() {
+		return checkpointDirectory;
+	}
+	
+	/** @return maximum number of sources (endpoints and documents) processed concurrently */
+	public int getSourceThreads() {
+		return sourceThreads;
+	}
+	
+	/** @return maximum number of sources on the same host processed concurrently */
+	public int getSourceThreadsPerHost() {
+		return sourceThreadsPerHost;
+	}
+	
+	/** @return maximum time in seconds for generating the statistics of a single source, 0 if unlimited */
+	public int getSourceTimeout() {
+		return sourceTimeout;
+	}
 
 	public static String getVersion() {
 		return version;
@@ -244,4 +367,156 @@ public class RDFStatsConfiguration {
 //		return classSpecific;
 //	}
 
+	/**
+	 * builds a configuration, all options are optional
+	 */
+	public static class Builder {
+		private Model statsModel;
+		private List<String> endpoints;
+		private List<String> documentURLs;
+		private Integer prefSize;
+		private String outFile;
+		private String outFormat;
+		private Integer strHistMaxLength;
+		private boolean quickMode = DEFAULT_QUICK_MODE;
+		private TimeZone defaultTimeZone;
+		private Integer generatorThreads;
+		private boolean approximateHistograms = DEFAULT_APPROXIMATE_HISTOGRAMS;
+		private Collection<String> equiDepthTypes;
+		private Integer uriHistogramNodeBudget;
+		private Integer characteristicSetsSize;
+		private Double subjectFilterFalsePositiveRate;
+		private Integer pageSize;
+		private String checkpointDirectory;
+		private Integer sourceThreads;
+		private Integer sourceThreadsPerHost;
+		private Integer sourceTimeout;
+		
+		private Builder() {}
+		
+		/** @param statsModel statistics model to generate into, a new in-memory model by default */
+		public Builder statsModel(Model statsModel) {
+			this.statsModel = statsModel;
+			return this;
+		}
+		
+		/** @param endpoints SPARQL endpoints */
+		public Builder endpoints(List<String> endpoints) {
+			this.endpoints = endpoints;
+			return this;
+		}
+		
+		/** @param documentURLs RDF documents */
+		public Builder documentURLs(List<String> documentURLs) {
+			this.documentURLs = documentURLs;
+			return this;
+		}
+		
+		/** @param prefSize preferred number of histogram bins */
+		public Builder prefSize(Integer prefSize) {
+			this.prefSize = prefSize;
+			return this;
+		}
+		
+		/** @param outFile output file, stdout by default */
+		public Builder outFile(String outFile) {
+			this.outFile = outFile;
+			return this;
+		}
+		
+		/** @param outFormat output format */
+		public Builder outFormat(String outFormat) {
+			this.outFormat = outFormat;
+			return this;
+		}
+		
+		/** @param strHistMaxLength maximum length of strings processed for string histograms */
+		public Builder strHistMaxLength(Integer strHistMaxLength) {
+			this.strHistMaxLength = strHistMaxLength;
+			return this;
+		}
+		
+		/** @param quickMode if true, property histograms are only regenerated if the subjects changed */
+		public Builder quickMode(boolean quickMode) {
+			this.quickMode = quickMode;
+			return this;
+		}
+		
+		/** @param defaultTimeZone time zone for parsing date values, the local one by default */
+		public Builder defaultTimeZone(TimeZone defaultTimeZone) {
+			this.defaultTimeZone = defaultTimeZone;
+			return this;
+		}
+		
+		/** @param generatorThreads threads generating the histograms of a single source */
+		public Builder generatorThreads(Integer generatorThreads) {
+			this.generatorThreads = generatorThreads;
+			return this;
+		}
+		
+		/** @param approximateHistograms if true, histograms are built in a single pass with bounded memory */
+		public Builder approximateHistograms(boolean approximateHistograms) {
+			this.approximateHistograms = approximateHistograms;
+			return this;
+		}
+		
+		/** @param equiDepthTypes datatypes histograms of which are equi-depth */
+		public Builder equiDepthTypes(Collection<String> equiDepthTypes) {
+			this.equiDepthTypes = equiDepthTypes;
+			return this;
+		}
+		
+		/** @param uriHistogramNodeBudget node budget of URI histograms */
+		public Builder uriHistogramNodeBudget(Integer uriHistogramNodeBudget) {
+			this.uriHistogramNodeBudget = uriHistogramNodeBudget;
+			return this;
+		}
+		
+		/** @param characteristicSetsSize maximum number of characteristic sets, 0 disables them */
+		public Builder characteristicSetsSize(Integer characteristicSetsSize) {
+			this.characteristicSetsSize = characteristicSetsSize;
+			return this;
+		}
+		
+		/** @param subjectFilterFalsePositiveRate false positive rate of the subject filter, 0 disables it */
+		public Builder subjectFilterFalsePositiveRate(Double subjectFilterFalsePositiveRate) {
+			this.subjectFilterFalsePositiveRate = subjectFilterFalsePositiveRate;
+			return this;
+		}
+		
+		/** @param pageSize page size of SPARQL queries, 0 disables paging */
+		public Builder pageSize(Integer pageSize) {
+			this.pageSize = pageSize;
+			return this;
+		}
+		
+		/** @param checkpointDirectory directory for checkpoint files, null disables them */
+		public Builder checkpointDirectory(String checkpointDirectory) {
+			this.checkpointDirectory = checkpointDirectory;
+			return this;
+		}
+		
+		/** @param sourceThreads maximum number of sources processed concurrently */
+		public Builder sourceThreads(Integer sourceThreads) {
+			this.sourceThreads = sourceThreads;
+			return this;
+		}
+		
+		/** @param sourceThreadsPerHost maximum number of sources on the same host processed concurrently */
+		public Builder sourceThreadsPerHost(Integer sourceThreadsPerHost) {
+			this.sourceThreadsPerHost = sourceThreadsPerHost;
+			return this;
+		}
+		
+		/** @param sourceTimeout maximum time in seconds for a single source, 0 if unlimited */
+		public Builder sourceTimeout(Integer sourceTimeout) {
+			this.sourceTimeout = sourceTimeout;
+			return this;
+		}
+		
+		public RDFStatsConfiguration build() {
+			return new RDFStatsConfiguration(this);
+		}
+	}
+
 }
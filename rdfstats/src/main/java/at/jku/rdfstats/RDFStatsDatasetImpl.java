@@ -15,15 +15,27 @@
  */
 package at.jku.rdfstats;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -95,6 +107,15 @@ public class RDFStatsDatasetImpl extends JavaResourceViewBase implements RDFStat
 	private static final int AVG = 1;
 	private static final int MAX = 2;
 	
+	/** worker threads for batch estimations */
+	private static final int BATCH_THREADS = Runtime.getRuntime().availableProcessors();
+	
+	/** minimum number of triple patterns per worker thread, smaller batches are estimated by the calling thread */
+	private static final int MIN_BATCH_CHUNK = 16;
+	
+	/** thread pool for batch estimations shared by all datasets, created on demand */
+	private static ExecutorService batchPool;
+	
 	private final RDFStatsModel stats;
 	
 	/**
@@ -211,22 +232,7 @@ public class RDFStatsDatasetImpl extends JavaResourceViewBase implements RDFStat
 	 * @see at.jku.rdfstats.GraphStatistics#getSubjectsTotal()
 	 */
 	public Integer getSubjectsTotal() throws RDFStatsModelException {
-		Integer bnode = getAnonymousSubjectsTotal();
-		if (bnode == null)
-			return null;
-		
-		String sourceUrl = getSourceUrl();
-		Integer uriSbj = null;
-//		for (String c : stats.getSubjectHistogramClassess(sourceUrl)) {
-			Histogram<?> sh = stats.getSubjectHistogram(sourceUrl, false);
-			if (sh != null)
-				uriSbj = sh.getTotalValues();
-			
-//		}
-		if (uriSbj == null)
-			return null;
-		
-		return bnode + uriSbj;
+		return new Estimation().getSubjectsTotal();
 	}
 
 	/* (non-Javadoc)
@@ -257,15 +263,7 @@ public class RDFStatsDatasetImpl extends JavaResourceViewBase implements RDFStat
 	 * @see at.jku.rdfstats.GraphStatistics#subjectNotExists(java.lang.String)
 	 */
 	public Boolean subjectNotExists(String uri) throws RDFStatsModelException {
-		String sourceUrl = getSourceUrl();
-//		for (String c : stats.getSubjectHistogramClassess(sourceUrl)) {
-			Histogram<String> sh = stats.getSubjectHistogram(sourceUrl, false);
-			if (sh == null)
-				return null;
-			if (sh.getEstimatedQuantity(uri) > 0) // uri exists in sh
-				return false;
-//		}
-		return true; // not found in any histogram
+		return new Estimation().subjectNotExists(uri);
 	}
 
 	/* (non-Javadoc)
@@ -284,11 +282,12 @@ public class RDFStatsDatasetImpl extends JavaResourceViewBase implements RDFStat
 	}
 	
 	public Integer triplesForFilteredPattern(Node s, Node p, Node o, ExprList filter) throws RDFStatsModelException {
-		return triplesForFilteredPattern(s, p, o, filter, false);
+		return triplesForFilteredPattern(new Estimation(), s, p, o, filter, false);
 	}
 
 	/**
 	 * 
+	 * @param est lookups shared with other estimations
 	 * @param s
 	 * @param p
 	 * @param o
@@ -301,9 +300,9 @@ public class RDFStatsDatasetImpl extends JavaResourceViewBase implements RDFStat
 	 * @throws RDFStatsModelException
 	 */
 	@SuppressWarnings("unchecked")
-	private Integer triplesForFilteredPattern(Node s, Node p, Node o, ExprList filter, boolean filterOptimized) throws RDFStatsModelException {
+	private Integer triplesForFilteredPattern(Estimation est, Node s, Node p, Node o, ExprList filter, boolean filterOptimized) throws RDFStatsModelException {
 		Integer l = null;
-		String sourceUrl = getSourceUrl();
+		String sourceUrl = est.sourceUrl;
 		String pURI, rURI;
 		Var pVar, oVar;
 		Expr pFilterExpr = null, oFilterExpr = null;
@@ -311,7 +310,7 @@ public class RDFStatsDatasetImpl extends JavaResourceViewBase implements RDFStat
 
 		// check if URI subject exists
 		if (s.isURI()) {
-			Boolean notExists = subjectNotExists(s.getURI());
+			Boolean notExists = est.subjectNotExists(s.getURI());
 			if (notExists == null)
 				return null; // can't say... missing stats
 			else if (notExists)
@@ -424,7 +423,7 @@ public class RDFStatsDatasetImpl extends JavaResourceViewBase implements RDFStat
 				return null; // invalid triple pattern
 
 			if (l != null && l > 1 && s.isConcrete())
-				l = (int) Math.ceil((double) l / getSubjectsTotal()); // if > 0 return at least 1
+				l = (int) Math.ceil((double) l / est.getSubjectsTotal()); // if > 0 return at least 1
 
 			return l;
 		} catch (Exception e) {
@@ -439,7 +438,7 @@ public class RDFStatsDatasetImpl extends JavaResourceViewBase implements RDFStat
 	 * @param v
 	 * @return single conjunctive expression containing exclusively Var o and no other vars, otherwise returns null
 	 */
-	private Expr getSingleFilterExpression(ExprList filter, Var v) {
+	private static Expr getSingleFilterExpression(ExprList filter, Var v) {
 		if (filter == null)
 			return null;
 		
@@ -491,47 +490,450 @@ public class RDFStatsDatasetImpl extends JavaResourceViewBase implements RDFStat
 // ###################  QueryStatistics implementation ###################
 	
 	public Integer[] triplesForBGP(BasicPattern bgp) throws RDFStatsModelException {
-		Iterator<Triple> it = bgp.iterator();
-		Integer l = Integer.MAX_VALUE;
-		Integer intermed;
-		
-		while (it.hasNext()) {
-			Triple t = it.next();
-			intermed = triplesForPattern(t.getSubject(), t.getPredicate(), t.getObject());
-			if (intermed == null)
-				return null;
-			
-			if (intermed < l)
-				l = intermed;
-		}
-			
-		return new Integer[] { l, l, l };
+		return triplesForFilteredBGPs(Collections.singletonList(bgp), null).get(0);
 	}
 	
 	public Integer[] triplesForFilteredBGP(BasicPattern bgp, ExprList exprs) throws RDFStatsModelException {
-		Set<Var> vars = exprs.getVarsMentioned();
-		Iterator<Triple> it = bgp.iterator();
-		Integer l = Integer.MAX_VALUE;
-		Integer intermed;
-		
-		while (it.hasNext()) {
-			Triple t = it.next();
-
-			if (t.getSubject().isVariable() && vars.contains(Var.alloc(t.getSubject())) ||
-				t.getPredicate().isVariable() && vars.contains(Var.alloc(t.getPredicate())) ||
-				t.getObject().isVariable() && vars.contains(Var.alloc(t.getObject())))
-				intermed = triplesForFilteredPattern(t.getSubject(), t.getPredicate(), t.getObject(), exprs, true);
+		return triplesForFilteredBGPs(Collections.singletonList(bgp), Collections.singletonList(exprs)).get(0);
+	}
+	
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.QueryStatistics#triplesForBGPs(java.util.List)
+	 */
+	public List<Integer[]> triplesForBGPs(List<BasicPattern> bgps) throws RDFStatsModelException {
+		return triplesForFilteredBGPs(bgps, null);
+	}
+	
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.QueryStatistics#triplesForFilteredBGPs(java.util.List, java.util.List)
+	 */
+	public List<Integer[]> triplesForFilteredBGPs(List<BasicPattern> bgps, List<ExprList> exprs) throws RDFStatsModelException {
+		return toEstimates(estimateBGPs(new Estimation(), null, bgps, exprs));
+	}
+	
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.QueryStatistics#triplesForFilteredBGPs(java.util.List, java.util.List, at.jku.rdfstats.EstimationSession)
+	 */
+	public List<Integer[]> triplesForFilteredBGPs(List<BasicPattern> bgps, List<ExprList> exprs, EstimationSession session) throws RDFStatsModelException {
+		return toEstimates(estimateBGPs(startSession(session), session, bgps, exprs));
+	}
+	
+	private static List<Integer[]> toEstimates(List<Cardinality> cardinalities) {
+		List<Integer[]> estimates = new ArrayList<Integer[]>(cardinalities.size());
+		for (Cardinality c : cardinalities)
+			estimates.add((c != null) ? c.toEstimate() : null);
+		return estimates;
+	}
+	
+	/**
+	 * @param est shared lookups
+	 * @param session memoized estimates or null
+	 * @param bgps
+	 * @param exprs filter expressions of each BGP, may be null
+	 * @return cardinalities in the order of bgps, an entry is null if not available
+	 * @throws RDFStatsModelException
+	 */
+	private List<Cardinality> estimateBGPs(Estimation est, EstimationSession session, List<BasicPattern> bgps, List<ExprList> exprs) throws RDFStatsModelException {
+		// collect the distinct (triple pattern, filter) pairs of all BGPs, filters are optimized once per ExprList
+		List<Triple> patterns = new ArrayList<Triple>();
+		List<ExprList> filters = new ArrayList<ExprList>();
+		Map<List<Object>, Integer> distinct = new HashMap<List<Object>, Integer>();
+		Map<ExprList, ExprList> optimized = new IdentityHashMap<ExprList, ExprList>();
+		int[][] refs = new int[bgps.size()][];
+		
+		for (int b=0; b<bgps.size(); b++) {
+			BasicPattern bgp = bgps.get(b);
+			ExprList filter = (exprs != null) ? exprs.get(b) : null;
+			Set<Var> vars = null;
+			if (filter != null && !filter.isEmpty()) {
+				vars = filter.getVarsMentioned();
+				ExprList opt = optimized.get(filter);
+				if (opt == null) {
+					opt = ExprUtils.optimizeFilterExprs(filter);
+					optimized.put(filter, opt);
+				}
+				filter = opt;
+			}
+			
+			refs[b] = new int[bgp.size()];
+			for (int i=0; i<bgp.size(); i++) {
+				Triple t = bgp.get(i);
+				ExprList f = (vars != null && mentionsAny(t, vars)) ? filter : null;
+				List<Object> key = Arrays.asList(t, f);
+				Integer idx = distinct.get(key);
+				if (idx == null) {
+					idx = patterns.size();
+					distinct.put(key, idx);
+					patterns.add(t);
+					filters.add(f);
+				}
+				refs[b][i] = idx;
+			}
+		}
+		
+		List<Integer> estimates = estimateAll(est, session, patterns, filters);
+		
+		// estimate subject stars of each BGP based on the characteristic sets, join the stars and remaining
+		// triple patterns based on the distinct subjects and objects of the properties
+		Cardinality[] cardinalities = new Cardinality[patterns.size()];
+		List<Cardinality> results = new ArrayList<Cardinality>(bgps.size());
+		for (int[] r : refs) {
+			List<Cardinality> joined = new ArrayList<Cardinality>(r.length);
+			for (int idx : r) {
+				Integer l = estimates.get(idx);
+				if (l == null) {
+					joined = null;
+					break;
+				}
+				if (cardinalities[idx] == null)
+					cardinalities[idx] = patternCardinality(est, patterns.get(idx), l);
+				joined.add(cardinalities[idx]);
+			}
+			if (joined == null)
+				results.add(null);
+			else if (joined.isEmpty()) // an empty BGP doesn't restrict anything
+				results.add(new Cardinality(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Collections.<Var, Double>emptyMap()));
 			else
-				intermed = triplesForPattern(t.getSubject(), t.getPredicate(), t.getObject());
-
-			if (intermed == null)
-				return null;
+				results.add(joinPatterns(estimateStars(est, r, patterns, estimates, joined)));
+		}
+		return results;
+	}
+	
+	/**
+	 * replaces the triple patterns of each subject star of a BGP (at least two patterns sharing the subject variable,
+	 * having a URI predicate and distinct object variables or concrete objects) by the cardinality of the star
+	 * estimated from the characteristic sets
+	 * 
+	 * @param est shared lookups
+	 * @param refs indexes of the triple patterns of the BGP
+	 * @param patterns
+	 * @param estimates
+	 * @param cardinalities cardinalities of the triple patterns of the BGP (in the order of refs)
+	 * @return cardinalities of the stars and of the remaining triple patterns
+	 * @throws RDFStatsModelException
+	 */
+	private List<Cardinality> estimateStars(Estimation est, int[] refs, List<Triple> patterns, List<Integer> estimates, List<Cardinality> cardinalities) throws RDFStatsModelException {
+		if (refs.length < 2)
+			return cardinalities;
+		CharacteristicSets sets = est.getCharacteristicSets();
+		if (sets == null)
+			return cardinalities;
+		
+		// subject variable => positions in refs
+		Map<Node, List<Integer>> stars = new LinkedHashMap<Node, List<Integer>>();
+		for (int i=0; i<refs.length; i++) {
+			Triple t = patterns.get(refs[i]);
+			if (!t.getSubject().isVariable() || !t.getPredicate().isURI())
+				continue;
+			List<Integer> star = stars.get(t.getSubject());
+			if (star == null) {
+				star = new ArrayList<Integer>();
+				stars.put(t.getSubject(), star);
+			}
+			star.add(i);
+		}
+		
+		List<Cardinality> result = new ArrayList<Cardinality>(cardinalities.size());
+		boolean[] replaced = new boolean[refs.length];
+		for (Map.Entry<Node, List<Integer>> e : stars.entrySet()) {
+			List<Integer> star = e.getValue();
+			if (star.size() < 2 || !independentObjects(e.getKey(), star, refs, patterns))
+				continue;
 			
-			if (intermed < l)
-				l = intermed;
+			List<String> props = new ArrayList<String>(star.size());
+			double[] selectivities = new double[star.size()];
+			List<Cardinality> parts = new ArrayList<Cardinality>(star.size());
+			for (int j=0; j<star.size(); j++) {
+				int i = star.get(j);
+				String p = patterns.get(refs[i]).getPredicate().getURI();
+				PropertyCounts c = est.getPropertyCounts(p);
+				props.add(p);
+				selectivities[j] = (c.triples > 0) ? Math.min(1d, (double) estimates.get(refs[i]) / c.triples) : 0;
+				parts.add(cardinalities.get(i));
+				replaced[i] = true;
+			}
+			result.add(Cardinality.star(Var.alloc(e.getKey()), sets.estimateSubjects(props), sets.estimateResults(props, selectivities), parts));
+		}
+		
+		for (int i=0; i<refs.length; i++)
+			if (!replaced[i])
+				result.add(cardinalities.get(i));
+		return result;
+	}
+	
+	/**
+	 * @return true if no object of the star is a variable used by another pattern of the star or the subject variable,
+	 * such correlations are not covered by the characteristic sets
+	 */
+	private static boolean independentObjects(Node subject, List<Integer> star, int[] refs, List<Triple> patterns) {
+		Set<Node> objects = new HashSet<Node>();
+		for (int i : star) {
+			Node o = patterns.get(refs[i]).getObject();
+			if (o.isVariable() && (o.equals(subject) || !objects.add(o)))
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * @param est shared lookups
+	 * @param t
+	 * @param l estimated triples matching t
+	 * @return the cardinality of t with the estimated distinct values of its variables
+	 * @throws RDFStatsModelException
+	 */
+	private Cardinality patternCardinality(Estimation est, Triple t, int l) throws RDFStatsModelException {
+		Map<Var, Double> distinct = new HashMap<Var, Double>();
+		Node s = t.getSubject();
+		Node p = t.getPredicate();
+		Node o = t.getObject();
+		
+		if (p.isURI()) {
+			PropertyCounts c = est.getPropertyCounts(p.getURI());
+			double sel = (c.triples > 0) ? (double) l / c.triples : 0; // fraction of the triples of p matching t
+			if (s.isVariable())
+				putDistinct(distinct, s, o.isConcrete() ? c.subjects : c.subjects * sel);
+			if (o.isVariable())
+				putDistinct(distinct, o, s.isConcrete() ? l : c.objects * sel);
+		} else {
+			Integer subjects = est.getSubjectsTotal();
+			if (s.isVariable())
+				putDistinct(distinct, s, (subjects != null) ? subjects : l);
+			if (p.isVariable())
+				putDistinct(distinct, p, stats.getPropertyHistogramProperties(est.sourceUrl).size());
+			if (o.isVariable())
+				putDistinct(distinct, o, l);
+		}
+		return new Cardinality(l, l, l, distinct);
+	}
+	
+	/** puts the distinct values of variable n, keeps the smaller value if n occurs more than once */
+	private static void putDistinct(Map<Var, Double> distinct, Node n, double d) {
+		Var v = Var.alloc(n);
+		Double prev = distinct.get(v);
+		if (prev == null || d < prev)
+			distinct.put(v, d);
+	}
+	
+	/**
+	 * joins the triple patterns of a BGP, starting with the most selective pattern and continuing with the most
+	 * selective pattern sharing a variable with the patterns joined so far, disconnected patterns form a cross product
+	 * 
+	 * @param patterns cardinalities of the triple patterns
+	 * @return the cardinality of the BGP
+	 */
+	private static Cardinality joinPatterns(List<Cardinality> patterns) {
+		List<Cardinality> remaining = new ArrayList<Cardinality>(patterns);
+		Cardinality result = null;
+		while (!remaining.isEmpty()) {
+			Cardinality next = null;
+			Set<Var> nextVars = null;
+			for (Cardinality c : remaining) {
+				Set<Var> vars = (result != null) ? result.sharedVars(c) : Collections.<Var>emptySet();
+				if (next == null || (!vars.isEmpty() && nextVars.isEmpty()) || (vars.isEmpty() == nextVars.isEmpty() && c.avg < next.avg)) {
+					next = c;
+					nextVars = vars;
+				}
+			}
+			remaining.remove(next);
+			result = (result == null) ? next : result.join(next, nextVars);
+		}
+		return result;
+	}
+	
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.GraphStatistics#triplesForPatterns(java.util.List, com.hp.hpl.jena.sparql.expr.ExprList)
+	 */
+	public List<Integer> triplesForPatterns(List<Triple> patterns, ExprList filter) throws RDFStatsModelException {
+		if (filter != null && !filter.isEmpty())
+			filter = ExprUtils.optimizeFilterExprs(filter);
+		else
+			filter = null;
+		return estimateAll(new Estimation(), null, patterns, Collections.nCopies(patterns.size(), filter));
+	}
+	
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.QueryStatistics#createEstimationSession()
+	 */
+	public EstimationSession createEstimationSession() throws RDFStatsModelException {
+		String sourceUrl = getSourceUrl();
+		return new EstimationSession(resource.asNode(), sourceUrl, stats.getStatisticsVersion(sourceUrl));
+	}
+	
+	/**
+	 * checks that session belongs to this dataset and discards its estimates if the statistics have changed
+	 * 
+	 * @param session
+	 * @return lookups for the estimations of the request
+	 */
+	private Estimation startSession(EstimationSession session) {
+		if (!session.dataset.equals(resource.asNode()))
+			throw new IllegalArgumentException("Estimation session of RDF source <" + session.getSourceUrl() + "> cannot be used for " + this + ".");
+		long version = session.validate(stats.getStatisticsVersion(session.getSourceUrl()));
+		return new Estimation(session.getSourceUrl(), version);
+	}
+	
+	/**
+	 * @param t
+	 * @param vars
+	 * @return true if any node of t is one of vars
+	 */
+	private static boolean mentionsAny(Triple t, Set<Var> vars) {
+		return t.getSubject().isVariable() && vars.contains(Var.alloc(t.getSubject())) ||
+			t.getPredicate().isVariable() && vars.contains(Var.alloc(t.getPredicate())) ||
+			t.getObject().isVariable() && vars.contains(Var.alloc(t.getObject()));
+	}
+	
+	/**
+	 * estimates all patterns, a batch of at least 2 * MIN_BATCH_CHUNK patterns is split into chunks, the first chunk
+	 * is estimated by the calling thread, the others by the batch thread pool and the calling thread
+	 * 
+	 * The worker threads claim chunks only while holding the read lock of the model. If the calling thread holds the
+	 * write lock, they are blocked and the calling thread estimates all chunks itself instead of dead-locking.
+	 * 
+	 * @param est shared lookups
+	 * @param session memoized estimates or null
+	 * @param patterns
+	 * @param filters optimized filter of each pattern, entries may be null
+	 * @return estimates in the order of patterns
+	 * @throws RDFStatsModelException
+	 */
+	private List<Integer> estimateAll(final Estimation est, final EstimationSession session, final List<Triple> patterns, final List<ExprList> filters) throws RDFStatsModelException {
+		final Integer[] results = new Integer[patterns.size()];
+		int size = patterns.size();
+		int chunks = Math.min(BATCH_THREADS, size / MIN_BATCH_CHUNK);
+		if (chunks <= 1) {
+			estimateRange(est, session, patterns, filters, results, 0, size);
+			return Arrays.asList(results);
 		}
 		
-		return new Integer[] { l, l, l };
+		BatchEstimation batch = new BatchEstimation(est, session, patterns, filters, results, chunks);
+		try {
+			for (int c=1; c<chunks; c++)
+				getBatchPool().execute(batch);
+			estimateRange(est, session, patterns, filters, results, 0, size / chunks);
+			batch.estimateChunks();
+			batch.done.await(); // happens-before: results of all chunks are visible afterwards
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RDFStatsModelException("Interrupted while estimating " + size + " triple patterns.", e);
+		} finally {
+			batch.next.set(chunks); // no more chunks are claimed if failed
+		}
+		
+		Throwable error = batch.error.get();
+		if (error instanceof RDFStatsModelException)
+			throw (RDFStatsModelException) error;
+		else if (error != null)
+			throw new RDFStatsModelException("Failed to estimate " + size + " triple patterns.", error);
+		return Arrays.asList(results);
+	}
+	
+	/** chunks 1..n-1 of a batch estimation, chunk 0 is estimated by the calling thread */
+	private class BatchEstimation implements Runnable {
+		private final Estimation est;
+		private final EstimationSession session;
+		private final List<Triple> patterns;
+		private final List<ExprList> filters;
+		private final Integer[] results;
+		private final int chunks;
+		
+		/** next chunk to claim */
+		final AtomicInteger next = new AtomicInteger(1);
+		/** counted down for each finished chunk */
+		final CountDownLatch done;
+		/** first failure */
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		
+		BatchEstimation(Estimation est, EstimationSession session, List<Triple> patterns, List<ExprList> filters, Integer[] results, int chunks) {
+			this.est = est;
+			this.session = session;
+			this.patterns = patterns;
+			this.filters = filters;
+			this.results = results;
+			this.chunks = chunks;
+			this.done = new CountDownLatch(chunks - 1);
+		}
+		
+		/** executed by the worker threads */
+		public void run() {
+			model.enterCriticalSection(Lock.READ);
+			try {
+				estimateChunks();
+			} finally {
+				model.leaveCriticalSection();
+			}
+		}
+		
+		/** estimates chunks until all are claimed */
+		void estimateChunks() {
+			int size = patterns.size();
+			int c;
+			while ((c = next.getAndIncrement()) < chunks) {
+				try {
+					if (error.get() == null)
+						estimateRange(est, session, patterns, filters, results, (int) ((long) size * c / chunks), (int) ((long) size * (c + 1) / chunks));
+				} catch (Throwable e) {
+					error.compareAndSet(null, e);
+				} finally {
+					done.countDown();
+				}
+			}
+		}
+	}
+	
+	private void estimateRange(Estimation est, EstimationSession session, List<Triple> patterns, List<ExprList> filters, Integer[] results, int from, int to) throws RDFStatsModelException {
+		for (int i=from; i<to; i++) {
+			Triple t = patterns.get(i);
+			ExprList filter = filters.get(i);
+			String key = null;
+			if (session != null) {
+				key = memoKey(t, filter);
+				Integer l = session.get(key);
+				if (l != null) {
+					results[i] = (l == EstimationSession.NOT_AVAILABLE) ? null : l;
+					continue;
+				}
+			}
+			
+			results[i] = triplesForFilteredPattern(est, t.getSubject(), t.getPredicate(), t.getObject(), filter, true);
+			if (session != null)
+				session.put(key, results[i], est.sessionVersion);
+		}
+	}
+	
+	/**
+	 * @param t
+	 * @param filter optimized filter or null
+	 * @return the memoization key of t with the filter expressions used for its estimation
+	 */
+	private static String memoKey(Triple t, ExprList filter) {
+		Expr pFilter = null, oFilter = null;
+		if (filter != null) {
+			if (t.getPredicate().isVariable())
+				pFilter = getSingleFilterExpression(filter, Var.alloc(t.getPredicate()));
+			if (t.getObject().isVariable())
+				oFilter = getSingleFilterExpression(filter, Var.alloc(t.getObject()));
+		}
+		return EstimationSession.key(t, pFilter, oFilter);
+	}
+	
+	/**
+	 * @return the shared thread pool for batch estimations, its daemon threads do not prevent the JVM from exiting
+	 */
+	private static synchronized ExecutorService getBatchPool() {
+		if (batchPool == null) {
+			batchPool = Executors.newFixedThreadPool(BATCH_THREADS, new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+				
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "rdfstats-estimation-" + count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return batchPool;
 	}
 	
 	public Integer[] triplesForQuery(String qry) {
@@ -543,7 +945,16 @@ public class RDFStatsDatasetImpl extends JavaResourceViewBase implements RDFStat
 	}
 	
 	public Integer[] triplesForQueryPlan(Op plan) {
-		PlanCalculator pc = new PlanCalculator();
+		PlanCalculator pc = new PlanCalculator(new Estimation(), null);
+		plan.visit(pc);
+		return pc.getEstimatedCardinality();
+	}
+	
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.QueryStatistics#triplesForQueryPlan(com.hp.hpl.jena.sparql.algebra.Op, at.jku.rdfstats.EstimationSession)
+	 */
+	public Integer[] triplesForQueryPlan(Op plan, EstimationSession session) {
+		PlanCalculator pc = new PlanCalculator(startSession(session), session);
 		plan.visit(pc);
 		return pc.getEstimatedCardinality();
 	}
@@ -565,6 +976,123 @@ public class RDFStatsDatasetImpl extends JavaResourceViewBase implements RDFStat
 	}
 	
 	
+	/**
+	 * lookups shared by the estimations of a single request and resolved at most once: the source URL, the URI subject
+	 * histogram and filter, the total number of subjects, and the counts of each property. Safe for use by multiple threads.
+	 */
+	private class Estimation {
+		final String sourceUrl;
+		private Histogram<String> uriSubjects;
+		private boolean uriSubjectsResolved = false;
+		private Integer subjectsTotal;
+		private boolean subjectsTotalResolved = false;
+		private final Map<String, PropertyCounts> propertyCounts = new HashMap<String, PropertyCounts>();
+		private CharacteristicSets characteristicSets;
+		private boolean characteristicSetsResolved = false;
+		private SubjectFilter subjectFilter;
+		private boolean subjectFilterResolved = false;
+		
+		/** statistics version the estimation session has been validated for, unused without a session */
+		final long sessionVersion;
+		
+		Estimation() {
+			this(getSourceUrl(), -1);
+		}
+		
+		Estimation(String sourceUrl, long sessionVersion) {
+			this.sourceUrl = sourceUrl;
+			this.sessionVersion = sessionVersion;
+		}
+		
+		/** @return the URI subject histogram or null if not available */
+		synchronized Histogram<String> getURISubjectHistogram() throws RDFStatsModelException {
+			if (!uriSubjectsResolved) {
+				uriSubjects = stats.getSubjectHistogram(sourceUrl, false);
+				uriSubjectsResolved = true;
+			}
+			return uriSubjects;
+		}
+		
+		/** @return total number of URI and blank node subjects or null if not available */
+		synchronized Integer getSubjectsTotal() throws RDFStatsModelException {
+			if (!subjectsTotalResolved) {
+				Histogram<?> bh = stats.getSubjectHistogram(sourceUrl, true);
+				Histogram<String> sh = getURISubjectHistogram();
+				subjectsTotal = (bh != null && sh != null) ? bh.getTotalValues() + sh.getTotalValues() : null;
+				subjectsTotalResolved = true;
+			}
+			return subjectsTotal;
+		}
+		
+		/**
+		 * @param p
+		 * @return triples, distinct subjects and distinct objects of property p, taken from the histograms if there are no property statistics
+		 */
+		synchronized PropertyCounts getPropertyCounts(String p) throws RDFStatsModelException {
+			PropertyCounts c = propertyCounts.get(p);
+			if (c == null) {
+				int triples = 0, objects = 0;
+				for (String range : stats.getPropertyHistogramRanges(sourceUrl, p)) {
+					Histogram<?> h = stats.getPropertyHistogram(sourceUrl, p, range);
+					triples += h.getTotalValues();
+					objects += h.getDistinctValues();
+				}
+				
+				Integer distinctSubjects = stats.getDistinctSubjects(sourceUrl, p);
+				Integer distinctObjects = stats.getDistinctObjects(sourceUrl, p);
+				Integer total = getSubjectsTotal();
+				c = new PropertyCounts(triples,
+						(distinctSubjects != null) ? distinctSubjects : (total != null) ? Math.min(triples, total) : triples,
+						(distinctObjects != null) ? distinctObjects : objects);
+				propertyCounts.put(p, c);
+			}
+			return c;
+		}
+		
+		/** @return the characteristic sets or null if not available */
+		synchronized CharacteristicSets getCharacteristicSets() throws RDFStatsModelException {
+			if (!characteristicSetsResolved) {
+				characteristicSets = stats.getCharacteristicSets(sourceUrl);
+				characteristicSetsResolved = true;
+			}
+			return characteristicSets;
+		}
+		
+		/** @return the filter over the URI subjects or null if not available */
+		synchronized SubjectFilter getSubjectFilter() throws RDFStatsModelException {
+			if (!subjectFilterResolved) {
+				subjectFilter = stats.getSubjectFilter(sourceUrl);
+				subjectFilterResolved = true;
+			}
+			return subjectFilter;
+		}
+		
+		/** @see GraphStatistics#subjectNotExists(String) */
+		Boolean subjectNotExists(String uri) throws RDFStatsModelException {
+			SubjectFilter filter = getSubjectFilter();
+			if (filter != null && !filter.mightContain(uri))
+				return true; // the filter has no false negatives
+			
+			Histogram<String> sh = getURISubjectHistogram();
+			if (sh == null)
+				return null;
+			return sh.getEstimatedQuantity(uri) <= 0; // false if uri exists in sh
+		}
+	}
+	
+	/** number of triples, distinct subjects and distinct objects of a property */
+	private static class PropertyCounts {
+		final int triples;
+		final int subjects;
+		final int objects;
+		
+		PropertyCounts(int triples, int subjects, int objects) {
+			this.triples = triples;
+			this.subjects = subjects;
+			this.objects = objects;
+		}
+	}
+	
 	/**  plan calculator
 	 * 
 	 * @author dorgon
@@ -573,9 +1101,43 @@ public class RDFStatsDatasetImpl extends JavaResourceViewBase implements RDFStat
 		Integer[] currentEstimate = null;
 		Stack<Op> opStack = new Stack<Op>();
 		
+		/** distinct values of the variables of the current estimate or null if unknown, may have been computed before a filter or modifier */
+		Cardinality currentCardinality = null;
+		
+		/** lookups shared by all BGPs of the plan */
+		final Estimation est;
+		
+		/** memoized estimates or null */
+		final EstimationSession session;
+		
+		PlanCalculator(Estimation est, EstimationSession session) {
+			this.est = est;
+			this.session = session;
+		}
+		
+		/**
+		 * sets the current estimate and cardinality to the estimate of bgp
+		 * 
+		 * @param bgp
+		 * @param exprs filter expressions or null
+		 * @throws RDFStatsModelException
+		 */
+		void estimateBGP(BasicPattern bgp, ExprList exprs) throws RDFStatsModelException {
+			currentCardinality = estimateBGPs(est, session, Collections.singletonList(bgp), Collections.singletonList(exprs)).get(0);
+			currentEstimate = (currentCardinality != null) ? currentCardinality.toEstimate() : null;
+		}
+		
+		/**
+		 * @param estimate
+		 * @param c cardinality of the result or null
+		 * @return c adjusted to estimate or a cardinality without distinct values if c is null
+		 */
+		Cardinality cardinality(Integer[] estimate, Cardinality c) {
+			return (c != null) ? c.withEstimate(estimate) : new Cardinality(estimate, Collections.<Var, Double>emptyMap());
+		}
+		
 // Op0
 	    public void visit(OpBGP op) {
-	    	Integer[] l;
 	    	Op prev = null;
 	    	if (!opStack.isEmpty())
 	    		prev = opStack.peek();
@@ -583,14 +1145,12 @@ public class RDFStatsDatasetImpl extends JavaResourceViewBase implements RDFStat
 	    	try {
 	    		// TODO push down and merge filters, now we only look at the direct ancestor
 		    	if (prev != null && prev instanceof OpFilter)
-		    		l = triplesForFilteredBGP(op.getPattern(), ((OpFilter) prev).getExprs());
+		    		estimateBGP(op.getPattern(), ((OpFilter) prev).getExprs());
 		    	else
-		    		l = triplesForBGP(op.getPattern());
+		    		estimateBGP(op.getPattern(), null);
 	    	} catch (Exception e) {
 	    		throw new RuntimeException("Failed to calculate estimation for " + op.getClass().getName() + "!", e);
 	    	}
-	    	
-	    	currentEstimate = l;
 	    }
 	    
 	    public void visit(OpDatasetNames op) {
@@ -599,6 +1159,7 @@ public class RDFStatsDatasetImpl extends JavaResourceViewBase implements RDFStat
 	    
 	    public void visit(OpNull op) {
 	    	currentEstimate = new Integer[] { 0, 0, 0 };
+	    	currentCardinality = null;
 	    }
 	    
 	    public void visit(OpPath op) {
@@ -606,40 +1167,36 @@ public class RDFStatsDatasetImpl extends JavaResourceViewBase implements RDFStat
 	    }	    
 	    
 	    public void visit(OpQuadPattern op) {
-	    	Integer[] l;
 	    	Op prev = opStack.peek();
 	    	try {
 		    	if (prev instanceof OpFilter)
-		    		l = triplesForFilteredBGP(op.getBasicPattern(), ((OpFilter) prev).getExprs());
+		    		estimateBGP(op.getBasicPattern(), ((OpFilter) prev).getExprs());
 		    	else
-		    		l = triplesForBGP(op.getBasicPattern());
+		    		estimateBGP(op.getBasicPattern(), null);
 	    	} catch (Exception e) {
 	    		throw new RuntimeException("Failed to calculate estimation for " + op.getClass().getName() + "!", e);
 	    	}
-	    	
-	    	currentEstimate = l;
 	    }
 
 	    public void visit(OpTable op) {
 	    	//TODO apply previous filter to table?
 	    	int l = (int) op.getTable().size();
 	    	currentEstimate = new Integer[] { l, l, l };
+	    	currentCardinality = null;
 	    }
 	    
 	    public void visit(OpTriple op) {
-	    	Integer l;
 	    	Op prev = opStack.peek();
-	    	Triple t = op.getTriple();
+	    	BasicPattern bgp = new BasicPattern();
+	    	bgp.add(op.getTriple());
 	    	try {
 		    	if (prev instanceof OpFilter)
-		    		l = triplesForFilteredPattern(t.getSubject(), t.getPredicate(), t.getObject(), ((OpFilter) prev).getExprs());
+		    		estimateBGP(bgp, ((OpFilter) prev).getExprs());
 		    	else
-		    		l = triplesForPattern(t.getSubject(), t.getPredicate(), t.getObject());
+		    		estimateBGP(bgp, null);
 	    	} catch (Exception e) {
 	    		throw new RuntimeException("Failed to calculate estimation for " + op.getClass().getName() + "!", e);
 	    	}
-
-	    	currentEstimate = new Integer[] { l, l, l };
 	    }
 
 // Op1
@@ -799,31 +1356,24 @@ public class RDFStatsDatasetImpl extends JavaResourceViewBase implements RDFStat
 	    	opStack.push(op);
 	    	left.visit(this);
 	    	Integer[] lc = currentEstimate;
+	    	Cardinality lcard = currentCardinality;
 	    	right.visit(this);
 	    	Integer[] rc = currentEstimate;
+	    	Cardinality rcard = currentCardinality;
 	    	opStack.pop();
 
+	    	Cardinality joined = null;
 	    	if (lc != null && rc != null) {
-		    	l = new Integer[3];
-		    	
-		    	// TODO: check for uniqueness (primary keys?)
-		    	
 		    	Set<Var> joinVars = OpVars.patternVars(left);
 				joinVars.retainAll(OpVars.patternVars(right));
-	
-				if (joinVars.size() > 0) {
-					l[MIN] = 0;
-					l[AVG] = (int) Math.ceil((double) (lc[AVG] * rc[AVG]) / 2); // assume 0.5 selectivity
-					l[MAX] = lc[MAX] * rc[MAX]; // in case all values left and right are equal
-					
-				} else { // cross product
-					l[MIN] = lc[MIN] * rc[MIN];
-					l[AVG] = lc[AVG] * rc[AVG];
-					l[MAX] = lc[MAX] * rc[MAX];
-				}
+				
+				// |L join R| = |L| * |R| / max(V(L,v), V(R,v)) for each join variable v, a cross product if there is none
+				joined = cardinality(lc, lcard).join(cardinality(rc, rcard), joinVars);
+				l = joined.toEstimate();
 			}
 	    	
 	    	currentEstimate = l;
+	    	currentCardinality = joined;
 	    }
 	    
 	    public void visit(OpLeftJoin op) {
@@ -858,6 +1408,7 @@ public class RDFStatsDatasetImpl extends JavaResourceViewBase implements RDFStat
 	    	}
 	    	
 	    	currentEstimate = l;
+	    	currentCardinality = null;
 	    }
 
 	    public void visit(OpUnion op) {
@@ -877,6 +1428,7 @@ public class RDFStatsDatasetImpl extends JavaResourceViewBase implements RDFStat
 	    	}
 	    	
 	    	currentEstimate = l;
+	    	currentCardinality = null;
 	    }
 
 	    // OpN
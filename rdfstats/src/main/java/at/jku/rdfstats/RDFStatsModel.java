@@ -33,6 +33,12 @@ public interface RDFStatsModel extends GlobalGraphStatistics {
 
 	/** get as RDFStatsUpdatableModel */
 	public RDFStatsUpdatableModel asUpdatableModel();
+
+	/** get the cache of decoded histograms (size limit, hit/miss/eviction counters) */
+	public HistogramCache getHistogramCache();
+	
+	/** get a counter which changes whenever the statistics of an RDF source are modified, e.g. to invalidate derived estimates */
+	public long getStatisticsVersion(String sourceUrl);
 	
 	/** get a list of all available SCOVO datasets describing RDF sources 
 	 * @throws RDFStatsModelException */
@@ -82,6 +88,16 @@ public interface RDFStatsModel extends GlobalGraphStatistics {
 	/** get subject histogram as encoded string */
 	public String getSubjectHistogramEncoded(String sourceUrl, boolean blankNodes) throws RDFStatsModelException;
 
+	/** get the Bloom filter over the URI subjects, stored together with the URI subject histogram
+	 * 
+	 * @param sourceUrl of the dataset
+	 * @return the subject filter or null if not available
+	 */
+	public SubjectFilter getSubjectFilter(String sourceUrl) throws RDFStatsModelException;
+
+	/** get subject filter as encoded string */
+	public String getSubjectFilterEncoded(String sourceUrl) throws RDFStatsModelException;
+
 //	/**
 //	 * check for type-specific property histograms
 //	 * if yes, getHistogramClasses() can be used to obtain classes
@@ -161,4 +177,30 @@ public interface RDFStatsModel extends GlobalGraphStatistics {
 
 	/** get histogram as encoded string */
 	public String getPropertyHistogramEncoded(String sourceUrl, String p, String rangeUri) throws RDFStatsModelException;
+	
+	/**
+	 * @param sourceUrl of the dataset (must not be null)
+	 * @param p a property
+	 * @return number of distinct subjects having property p or null if not available
+	 * @throws RDFStatsModelException
+	 */
+	public Integer getDistinctSubjects(String sourceUrl, String p) throws RDFStatsModelException;
+	
+	/**
+	 * @param sourceUrl of the dataset (must not be null)
+	 * @param p a property
+	 * @return number of distinct values of property p (over all ranges) or null if not available
+	 * @throws RDFStatsModelException
+	 */
+	public Integer getDistinctObjects(String sourceUrl, String p) throws RDFStatsModelException;
+	
+	/**
+	 * @param sourceUrl of the dataset (must not be null)
+	 * @return the characteristic sets (property combinations of the subjects) or null if not available
+	 * @throws RDFStatsModelException
+	 */
+	public CharacteristicSets getCharacteristicSets(String sourceUrl) throws RDFStatsModelException;
+	
+	/** get characteristic sets as encoded string */
+	public String getCharacteristicSetsEncoded(String sourceUrl) throws RDFStatsModelException;
 }
@@ -19,10 +19,9 @@ package at.jku.rdfstats;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.Hashtable;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -36,7 +35,9 @@ import com.hp.hpl.jena.query.QueryExecution;
 import com.hp.hpl.jena.query.QueryExecutionFactory;
 import com.hp.hpl.jena.query.ResultSet;
 import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Property;
 import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
 import com.hp.hpl.jena.shared.Lock;
 import com.hp.hpl.jena.vocabulary.RDF;
 import com.hp.hpl.jena.vocabulary.RDFS;
@@ -58,7 +59,19 @@ public abstract class RDFStatsModelImpl implements RDFStatsModel {
 	protected final Model model;
 
 	/** cached histograms */
-	protected final Map<Integer, Histogram<?>> cachedHistograms;
+	protected final HistogramCache cachedHistograms;
+
+	/** sourceUrl => decoded characteristic sets, valid as long as the statistics version is unchanged */
+	private final ConcurrentHashMap<String, CachedCharacteristicSets> cachedCharacteristicSets = new ConcurrentHashMap<String, CachedCharacteristicSets>();
+
+	/** sourceUrl => decoded subject filter, valid as long as the statistics version is unchanged */
+	private final ConcurrentHashMap<String, CachedSubjectFilter> cachedSubjectFilters = new ConcurrentHashMap<String, CachedSubjectFilter>();
+
+	/** index of datasets and histogram items, shared by all RDFStatsModels wrapping the same graph */
+	protected final StatsCatalog catalog;
+
+	/** source selection index over all datasets, rebuilt lazily after the catalog has changed */
+	private volatile SourceSelectionIndex sourceSelection;
 
 
 	/**
@@ -68,7 +81,8 @@ public abstract class RDFStatsModelImpl implements RDFStatsModel {
 	@SuppressWarnings("unchecked")
 	protected RDFStatsModelImpl(Model model) {
 		this.model = model;
-		this.cachedHistograms = new Hashtable<Integer, Histogram<?>>();
+		this.cachedHistograms = new HistogramCache();
+		this.catalog = StatsCatalog.getCatalog(model);
 
 		// sync TDB models upon initialization
 		try {
@@ -91,28 +105,18 @@ public abstract class RDFStatsModelImpl implements RDFStatsModel {
 		return model;
 	}
 
+	public HistogramCache getHistogramCache() {
+		return cachedHistograms;
+	}
+
+	public long getStatisticsVersion(String sourceUrl) {
+		return catalog.getVersion(sourceUrl);
+	}
+
 	public List<RDFStatsDataset> getDatasets() throws RDFStatsModelException {
 		List<RDFStatsDataset> list = new ArrayList<RDFStatsDataset>();
-		Resource ds = null;
-		
-		QueryExecution qe = null;
-		model.enterCriticalSection(Lock.READ);
-		try {
-			qe = QueryExecutionFactory.create(QUERY_PREFIX +
-					"SELECT ?ds WHERE { \n" +
-					"	?ds a stats:RDFStatsDataset .\n" +
-					"}\n", model);
-			ResultSet r = qe.execSelect();			
-			while (r.hasNext()) {
-				ds = r.nextSolution().getResource("ds");
-				list.add(new RDFStatsDatasetImpl(ds, this));
-			}
-		} catch (Exception e) {
-			throw new RDFStatsModelException("Failed to get datasets.", e);
-		} finally {
-			model.leaveCriticalSection();
-			if (qe != null) qe.close();
-		}
+		for (Resource ds : catalog.getDatasets(model))
+			list.add(new RDFStatsDatasetImpl(ds, this));
 		return list;
 	}
 	
@@ -124,6 +128,11 @@ public abstract class RDFStatsModelImpl implements RDFStatsModel {
 
 	protected Resource getDatasetResource(String sourceUrl) throws RDFStatsModelException {
 		Resource ds = null;
+		if (sourceUrl != null) {
+			ds = catalog.getDataset(model, sourceUrl);
+			if (ds != null)
+				return ds;
+		}
 		String constraintDataset = (sourceUrl != null) ? "		stats:sourceUrl <" + sourceUrl + "> \n" : "";
 		
 		QueryExecution qe = null;
@@ -154,21 +163,50 @@ public abstract class RDFStatsModelImpl implements RDFStatsModel {
 	}
 	
 	public List<RDFStatsDataset> getDatasetsDescribingResource(String r) throws RDFStatsModelException {
-		List<RDFStatsDataset> list = new ArrayList<RDFStatsDataset>();
-		for (RDFStatsDataset ds : getDatasets())
-			if (!ds.subjectNotExists(r)) list.add(ds);
-		return list;
+		return getSourceSelectionIndex().getDatasetsDescribing(r);
+	}
+	
+	public List<RDFStatsDataset> getDatasetsUsingProperty(String p) throws RDFStatsModelException {
+		return getSourceSelectionIndex().getDatasetsUsing(p);
 	}
 	
 	public Set<String> getProperties() throws RDFStatsModelException {
-		Set<String> set = new HashSet<String>();
-		List<RDFStatsDataset> ds = getDatasets();
-		for (RDFStatsDataset d : ds)
-			set.addAll(d.getProperties());
-		return set;
+		return new HashSet<String>(getSourceSelectionIndex().getProperties());
+	}
+
+	/**
+	 * @return the source selection index for the current state of the statistics, built upon first use after any modification
+	 * @throws RDFStatsModelException
+	 */
+	protected SourceSelectionIndex getSourceSelectionIndex() throws RDFStatsModelException {
+		long version = catalog.getVersion();
+		SourceSelectionIndex index = sourceSelection;
+		if (index != null && index.version == version)
+			return index;
+		
+		synchronized (this) {
+			index = sourceSelection;
+			if (index != null && index.version == version)
+				return index;
+			
+			// the version is taken before reading, concurrent modifications cause another rebuild
+			List<RDFStatsDataset> datasets = getDatasets();
+			List<Histogram<String>> subjectHistograms = new ArrayList<Histogram<String>>(datasets.size());
+			List<SubjectFilter> subjectFilters = new ArrayList<SubjectFilter>(datasets.size());
+			List<List<String>> properties = new ArrayList<List<String>>(datasets.size());
+			for (RDFStatsDataset ds : datasets) {
+				subjectHistograms.add(getSubjectHistogram(ds.getSourceUrl(), false));
+				subjectFilters.add(getSubjectFilter(ds.getSourceUrl()));
+				properties.add(getPropertyHistogramProperties(ds.getSourceUrl()));
+			}
+			index = new SourceSelectionIndex(version, datasets, subjectHistograms, subjectFilters, properties);
+			sourceSelection = index;
+			return index;
+		}
 	}
 
 	
+
 // low-level data access methods
 
 //	public boolean storesTypeSpecificPropertyHistograms(String sourceUrl) {
@@ -211,6 +249,9 @@ public abstract class RDFStatsModelImpl implements RDFStatsModel {
 //	}
 
 	public List<String> getPropertyHistogramProperties(String sourceUrl) throws RDFStatsModelException {
+		if (sourceUrl != null)
+			return catalog.getProperties(model, sourceUrl);
+
 		List<String> props = new ArrayList<String>();
 		
 		QueryExecution qe = null;
@@ -251,6 +292,9 @@ public abstract class RDFStatsModelImpl implements RDFStatsModel {
 	}
 
 	public List<String> getPropertyHistogramProperties(String sourceUrl, String rangeUri) throws RDFStatsModelException {
+		if (sourceUrl != null)
+			return catalog.getProperties(model, sourceUrl, rangeUri);
+
 		List<String> props = new ArrayList<String>();
 		
 		QueryExecution qe = null;
@@ -294,6 +338,9 @@ public abstract class RDFStatsModelImpl implements RDFStatsModel {
 	}
 	
 	public List<String> getPropertyHistogramRanges(String sourceUrl, String p) throws RDFStatsModelException {
+		if (sourceUrl != null)
+			return catalog.getRanges(model, sourceUrl, p);
+
 		List<String> ranges = new ArrayList<String>();
 		
 		QueryExecution qe = null;
@@ -373,6 +420,9 @@ public abstract class RDFStatsModelImpl implements RDFStatsModel {
 	 * @throws RDFStatsModelException
 	 */
 	public Resource getPropertyHistogramResource(String sourceUrl, String p, String rangeUri) throws RDFStatsModelException {
+		if (sourceUrl != null)
+			return catalog.getPropertyHistogramItem(model, sourceUrl, p, rangeUri);
+
 		Resource item = null;
 		QueryExecution qe = null;
 		model.enterCriticalSection(Lock.READ);
@@ -419,6 +469,80 @@ public abstract class RDFStatsModelImpl implements RDFStatsModel {
 		return item;
 	}
 
+	public Integer getDistinctSubjects(String sourceUrl, String p) throws RDFStatsModelException {
+		return getPropertyStatisticsValue(sourceUrl, p, Stats.distinctSubjects);
+	}
+
+	public Integer getDistinctObjects(String sourceUrl, String p) throws RDFStatsModelException {
+		return getPropertyStatisticsValue(sourceUrl, p, Stats.distinctObjects);
+	}
+	
+	private Integer getPropertyStatisticsValue(String sourceUrl, String p, Property count) throws RDFStatsModelException {
+		Resource item = getPropertyStatisticsResource(sourceUrl, p);
+		if (item == null)
+			return null;
+		
+		model.enterCriticalSection(Lock.READ);
+		try {
+			Statement s = item.getProperty(count);
+			return (s != null) ? s.getInt() : null;
+		} catch (Exception e) {
+			throw new RDFStatsModelException("Failed to get " + count.getLocalName() + " of property <" + p + "> for source URL " + sourceUrl + ".", e);
+		} finally {
+			model.leaveCriticalSection();
+		}
+	}
+	
+	/**
+	 * @param sourceUrl
+	 * @param p
+	 * @return the property statistics SCOVO item of property p or null
+	 * @throws RDFStatsModelException
+	 */
+	protected Resource getPropertyStatisticsResource(String sourceUrl, String p) throws RDFStatsModelException {
+		if (sourceUrl == null)
+			return null;
+		return catalog.getPropertyStatisticsItem(model, sourceUrl, p);
+	}
+
+	public CharacteristicSets getCharacteristicSets(String sourceUrl) throws RDFStatsModelException {
+		long version = getStatisticsVersion(sourceUrl);
+		CachedCharacteristicSets cached = cachedCharacteristicSets.get(sourceUrl);
+		if (cached != null && cached.version == version)
+			return cached.sets;
+		
+		String base64 = getCharacteristicSetsEncoded(sourceUrl);
+		CharacteristicSets sets = (base64 != null) ? CharacteristicSets.base64decode(base64) : null;
+		cachedCharacteristicSets.put(sourceUrl, new CachedCharacteristicSets(version, sets));
+		return sets;
+	}
+	
+	public String getCharacteristicSetsEncoded(String sourceUrl) throws RDFStatsModelException {
+		Resource item = getCharacteristicSetsResource(sourceUrl);
+		if (item == null)
+			return null;
+		
+		model.enterCriticalSection(Lock.READ);
+		try {
+			return item.getProperty(RDF.value).getString();
+		} catch (Exception e) {
+			throw new RDFStatsModelException("Failed to get characteristic sets for source URL " + sourceUrl + ".", e);
+		} finally {
+			model.leaveCriticalSection();
+		}
+	}
+	
+	/**
+	 * @param sourceUrl
+	 * @return the characteristic sets SCOVO item of the dataset or null
+	 * @throws RDFStatsModelException
+	 */
+	protected Resource getCharacteristicSetsResource(String sourceUrl) throws RDFStatsModelException {
+		if (sourceUrl == null)
+			return null;
+		return catalog.getCharacteristicSetsItem(model, sourceUrl);
+	}
+
 //	public boolean storesTypeSpecificSubjectHistograms(String sourceUrl) {
 //		// if there is at least one class-specific subject histogram, we assume that class specific subject histograms have been generated and all
 //		// subject histograms without a class dimension are for untyped subjects (where !EXISTS rdf:type property)
@@ -488,10 +612,40 @@ public abstract class RDFStatsModelImpl implements RDFStatsModel {
 			return null;
 	}
 	
+	public SubjectFilter getSubjectFilter(String sourceUrl) throws RDFStatsModelException {
+		long version = getStatisticsVersion(sourceUrl);
+		CachedSubjectFilter cached = cachedSubjectFilters.get(sourceUrl);
+		if (cached != null && cached.version == version)
+			return cached.filter;
+		
+		String base64 = getSubjectFilterEncoded(sourceUrl);
+		SubjectFilter filter = (base64 != null) ? SubjectFilter.base64decode(base64) : null;
+		cachedSubjectFilters.put(sourceUrl, new CachedSubjectFilter(version, filter));
+		return filter;
+	}
+	
+	public String getSubjectFilterEncoded(String sourceUrl) throws RDFStatsModelException {
+		Resource item = getSubjectHistogramResource(sourceUrl, false);
+		if (item == null)
+			return null;
+		
+		model.enterCriticalSection(Lock.READ);
+		try {
+			Statement st = item.getProperty(Stats.subjectFilter);
+			return (st != null) ? st.getString() : null;
+		} catch (Exception e) {
+			throw new RDFStatsModelException("Failed to get subject filter for source URL " + sourceUrl + ".", e);
+		} finally {
+			model.leaveCriticalSection();
+		}
+	}
+	
 	protected Resource getSubjectHistogramResource(String sourceUrl, boolean blankNodes) throws RDFStatsModelException {
-		Resource item = null;
 		String rangeURI = (blankNodes) ? Stats.blankNode.getURI() : RDFS.Resource.getURI();
-		
+		if (sourceUrl != null)
+			return catalog.getSubjectHistogramItem(model, sourceUrl, rangeURI);
+
+		Resource item = null;
 		QueryExecution qe = null;
 		model.enterCriticalSection(Lock.READ);
 		try {
@@ -540,9 +694,8 @@ public abstract class RDFStatsModelImpl implements RDFStatsModel {
 	 * @param rangeUri
 	 * @param h
 	 */
-	private synchronized void cacheHistogram(String sourceUrl, String p, String rangeUri, Histogram<?> h) {
-		int key = getHistogramKey(sourceUrl, p, rangeUri);
-		cachedHistograms.put(key, h);
+	private void cacheHistogram(String sourceUrl, String p, String rangeUri, Histogram<?> h) {
+		cachedHistograms.put(sourceUrl, p, rangeUri, h);
 	}
 
 	/**
@@ -553,9 +706,8 @@ public abstract class RDFStatsModelImpl implements RDFStatsModel {
 	 * @param rangeUri
 	 * @return the histogram object or null if not cached
 	 */
-	private synchronized Histogram<?> getCachedHistogram(String sourceUrl, String p, String rangeUri) {
-		int key = getHistogramKey(sourceUrl, p, rangeUri);
-		return cachedHistograms.get(key);
+	private Histogram<?> getCachedHistogram(String sourceUrl, String p, String rangeUri) {
+		return cachedHistograms.get(sourceUrl, p, rangeUri);
 	}
 	
 	/**
@@ -565,29 +717,9 @@ public abstract class RDFStatsModelImpl implements RDFStatsModel {
 	 * @param p
 	 * @param rangeUri
 	 */
-	protected synchronized void removeCachedHistogram(String sourceUrl, String p, String rangeUri) {
-		int key = getHistogramKey(sourceUrl, p, rangeUri);
-		cachedHistograms.remove(key);
-	}
-	
-	/** get a key for p, rangeUri (unique id for histograms in the cache map)
-	 * 
-	 * @param sourceUrl
-	 * @param p
-	 * @param rangeUri
-	 * @return
-	 */
-	protected int getHistogramKey(String sourceUrl, String p, String rangeUri) {
-		int id = 0;
-		if (sourceUrl != null)
-			id = sourceUrl.hashCode();
-//		if (c != null)
-//			id = id ^ c.hashCode() << 4;
-		if (p != null)
-			id = id ^ p.hashCode() << 8;
-		if (rangeUri != null)
-			id = id ^ rangeUri.hashCode() << 12;
-		return id;
+	protected void removeCachedHistogram(String sourceUrl, String p, String rangeUri) {
+		cachedHistograms.remove(sourceUrl, p, rangeUri);
+		catalog.modified(sourceUrl);
 	}
 
 	protected String datasetConstraint(String sourceUrl) {
@@ -597,5 +729,26 @@ public abstract class RDFStatsModelImpl implements RDFStatsModel {
 				"]" : "";
 	}
 
+	/** decoded characteristic sets (or null if not available) and the statistics version they were decoded at */
+	private static class CachedCharacteristicSets {
+		final long version;
+		final CharacteristicSets sets;
+		
+		CachedCharacteristicSets(long version, CharacteristicSets sets) {
+			this.version = version;
+			this.sets = sets;
+		}
+	}
+
+	/** decoded subject filter (or null if not available) and the statistics version it was decoded at */
+	private static class CachedSubjectFilter {
+		final long version;
+		final SubjectFilter filter;
+		
+		CachedSubjectFilter(long version, SubjectFilter filter) {
+			this.version = version;
+			this.filter = filter;
+		}
+	}
 
 }
@@ -17,6 +17,7 @@ package at.jku.rdfstats;
 
 import java.util.Calendar;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import at.jku.rdfstats.vocabulary.Stats;
 
@@ -44,17 +45,35 @@ public interface RDFStatsUpdatableModel extends RDFStatsModel {
 // locking
 	
 	/**
-	 * request exclusive write lock for an RDFStatsDataset
+	 * request exclusive write lock for an RDFStatsDataset, blocks until the lock is available
 	 * 
-	 * this is a simple lock for the complete updatable model which can only be acquired by one process at the same time
+	 * there is a separate, fair and re-entrant lock for each dataset, so threads updating different datasets do not block each other
 	 * an additional MRSW lock provided by Jena is used, so during this exclusive write lock, any other process may access the underlying
 	 * RDFStatsModel as long as none of the actually updating (writing) methods are currently executing (because they are using the Jena Lock.WRITE)
 	 * 
-	 * The process must return the exclusive lock after it has finished the update process calling returnExclusiveWriteLock();
+	 * The thread must return the exclusive lock after it has finished the update process calling returnExclusiveWriteLock();
+	 * A thread holding the lock for a dataset must not request the lock for all statistics.
 	 * 
 	 * @param ds if null, request write lock for all statistics
 	 */
 	public void requestExclusiveWriteLock(RDFStatsDataset ds);
+
+	/**
+	 * request exclusive write lock for an RDFStatsDataset, waits at most timeout
+	 * 
+	 * @param ds if null, request write lock for all statistics
+	 * @param timeout
+	 * @param unit
+	 * @return true if the lock has been acquired, false if the timeout elapsed
+	 * @throws InterruptedException
+	 */
+	public boolean tryExclusiveWriteLock(RDFStatsDataset ds, long timeout, TimeUnit unit) throws InterruptedException;
+
+	/**
+	 * @param ds if null, check the write lock for all statistics
+	 * @return true if the current thread holds the exclusive write lock for ds (or for all statistics)
+	 */
+	public boolean hasExclusiveWriteLock(RDFStatsDataset ds);
 	
 	/**
 	 * @param ds if null, returns the write lock for all statistics
@@ -178,6 +197,98 @@ public interface RDFStatsUpdatableModel extends RDFStatsModel {
 	 */
 	public boolean addOrUpdateSubjectHistogram(RDFStatsDataset dataset, boolean blankNodes, String encodedHistogram) throws RDFStatsModelException;
 
+	/**
+	 * set or remove the Bloom filter over URI subjects, which is stored together with the URI subject histogram of the dataset
+	 * (hence the histogram must exist and is kept or removed together with the filter)
+	 * requires exclusive write lock!
+	 * 
+	 * @param dataset
+	 * @param encodedFilter see {@link SubjectFilter#base64encode()}, if null the filter is removed
+	 * @throws RDFStatsModelException
+	 */
+	public void setSubjectFilter(RDFStatsDataset dataset, String encodedFilter) throws RDFStatsModelException;
+
+	/**
+	 * create new or update existing property statistics (number of distinct subjects and objects) for specific dataset and property
+	 * requires exclusive write lock!
+	 * 
+	 * @param dataset
+	 * @param p
+	 * @param distinctSubjects
+	 * @param distinctObjects
+	 * @return true if the property statistics have been created, false if updated
+	 * @throws RDFStatsModelException
+	 */
+	public boolean addOrUpdatePropertyStatistics(RDFStatsDataset dataset, String p, int distinctSubjects, int distinctObjects) throws RDFStatsModelException;
+
+	/**
+	 * explicitly tell the updatable model to keep the property statistics of p when calling removeUnchangedItems(RDFStatsDataset ds);
+	 * requires exclusive write lock!
+	 * 
+	 * @param dataset
+	 * @param p
+	 * @throws RDFStatsModelException
+	 */
+	public void keepPropertyStatistics(RDFStatsDataset dataset, String p) throws RDFStatsModelException;
+
+	/**
+	 * create new or update existing characteristic sets for specific dataset
+	 * requires exclusive write lock!
+	 * 
+	 * @param dataset
+	 * @param encodedSets see {@link CharacteristicSets#base64encode()}
+	 * @return true if the characteristic sets have been created, false if updated
+	 * @throws RDFStatsModelException
+	 */
+	public boolean addOrUpdateCharacteristicSets(RDFStatsDataset dataset, String encodedSets) throws RDFStatsModelException;
+
+	/**
+	 * explicitly tell the updatable model to keep the characteristic sets when calling removeUnchangedItems(RDFStatsDataset ds);
+	 * requires exclusive write lock!
+	 * 
+	 * @param dataset
+	 * @throws RDFStatsModelException
+	 */
+	public void keepCharacteristicSets(RDFStatsDataset dataset) throws RDFStatsModelException;
+
+	/**
+	 * incrementally maintains the statistics of a dataset for a change set of its RDF source, the costs only depend on
+	 * the size of the change set; same as applyDelta(dataset, added, removed, null), removes the characteristic sets
+	 * gets exclusive write lock itself!
+	 * 
+	 * @param dataset
+	 * @param added triples added to the source, none of them must have been part of it before
+	 * @param removed triples removed from the source, all of them must have been part of it before
+	 * @return true if the statistics have been maintained exactly, false if some changes have been estimated
+	 * @throws RDFStatsModelException
+	 */
+	public boolean applyDelta(RDFStatsDataset dataset, Model added, Model removed) throws RDFStatsModelException;
+
+	/**
+	 * incrementally maintains the statistics of a dataset for a change set of its RDF source
+	 * gets exclusive write lock itself!
+	 * 
+	 * Histograms keep their bin boundaries, values outside of them are counted in the closest bin (see
+	 * {@link at.jku.rdfstats.hist.HistogramUpdate}); histograms and property statistics for new properties or ranges
+	 * are created from the added values. If source is given, new and disappeared subjects and values are looked up
+	 * (distinct values remain exact), otherwise they are estimated and subjects are only counted as new if the subject
+	 * filter proves it.
+	 * 
+	 * Characteristic sets are not maintained: they are removed by any non-empty change set, hence
+	 * {@link RDFStatsModel#getCharacteristicSets(String)} returns null until the statistics are regenerated.
+	 * 
+	 * Estimates drift with many updates or values outside of the bin boundaries, regenerate the statistics from time
+	 * to time if false is returned.
+	 * 
+	 * @param dataset
+	 * @param added triples added to the source, none of them must have been part of it before
+	 * @param removed triples removed from the source, all of them must have been part of it before
+	 * @param source the source after the change, used for lookups, may be null
+	 * @return true if the statistics have been maintained exactly, false if some changes have been estimated
+	 * @throws RDFStatsModelException
+	 */
+	public boolean applyDelta(RDFStatsDataset dataset, Model added, Model removed, Model source) throws RDFStatsModelException;
+
 	/** merge (optionally only newer) statistics from Model newModel into this model 
 	 * gets exclusive write lock itself!
 	 * 
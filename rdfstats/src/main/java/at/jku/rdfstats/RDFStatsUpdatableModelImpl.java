@@ -16,11 +16,12 @@
 package at.jku.rdfstats;
 
 import java.util.Calendar;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -53,17 +54,21 @@ public class RDFStatsUpdatableModelImpl extends RDFStatsModelImpl implements RDF
 	private static final Log log = LogFactory.getLog(RDFStatsUpdatableModelImpl.class);
 	private static final int WAIT_INTERVAL = 5000;
 	
-	/** currently acquired locks and thread references */
-	private Map<RDFStatsDataset, Thread> exclusiveUsers = new HashMap<RDFStatsDataset, Thread>();
+	/** exclusive write locks, shared by all RDFStatsModels wrapping the same graph */
+	private final DatasetLockManager locks;
 	
-	/** changed SCOVO items since lock has been acquired */
-	private Map<RDFStatsDataset, Set<Resource>> changedItems = new HashMap<RDFStatsDataset, Set<Resource>>();
+	/** changed SCOVO items since lock has been acquired, by source URL ("" for all statistics) */
+	private final Map<String, Set<Resource>> changedItems = new ConcurrentHashMap<String, Set<Resource>>();
+
+	/** source URLs of the locked datasets, still known after a dataset has been removed */
+	private final Map<Resource, String> lockedSourceUrls = new ConcurrentHashMap<Resource, String>();
 	
 	/**
 	 * @param wrappedModel
 	 */
 	protected RDFStatsUpdatableModelImpl(Model wrappedModel) {
 		super(wrappedModel);
+		this.locks = DatasetLockManager.getLockManager(wrappedModel);
 	}
 
 	/* (non-Javadoc)
@@ -76,73 +81,121 @@ public class RDFStatsUpdatableModelImpl extends RDFStatsModelImpl implements RDF
 // locking
 	
 	/**
+	 * blocks until the lock is available, logs the waiting every WAIT_INTERVAL ms
 	 * possible deadlock if thread requests exclusive lock and doesn't return it! always use a finally{} block to return it
-	 * TODO: not synced to prevent from deadlocks, should rethink and improve locking
 	 */
 	public void requestExclusiveWriteLock(RDFStatsDataset ds) {
-		String dsStr = (ds != null) ? ds.toString() : "all RDF sources";
+		String sourceUrl = sourceUrl(ds);
+		acquireLock(sourceUrl);
+		locked(ds, sourceUrl);
+	}
 
-		while (lockOwner(ds) != null) { // lock already acquired for ds
+	/**
+	 * blocks until the lock for sourceUrl is available
+	 * 
+	 * @param sourceUrl or null for all statistics
+	 */
+	private void acquireLock(String sourceUrl) {
+		String dsStr = (sourceUrl != null) ? "<" + sourceUrl + ">" : "all RDF sources";
+		boolean interrupted = false;
+
+		while (true) {
 			try {
+				if (locks.tryLock(sourceUrl, WAIT_INTERVAL, TimeUnit.MILLISECONDS))
+					break;
 				if (log.isInfoEnabled())
 					log.info("Waiting for the exclusive write lock for " + dsStr + "...");
-				wait(WAIT_INTERVAL);
-			} catch (InterruptedException e) {}
+			} catch (InterruptedException e) {
+				interrupted = true; // keep waiting, restore the interrupt status afterwards
+			}
 		}
-		
-		if (log.isDebugEnabled())
-			log.debug("Thread " + Thread.currentThread().getName() + " obtained exclusive write lock for " + dsStr + ".");
-		
-		lock(ds);
-		resetChangedItems(ds);
+		if (interrupted)
+			Thread.currentThread().interrupt();
 	}
-	
-	
+
+	public boolean tryExclusiveWriteLock(RDFStatsDataset ds, long timeout, TimeUnit unit) throws InterruptedException {
+		String sourceUrl = sourceUrl(ds);
+		if (!locks.tryLock(sourceUrl, timeout, unit))
+			return false;
+
+		locked(ds, sourceUrl);
+		return true;
+	}
+
+	public boolean hasExclusiveWriteLock(RDFStatsDataset ds) {
+		return locks.isLockedByCurrentThread(sourceUrl(ds));
+	}
+
 	/**
+	 * called after the lock for ds has been acquired
+	 * 
 	 * @param ds
+	 * @param sourceUrl
 	 */
-	private void lock(RDFStatsDataset ds) {
-		synchronized(ds) {
-			exclusiveUsers.put(ds, Thread.currentThread());
+	private void locked(RDFStatsDataset ds, String sourceUrl) {
+		if (log.isDebugEnabled())
+			log.debug("Thread " + Thread.currentThread().getName() + " obtained exclusive write lock for " + ((ds != null) ? ds.toString() : "all RDF sources") + ".");
+
+		if (locks.getHoldCount(sourceUrl) == 1) { // not re-entered
+			resetChangedItems(sourceUrl);
+			if (ds != null)
+				lockedSourceUrls.put(ds.getWrappedResource(), sourceUrl);
 		}
 	}
 
 	/**
 	 * @param ds
-	 * @return
+	 * @return the source URL of ds or null for all statistics
 	 */
-	private Thread lockOwner(RDFStatsDataset ds) {
-		synchronized(exclusiveUsers) {
-			return exclusiveUsers.get(ds);
-		}
+	private String sourceUrl(RDFStatsDataset ds) {
+		if (ds == null)
+			return null;
+		String url = lockedSourceUrls.get(ds.getWrappedResource());
+		return (url != null) ? url : ds.getSourceUrl();
 	}
-	
+
 	/**
-	 * @param ds
+	 * @param sourceUrl
 	 */
-	private void unlock(RDFStatsDataset ds) {
-		synchronized(exclusiveUsers) {
-			exclusiveUsers.remove(ds);
-		}
+	private void resetChangedItems(String sourceUrl) {
+		changedItems.put(changedItemsKey(sourceUrl), new HashSet<Resource>());
 	}
 
 	/**
 	 * @param ds
+	 * @return items changed since the lock for ds has been acquired
 	 */
-	private void resetChangedItems(RDFStatsDataset ds) {
-		changedItems.put(ds, new HashSet<Resource>());
+	private Set<Resource> getChangedItems(RDFStatsDataset ds) {
+		String key = changedItemsKey(sourceUrl(ds));
+		Set<Resource> items = changedItems.get(key);
+		if (items == null) { // only locked for all statistics
+			items = new HashSet<Resource>();
+			changedItems.put(key, items);
+		}
+		return items;
+	}
+
+	private static String changedItemsKey(String sourceUrl) {
+		return (sourceUrl != null) ? sourceUrl : "";
 	}
 
 	public void returnExclusiveWriteLock(RDFStatsDataset ds) throws RDFStatsModelException {
-		checkLock(ds, true);
-		
-		if (log.isDebugEnabled()) {
-			String dsStr = (ds != null) ? ds.toString() : "all RDF sources";
-			log.debug("Thread " + Thread.currentThread().getName() + " returned exclusive write lock for " + dsStr + ".");
+		String sourceUrl = sourceUrl(ds);
+		String dsStr = (ds != null) ? ds.toString() : "all RDF sources";
+		if (locks.getHoldCount(sourceUrl) == 0) {
+			log.warn("Thread " + Thread.currentThread().getName() + " attempts to return the exclusive write lock for " + dsStr + " but does not hold it.");
+			return;
 		}
 		
-		unlock(ds);
-		changedItems.remove(ds);
+		if (locks.getHoldCount(sourceUrl) == 1) {
+			changedItems.remove(changedItemsKey(sourceUrl));
+			if (ds != null)
+				lockedSourceUrls.remove(ds.getWrappedResource());
+		}
+		locks.unlock(sourceUrl);
+
+		if (log.isDebugEnabled())
+			log.debug("Thread " + Thread.currentThread().getName() + " returned exclusive write lock for " + dsStr + ".");
 		
 		// TODO commit fails
 //		if (wrappedModel.supportsTransactions())
@@ -156,23 +209,29 @@ public class RDFStatsUpdatableModelImpl extends RDFStatsModelImpl implements RDF
 	 * @throws RDFStatsModelException
 	 */
 	private void checkLock(RDFStatsDataset ds, boolean warnOnly) throws RDFStatsModelException {
-		Thread prev = lockOwner(ds);
-		String dsStr = (ds == null) ? "all statistics" : ds.toString();
+		String sourceUrl = sourceUrl(ds);
+		if (locks.isLockedByCurrentThread(sourceUrl))
+			return;
 		
-		if (prev == null) {
-			String msg = "Unauthorized modification operation: Thread " + Thread.currentThread().getName() + " has no exclusive write lock for " + dsStr + ".";
-			if (warnOnly)
-				log.warn(msg);
-			else
-				throw new RDFStatsModelException(msg);
-		}
-		if (Thread.currentThread() != prev) {
-			String msg = "Unauthorized modification operation: Thread " + Thread.currentThread().getName() + " has no exclusive write lock for " + dsStr + " (it is locked by Thread " + prev.getId() + ".";
-			if (warnOnly)
-				log.warn(msg);
-			else
-				throw new RDFStatsModelException(msg);
-		}
+		Thread owner = locks.getOwner(sourceUrl);
+		String dsStr = (ds == null) ? "all statistics" : ds.toString();
+		String msg = "Unauthorized modification operation: Thread " + Thread.currentThread().getName() + " has no exclusive write lock for " + dsStr +
+			((owner != null) ? " (it is locked by Thread " + owner.getName() + ")." : ".");
+		if (warnOnly)
+			log.warn(msg);
+		else
+			throw new RDFStatsModelException(msg);
+	}
+
+	/** enters a write critical section, the catalog doesn't treat the changes as direct modifications of the model */
+	private void enterWrite() {
+		model.enterCriticalSection(Lock.WRITE);
+		catalog.beginUpdate();
+	}
+
+	private void leaveWrite() {
+		catalog.endUpdate();
+		model.leaveCriticalSection();
 	}
 
 // dataset modification
@@ -185,7 +244,14 @@ public class RDFStatsUpdatableModelImpl extends RDFStatsModelImpl implements RDF
 		if ((ds = getDataset(sourceUrl)) != null)
 			throw new RDFStatsModelException(ds + " already exists!");
 
-		model.enterCriticalSection(Lock.WRITE);
+		// lock the source URL before the dataset exists, re-check if another thread created it meanwhile
+		acquireLock(sourceUrl);
+		if ((ds = getDataset(sourceUrl)) != null) {
+			locks.unlock(sourceUrl);
+			throw new RDFStatsModelException(ds + " already exists!");
+		}
+
+		enterWrite();
 		try {
 			model.setNsPrefix(Constants.RDFSTATS_PREFIX, Stats.getURI());
 			Resource r = model.createResource(Stats.RDFStatsDataset);
@@ -193,15 +259,18 @@ public class RDFStatsUpdatableModelImpl extends RDFStatsModelImpl implements RDF
 			r.addProperty(Stats.sourceType, model.createResource(sourceType));
 			r.addProperty(DC.creator, model.createLiteral(creator));
 			r.addProperty(DC.date, model.createTypedLiteral(date));
+			catalog.addDataset(r, sourceUrl);
 			ds = new RDFStatsDatasetImpl(r, this);
 
 			if (log.isDebugEnabled())
 				log.debug("Created new " + ds + ".");
 			
-			// lock already before leaving Jena critical section
-			requestExclusiveWriteLock(ds);			
+			locked(ds, sourceUrl);
+		} catch (RuntimeException e) {
+			locks.unlock(sourceUrl);
+			throw e;
 		} finally {
-			model.leaveCriticalSection();
+			leaveWrite();
 		}
 		return ds;
 	}
@@ -209,7 +278,7 @@ public class RDFStatsUpdatableModelImpl extends RDFStatsModelImpl implements RDF
 	public RDFStatsDataset updateDataset(RDFStatsDataset ds, String creator, Calendar date) throws RDFStatsModelException {
 		checkLock(ds, false);
 		
-		model.enterCriticalSection(Lock.WRITE);
+		enterWrite();
 		try {
 			Resource r = ds.getWrappedResource();
 			model.setNsPrefix(Constants.RDFSTATS_PREFIX, Stats.getURI());
@@ -219,7 +288,7 @@ public class RDFStatsUpdatableModelImpl extends RDFStatsModelImpl implements RDF
 			if (log.isDebugEnabled())
 				log.debug("Updated " + ds + ".");
 		} finally {
-			model.leaveCriticalSection();
+			leaveWrite();
 		}
 		
 		return ds;
@@ -230,7 +299,7 @@ public class RDFStatsUpdatableModelImpl extends RDFStatsModelImpl implements RDF
 	public boolean addOrUpdatePropertyHistogram(RDFStatsDataset dataset, String p, String rangeUri, String encodedHistogram) throws RDFStatsModelException {
 		checkLock(dataset, false);
 
-		model.enterCriticalSection(Lock.WRITE);
+		enterWrite();
 		try {
 			Resource histItem = getPropertyHistogramResource(dataset.getSourceUrl(), p, rangeUri);
 
@@ -244,10 +313,11 @@ public class RDFStatsUpdatableModelImpl extends RDFStatsModelImpl implements RDF
 				histItem.addProperty(Stats.propertyDimension, model.createResource(p));
 				histItem.addProperty(Stats.rangeDimension, model.createResource(rangeUri));
 				histItem.addProperty(RDF.value, model.createLiteral(encodedHistogram));
+				catalog.addPropertyHistogramItem(dataset.getWrappedResource(), p, rangeUri, histItem);
 		
 				// remove from cached histograms
 				removeCachedHistogram(dataset.getSourceUrl(), p, rangeUri);
-				changedItems.get(dataset).add(histItem);
+				getChangedItems(dataset).add(histItem);
 				return true;
 				
 			// exists already => simply update rdf:value
@@ -256,7 +326,7 @@ public class RDFStatsUpdatableModelImpl extends RDFStatsModelImpl implements RDF
 
 				// remove from cached histograms
 				removeCachedHistogram(dataset.getSourceUrl(), p, rangeUri);
-				changedItems.get(dataset).add(histItem);
+				getChangedItems(dataset).add(histItem);
 				return false;
 			}			
 		} catch (Exception e) {
@@ -265,14 +335,14 @@ public class RDFStatsUpdatableModelImpl extends RDFStatsModelImpl implements RDF
 //			else
 				throw new RDFStatsModelException("Failed to add or update histogram for " + dataset + ", property <" + p + ">, range <" + rangeUri + ">!", e);
 		} finally {
-			model.leaveCriticalSection();
+			leaveWrite();
 		}
 	}
 
 	public boolean addOrUpdateSubjectHistogram(RDFStatsDataset dataset, boolean blankNodes, String encodedHistogram) throws RDFStatsModelException {
 		checkLock(dataset, false);
 
-		model.enterCriticalSection(Lock.WRITE);
+		enterWrite();
 		try {
 			Resource histItem = getSubjectHistogramResource(dataset.getSourceUrl(), blankNodes);
 			Resource range = (blankNodes) ? Stats.blankNode : RDFS.Resource;
@@ -286,10 +356,11 @@ public class RDFStatsUpdatableModelImpl extends RDFStatsModelImpl implements RDF
 //				if (c != null)
 //					histItem.addProperty(RDFStats.classDimension, model.createResource(c));
 				histItem.addProperty(RDF.value, model.createLiteral(encodedHistogram));
+				catalog.addSubjectHistogramItem(dataset.getWrappedResource(), range.getURI(), histItem);
 		
 				// remove from cached histograms
 				removeCachedHistogram(dataset.getSourceUrl(), null, range.getURI());
-				changedItems.get(dataset).add(histItem);
+				getChangedItems(dataset).add(histItem);
 				return true;
 				
 			// exists already => simply update rdf:value
@@ -298,7 +369,7 @@ public class RDFStatsUpdatableModelImpl extends RDFStatsModelImpl implements RDF
 
 				// remove from cached histograms
 				removeCachedHistogram(dataset.getSourceUrl(), null, range.getURI());
-				changedItems.get(dataset).add(histItem);
+				getChangedItems(dataset).add(histItem);
 				return false;
 			}			
 		} catch (Exception e) {
@@ -307,20 +378,176 @@ public class RDFStatsUpdatableModelImpl extends RDFStatsModelImpl implements RDF
 //			else
 				throw new RDFStatsModelException("Failed to add or update subject histogram for " + dataset + "!", e);
 		} finally {
-			model.leaveCriticalSection();
+			leaveWrite();
+		}
+	}
+
+	public void setSubjectFilter(RDFStatsDataset dataset, String encodedFilter) throws RDFStatsModelException {
+		checkLock(dataset, false);
+
+		Resource histItem = getSubjectHistogramResource(dataset.getSourceUrl(), false);
+		if (histItem == null)
+			throw new RDFStatsModelException("Cannot set subject filter for " + dataset + ", there is no URI subject histogram.");
+
+		enterWrite();
+		try {
+			histItem.removeAll(Stats.subjectFilter);
+			if (encodedFilter != null)
+				histItem.addProperty(Stats.subjectFilter, model.createLiteral(encodedFilter));
+			
+			catalog.modified(dataset.getSourceUrl());
+			getChangedItems(dataset).add(histItem);
+		} catch (Exception e) {
+			throw new RDFStatsModelException("Failed to set subject filter for " + dataset + "!", e);
+		} finally {
+			leaveWrite();
 		}
 	}
 
+	public boolean addOrUpdatePropertyStatistics(RDFStatsDataset dataset, String p, int distinctSubjects, int distinctObjects) throws RDFStatsModelException {
+		checkLock(dataset, false);
+
+		enterWrite();
+		try {
+			Resource item = getPropertyStatisticsResource(dataset.getSourceUrl(), p);
+			boolean created = (item == null);
+			
+			if (created) {
+				item = model.createResource();
+				item.addProperty(RDF.type, Stats.PropertyStatistics);
+				item.addProperty(SCOVO.dataset, dataset.getWrappedResource());
+				item.addProperty(Stats.propertyDimension, model.createResource(p));
+				catalog.addPropertyStatisticsItem(dataset.getWrappedResource(), p, item);
+			} else {
+				item.removeAll(Stats.distinctSubjects);
+				item.removeAll(Stats.distinctObjects);
+			}
+			item.addProperty(Stats.distinctSubjects, model.createTypedLiteral(distinctSubjects));
+			item.addProperty(Stats.distinctObjects, model.createTypedLiteral(distinctObjects));
+			
+			catalog.modified(dataset.getSourceUrl());
+			getChangedItems(dataset).add(item);
+			return created;
+		} catch (Exception e) {
+			throw new RDFStatsModelException("Failed to add or update property statistics for " + dataset + ", property <" + p + ">!", e);
+		} finally {
+			leaveWrite();
+		}
+	}
+
+	public void keepPropertyStatistics(RDFStatsDataset dataset, String p) throws RDFStatsModelException {
+		checkLock(dataset, false);
+		Resource item = getPropertyStatisticsResource(dataset.getSourceUrl(), p);
+		if (item != null)
+			getChangedItems(dataset).add(item);
+	}
+
+	public boolean addOrUpdateCharacteristicSets(RDFStatsDataset dataset, String encodedSets) throws RDFStatsModelException {
+		checkLock(dataset, false);
+
+		enterWrite();
+		try {
+			Resource item = getCharacteristicSetsResource(dataset.getSourceUrl());
+			boolean created = (item == null);
+			
+			if (created) {
+				item = model.createResource();
+				item.addProperty(RDF.type, Stats.CharacteristicSets);
+				item.addProperty(SCOVO.dataset, dataset.getWrappedResource());
+				item.addProperty(RDF.value, model.createLiteral(encodedSets));
+				catalog.addCharacteristicSetsItem(dataset.getWrappedResource(), item);
+			} else
+				item.getProperty(RDF.value).changeObject(model.createLiteral(encodedSets));
+			
+			catalog.modified(dataset.getSourceUrl());
+			getChangedItems(dataset).add(item);
+			return created;
+		} catch (Exception e) {
+			throw new RDFStatsModelException("Failed to add or update characteristic sets for " + dataset + "!", e);
+		} finally {
+			leaveWrite();
+		}
+	}
+
+	public void keepCharacteristicSets(RDFStatsDataset dataset) throws RDFStatsModelException {
+		checkLock(dataset, false);
+		Resource item = getCharacteristicSetsResource(dataset.getSourceUrl());
+		if (item != null)
+			getChangedItems(dataset).add(item);
+	}
+
 	public void keepPropertyHistogram(RDFStatsDataset dataset, String p, String rangeUri) throws RDFStatsModelException {
 		checkLock(dataset, false);
-		changedItems.get(dataset).add(getPropertyHistogramResource(dataset.getSourceUrl(), p, rangeUri));
+		getChangedItems(dataset).add(getPropertyHistogramResource(dataset.getSourceUrl(), p, rangeUri));
 	}
 
 	public void keepSubjectHistogram(RDFStatsDataset dataset, boolean blankNodes) throws RDFStatsModelException {
 		checkLock(dataset, false);
-		changedItems.get(dataset).add(getSubjectHistogramResource(dataset.getSourceUrl(), blankNodes));
+		getChangedItems(dataset).add(getSubjectHistogramResource(dataset.getSourceUrl(), blankNodes));
+	}
+
+
+	/** removes the property histogram of p and rangeUri if it exists, requires exclusive write lock! */
+	void removePropertyHistogram(RDFStatsDataset dataset, String p, String rangeUri) throws RDFStatsModelException {
+		removeItem(dataset, getPropertyHistogramResource(dataset.getSourceUrl(), p, rangeUri));
+		removeCachedHistogram(dataset.getSourceUrl(), p, rangeUri);
+	}
+
+	/** removes the subject histogram (together with a subject filter) if it exists, requires exclusive write lock! */
+	void removeSubjectHistogram(RDFStatsDataset dataset, boolean blankNodes) throws RDFStatsModelException {
+		removeItem(dataset, getSubjectHistogramResource(dataset.getSourceUrl(), blankNodes));
+		removeCachedHistogram(dataset.getSourceUrl(), null, ((blankNodes) ? Stats.blankNode : RDFS.Resource).getURI());
 	}
 
+	/** removes the property statistics of p if they exist, requires exclusive write lock! */
+	void removePropertyStatistics(RDFStatsDataset dataset, String p) throws RDFStatsModelException {
+		removeItem(dataset, getPropertyStatisticsResource(dataset.getSourceUrl(), p));
+	}
+
+	/** removes the characteristic sets if they exist, requires exclusive write lock! */
+	void removeCharacteristicSets(RDFStatsDataset dataset) throws RDFStatsModelException {
+		removeItem(dataset, getCharacteristicSetsResource(dataset.getSourceUrl()));
+	}
+	
+	private void removeItem(RDFStatsDataset dataset, Resource item) throws RDFStatsModelException {
+		checkLock(dataset, false);
+		if (item == null)
+			return;
+		
+		enterWrite();
+		try {
+			model.removeAll(item, null, null);
+			catalog.removeItem(item);
+			catalog.modified(dataset.getSourceUrl());
+			getChangedItems(dataset).remove(item);
+		} finally {
+			leaveWrite();
+		}
+	}
+
+// incremental maintenance
+	
+	public boolean applyDelta(RDFStatsDataset dataset, Model added, Model removed) throws RDFStatsModelException {
+		return applyDelta(dataset, added, removed, null);
+	}
+
+	public boolean applyDelta(RDFStatsDataset dataset, Model added, Model removed, Model source) throws RDFStatsModelException {
+		if (dataset == null)
+			throw new RDFStatsModelException("Cannot apply changes without a dataset.");
+		
+		requestExclusiveWriteLock(dataset);
+		try {
+			boolean exact = new StatisticsDelta(this, dataset, added, removed, source).apply();
+			updateDataset(dataset, dataset.getCreator(), Calendar.getInstance());
+			catalog.modified(dataset.getSourceUrl());
+			
+			if (log.isDebugEnabled())
+				log.debug("Applied " + added.size() + " added and " + removed.size() + " removed triples to " + dataset + (exact ? "." : ", some changes have been estimated."));
+			return exact;
+		} finally {
+			returnExclusiveWriteLock(dataset);
+		}
+	}
 	
 // update/import from another model
 	
@@ -385,8 +612,10 @@ public class RDFStatsUpdatableModelImpl extends RDFStatsModelImpl implements RDF
 			
 			// subject histograms
 			String untypedEncoded = newModel.getSubjectHistogramEncoded(sourceUrl, false);
-			if (untypedEncoded != null)
+			if (untypedEncoded != null) {
 				addOrUpdateSubjectHistogram(thisNewDs, false, untypedEncoded);
+				setSubjectFilter(thisNewDs, newModel.getSubjectFilterEncoded(sourceUrl));
+			}
 			
 			// blank nodes histogram
 			String bnodesEncoded = newModel.getSubjectHistogramEncoded(sourceUrl, true);
@@ -414,7 +643,18 @@ public class RDFStatsUpdatableModelImpl extends RDFStatsModelImpl implements RDF
 					if (log.isDebugEnabled())
 						log.debug("Added/updated property histogram for property <" + p + ">, range <" + r +"> from another " + newDs + ".");
 				}
+				
+				// property statistics
+				Integer subjects = newModel.getDistinctSubjects(sourceUrl, p);
+				Integer objects = newModel.getDistinctObjects(sourceUrl, p);
+				if (subjects != null && objects != null)
+					addOrUpdatePropertyStatistics(thisNewDs, p, subjects, objects);
 			}
+			
+			// characteristic sets
+			String setsEncoded = newModel.getCharacteristicSetsEncoded(sourceUrl);
+			if (setsEncoded != null)
+				addOrUpdateCharacteristicSets(thisNewDs, setsEncoded);
 
 			// clear all SCOVO items that have not been added or updated
 			removeUnchangedItems(thisNewDs);
@@ -450,12 +690,16 @@ public class RDFStatsUpdatableModelImpl extends RDFStatsModelImpl implements RDF
 		log.debug("Clearing old statistics for " + ds + "...");
 		
 		QueryExecution qe = null;
-		model.enterCriticalSection(Lock.WRITE);
+		enterWrite();
 		try {
 			String qryStr = Constants.QUERY_PREFIX + "SELECT ?item ?dim WHERE { \n" +
 			"{	?item	a	stats:PropertyHistogram } \n" +
 			"	UNION" +
 			"{	?item	a	stats:SubjectHistogram } \n" + 
+			"	UNION" +
+			"{	?item	a	stats:PropertyStatistics } \n" + 
+			"	UNION" +
+			"{	?item	a	stats:CharacteristicSets } \n" + 
 			"	?item	" + datasetConstraint(ds.getSourceUrl()) + " .\n" +
 			"}\n";
 
@@ -467,7 +711,7 @@ public class RDFStatsUpdatableModelImpl extends RDFStatsModelImpl implements RDF
 			Resource item;
 			QuerySolution s;
 			
-			Set<Resource> changedItemsDs = changedItems.get(ds);
+			Set<Resource> changedItemsDs = getChangedItems(ds);
 			while (r.hasNext()) {
 				s = r.nextSolution();
 				item = s.getResource("item");
@@ -477,29 +721,42 @@ public class RDFStatsUpdatableModelImpl extends RDFStatsModelImpl implements RDF
 					itemsToDelete.add(item);
 			}
 
-			for (Resource i : itemsToDelete)
+			for (Resource i : itemsToDelete) {
 				model.removeAll(i, null, null);
+				catalog.removeItem(i);
+			}
+			if (itemsToDelete.size() > 0) {
+				cachedHistograms.removeAll(ds.getSourceUrl());
+				catalog.modified(sourceUrl(ds));
+			}
 			
 			if (log.isDebugEnabled() && itemsToDelete.size() > 0) {
 				String dsStr = (ds != null) ? " for " + ds : "";
 				log.debug("Removed " + itemsToDelete.size() + " SCOVO items of statistics" + dsStr + ".");
 			}
 			
-			resetChangedItems(ds);
+			resetChangedItems(sourceUrl(ds));
 		} catch (Exception e) {
 			String dsStr = (ds != null) ? " for " + ds : "";
 			throw new RDFStatsModelException("Failed to remove old SCOVO items and dimensions of statistics" + dsStr + ".", e);
 		} finally {
-			model.leaveCriticalSection();
+			leaveWrite();
 			if (qe != null) qe.close();
 		}
 	}
 
 	public void removeDataset(RDFStatsDataset ds) throws RDFStatsModelException {
 		checkLock(ds, false);
-		resetChangedItems(ds);
+		resetChangedItems(sourceUrl(ds));
 		removeUnchangedItems(ds); // removes all items of ds
-		model.removeAll(ds.getWrappedResource(), null, null); // removes ds
+		enterWrite();
+		try {
+			model.removeAll(ds.getWrappedResource(), null, null); // removes ds
+			catalog.removeDataset(ds.getWrappedResource());
+			catalog.modified(sourceUrl(ds));
+		} finally {
+			leaveWrite();
+		}
 	}
 	
 }
@@ -0,0 +1,192 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import at.jku.rdfstats.hist.Histogram;
+import at.jku.rdfstats.hist.OrderedStringHistogram;
+
+/**
+ * @author dorgon
+ *
+ * Immutable index over all datasets of a statistics model for source selection: which datasets may describe a URI
+ * and which datasets use a property. Datasets are numbered, results are computed as bit sets.
+ *
+ * The prefix labels of the URI subject histograms of all datasets are merged into one sorted array. Like in
+ * {@link at.jku.rdfstats.hist.PrefixLabelIndex}, the position of the longest other label being a prefix is stored for
+ * each label, so that the longest label being a prefix of a URI is found by a binary search and a walk up this prefix
+ * chain. For each label, the datasets are precomputed whose own longest label being a prefix of it has a non-empty
+ * bin, hence a lookup gives the same result as probing the subject histograms of all datasets one by one.
+ *
+ * Datasets without a URI subject histogram may describe any resource. Subject histograms without prefix labels are
+ * probed at lookup time. Finally, the datasets selected are checked against their {@link SubjectFilter}s, if any.
+ */
+class SourceSelectionIndex {
+
+	/** version of the catalog the index was built from */
+	final long version;
+
+	/** all datasets, numbered by position */
+	private final RDFStatsDataset[] datasets;
+
+	/** merged labels of all label-based subject histograms, sorted */
+	private final String[] labels;
+
+	/** position => position of the longest label being a proper prefix, -1 if none */
+	private final int[] prefixes;
+
+	/** position => datasets whose longest label being a prefix of the label at position has a non-empty bin */
+	private final BitSet[] described;
+
+	/** datasets without URI subject histogram */
+	private final BitSet unknown;
+
+	/** dataset number => subject filter, entries may be null */
+	private final SubjectFilter[] filters;
+
+	/** dataset number => subject histogram without prefix labels, probed upon lookups */
+	private final Map<Integer, Histogram<String>> probes = new HashMap<Integer, Histogram<String>>();
+
+	/** property => datasets having property histograms for it */
+	private final Map<String, BitSet> properties = new HashMap<String, BitSet>();
+
+	/**
+	 * @param version version of the catalog
+	 * @param datasets all datasets
+	 * @param subjectHistograms URI subject histogram of each dataset, entries may be null
+	 * @param subjectFilters subject filter of each dataset, entries may be null
+	 * @param datasetProperties properties of each dataset
+	 */
+	SourceSelectionIndex(long version, List<RDFStatsDataset> datasets, List<Histogram<String>> subjectHistograms, List<SubjectFilter> subjectFilters, List<? extends Iterable<String>> datasetProperties) {
+		this.version = version;
+		this.datasets = datasets.toArray(new RDFStatsDataset[datasets.size()]);
+		this.filters = subjectFilters.toArray(new SubjectFilter[subjectFilters.size()]);
+		this.unknown = new BitSet(this.datasets.length);
+
+		// label => dataset => non-empty bin
+		Map<String, Map<Integer, Boolean>> merged = new HashMap<String, Map<Integer, Boolean>>();
+		for (int d = 0; d < this.datasets.length; d++) {
+			Histogram<String> h = subjectHistograms.get(d);
+			if (h == null)
+				unknown.set(d);
+			else if (h instanceof OrderedStringHistogram) {
+				OrderedStringHistogram oh = (OrderedStringHistogram) h;
+				String[] l = oh.getLabels();
+				for (int i = 0; i < l.length; i++) {
+					Map<Integer, Boolean> m = merged.get(l[i]);
+					if (m == null) {
+						m = new HashMap<Integer, Boolean>(4);
+						merged.put(l[i], m);
+					}
+					m.put(d, oh.getEstimatedBinValueQuantity(i) > 0); // same as getEstimatedQuantity(), false for emptied bins
+				}
+			} else
+				probes.put(d, h);
+
+			for (String p : datasetProperties.get(d)) {
+				BitSet b = properties.get(p);
+				if (b == null) {
+					b = new BitSet(this.datasets.length);
+					properties.put(p, b);
+				}
+				b.set(d);
+			}
+		}
+
+		labels = merged.keySet().toArray(new String[merged.size()]);
+		Arrays.sort(labels);
+		prefixes = new int[labels.length];
+		described = new BitSet[labels.length];
+
+		// all labels being a prefix of labels[i] precede it, they are kept in a stack
+		int[] stack = new int[labels.length];
+		int size = 0;
+		for (int i = 0; i < labels.length; i++) {
+			while (size > 0 && !labels[i].startsWith(labels[stack[size - 1]]))
+				size--;
+			prefixes[i] = (size > 0) ? stack[size - 1] : -1;
+			stack[size++] = i;
+
+			// inherit from the parent label, datasets having this label decide themselves
+			described[i] = (prefixes[i] >= 0) ? (BitSet) described[prefixes[i]].clone() : new BitSet(this.datasets.length);
+			for (Map.Entry<Integer, Boolean> e : merged.get(labels[i]).entrySet())
+				described[i].set(e.getKey(), e.getValue());
+		}
+	}
+
+	/**
+	 * @param uri
+	 * @return datasets which may describe uri (having it as a subject), in the order of the datasets
+	 */
+	List<RDFStatsDataset> getDatasetsDescribing(String uri) {
+		BitSet result = (BitSet) unknown.clone();
+		int pos = getClosestPrefix(uri);
+		if (pos >= 0)
+			result.or(described[pos]);
+		for (Map.Entry<Integer, Histogram<String>> e : probes.entrySet())
+			if (e.getValue().getEstimatedQuantity(uri) > 0)
+				result.set(e.getKey());
+		for (int d = result.nextSetBit(0); d >= 0; d = result.nextSetBit(d + 1))
+			if (filters[d] != null && !filters[d].mightContain(uri))
+				result.clear(d);
+		return toList(result);
+	}
+
+	/**
+	 * @param p
+	 * @return datasets using property p, in the order of the datasets
+	 */
+	List<RDFStatsDataset> getDatasetsUsing(String p) {
+		BitSet b = properties.get(p);
+		return (b != null) ? toList(b) : new ArrayList<RDFStatsDataset>();
+	}
+
+	/**
+	 * @return all properties used by any dataset
+	 */
+	Set<String> getProperties() {
+		return Collections.unmodifiableSet(properties.keySet());
+	}
+
+	/** @return the position of the longest label being a prefix of val or -1 if none */
+	private int getClosestPrefix(String val) {
+		int pos = Arrays.binarySearch(labels, val);
+		if (pos >= 0)
+			return pos;
+
+		// a label being a prefix of val is also a prefix of the greatest label lower than val
+		pos = -pos - 2;
+		while (pos >= 0 && !val.startsWith(labels[pos]))
+			pos = prefixes[pos];
+		return pos;
+	}
+
+	private List<RDFStatsDataset> toList(BitSet b) {
+		List<RDFStatsDataset> list = new ArrayList<RDFStatsDataset>(b.cardinality());
+		for (int d = b.nextSetBit(0); d >= 0; d = b.nextSetBit(d + 1))
+			list.add(datasets[d]);
+		return list;
+	}
+
+}
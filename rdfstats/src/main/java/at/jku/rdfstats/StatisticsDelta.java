@@ -0,0 +1,403 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import at.jku.rdfstats.hist.Histogram;
+import at.jku.rdfstats.hist.HistogramUpdate;
+import at.jku.rdfstats.hist.RDF2JavaMapper;
+import at.jku.rdfstats.hist.builder.HistogramBuilder;
+import at.jku.rdfstats.hist.builder.HistogramBuilderException;
+import at.jku.rdfstats.hist.builder.HistogramBuilderFactory;
+import at.jku.rdfstats.hist.builder.HistogramCodec;
+import at.jku.rdfstats.vocabulary.Stats;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.vocabulary.RDFS;
+
+/**
+ * @author dorgon
+ *
+ * Applies a change set (added and removed triples) of an RDF source to its statistics, see
+ * {@link RDFStatsUpdatableModel#applyDelta(RDFStatsDataset, Model, Model, Model)}.
+ * 
+ * Subject and property histograms are maintained by {@link HistogramUpdate}, property statistics by adding up the
+ * changes of distinct subjects and objects. Whether a subject, a (subject, property), or a (property, object) pair
+ * appears or disappears is looked up in the changed source if it is available; each lookup stops at the first triple
+ * not being part of the change set, so the costs depend on the size of the change set only. Without the source,
+ * changes of distinct values are estimated by {@link HistogramUpdate}, and a subject only counts as new if the
+ * {@link SubjectFilter} proves it has not been a subject before.
+ * 
+ * Characteristic sets are not maintained but removed, since any change touches the property sets of its subjects.
+ */
+class StatisticsDelta {
+	private static final Log log = LogFactory.getLog(StatisticsDelta.class);
+
+	private final RDFStatsUpdatableModelImpl stats;
+	private final RDFStatsDataset ds;
+	private final String sourceUrl;
+	private final Graph added;
+	private final Graph removed;
+	
+	/** the changed source, may be null */
+	private final Graph source;
+	
+	/** false if any change has been estimated */
+	private boolean exact = true;
+	
+	/**
+	 * @param stats
+	 * @param ds
+	 * @param added triples added to the source, none of them must have been part of it before
+	 * @param removed triples removed from the source, all of them must have been part of it before
+	 * @param source the source after the change, may be null
+	 */
+	StatisticsDelta(RDFStatsUpdatableModelImpl stats, RDFStatsDataset ds, Model added, Model removed, Model source) {
+		this.stats = stats;
+		this.ds = ds;
+		this.sourceUrl = ds.getSourceUrl();
+		this.added = added.getGraph();
+		this.removed = removed.getGraph();
+		this.source = (source != null) ? source.getGraph() : null;
+	}
+	
+	/**
+	 * applies the changes, requires exclusive write lock!
+	 * 
+	 * @return true if the statistics have been maintained exactly, false if changes have been estimated
+	 * @throws RDFStatsModelException
+	 */
+	boolean apply() throws RDFStatsModelException {
+		if (added.isEmpty() && removed.isEmpty())
+			return true;
+		
+		applySubjects();
+		
+		Map<Node, PropertyDelta> properties = new HashMap<Node, PropertyDelta>();
+		collect(added, properties, true);
+		collect(removed, properties, false);
+		for (PropertyDelta delta : properties.values())
+			applyProperty(delta);
+		
+		// would be stale
+		stats.removeCharacteristicSets(ds);
+		return exact;
+	}
+
+// subjects
+	
+	private void applySubjects() throws RDFStatsModelException {
+		Set<Node> subjects = new HashSet<Node>();
+		collectSubjects(added, subjects);
+		collectSubjects(removed, subjects);
+		
+		SubjectFilter filter = stats.getSubjectFilter(sourceUrl);
+		Map<Node, Integer> uriChanges = new HashMap<Node, Integer>();
+		Map<Node, Integer> bnodeChanges = new HashMap<Node, Integer>();
+		List<String> newUris = new ArrayList<String>();
+		for (Node s : subjects) {
+			int change = subjectChange(s, filter);
+			if (change == 0)
+				continue;
+			if (s.isBlank())
+				bnodeChanges.put(s, change);
+			else {
+				uriChanges.put(s, change);
+				if (change > 0)
+					newUris.add(s.getURI());
+			}
+		}
+		
+		if (!uriChanges.isEmpty()) {
+			Histogram<?> h = update(stats.getSubjectHistogram(sourceUrl, false), RDFS.Resource.getURI(), null, uriChanges, uriChanges);
+			if (h == null)
+				stats.removeSubjectHistogram(ds, false); // also removes the filter
+			else {
+				stats.addOrUpdateSubjectHistogram(ds, false, encode(h));
+				if (filter != null && !newUris.isEmpty())
+					stats.setSubjectFilter(ds, filter.withSubjects(newUris).base64encode());
+			}
+		}
+		
+		if (!bnodeChanges.isEmpty()) {
+			Histogram<?> h = update(stats.getSubjectHistogram(sourceUrl, true), Stats.blankNode.getURI(), null, bnodeChanges, bnodeChanges);
+			if (h == null)
+				stats.removeSubjectHistogram(ds, true);
+			else
+				stats.addOrUpdateSubjectHistogram(ds, true, encode(h));
+		}
+	}
+
+	private static void collectSubjects(Graph g, Set<Node> subjects) {
+		ExtendedIterator<Triple> it = g.find(Node.ANY, Node.ANY, Node.ANY);
+		try {
+			while (it.hasNext())
+				subjects.add(it.next().getSubject());
+		} finally {
+			it.close();
+		}
+	}
+	
+	/**
+	 * @param s
+	 * @param filter subject filter or null
+	 * @return 1 if s is a new subject, -1 if s is no subject any more, 0 otherwise
+	 */
+	private int subjectChange(Node s, SubjectFilter filter) {
+		if (source != null)
+			return change(s, Node.ANY, Node.ANY);
+		
+		boolean inAdded = added.contains(s, Node.ANY, Node.ANY);
+		boolean inRemoved = removed.contains(s, Node.ANY, Node.ANY);
+		if (inAdded && inRemoved)
+			return 0; // subject before and after
+		
+		if (s.isBlank()) { // blank nodes are assumed to be local to the change set
+			exact = false;
+			return (inAdded) ? 1 : -1;
+		}
+		if (inAdded && filter != null && !filter.mightContain(s.getURI()))
+			return 1; // no false negatives
+		
+		exact = false;
+		return 0;
+	}
+
+// properties
+	
+	/** changes of a property */
+	private static class PropertyDelta {
+		final Node p;
+		
+		/** object value => { added triples, removed triples } */
+		final Map<Node, int[]> objects = new HashMap<Node, int[]>();
+
+		/** subject => { added triples, removed triples } */
+		final Map<Node, int[]> subjects = new HashMap<Node, int[]>();
+		
+		PropertyDelta(Node p) {
+			this.p = p;
+		}
+	}
+	
+	private static void collect(Graph g, Map<Node, PropertyDelta> properties, boolean add) {
+		int i = (add) ? 0 : 1;
+		ExtendedIterator<Triple> it = g.find(Node.ANY, Node.ANY, Node.ANY);
+		try {
+			while (it.hasNext()) {
+				Triple t = it.next();
+				PropertyDelta delta = properties.get(t.getPredicate());
+				if (delta == null) {
+					delta = new PropertyDelta(t.getPredicate());
+					properties.put(t.getPredicate(), delta);
+				}
+				count(delta.objects, t.getObject())[i]++;
+				count(delta.subjects, t.getSubject())[i]++;
+			}
+		} finally {
+			it.close();
+		}
+	}
+	
+	private static int[] count(Map<Node, int[]> map, Node n) {
+		int[] c = map.get(n);
+		if (c == null) {
+			c = new int[2];
+			map.put(n, c);
+		}
+		return c;
+	}
+	
+	private void applyProperty(PropertyDelta delta) throws RDFStatsModelException {
+		String p = delta.p.getURI();
+		List<String> ranges = stats.getPropertyHistogramRanges(sourceUrl, p);
+		boolean newProperty = ranges.isEmpty();
+		
+		// group object values by range
+		Map<String, Map<Node, Integer>> occurrences = new HashMap<String, Map<Node, Integer>>();
+		Map<String, Map<Node, Integer>> distinct = new HashMap<String, Map<Node, Integer>>();
+		for (Map.Entry<Node, int[]> e : delta.objects.entrySet()) {
+			int[] c = e.getValue();
+			if (c[0] == c[1])
+				continue; // values before and after
+			
+			String range;
+			try {
+				range = RDF2JavaMapper.getType(e.getKey());
+			} catch (ParseException ex) {
+				log.error("Error getting the range of value '" + e.getKey() + "' of property <" + p + ">, value skipped.", ex);
+				exact = false;
+				continue;
+			}
+			if (!occurrences.containsKey(range)) {
+				occurrences.put(range, new HashMap<Node, Integer>());
+				distinct.put(range, new HashMap<Node, Integer>());
+			}
+			occurrences.get(range).put(e.getKey(), c[0] - c[1]);
+			if (source != null)
+				distinct.get(range).put(e.getKey(), change(Node.ANY, delta.p, e.getKey()));
+		}
+		
+		int triples = 0;
+		int objectsChange = 0;
+		for (String range : occurrences.keySet()) {
+			Histogram<?> h = stats.getPropertyHistogram(sourceUrl, p, range);
+			if (h != null)
+				triples += h.getTotalValues();
+			
+			Histogram<?> updated = update(h, range, p, occurrences.get(range), (source != null) ? distinct.get(range) : null);
+			objectsChange += ((updated != null) ? updated.getDistinctValues() : 0) - ((h != null) ? h.getDistinctValues() : 0);
+			if (updated != null)
+				stats.addOrUpdatePropertyHistogram(ds, p, range, encode(updated));
+			else if (h != null)
+				stats.removePropertyHistogram(ds, p, range);
+		}
+		
+		// property statistics
+		if (stats.getPropertyHistogramRanges(sourceUrl, p).isEmpty()) {
+			stats.removePropertyStatistics(ds, p);
+			return;
+		}
+		Integer subjects = stats.getDistinctSubjects(sourceUrl, p);
+		Integer objects = stats.getDistinctObjects(sourceUrl, p);
+		if (newProperty)
+			stats.addOrUpdatePropertyStatistics(ds, p, subjectsChange(delta, 0, 0), objectsChange);
+		else if (subjects != null && objects != null) {
+			for (String range : ranges)
+				if (!occurrences.containsKey(range))
+					triples += stats.getPropertyHistogram(sourceUrl, p, range).getTotalValues();
+			stats.addOrUpdatePropertyStatistics(ds, p, Math.max(0, subjects + subjectsChange(delta, subjects, triples)), Math.max(0, objects + objectsChange));
+		}
+	}
+	
+	/**
+	 * @param delta
+	 * @param subjects distinct subjects of the property before
+	 * @param triples triples of the property before
+	 * @return change of distinct subjects of the property
+	 */
+	private int subjectsChange(PropertyDelta delta, int subjects, int triples) {
+		double change = 0;
+		for (Map.Entry<Node, int[]> e : delta.subjects.entrySet()) {
+			int[] c = e.getValue();
+			if (c[0] > 0 && c[1] > 0)
+				continue; // subject before and after
+			else if (source != null)
+				change += change(e.getKey(), delta.p, Node.ANY);
+			else if (triples == 0)
+				change += (c[0] > 0) ? 1 : -1;
+			else {
+				change += (c[0] - c[1]) * (double) subjects / triples; // see HistogramUpdate
+				exact = false;
+			}
+		}
+		return (int) Math.round(change);
+	}
+
+// helpers
+	
+	/**
+	 * @return 1 if the pattern has no match before but after the change, -1 if vice versa, 0 otherwise (requires source)
+	 */
+	private int change(Node s, Node p, Node o) {
+		boolean after = source.contains(s, p, o);
+		boolean before = removed.contains(s, p, o);
+		if (!before) {
+			ExtendedIterator<Triple> it = source.find(s, p, o);
+			try {
+				while (!before && it.hasNext())
+					before = !added.contains(it.next()); // not added, hence also matched before
+			} finally {
+				it.close();
+			}
+		}
+		return (after == before) ? 0 : (after) ? 1 : -1;
+	}
+
+	/**
+	 * @param h existing histogram or null
+	 * @param typeUri
+	 * @param p property or null for subject histograms
+	 * @param occurrences value => added minus removed occurrences
+	 * @param distinct value => change of distinct values, null if the change must be estimated
+	 * @return the updated histogram or null if it has become empty
+	 * @throws RDFStatsModelException
+	 */
+	private Histogram<?> update(Histogram<?> h, String typeUri, String p, Map<Node, Integer> occurrences, Map<Node, Integer> distinct) throws RDFStatsModelException {
+		if (h == null) {
+			HistogramBuilder<?> builder;
+			try {
+				builder = HistogramBuilderFactory.createBuilder(typeUri, p, RDFStatsConfiguration.DEFAULT_PREFSIZE, null);
+			} catch (HistogramBuilderException e) {
+				throw new RDFStatsModelException("Failed to create histogram builder for " + ds + ", property <" + p + ">, range <" + typeUri + ">.", e);
+			}
+			boolean empty = true;
+			for (Map.Entry<Node, Integer> e : occurrences.entrySet()) {
+				if (e.getValue() < 0) {
+					exact = false; // removed values without a histogram
+					continue;
+				}
+				try {
+					for (int i = 0; i < e.getValue(); i++)
+						builder.addNodeValue(e.getKey());
+					empty = false;
+				} catch (HistogramBuilderException ex) {
+					log.error("Error adding value '" + e.getKey() + "' (type: " + typeUri + ") to the histogram builder, value skipped.", ex);
+					exact = false;
+				}
+			}
+			return (empty) ? null : builder.getHistogram();
+		}
+		
+		HistogramUpdate<?> u = createUpdate(h);
+		for (Map.Entry<Node, Integer> e : occurrences.entrySet()) {
+			try {
+				u.updateNodeValue(e.getKey(), e.getValue(), (distinct != null) ? distinct.get(e.getKey()) : null);
+			} catch (ParseException ex) {
+				log.error("Error parsing value '" + e.getKey() + "' (type: " + typeUri + ") for the histogram update, value skipped.", ex);
+				exact = false;
+			}
+		}
+		exact = exact && u.isExact();
+		return (u.getTotalValues() > 0) ? u.getHistogram() : null;
+	}
+	
+	private static <NATIVE> HistogramUpdate<NATIVE> createUpdate(Histogram<NATIVE> h) {
+		return new HistogramUpdate<NATIVE>(h);
+	}
+	
+	private String encode(Histogram<?> h) throws RDFStatsModelException {
+		try {
+			return HistogramCodec.base64encode(h);
+		} catch (HistogramBuilderException e) {
+			throw new RDFStatsModelException("Failed to encode updated histogram for " + ds + ".", e);
+		}
+	}
+	
+}
@@ -0,0 +1,701 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import at.jku.rdfstats.vocabulary.SCOVO;
+import at.jku.rdfstats.vocabulary.Stats;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.GraphListener;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.ResIterator;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.shared.Lock;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+/**
+ * @author dorgon
+ *
+ * In-memory index of the SCOVO items of a statistics model: sourceUrl -> dataset, and per dataset
+ * property -> range -> histogram item, range -> property -> histogram item, range -> subject histogram item,
+ * property -> property statistics item, and the characteristic sets item.
+ *
+ * The index is built lazily from the model upon the first lookup and is then kept consistent by the
+ * modification methods of {@link RDFStatsUpdatableModelImpl}. All {@link RDFStatsModel}s wrapping the same
+ * graph share one catalog. Changes applied to the wrapped model directly (bypassing RDFStatsUpdatableModel)
+ * are noticed by a {@link GraphListener} registered on the graph and invalidate the index.
+ *
+ * Only graph nodes are stored, resources are created for the model of the caller, so that the catalog
+ * does not keep a model or graph alive.
+ *
+ * Lookups don't lock: a rebuilt index is constructed aside and published at once, readers see either the
+ * previous or the new index, never a partially built one.
+ */
+public class StatsCatalog {
+	private static final Log log = LogFactory.getLog(StatsCatalog.class);
+
+	/** catalogs of all graphs */
+	private static final Map<Graph, StatsCatalog> catalogs = new WeakHashMap<Graph, StatsCatalog>();
+
+	/** true if the index reflects the model */
+	private volatile boolean built = false;
+
+	/** the published index, replaced as a whole when rebuilt */
+	private volatile Index index = new Index();
+
+	/** modifications of all statistics */
+	private final AtomicLong globalVersion = new AtomicLong();
+
+	/** modifications of any statistics or of the set of datasets */
+	private final AtomicLong modifications = new AtomicLong();
+
+	/** sourceUrl => modifications of the statistics of the dataset */
+	private final ConcurrentHashMap<String, AtomicLong> versions = new ConcurrentHashMap<String, AtomicLong>();
+
+	/** nesting depth of updates of the current thread which are indexed by RDFStatsUpdatableModelImpl */
+	private final ThreadLocal<int[]> updating = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
+
+	/**
+	 * @param model
+	 * @return the catalog shared by all statistics models wrapping the graph of model
+	 */
+	public static synchronized StatsCatalog getCatalog(Model model) {
+		Graph g = model.getGraph();
+		StatsCatalog c = catalogs.get(g);
+		if (c == null) {
+			c = new StatsCatalog();
+			g.getEventManager().register(new ChangeListener(c)); // the listener must not reference the graph
+			catalogs.put(g, c);
+		}
+		return c;
+	}
+
+	private StatsCatalog() {}
+
+	/**
+	 * discards the index, it is rebuilt upon the next lookup
+	 */
+	public void invalidate() {
+		built = false;
+		globalVersion.incrementAndGet();
+		modifications.incrementAndGet();
+	}
+
+	/**
+	 * marks the following changes of the graph by the current thread as indexed, called by RDFStatsUpdatableModelImpl
+	 * after entering a write critical section; must be followed by {@link #endUpdate()}
+	 */
+	public void beginUpdate() {
+		updating.get()[0]++;
+	}
+
+	public void endUpdate() {
+		updating.get()[0]--;
+	}
+
+	/** called by the graph listener */
+	private void changed() {
+		if (updating.get()[0] == 0)
+			invalidate();
+	}
+
+// versions
+
+	/**
+	 * @param sourceUrl
+	 * @return a counter which changes whenever the statistics of sourceUrl are modified or the catalog is invalidated
+	 */
+	public long getVersion(String sourceUrl) {
+		AtomicLong v = (sourceUrl != null) ? versions.get(sourceUrl) : null;
+		return globalVersion.get() + ((v != null) ? v.get() : 0); // sum of two increasing counters
+	}
+
+	/**
+	 * @return a counter which changes whenever any statistics or the set of datasets are modified or the catalog is invalidated
+	 */
+	public long getVersion() {
+		return modifications.get();
+	}
+
+	/**
+	 * records a modification of statistics, called by RDFStatsUpdatableModelImpl
+	 *
+	 * @param sourceUrl the source URL or null for all statistics
+	 */
+	public void modified(String sourceUrl) {
+		modifications.incrementAndGet();
+		if (sourceUrl == null) {
+			globalVersion.incrementAndGet();
+			return;
+		}
+		AtomicLong v = versions.get(sourceUrl);
+		if (v == null) {
+			AtomicLong created = new AtomicLong();
+			v = versions.putIfAbsent(sourceUrl, created);
+			if (v == null)
+				v = created;
+		}
+		v.incrementAndGet();
+	}
+
+// lookups
+
+	/**
+	 * @param m
+	 * @param sourceUrl
+	 * @return the dataset resource or null if there is no dataset for sourceUrl
+	 * @throws RDFStatsModelException if there are multiple datasets for sourceUrl
+	 */
+	public Resource getDataset(Model m, String sourceUrl) throws RDFStatsModelException {
+		Index idx = ensureBuilt(m);
+		if (idx.ambiguousUrls.containsKey(sourceUrl))
+			throw new RDFStatsModelException("Found more than one datasets for RDF source <" + sourceUrl + ">! Please check your statistics model for consistency.");
+		Node ds = idx.datasets.get(sourceUrl);
+		return (ds != null) ? toResource(m, ds) : null;
+	}
+
+	/**
+	 * @param m
+	 * @return all dataset resources
+	 */
+	public List<Resource> getDatasets(Model m) {
+		Index idx = ensureBuilt(m);
+		List<Resource> list = new ArrayList<Resource>();
+		for (DatasetEntry e : idx.entries.values())
+			if (e.sourceUrl != null)
+				list.add(toResource(m, e.dataset));
+		return list;
+	}
+
+	/**
+	 * @param m
+	 * @param sourceUrl
+	 * @return properties having a property histogram in the dataset of sourceUrl
+	 */
+	public List<String> getProperties(Model m, String sourceUrl) throws RDFStatsModelException {
+		DatasetEntry e = getEntry(m, sourceUrl);
+		return (e != null) ? new ArrayList<String>(e.byProperty.keySet()) : new ArrayList<String>();
+	}
+
+	/**
+	 * @param m
+	 * @param sourceUrl
+	 * @param rangeUri
+	 * @return properties having a property histogram for range rangeUri in the dataset of sourceUrl
+	 */
+	public List<String> getProperties(Model m, String sourceUrl, String rangeUri) throws RDFStatsModelException {
+		DatasetEntry e = getEntry(m, sourceUrl);
+		Map<String, Node> props = (e != null) ? e.byRange.get(rangeUri) : null;
+		return (props != null) ? new ArrayList<String>(props.keySet()) : new ArrayList<String>();
+	}
+
+	/**
+	 * @param m
+	 * @param sourceUrl
+	 * @param p
+	 * @return ranges of the property histograms of p in the dataset of sourceUrl
+	 */
+	public List<String> getRanges(Model m, String sourceUrl, String p) throws RDFStatsModelException {
+		DatasetEntry e = getEntry(m, sourceUrl);
+		Map<String, Node> ranges = (e != null) ? e.byProperty.get(p) : null;
+		return (ranges != null) ? new ArrayList<String>(ranges.keySet()) : new ArrayList<String>();
+	}
+
+	/**
+	 * @param m
+	 * @param sourceUrl
+	 * @param p
+	 * @param rangeUri
+	 * @return the property histogram item or null
+	 * @throws RDFStatsModelException if there are multiple items
+	 */
+	public Resource getPropertyHistogramItem(Model m, String sourceUrl, String p, String rangeUri) throws RDFStatsModelException {
+		DatasetEntry e = getEntry(m, sourceUrl);
+		if (e == null)
+			return null;
+		if (!e.duplicates.isEmpty() && e.duplicates.containsKey(propertyKey(p, rangeUri)))
+			throw new RDFStatsModelException("Found more than one histograms for RDF source <" + sourceUrl + ">, property <" + p + ">, range <" + rangeUri + ">! Please check your statistics model for consistency.");
+		Map<String, Node> ranges = e.byProperty.get(p);
+		Node item = (ranges != null) ? ranges.get(rangeUri) : null;
+		return (item != null) ? toResource(m, item) : null;
+	}
+
+	/**
+	 * @param m
+	 * @param sourceUrl
+	 * @param rangeUri rdfs:Resource or stats:blankNode
+	 * @return the subject histogram item or null
+	 * @throws RDFStatsModelException if there are multiple items
+	 */
+	public Resource getSubjectHistogramItem(Model m, String sourceUrl, String rangeUri) throws RDFStatsModelException {
+		DatasetEntry e = getEntry(m, sourceUrl);
+		if (e == null)
+			return null;
+		if (!e.duplicates.isEmpty() && e.duplicates.containsKey(rangeUri))
+			throw new RDFStatsModelException("Found more than one subject histograms for RDF source <" + sourceUrl + ">! Please check your statistics model for consistency.");
+		Node item = e.subjectItems.get(rangeUri);
+		return (item != null) ? toResource(m, item) : null;
+	}
+
+	/**
+	 * @param m
+	 * @param sourceUrl
+	 * @param p
+	 * @return the property statistics item (distinct subjects and objects) of p or null
+	 * @throws RDFStatsModelException if there are multiple items
+	 */
+	public Resource getPropertyStatisticsItem(Model m, String sourceUrl, String p) throws RDFStatsModelException {
+		DatasetEntry e = getEntry(m, sourceUrl);
+		if (e == null)
+			return null;
+		if (!e.duplicates.isEmpty() && e.duplicates.containsKey(statisticsKey(p)))
+			throw new RDFStatsModelException("Found more than one property statistics for RDF source <" + sourceUrl + ">, property <" + p + ">! Please check your statistics model for consistency.");
+		Node item = e.statisticsItems.get(p);
+		return (item != null) ? toResource(m, item) : null;
+	}
+
+	/**
+	 * @param m
+	 * @param sourceUrl
+	 * @return the characteristic sets item or null
+	 * @throws RDFStatsModelException if there are multiple items
+	 */
+	public Resource getCharacteristicSetsItem(Model m, String sourceUrl) throws RDFStatsModelException {
+		DatasetEntry e = getEntry(m, sourceUrl);
+		if (e == null)
+			return null;
+		if (!e.duplicates.isEmpty() && e.duplicates.containsKey(characteristicSetsKey()))
+			throw new RDFStatsModelException("Found more than one characteristic sets for RDF source <" + sourceUrl + ">! Please check your statistics model for consistency.");
+		Node item = e.characteristicSetsItem;
+		return (item != null) ? toResource(m, item) : null;
+	}
+
+	private DatasetEntry getEntry(Model m, String sourceUrl) throws RDFStatsModelException {
+		Index idx = ensureBuilt(m);
+		if (idx.ambiguousUrls.containsKey(sourceUrl))
+			throw new RDFStatsModelException("Found more than one datasets for RDF source <" + sourceUrl + ">! Please check your statistics model for consistency.");
+		Node ds = idx.datasets.get(sourceUrl);
+		return (ds != null) ? idx.entries.get(ds) : null;
+	}
+
+// modifications, called by RDFStatsUpdatableModelImpl within a write critical section of the model
+
+	/**
+	 * @param ds dataset resource
+	 * @param sourceUrl
+	 */
+	public synchronized void addDataset(Resource ds, String sourceUrl) {
+		modifications.incrementAndGet();
+		if (built)
+			indexDataset(index, ds.asNode(), sourceUrl);
+	}
+
+	/**
+	 * @param ds dataset resource
+	 * @param p
+	 * @param rangeUri
+	 * @param item
+	 */
+	public synchronized void addPropertyHistogramItem(Resource ds, String p, String rangeUri, Resource item) {
+		if (built)
+			indexPropertyItem(index, ds.asNode(), p, rangeUri, item.asNode());
+	}
+
+	/**
+	 * @param ds dataset resource
+	 * @param rangeUri rdfs:Resource or stats:blankNode
+	 * @param item
+	 */
+	public synchronized void addSubjectHistogramItem(Resource ds, String rangeUri, Resource item) {
+		if (built)
+			indexSubjectItem(index, ds.asNode(), rangeUri, item.asNode());
+	}
+
+	/**
+	 * @param ds dataset resource
+	 * @param p
+	 * @param item
+	 */
+	public synchronized void addPropertyStatisticsItem(Resource ds, String p, Resource item) {
+		if (built)
+			indexStatisticsItem(index, ds.asNode(), p, item.asNode());
+	}
+
+	/**
+	 * @param ds dataset resource
+	 * @param item
+	 */
+	public synchronized void addCharacteristicSetsItem(Resource ds, Resource item) {
+		if (built)
+			indexCharacteristicSetsItem(index, ds.asNode(), item.asNode());
+	}
+
+	/**
+	 * @param item a property histogram, subject histogram, property statistics, or characteristic sets item
+	 */
+	public synchronized void removeItem(Resource item) {
+		if (!built)
+			return;
+
+		ItemKey k = index.items.remove(item.asNode());
+		if (k == null)
+			return;
+		if (k.entry.duplicates.containsKey(k.key())) {
+			built = false; // the index cannot tell which of the duplicates remains
+			return;
+		}
+
+		if (k.p == null && k.range == null)
+			k.entry.characteristicSetsItem = null;
+		else if (k.p == null)
+			k.entry.subjectItems.remove(k.range);
+		else if (k.range == null)
+			k.entry.statisticsItems.remove(k.p);
+		else {
+			remove(k.entry.byProperty, k.p, k.range);
+			remove(k.entry.byRange, k.range, k.p);
+		}
+	}
+
+	/**
+	 * removes the dataset and all of its items
+	 *
+	 * @param ds dataset resource
+	 */
+	public synchronized void removeDataset(Resource ds) {
+		modifications.incrementAndGet();
+		if (!built)
+			return;
+
+		Index idx = index;
+		DatasetEntry e = idx.entries.remove(ds.asNode());
+		if (e == null)
+			return;
+		if (e.sourceUrl != null) {
+			if (idx.ambiguousUrls.containsKey(e.sourceUrl)) {
+				built = false;
+				return;
+			}
+			idx.datasets.remove(e.sourceUrl);
+		}
+		for (Map<String, Node> ranges : e.byProperty.values())
+			for (Node item : ranges.values())
+				idx.items.remove(item);
+		for (Node item : e.subjectItems.values())
+			idx.items.remove(item);
+		for (Node item : e.statisticsItems.values())
+			idx.items.remove(item);
+		if (e.characteristicSetsItem != null)
+			idx.items.remove(e.characteristicSetsItem);
+	}
+
+// index construction
+
+	/**
+	 * (re-)builds the index if necessary, the monitor is only acquired within a read critical section
+	 * to prevent a dead-lock with writers holding the model lock
+	 *
+	 * @param m
+	 * @return the current index
+	 */
+	private Index ensureBuilt(Model m) {
+		if (built)
+			return index;
+
+		m.enterCriticalSection(Lock.READ);
+		try {
+			synchronized (this) {
+				if (!built)
+					build(m);
+				return index;
+			}
+		} finally {
+			m.leaveCriticalSection();
+		}
+	}
+
+	/** builds a new index and publishes it, lock-free readers keep using the previous one meanwhile */
+	private void build(Model m) {
+		long start = System.currentTimeMillis();
+		long version = globalVersion.get();
+		Index idx = new Index();
+
+		ResIterator it = m.listSubjectsWithProperty(RDF.type, Stats.RDFStatsDataset);
+		try {
+			while (it.hasNext()) {
+				Resource ds = it.nextResource();
+				Node url = getObject(ds, Stats.sourceUrl);
+				if (url != null && url.isURI())
+					indexDataset(idx, ds.asNode(), url.getURI());
+			}
+		} finally {
+			it.close();
+		}
+
+		it = m.listSubjectsWithProperty(RDF.type, Stats.PropertyHistogram);
+		try {
+			while (it.hasNext()) {
+				Resource item = it.nextResource();
+				Node ds = getObject(item, SCOVO.dataset);
+				Node p = getObject(item, Stats.propertyDimension);
+				Node range = getObject(item, Stats.rangeDimension);
+				if (ds != null && p != null && p.isURI() && range != null && range.isURI())
+					indexPropertyItem(idx, ds, p.getURI(), range.getURI(), item.asNode());
+			}
+		} finally {
+			it.close();
+		}
+
+		it = m.listSubjectsWithProperty(RDF.type, Stats.SubjectHistogram);
+		try {
+			while (it.hasNext()) {
+				Resource item = it.nextResource();
+				Node ds = getObject(item, SCOVO.dataset);
+				Node range = getObject(item, Stats.rangeDimension);
+				if (ds != null && range != null && range.isURI())
+					indexSubjectItem(idx, ds, range.getURI(), item.asNode());
+			}
+		} finally {
+			it.close();
+		}
+
+		it = m.listSubjectsWithProperty(RDF.type, Stats.PropertyStatistics);
+		try {
+			while (it.hasNext()) {
+				Resource item = it.nextResource();
+				Node ds = getObject(item, SCOVO.dataset);
+				Node p = getObject(item, Stats.propertyDimension);
+				if (ds != null && p != null && p.isURI())
+					indexStatisticsItem(idx, ds, p.getURI(), item.asNode());
+			}
+		} finally {
+			it.close();
+		}
+
+		it = m.listSubjectsWithProperty(RDF.type, Stats.CharacteristicSets);
+		try {
+			while (it.hasNext()) {
+				Resource item = it.nextResource();
+				Node ds = getObject(item, SCOVO.dataset);
+				if (ds != null)
+					indexCharacteristicSetsItem(idx, ds, item.asNode());
+			}
+		} finally {
+			it.close();
+		}
+
+		index = idx;
+		built = (globalVersion.get() == version); // otherwise invalidated by a concurrent writer not holding the model lock
+		if (log.isDebugEnabled())
+			log.debug("Indexed " + idx.datasets.size() + " datasets and " + idx.items.size() + " items in " + (System.currentTimeMillis() - start) + " ms.");
+	}
+
+	private static void indexDataset(Index idx, Node ds, String sourceUrl) {
+		DatasetEntry e = getOrCreateEntry(idx, ds);
+		e.sourceUrl = sourceUrl;
+		Node other = idx.datasets.get(sourceUrl);
+		if (other != null && !other.equals(ds))
+			idx.ambiguousUrls.put(sourceUrl, Boolean.TRUE);
+		else
+			idx.datasets.put(sourceUrl, ds);
+	}
+
+	private static void indexPropertyItem(Index idx, Node ds, String p, String rangeUri, Node item) {
+		DatasetEntry e = getOrCreateEntry(idx, ds);
+		Node other = put(e.byProperty, p, rangeUri, item);
+		put(e.byRange, rangeUri, p, item);
+		if (other != null && !other.equals(item))
+			e.duplicates.put(propertyKey(p, rangeUri), Boolean.TRUE);
+		idx.items.put(item, new ItemKey(e, p, rangeUri));
+	}
+
+	private static void indexSubjectItem(Index idx, Node ds, String rangeUri, Node item) {
+		DatasetEntry e = getOrCreateEntry(idx, ds);
+		Node other = e.subjectItems.put(rangeUri, item);
+		if (other != null && !other.equals(item))
+			e.duplicates.put(rangeUri, Boolean.TRUE);
+		idx.items.put(item, new ItemKey(e, null, rangeUri));
+	}
+
+	private static void indexStatisticsItem(Index idx, Node ds, String p, Node item) {
+		DatasetEntry e = getOrCreateEntry(idx, ds);
+		Node other = e.statisticsItems.put(p, item);
+		if (other != null && !other.equals(item))
+			e.duplicates.put(statisticsKey(p), Boolean.TRUE);
+		idx.items.put(item, new ItemKey(e, p, null));
+	}
+
+	private static void indexCharacteristicSetsItem(Index idx, Node ds, Node item) {
+		DatasetEntry e = getOrCreateEntry(idx, ds);
+		Node other = e.characteristicSetsItem;
+		e.characteristicSetsItem = item;
+		if (other != null && !other.equals(item))
+			e.duplicates.put(characteristicSetsKey(), Boolean.TRUE);
+		idx.items.put(item, new ItemKey(e, null, null));
+	}
+
+	private static DatasetEntry getOrCreateEntry(Index idx, Node ds) {
+		DatasetEntry e = idx.entries.get(ds);
+		if (e == null) {
+			e = new DatasetEntry(ds);
+			idx.entries.put(ds, e);
+		}
+		return e;
+	}
+
+	private static Node put(Map<String, Map<String, Node>> map, String k1, String k2, Node item) {
+		Map<String, Node> m = map.get(k1);
+		if (m == null) {
+			m = new ConcurrentHashMap<String, Node>();
+			map.put(k1, m);
+		}
+		return m.put(k2, item);
+	}
+
+	private static void remove(Map<String, Map<String, Node>> map, String k1, String k2) {
+		Map<String, Node> m = map.get(k1);
+		if (m != null) {
+			m.remove(k2);
+			if (m.isEmpty())
+				map.remove(k1);
+		}
+	}
+
+	private static Node getObject(Resource r, Property p) {
+		Statement s = r.getProperty(p);
+		return (s != null) ? s.getObject().asNode() : null;
+	}
+
+	private static Resource toResource(Model m, Node n) {
+		return (Resource) m.asRDFNode(n);
+	}
+
+	private static String propertyKey(String p, String rangeUri) {
+		return p + " " + rangeUri;
+	}
+
+	private static String statisticsKey(String p) {
+		return p + " " + Stats.PropertyStatistics.getURI();
+	}
+
+	private static String characteristicSetsKey() {
+		return Stats.CharacteristicSets.getURI();
+	}
+
+	/** index of all datasets, modified in place by the incremental updates */
+	private static class Index {
+		/** sourceUrl => dataset node */
+		final Map<String, Node> datasets = new ConcurrentHashMap<String, Node>();
+
+		/** source URLs used by more than one dataset */
+		final Map<String, Boolean> ambiguousUrls = new ConcurrentHashMap<String, Boolean>();
+
+		/** dataset node => entry */
+		final Map<Node, DatasetEntry> entries = new ConcurrentHashMap<Node, DatasetEntry>();
+
+		/** item node => where it is indexed (for removal) */
+		final Map<Node, ItemKey> items = new ConcurrentHashMap<Node, ItemKey>();
+	}
+
+	/** index of a single dataset */
+	private static class DatasetEntry {
+		final Node dataset;
+		volatile String sourceUrl;
+
+		/** property => range => property histogram item */
+		final Map<String, Map<String, Node>> byProperty = new ConcurrentHashMap<String, Map<String, Node>>();
+
+		/** range => property => property histogram item */
+		final Map<String, Map<String, Node>> byRange = new ConcurrentHashMap<String, Map<String, Node>>();
+
+		/** range (rdfs:Resource or stats:blankNode) => subject histogram item */
+		final Map<String, Node> subjectItems = new ConcurrentHashMap<String, Node>();
+
+		/** property => property statistics item */
+		final Map<String, Node> statisticsItems = new ConcurrentHashMap<String, Node>();
+
+		/** characteristic sets item */
+		volatile Node characteristicSetsItem;
+
+		/** keys indexed by more than one item */
+		final Map<String, Boolean> duplicates = new ConcurrentHashMap<String, Boolean>();
+
+		DatasetEntry(Node dataset) {
+			this.dataset = dataset;
+		}
+	}
+
+	/** position of an item in the index */
+	private static class ItemKey {
+		final DatasetEntry entry;
+		final String p; // null for subject histograms and characteristic sets
+		final String range; // null for property statistics and characteristic sets
+
+		ItemKey(DatasetEntry entry, String p, String range) {
+			this.entry = entry;
+			this.p = p;
+			this.range = range;
+		}
+
+		String key() {
+			if (p == null)
+				return (range != null) ? range : characteristicSetsKey();
+			return (range != null) ? propertyKey(p, range) : statisticsKey(p);
+		}
+	}
+
+	/** invalidates the catalog upon changes of the graph which have not been indexed */
+	private static class ChangeListener implements GraphListener {
+		private final StatsCatalog catalog;
+
+		ChangeListener(StatsCatalog catalog) {
+			this.catalog = catalog;
+		}
+
+		public void notifyAddTriple(Graph g, Triple t) { catalog.changed(); }
+		public void notifyAddArray(Graph g, Triple[] triples) { catalog.changed(); }
+		public void notifyAddList(Graph g, List<Triple> triples) { catalog.changed(); }
+		public void notifyAddIterator(Graph g, Iterator<Triple> it) { catalog.changed(); }
+		public void notifyAddGraph(Graph g, Graph added) { catalog.changed(); }
+		public void notifyDeleteTriple(Graph g, Triple t) { catalog.changed(); }
+		public void notifyDeleteList(Graph g, List<Triple> triples) { catalog.changed(); }
+		public void notifyDeleteArray(Graph g, Triple[] triples) { catalog.changed(); }
+		public void notifyDeleteIterator(Graph g, Iterator<Triple> it) { catalog.changed(); }
+		public void notifyDeleteGraph(Graph g, Graph removed) { catalog.changed(); }
+		public void notifyEvent(Graph source, Object value) { catalog.changed(); } // e.g. removeAll
+	}
+
+}
@@ -0,0 +1,212 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+
+import at.jku.rdfstats.hist.builder.CompactDataInput;
+import at.jku.rdfstats.hist.builder.CompactDataOutput;
+
+import com.hp.hpl.jena.sparql.util.Base64;
+
+/**
+ * @author dorgon
+ *
+ * Bloom filter over the URI subjects of a dataset. Unlike the subject histogram, which reports any URI sharing a
+ * non-empty prefix label as existing, the filter rejects URIs not being a subject except for the configured false
+ * positive rate, and never rejects an existing subject.
+ *
+ * The k bit positions of a URI are derived from a single 64 bit hash by double hashing (Kirsch and Mitzenmacher,
+ * 2006). The number of bits and of hash functions are chosen optimally for the number of subjects and the false
+ * positive rate: m = -n ln(p) / ln(2)^2, k = m/n ln(2), i.e. about 9.6 bits per subject for p = 1%.
+ *
+ * Instances are immutable and created by the generators, they are stored base64-encoded together with the subject
+ * histogram of the URI subjects.
+ */
+public class SubjectFilter {
+
+	/** byte stream version, encoded for compatibility checks */
+	public static final int VERSION = 20100415;
+
+	/** bit array */
+	private final long[] bits;
+
+	/** number of bits used */
+	private final int numBits;
+
+	/** number of hash functions */
+	private final int hashes;
+
+	/** number of distinct subjects added */
+	private final int subjects;
+
+	/**
+	 * creates the filter for the given subject hashes
+	 * 
+	 * @param subjectHashes hashes of distinct subjects, see {@link #hash(String)}
+	 * @param size number of hashes used from subjectHashes
+	 * @param falsePositiveRate targeted false positive rate, 0 &lt; rate &lt; 1
+	 */
+	public SubjectFilter(long[] subjectHashes, int size, double falsePositiveRate) {
+		double ln2 = Math.log(2);
+		long m = (long) Math.ceil(-Math.max(size, 1) * Math.log(falsePositiveRate) / (ln2 * ln2));
+		this.numBits = (int) Math.max(64, Math.min(Integer.MAX_VALUE - 63, m));
+		this.hashes = Math.max(1, Math.min(16, (int) Math.round((double) numBits / Math.max(size, 1) * ln2)));
+		this.subjects = size;
+		this.bits = new long[(numBits + 63) >>> 6];
+		for (int i = 0; i < size; i++)
+			setBits(subjectHashes[i]);
+	}
+
+	private SubjectFilter(long[] bits, int numBits, int hashes, int subjects) {
+		this.bits = bits;
+		this.numBits = numBits;
+		this.hashes = hashes;
+		this.subjects = subjects;
+	}
+
+	private void setBits(long h) {
+		int h1 = (int) h;
+		int h2 = (int) (h >>> 32);
+		for (int k = 0; k < hashes; k++) {
+			int pos = ((h1 + k * h2) & Integer.MAX_VALUE) % numBits;
+			bits[pos >>> 6] |= 1L << pos;
+		}
+	}
+
+	/**
+	 * the size of the bit array is kept, hence the false positive rate grows with the number of added subjects
+	 * 
+	 * @param uris new distinct subjects
+	 * @return a copy of this filter which also contains uris
+	 */
+	public SubjectFilter withSubjects(Collection<String> uris) {
+		SubjectFilter filter = new SubjectFilter(bits.clone(), numBits, hashes, subjects + uris.size());
+		for (String uri : uris)
+			filter.setBits(hash(uri));
+		return filter;
+	}
+
+	/**
+	 * @param uri
+	 * @return false if uri is certainly not a subject, true if it may be a subject
+	 */
+	public boolean mightContain(String uri) {
+		long h = hash(uri);
+		int h1 = (int) h;
+		int h2 = (int) (h >>> 32);
+		for (int k = 0; k < hashes; k++) {
+			int pos = ((h1 + k * h2) & Integer.MAX_VALUE) % numBits;
+			if ((bits[pos >>> 6] & (1L << pos)) == 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of distinct subjects added
+	 */
+	public int getSubjects() {
+		return subjects;
+	}
+
+	/**
+	 * @return the size of the bit array
+	 */
+	public int getNumBits() {
+		return numBits;
+	}
+
+	/**
+	 * @return the number of hash functions
+	 */
+	public int getHashes() {
+		return hashes;
+	}
+
+	/**
+	 * @return the expected false positive rate: (1 - e^(-kn/m))^k
+	 */
+	public double getFalsePositiveRate() {
+		return Math.pow(1 - Math.exp(-(double) hashes * subjects / numBits), hashes);
+	}
+
+	/**
+	 * @param uri
+	 * @return 64 bit hash of uri (FNV-1a followed by the MurmurHash3 finalizer)
+	 */
+	public static long hash(String uri) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < uri.length(); i++) {
+			h ^= uri.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * @return the filter encoded as base64 string
+	 */
+	public String base64encode() {
+		CompactDataOutput out = new CompactDataOutput(16 + bits.length * 8);
+		out.writeVarInt(VERSION);
+		out.writeVarInt(numBits);
+		out.writeVarInt(hashes);
+		out.writeVarInt(subjects);
+		for (long word : bits)
+			out.writeFixedLong(word);
+		return Base64.encodeBytes(out.toByteArray());
+	}
+
+	/**
+	 * @param encoded
+	 * @return the decoded filter
+	 * @throws RDFStatsModelException if encoded is corrupt or has been encoded with another version
+	 */
+	public static SubjectFilter base64decode(String encoded) throws RDFStatsModelException {
+		try {
+			CompactDataInput in = new CompactDataInput(ByteBuffer.wrap(Base64.decode(encoded)));
+			int version = in.readVarInt();
+			if (version != VERSION)
+				throw new RDFStatsModelException("Version missmatch: the subject filter was encoded with version " + version + " but you are running version " + VERSION + ".");
+
+			int numBits = in.readVarInt();
+			int hashes = in.readVarInt();
+			int subjects = in.readVarInt();
+			if (numBits <= 0 || hashes <= 0)
+				throw new RDFStatsModelException("Cannot decode subject filter: invalid size of " + numBits + " bits and " + hashes + " hash functions.");
+			long[] bits = new long[(numBits + 63) >>> 6];
+			for (int i = 0; i < bits.length; i++)
+				bits[i] = in.readFixedLong();
+			return new SubjectFilter(bits, numBits, hashes, subjects);
+		} catch (BufferUnderflowException e) {
+			throw new RDFStatsModelException("Cannot decode subject filter: unexpected end of data.", e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Bloom filter over " + subjects + " subjects, " + numBits + " bits, " + hashes + " hash functions";
+	}
+
+}
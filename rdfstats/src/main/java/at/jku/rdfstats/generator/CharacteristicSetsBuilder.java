@@ -0,0 +1,363 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.generator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import at.jku.rdfstats.CharacteristicSets;
+
+import com.hp.hpl.jena.graph.Node;
+
+/**
+ * Builds the {@link CharacteristicSets} of a dataset from (subject, property) pairs, one pair per triple.
+ * 
+ * If the pairs are grouped by subject (e.g. the result of a query ordered by subject), only the properties of the
+ * current subject are kept in memory. Otherwise the properties of all subjects are kept until
+ * {@link #getCharacteristicSets()} is called.
+ * 
+ * At most maxSets sets are kept in the result, the others are merged into the residual. In order to bound the
+ * memory, the least frequent sets are also merged into the residual while building whenever the number of sets
+ * exceeds a multiple of maxSets, hence sets becoming frequent only later in the input may end up in the residual.
+ * 
+ * @author dorgon
+ *
+ */
+public class CharacteristicSetsBuilder {
+	
+	/** minimum number of sets tracked while building */
+	private static final int MIN_CAPACITY = 1024;
+	
+	/** maximum number of sets in the result */
+	private final int maxSets;
+	
+	/** maximum number of sets tracked while building */
+	private final int capacity;
+
+	/** true if the input is grouped by subject */
+	private final boolean grouped;
+	
+	/** property URI => id */
+	private final Map<String, Integer> propertyIds = new HashMap<String, Integer>();
+	
+	/** id => property URI */
+	private final List<String> propertyUris = new ArrayList<String>();
+
+	/** sorted property ids => counts */
+	private final Map<SetKey, SetCounts> sets = new HashMap<SetKey, SetCounts>();
+
+	/** subject => properties, only used if not grouped */
+	private final Map<Node, SubjectProperties> pending = new HashMap<Node, SubjectProperties>();
+
+	/** current subject and its properties, only used if grouped */
+	private Node currentSubject;
+	private SubjectProperties current;
+	
+	/** residual: subjects, subjects and triples per property id */
+	private long residualSubjects = 0;
+	private long[] residualPropertySubjects = new long[16];
+	private long[] residualOccurrences = new long[16];
+	
+	/**
+	 * @param maxSets maximum number of sets in the result
+	 * @param grouped true if the pairs of each subject are added consecutively
+	 */
+	public CharacteristicSetsBuilder(int maxSets, boolean grouped) {
+		this.maxSets = maxSets;
+		this.capacity = Math.max(4 * maxSets, MIN_CAPACITY);
+		this.grouped = grouped;
+	}
+	
+	/**
+	 * adds one triple of subject s with property p
+	 * 
+	 * @param s
+	 * @param p
+	 */
+	public void add(Node s, String p) {
+		int id = propertyId(p);
+		if (grouped) {
+			if (!s.equals(currentSubject)) {
+				flush(current);
+				currentSubject = s;
+				current = new SubjectProperties();
+			}
+			current.add(id);
+		} else {
+			SubjectProperties props = pending.get(s);
+			if (props == null) {
+				props = new SubjectProperties();
+				pending.put(s, props);
+			}
+			props.add(id);
+		}
+	}
+	
+	/**
+	 * Adds the pairs of another builder, e.g. one fed by a different thread with another part of the same dataset.
+	 * Only builders of ungrouped pairs can be merged, because their subjects are kept until the end. The other builder
+	 * must not be used afterwards.
+	 * 
+	 * @param other
+	 * @throws IllegalStateException if either builder is grouped
+	 */
+	public void merge(CharacteristicSetsBuilder other) {
+		if (grouped || other.grouped)
+			throw new IllegalStateException("Only builders of ungrouped pairs can be merged.");
+		
+		int[] ids = new int[other.propertyUris.size()]; // other id => id
+		for (int i = 0; i < ids.length; i++)
+			ids[i] = propertyId(other.propertyUris.get(i));
+		
+		for (Map.Entry<Node, SubjectProperties> e : other.pending.entrySet()) {
+			SubjectProperties o = e.getValue();
+			SubjectProperties props = pending.get(e.getKey());
+			if (props == null) {
+				props = new SubjectProperties();
+				pending.put(e.getKey(), props);
+			}
+			for (int j = 0; j < o.size; j++)
+				props.add(ids[o.ids[j]], o.counts[j]);
+		}
+		other.pending.clear();
+	}
+	
+	/**
+	 * @return the characteristic sets of all subjects added so far, the builder must not be used afterwards
+	 */
+	public CharacteristicSets getCharacteristicSets() {
+		flush(current);
+		current = null;
+		currentSubject = null;
+		for (SubjectProperties props : pending.values())
+			flush(props);
+		pending.clear();
+		
+		compact(maxSets);
+		
+		// properties are sorted in the result
+		String[] properties = propertyUris.toArray(new String[propertyUris.size()]);
+		Arrays.sort(properties);
+		int[] index = new int[properties.length]; // id => index in properties
+		for (int i = 0; i < properties.length; i++)
+			index[propertyIds.get(properties[i])] = i;
+		
+		List<ResultEntry> result = new ArrayList<ResultEntry>(sets.size());
+		for (Map.Entry<SetKey, SetCounts> e : sets.entrySet()) {
+			int[] ids = e.getKey().ids;
+			SetCounts c = e.getValue();
+			
+			// sort by index, occurrences accordingly
+			long[] packed = new long[ids.length];
+			for (int j = 0; j < ids.length; j++)
+				packed[j] = ((long) index[ids[j]] << 32) | j;
+			Arrays.sort(packed);
+			ResultEntry r = new ResultEntry(ids.length, c.subjects);
+			for (int j = 0; j < ids.length; j++) {
+				r.set[j] = (int) (packed[j] >>> 32);
+				r.occurrences[j] = c.occurrences[(int) packed[j]];
+			}
+			result.add(r);
+		}
+		Collections.sort(result); // deterministic order independent of the input order
+		
+		int[][] resultSets = new int[result.size()][];
+		long[] subjects = new long[result.size()];
+		long[][] occurrences = new long[result.size()][];
+		for (int s = 0; s < resultSets.length; s++) {
+			resultSets[s] = result.get(s).set;
+			subjects[s] = result.get(s).subjects;
+			occurrences[s] = result.get(s).occurrences;
+		}
+		
+		long[] rSubjects = new long[properties.length];
+		long[] rOccurrences = new long[properties.length];
+		for (int id = 0; id < properties.length; id++) {
+			rSubjects[index[id]] = residual(residualPropertySubjects, id);
+			rOccurrences[index[id]] = residual(residualOccurrences, id);
+		}
+		
+		return new CharacteristicSets(properties, resultSets, subjects, occurrences, residualSubjects, rSubjects, rOccurrences);
+	}
+	
+	private int propertyId(String p) {
+		Integer id = propertyIds.get(p);
+		if (id == null) {
+			id = propertyUris.size();
+			propertyIds.put(p, id);
+			propertyUris.add(p);
+		}
+		return id;
+	}
+	
+	/** counts the set of a subject */
+	private void flush(SubjectProperties props) {
+		if (props == null || props.size == 0)
+			return;
+		
+		// sort ids, counts accordingly
+		long[] packed = new long[props.size];
+		for (int j = 0; j < props.size; j++)
+			packed[j] = ((long) props.ids[j] << 32) | props.counts[j];
+		Arrays.sort(packed);
+		int[] ids = new int[props.size];
+		for (int j = 0; j < props.size; j++)
+			ids[j] = (int) (packed[j] >>> 32);
+		
+		SetKey key = new SetKey(ids);
+		SetCounts c = sets.get(key);
+		if (c == null) {
+			if (sets.size() >= capacity)
+				compact(2 * maxSets);
+			c = new SetCounts(ids.length);
+			sets.put(key, c);
+		}
+		c.subjects++;
+		for (int j = 0; j < ids.length; j++)
+			c.occurrences[j] += (int) packed[j];
+	}
+	
+	/** merges all but the keep most frequent sets into the residual */
+	private void compact(int keep) {
+		if (sets.size() <= keep)
+			return;
+		List<Map.Entry<SetKey, SetCounts>> entries = sortedBySubjects();
+		for (Map.Entry<SetKey, SetCounts> e : entries.subList(keep, entries.size())) {
+			int[] ids = e.getKey().ids;
+			SetCounts c = e.getValue();
+			residualSubjects += c.subjects;
+			for (int j = 0; j < ids.length; j++) {
+				ensureResidualCapacity(ids[j]);
+				residualPropertySubjects[ids[j]] += c.subjects;
+				residualOccurrences[ids[j]] += c.occurrences[j];
+			}
+			sets.remove(e.getKey());
+		}
+	}
+	
+	private List<Map.Entry<SetKey, SetCounts>> sortedBySubjects() {
+		List<Map.Entry<SetKey, SetCounts>> entries = new ArrayList<Map.Entry<SetKey, SetCounts>>(sets.entrySet());
+		Collections.sort(entries, new Comparator<Map.Entry<SetKey, SetCounts>>() {
+			public int compare(Map.Entry<SetKey, SetCounts> a, Map.Entry<SetKey, SetCounts> b) {
+				long x = a.getValue().subjects, y = b.getValue().subjects;
+				return (x > y) ? -1 : (x < y) ? 1 : 0;
+			}
+		});
+		return entries;
+	}
+	
+	private void ensureResidualCapacity(int id) {
+		if (id < residualPropertySubjects.length)
+			return;
+		int size = Math.max(2 * residualPropertySubjects.length, id + 1);
+		long[] s = new long[size], o = new long[size];
+		System.arraycopy(residualPropertySubjects, 0, s, 0, residualPropertySubjects.length);
+		System.arraycopy(residualOccurrences, 0, o, 0, residualOccurrences.length);
+		residualPropertySubjects = s;
+		residualOccurrences = o;
+	}
+	
+	private static long residual(long[] counts, int id) {
+		return (id < counts.length) ? counts[id] : 0;
+	}
+	
+	/** property ids and triples of a single subject */
+	private static class SubjectProperties {
+		int[] ids = new int[4];
+		int[] counts = new int[4];
+		int size = 0;
+		
+		void add(int id) {
+			add(id, 1);
+		}
+		
+		void add(int id, int count) {
+			for (int j = 0; j < size; j++)
+				if (ids[j] == id) {
+					counts[j] += count;
+					return;
+				}
+			if (size == ids.length) {
+				int[] i = new int[2 * size], c = new int[2 * size];
+				System.arraycopy(ids, 0, i, 0, size);
+				System.arraycopy(counts, 0, c, 0, size);
+				ids = i;
+				counts = c;
+			}
+			ids[size] = id;
+			counts[size++] = count;
+		}
+	}
+	
+	/** sorted property ids of a set */
+	private static class SetKey {
+		final int[] ids;
+		final int hash;
+		
+		SetKey(int[] ids) {
+			this.ids = ids;
+			this.hash = Arrays.hashCode(ids);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof SetKey && Arrays.equals(ids, ((SetKey) obj).ids);
+		}
+	}
+	
+	/** a set of the result, ordered by descending subjects and then by property indexes */
+	private static class ResultEntry implements Comparable<ResultEntry> {
+		final int[] set;
+		final long subjects;
+		final long[] occurrences;
+		
+		ResultEntry(int size, long subjects) {
+			this.set = new int[size];
+			this.subjects = subjects;
+			this.occurrences = new long[size];
+		}
+		
+		public int compareTo(ResultEntry o) {
+			if (subjects != o.subjects)
+				return (subjects > o.subjects) ? -1 : 1;
+			for (int j = 0; j < set.length && j < o.set.length; j++)
+				if (set[j] != o.set[j])
+					return (set[j] < o.set[j]) ? -1 : 1;
+			return set.length - o.set.length;
+		}
+	}
+	
+	/** subjects and triples per property of a set */
+	private static class SetCounts {
+		long subjects = 0;
+		final long[] occurrences;
+		
+		SetCounts(int size) {
+			occurrences = new long[size];
+		}
+	}
+
+}
@@ -0,0 +1,239 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.generator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import at.jku.rdfstats.GeneratorException;
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.generator.RDFStatsGeneratorBase.GeneratedProperty;
+
+/**
+ * Checkpoint file of a generator run for a single source, named by the SHA-1 digest of the source URL, which records the generated histograms and statistics of
+ * each property as soon as it is completed. If a run is interrupted, the next run for the same source and the same
+ * histogram settings takes the completed properties from the checkpoint instead of querying them again. The file is
+ * deleted after the statistics have been generated successfully.
+ * 
+ * The header contains the source and all settings affecting the histograms, a checkpoint written with other settings
+ * is discarded. The file is appended one line per property: the property URI, the distinct subjects and objects, the
+ * range URI and encoded histogram of each range, all separated by tabs and terminated by a final ".". A line truncated
+ * by an interruption is cut off before appending to the file again.
+ * 
+ * @author dorgon
+ *
+ */
+class GeneratorCheckpoint {
+	private static final Log log = LogFactory.getLog(GeneratorCheckpoint.class);
+	
+	private static final String HEADER = "RDFStats checkpoint";
+	private static final String END = ".";
+	private static final String SEP = "\t";
+	
+	private final File file;
+	
+	/** property URI => completed property */
+	private final Map<String, GeneratedProperty> completed = new HashMap<String, GeneratedProperty>();
+	
+	private Writer out;
+	
+	/**
+	 * opens the checkpoint for sourceUrl in directory, completed properties are read if the file exists and has
+	 * been written for the same source and histogram settings
+	 * 
+	 * @param directory
+	 * @param sourceUrl
+	 * @param config
+	 * @throws GeneratorException if the file cannot be read or written
+	 */
+	GeneratorCheckpoint(File directory, String sourceUrl, RDFStatsConfiguration config) throws GeneratorException {
+		this.file = new File(directory, "rdfstats-" + digest(sourceUrl) + ".checkpoint");
+		String header = header(sourceUrl, config);
+		
+		try {
+			boolean resume = false;
+			int complete = 0; // length of the complete lines
+			if (file.exists()) {
+				byte[] data = readFile();
+				complete = lastNewline(data) + 1;
+				String[] lines = new String(data, 0, complete, "UTF-8").split("\n");
+				resume = lines.length > 0 && header.equals(lines[0]);
+				for (int l = 1; resume && l < lines.length; l++)
+					read(lines[l]);
+				if (resume)
+					log.info("Resuming from checkpoint " + file + ", " + completed.size() + " properties already completed.");
+				else
+					log.warn("Ignoring checkpoint " + file + " written for another source or other histogram settings.");
+			} else
+				directory.mkdirs();
+			
+			if (resume && complete < file.length()) { // cut off the line truncated by the interruption
+				RandomAccessFile raf = new RandomAccessFile(file, "rw");
+				try {
+					raf.setLength(complete);
+				} finally {
+					raf.close();
+				}
+			}
+			out = new OutputStreamWriter(new FileOutputStream(file, resume), "UTF-8");
+			if (!resume) {
+				out.write(header + "\n");
+				out.flush();
+			}
+		} catch (IOException e) {
+			throw new GeneratorException("Failed to open checkpoint " + file + ".", e);
+		}
+	}
+	
+	/**
+	 * @return the hex encoded SHA-1 digest of sourceUrl, distinct sources never share a checkpoint file in practice
+	 */
+	private static String digest(String sourceUrl) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(sourceUrl.getBytes("UTF-8"));
+			StringBuilder sb = new StringBuilder(digest.length * 2);
+			for (byte b : digest)
+				sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("Unexpected error: SHA-1 not supported.", e);
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException("Unexpected error: UTF-8 not supported.", e);
+		}
+	}
+	
+	/**
+	 * @return the header line for sourceUrl and all settings affecting the generated histograms
+	 */
+	private static String header(String sourceUrl, RDFStatsConfiguration config) {
+		List<String> equiDepthTypes = new ArrayList<String>(config.getEquiDepthTypes());
+		Collections.sort(equiDepthTypes);
+		
+		StringBuilder sb = new StringBuilder(HEADER);
+		sb.append(SEP).append(sourceUrl);
+		sb.append(SEP).append(config.getPrefSize());
+		sb.append(SEP).append(config.getStrHistMaxLength());
+		sb.append(SEP).append(config.approximateHistograms());
+		sb.append(SEP).append(config.getUriHistogramNodeBudget());
+		sb.append(SEP).append(equiDepthTypes);
+		sb.append(SEP).append(config.getDefaultTimeZone().getID());
+		return sb.toString();
+	}
+	
+	private byte[] readFile() throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			ByteArrayOutputStream data = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) > 0)
+				data.write(buffer, 0, n);
+			return data.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+	
+	private static int lastNewline(byte[] data) {
+		for (int i = data.length - 1; i >= 0; i--)
+			if (data[i] == '\n')
+				return i;
+		return -1;
+	}
+	
+	private void read(String line) {
+		String[] f = line.split(SEP);
+		if (f.length < 4 || f.length % 2 != 0 || !END.equals(f[f.length - 1]))
+			return; // incomplete
+		try {
+			Map<String, String> histograms = new HashMap<String, String>();
+			for (int i = 3; i < f.length - 1; i += 2)
+				histograms.put(f[i], f[i + 1]);
+			completed.put(f[0], new GeneratedProperty(histograms, Integer.parseInt(f[1]), Integer.parseInt(f[2])));
+		} catch (NumberFormatException e) {
+			log.warn("Ignoring corrupt line in checkpoint " + file + ".");
+		}
+	}
+	
+	/**
+	 * @param p property URI
+	 * @return the completed property or null if p has not been completed before
+	 */
+	synchronized GeneratedProperty get(String p) {
+		return completed.get(p);
+	}
+	
+	/**
+	 * records a completed property
+	 * 
+	 * @param p property URI
+	 * @param generated
+	 */
+	synchronized void add(String p, GeneratedProperty generated) {
+		if (out == null || completed.containsKey(p))
+			return;
+		
+		StringBuilder sb = new StringBuilder(p);
+		sb.append(SEP).append(generated.distinctSubjects).append(SEP).append(generated.distinctObjects);
+		for (Map.Entry<String, String> h : generated.histograms.entrySet())
+			sb.append(SEP).append(h.getKey()).append(SEP).append(h.getValue());
+		sb.append(SEP).append(END).append("\n");
+		
+		try {
+			out.write(sb.toString());
+			out.flush();
+			completed.put(p, generated);
+		} catch (IOException e) {
+			log.error("Failed to write checkpoint " + file + ", property <" + p + "> will be generated again if interrupted.", e);
+		}
+	}
+	
+	/**
+	 * closes the file, which is deleted if the generator has finished successfully
+	 * 
+	 * @param finished
+	 */
+	synchronized void close(boolean finished) {
+		try {
+			if (out != null)
+				out.close();
+		} catch (IOException e) {
+			log.error("Failed to close checkpoint " + file + ".", e);
+		}
+		out = null;
+		if (finished && !file.delete())
+			log.warn("Failed to delete checkpoint " + file + ".");
+	}
+	
+}
@@ -0,0 +1,300 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.generator;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import at.jku.rdfstats.CharacteristicSets;
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.SubjectFilter;
+import at.jku.rdfstats.hist.RDF2JavaMapper;
+import at.jku.rdfstats.hist.builder.HistogramBuilder;
+import at.jku.rdfstats.hist.builder.HistogramBuilderException;
+import at.jku.rdfstats.hist.builder.HistogramBuilderFactory;
+import at.jku.rdfstats.hist.builder.HyperLogLog;
+import at.jku.rdfstats.vocabulary.Stats;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.graph.TripleMatch;
+import com.hp.hpl.jena.graph.impl.GraphBase;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.util.iterator.NullIterator;
+import com.hp.hpl.jena.vocabulary.RDFS;
+
+/**
+ * A write-only graph which passes each added triple directly to the histogram builders
+ * instead of storing it. Any Jena reader can be used to feed the sink via {@link #getModel()},
+ * hence an RDF document is parsed exactly once for generating all histograms.
+ *
+ * Subjects are only counted once like with SELECT DISTINCT ?s, property values are counted for
+ * each triple. The distinct subjects of each property are estimated for the property statistics. The properties
+ * of all subjects are kept for the characteristic sets (unless disabled), because documents need not be grouped by
+ * subject. In contrast to a parsed model, triples occurring more than once in the source are not eliminated and
+ * are counted for each occurrence.
+ *
+ * Parts of a document can be fed into separate sinks by different threads, which are merged afterwards with
+ * {@link #merge(HistogramBuilderSink)}. Such sinks have to share the set of subjects already added, otherwise subjects
+ * occurring in several parts would be counted more than once.
+ *
+ * @author dorgon
+ *
+ */
+public class HistogramBuilderSink extends GraphBase {
+	private static final Log log = LogFactory.getLog(HistogramBuilderSink.class);
+
+	/** configuration */
+	private final RDFStatsConfiguration config;
+
+	/** builder for URI subjects */
+	private final HistogramBuilder<?> subjectBuilderURI;
+
+	/** builder for blank node subjects */
+	private final HistogramBuilder<?> subjectBuilderBNode;
+
+	/** subjects already added to the subject builders, null if shared */
+	private final Set<Node> subjects;
+
+	/** subjects already added to the subject builders of any of the sinks sharing it, null if not shared */
+	private final ConcurrentMap<Node, Boolean> sharedSubjects;
+
+	/** property URI => range URI => histogram builder */
+	private final Map<String, Map<String, HistogramBuilder<?>>> propertyBuilders = new HashMap<String, Map<String, HistogramBuilder<?>>>();
+
+	/** property URI => estimator of the distinct subjects having the property */
+	private final Map<String, HyperLogLog> propertySubjects = new HashMap<String, HyperLogLog>();
+
+	/** builder of the characteristic sets, null if disabled */
+	private final CharacteristicSetsBuilder characteristicSets;
+
+	/** builder of the filter over URI subjects, null if disabled */
+	private final SubjectFilterBuilder subjectFilter;
+
+	/** number of triples processed */
+	private long triples = 0;
+
+	/**
+	 * @param config
+	 * @throws HistogramBuilderException
+	 */
+	public HistogramBuilderSink(RDFStatsConfiguration config) throws HistogramBuilderException {
+		this(config, null);
+	}
+
+	/**
+	 * @param config
+	 * @param sharedSubjects subjects already added to any of the sinks which are merged later, null if not shared
+	 * @throws HistogramBuilderException
+	 */
+	public HistogramBuilderSink(RDFStatsConfiguration config, ConcurrentMap<Node, Boolean> sharedSubjects) throws HistogramBuilderException {
+		this.config = config;
+		this.sharedSubjects = sharedSubjects;
+		this.subjects = (sharedSubjects == null) ? new HashSet<Node>() : null;
+		subjectBuilderURI = HistogramBuilderFactory.createBuilder(RDFS.Resource.getURI(), null, config.getPrefSize(), config);
+		subjectBuilderBNode = HistogramBuilderFactory.createBuilder(Stats.blankNode.getURI(), null, config.getPrefSize(), config);
+		characteristicSets = (config.getCharacteristicSetsSize() > 0) ? new CharacteristicSetsBuilder(config.getCharacteristicSetsSize(), false) : null;
+		subjectFilter = (config.getSubjectFilterFalsePositiveRate() > 0) ? new SubjectFilterBuilder(config.getSubjectFilterFalsePositiveRate()) : null;
+	}
+
+	/**
+	 * @return a model wrapping this sink, every statement added to it is passed to the histogram builders
+	 */
+	public Model getModel() {
+		return ModelFactory.createModelForGraph(this);
+	}
+
+	@Override
+	public void performAdd(Triple t) {
+		triples++;
+
+		Node sbj = t.getSubject();
+		try {
+			if (isNewSubject(sbj)) {
+				if (sbj.isURI()) {
+					subjectBuilderURI.addNodeValue(sbj);
+					if (subjectFilter != null)
+						subjectFilter.add(sbj);
+				} else if (sbj.isBlank())
+					subjectBuilderBNode.addNodeValue(sbj);
+			}
+		} catch (Exception e) {
+			log.error("Error adding subject <" + sbj + "> to histogram builder, value skipped.", e);
+		}
+
+		if (!t.getPredicate().isURI()) {
+			log.error("Invalid property '" + t.getPredicate() + "' ingnored (should be an URI resource).");
+			return;
+		}
+
+		String p = t.getPredicate().getURI();
+		HyperLogLog pSubjects = propertySubjects.get(p);
+		if (pSubjects == null) {
+			pSubjects = new HyperLogLog(RDFStatsGeneratorBase.DISTINCT_SUBJECTS_PRECISION);
+			propertySubjects.put(p, pSubjects);
+		}
+		pSubjects.add(RDFStatsGeneratorBase.nodeKey(sbj));
+		if (characteristicSets != null)
+			characteristicSets.add(sbj, p);
+
+		Node val = t.getObject();
+		String type = null;
+		try {
+			type = RDF2JavaMapper.getType(val);
+
+			Map<String, HistogramBuilder<?>> histBuilders = propertyBuilders.get(p);
+			if (histBuilders == null) {
+				histBuilders = new HashMap<String, HistogramBuilder<?>>();
+				propertyBuilders.put(p, histBuilders);
+			}
+
+			HistogramBuilder<?> histBuilder = histBuilders.get(type);
+			if (histBuilder == null) {
+				histBuilder = HistogramBuilderFactory.createBuilder(type, p, config.getPrefSize(), config);
+				histBuilders.put(type, histBuilder);
+			}
+
+			histBuilder.addNodeValue(val);
+		} catch (Exception e) {
+			log.error("Error adding value '" + val + "' (type: " + type + ") of property <" + p + "> to the histogram builder, value skipped.", e);
+		}
+	}
+
+	private boolean isNewSubject(Node sbj) {
+		if (sharedSubjects != null)
+			return sharedSubjects.putIfAbsent(sbj, Boolean.TRUE) == null;
+		return subjects.add(sbj);
+	}
+
+	/**
+	 * Merges the builders of another sink fed with a different part of the same document into this sink. Both sinks
+	 * must share the set of subjects and the other sink must not be used afterwards.
+	 *
+	 * @param other
+	 * @throws HistogramBuilderException
+	 */
+	public void merge(HistogramBuilderSink other) throws HistogramBuilderException {
+		if (sharedSubjects == null || sharedSubjects != other.sharedSubjects)
+			throw new HistogramBuilderException("Only sinks sharing the set of subjects can be merged.");
+
+		triples += other.triples;
+		mergeBuilder(subjectBuilderURI, other.subjectBuilderURI);
+		mergeBuilder(subjectBuilderBNode, other.subjectBuilderBNode);
+
+		for (Map.Entry<String, Map<String, HistogramBuilder<?>>> e : other.propertyBuilders.entrySet()) {
+			Map<String, HistogramBuilder<?>> histBuilders = propertyBuilders.get(e.getKey());
+			if (histBuilders == null) {
+				propertyBuilders.put(e.getKey(), e.getValue());
+				continue;
+			}
+			for (Map.Entry<String, HistogramBuilder<?>> b : e.getValue().entrySet()) {
+				HistogramBuilder<?> histBuilder = histBuilders.get(b.getKey());
+				if (histBuilder == null)
+					histBuilders.put(b.getKey(), b.getValue());
+				else
+					mergeBuilder(histBuilder, b.getValue());
+			}
+		}
+
+		for (Map.Entry<String, HyperLogLog> e : other.propertySubjects.entrySet()) {
+			HyperLogLog pSubjects = propertySubjects.get(e.getKey());
+			if (pSubjects == null)
+				propertySubjects.put(e.getKey(), e.getValue());
+			else
+				pSubjects.merge(e.getValue());
+		}
+
+		if (characteristicSets != null)
+			characteristicSets.merge(other.characteristicSets);
+		if (subjectFilter != null)
+			subjectFilter.merge(other.subjectFilter);
+	}
+
+	/** both builders are created by the factory for the same type URI, hence they have the same native type */
+	@SuppressWarnings("unchecked")
+	private static <NATIVE> void mergeBuilder(HistogramBuilder<NATIVE> builder, HistogramBuilder<?> other) throws HistogramBuilderException {
+		builder.merge((HistogramBuilder<NATIVE>) other);
+	}
+
+	@Override
+	protected ExtendedIterator<Triple> graphBaseFind(TripleMatch m) {
+		return NullIterator.instance(); // nothing is stored
+	}
+
+	/**
+	 * @param blankNodes
+	 * @return the subject histogram builder for blank nodes or URIs
+	 */
+	public HistogramBuilder<?> getSubjectBuilder(boolean blankNodes) {
+		return blankNodes ? subjectBuilderBNode : subjectBuilderURI;
+	}
+
+	/**
+	 * @return the set of distinct properties found
+	 */
+	public Set<String> getProperties() {
+		return propertyBuilders.keySet();
+	}
+
+	/**
+	 * @param p property URI
+	 * @return map of range URI => histogram builder for property p, null if p didn't occur
+	 */
+	public Map<String, HistogramBuilder<?>> getPropertyBuilders(String p) {
+		return propertyBuilders.get(p);
+	}
+
+	/**
+	 * @param p property URI
+	 * @return estimated number of distinct subjects having property p
+	 */
+	public long getDistinctSubjects(String p) {
+		HyperLogLog pSubjects = propertySubjects.get(p);
+		return (pSubjects != null) ? pSubjects.estimate() : 0;
+	}
+
+	/**
+	 * @return the characteristic sets of all triples processed, null if disabled by the configuration;
+	 * may only be called once, after all triples have been added
+	 */
+	public CharacteristicSets getCharacteristicSets() {
+		return (characteristicSets != null) ? characteristicSets.getCharacteristicSets() : null;
+	}
+
+	/**
+	 * @return the filter over all URI subjects processed, null if disabled by the configuration;
+	 * may only be called once, after all triples have been added
+	 */
+	public SubjectFilter getSubjectFilter() {
+		return (subjectFilter != null) ? subjectFilter.getSubjectFilter() : null;
+	}
+
+	/**
+	 * @return number of triples processed so far
+	 */
+	public long getTriplesProcessed() {
+		return triples;
+	}
+
+}
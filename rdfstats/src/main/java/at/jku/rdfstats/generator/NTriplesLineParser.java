@@ -0,0 +1,185 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.generator;
+
+import at.jku.rdfstats.ParseException;
+
+import com.hp.hpl.jena.datatypes.TypeMapper;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.AnonId;
+
+/**
+ * Parses single lines of N-Triples or N-Quads, the graph label of a quad is ignored.
+ * 
+ * In contrast to the Jena readers, a blank node is created from its label (not from a fresh id), hence blank nodes
+ * of lines parsed independently of each other (e.g. by different threads) are still equal if they have the same label.
+ * 
+ * @author dorgon
+ *
+ */
+public class NTriplesLineParser {
+	
+	private final TypeMapper typeMapper = TypeMapper.getInstance();
+	
+	private String line;
+	private int pos;
+	
+	/**
+	 * @param line a line of N-Triples or N-Quads
+	 * @return the triple, null if the line is empty or a comment
+	 * @throws ParseException if the line is invalid
+	 */
+	public Triple parse(String line) throws ParseException {
+		this.line = line;
+		this.pos = 0;
+		
+		skipWhitespace();
+		if (pos == line.length() || line.charAt(pos) == '#')
+			return null;
+		
+		Node s = parseNode();
+		if (s.isLiteral())
+			throw new ParseException("Literal subject in line: " + line);
+		Node p = parseNode();
+		if (!p.isURI())
+			throw new ParseException("Invalid predicate in line: " + line);
+		Node o = parseNode();
+		if (pos < line.length() && line.charAt(pos) != '.')
+			parseNode(); // graph label
+		
+		if (pos == line.length() || line.charAt(pos) != '.')
+			throw new ParseException("Missing '.' at the end of line: " + line);
+		pos++;
+		skipWhitespace();
+		if (pos < line.length() && line.charAt(pos) != '#')
+			throw new ParseException("Unexpected characters after '.' in line: " + line);
+		
+		return Triple.create(s, p, o);
+	}
+	
+	/** parses a URI, blank node, or literal and skips the whitespace afterwards */
+	private Node parseNode() throws ParseException {
+		if (pos == line.length())
+			throw new ParseException("Unexpected end of line: " + line);
+		
+		Node n;
+		char c = line.charAt(pos);
+		if (c == '<')
+			n = Node.createURI(parseURI());
+		else if (c == '_' && line.startsWith("_:", pos)) {
+			int start = pos + 2;
+			pos = start;
+			while (pos < line.length() && !Character.isWhitespace(line.charAt(pos)) && line.charAt(pos) != '<' && line.charAt(pos) != '"')
+				pos++;
+			while (pos > start && line.charAt(pos - 1) == '.') // labels must not end with '.', e.g. "_:b1."
+				pos--;
+			if (pos == start)
+				throw new ParseException("Empty blank node label in line: " + line);
+			n = Node.createAnon(new AnonId(line.substring(start, pos)));
+		} else if (c == '"') {
+			String lex = parseString();
+			if (pos < line.length() && line.charAt(pos) == '@') {
+				int start = ++pos;
+				while (pos < line.length() && (Character.isLetterOrDigit(line.charAt(pos)) || line.charAt(pos) == '-'))
+					pos++;
+				n = Node.createLiteral(lex, line.substring(start, pos), false);
+			} else if (line.startsWith("^^", pos)) {
+				pos += 2;
+				if (pos == line.length() || line.charAt(pos) != '<')
+					throw new ParseException("Invalid datatype in line: " + line);
+				n = Node.createLiteral(lex, null, typeMapper.getSafeTypeByName(parseURI()));
+			} else
+				n = Node.createLiteral(lex);
+		} else
+			throw new ParseException("Unexpected character '" + c + "' at position " + pos + " in line: " + line);
+		
+		skipWhitespace();
+		return n;
+	}
+	
+	private String parseURI() throws ParseException {
+		int end = line.indexOf('>', pos + 1);
+		if (end < 0)
+			throw new ParseException("Unterminated URI in line: " + line);
+		String uri = unescape(pos + 1, end);
+		pos = end + 1;
+		return uri;
+	}
+	
+	private String parseString() throws ParseException {
+		int start = pos + 1;
+		int i = start;
+		while (i < line.length() && line.charAt(i) != '"')
+			i += (line.charAt(i) == '\\') ? 2 : 1;
+		if (i >= line.length())
+			throw new ParseException("Unterminated literal in line: " + line);
+		pos = i + 1;
+		return unescape(start, i);
+	}
+	
+	/** resolves the escape sequences of line[start; end) */
+	private String unescape(int start, int end) throws ParseException {
+		int i = line.indexOf('\\', start);
+		if (i < 0 || i >= end)
+			return line.substring(start, end);
+		
+		StringBuilder b = new StringBuilder(end - start);
+		b.append(line, start, i);
+		while (i < end) {
+			char c = line.charAt(i++);
+			if (c != '\\') {
+				b.append(c);
+				continue;
+			}
+			if (i == end)
+				throw new ParseException("Invalid escape sequence in line: " + line);
+			c = line.charAt(i++);
+			switch (c) {
+				case 't': b.append('\t'); break;
+				case 'b': b.append('\b'); break;
+				case 'n': b.append('\n'); break;
+				case 'r': b.append('\r'); break;
+				case 'f': b.append('\f'); break;
+				case '"': b.append('"'); break;
+				case '\'': b.append('\''); break;
+				case '\\': b.append('\\'); break;
+				case 'u':
+				case 'U':
+					int len = (c == 'u') ? 4 : 8;
+					if (i + len > end)
+						throw new ParseException("Invalid escape sequence in line: " + line);
+					try {
+						int cp = Integer.parseInt(line.substring(i, i + len), 16);
+						b.appendCodePoint(cp);
+					} catch (IllegalArgumentException e) {
+						throw new ParseException("Invalid escape sequence in line: " + line, e);
+					}
+					i += len;
+					break;
+				default:
+					throw new ParseException("Invalid escape sequence in line: " + line);
+			}
+		}
+		return b.toString();
+	}
+	
+	private void skipWhitespace() {
+		while (pos < line.length() && Character.isWhitespace(line.charAt(pos)))
+			pos++;
+	}
+
+}
@@ -0,0 +1,265 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.generator;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import at.jku.rdfstats.GeneratorException;
+import at.jku.rdfstats.ParseException;
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.hist.builder.HistogramBuilderException;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+ * Reads a local N-Triples or N-Quads file with several threads. The file is split into byte ranges at line
+ * boundaries, each worker thread parses ranges into its own {@link HistogramBuilderSink}, and the sinks are merged
+ * when all ranges are done. The sinks share the set of subjects, hence each subject is counted once no matter how
+ * many ranges it occurs in.
+ * 
+ * There are more ranges than threads, a worker takes the next unprocessed range whenever it has finished one, so
+ * that slow ranges don't leave the other threads idle. Invalid lines are logged and skipped.
+ * 
+ * @author dorgon
+ *
+ */
+public class ParallelDocumentReader {
+	private static final Log log = LogFactory.getLog(ParallelDocumentReader.class);
+	
+	/** default minimum size of a range in bytes */
+	public static final long DEFAULT_MIN_RANGE_SIZE = 16 * 1024 * 1024;
+	
+	/** number of ranges per worker thread */
+	public static final int RANGES_PER_THREAD = 4;
+	
+	/** size of the read buffer of each worker */
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	private final RDFStatsConfiguration config;
+	private final File file;
+	private final int threads;
+	private final long minRangeSize;
+	
+	/** number of invalid lines skipped */
+	private final AtomicLong skipped = new AtomicLong();
+	
+	/**
+	 * @param config the number of threads is taken from {@link RDFStatsConfiguration#getGeneratorThreads()}
+	 * @param file
+	 */
+	public ParallelDocumentReader(RDFStatsConfiguration config, File file) {
+		this(config, file, config.getGeneratorThreads(), DEFAULT_MIN_RANGE_SIZE);
+	}
+	
+	/**
+	 * @param config
+	 * @param file
+	 * @param threads number of worker threads
+	 * @param minRangeSize minimum size of a range in bytes
+	 */
+	public ParallelDocumentReader(RDFStatsConfiguration config, File file, int threads, long minRangeSize) {
+		this.config = config;
+		this.file = file;
+		this.threads = Math.max(threads, 1);
+		this.minRangeSize = Math.max(minRangeSize, 1);
+	}
+	
+	/**
+	 * @param filename
+	 * @return true if filename is an N-Triples or N-Quads file according to its extension
+	 */
+	public static boolean isLineBased(String filename) {
+		return filename.endsWith(".nt") || isNQuads(filename);
+	}
+	
+	/**
+	 * @param filename
+	 * @return true if filename is an N-Quads file according to its extension (which cannot be read by Jena)
+	 */
+	public static boolean isNQuads(String filename) {
+		return filename.endsWith(".nq");
+	}
+	
+	/**
+	 * reads the file
+	 * 
+	 * @return a sink containing the builders for the whole file
+	 * @throws GeneratorException if the file cannot be read or a worker was interrupted
+	 * @throws HistogramBuilderException if the builders cannot be created or merged
+	 */
+	public HistogramBuilderSink read() throws GeneratorException, HistogramBuilderException {
+		final long[] bounds = split(file.length());
+		final int ranges = bounds.length - 1;
+		int workers = Math.min(threads, ranges);
+		if (log.isDebugEnabled())
+			log.debug("Reading <" + file + "> in " + ranges + " ranges with " + workers + " worker threads...");
+		
+		final ConcurrentMap<Node, Boolean> subjects = new ConcurrentHashMap<Node, Boolean>();
+		final AtomicInteger next = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		List<Future<HistogramBuilderSink>> results = new ArrayList<Future<HistogramBuilderSink>>(workers);
+		
+		try {
+			for (int i = 0; i < workers; i++) {
+				results.add(pool.submit(new Callable<HistogramBuilderSink>() {
+					public HistogramBuilderSink call() throws Exception {
+						HistogramBuilderSink sink = new HistogramBuilderSink(config, subjects);
+						NTriplesLineParser parser = new NTriplesLineParser();
+						int r;
+						while ((r = next.getAndIncrement()) < ranges) {
+							if (Thread.currentThread().isInterrupted())
+								throw new InterruptedException();
+							readRange(sink, parser, bounds[r], bounds[r + 1]);
+						}
+						return sink;
+					}
+				}));
+			}
+			
+			HistogramBuilderSink sink = null;
+			for (Future<HistogramBuilderSink> f : results) {
+				try {
+					if (sink == null)
+						sink = f.get();
+					else
+						sink.merge(f.get());
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof HistogramBuilderException)
+						throw (HistogramBuilderException) e.getCause();
+					throw new GeneratorException("Failed to read RDF document <" + file + ">.", e.getCause());
+				}
+			}
+			
+			if (skipped.get() > 0)
+				log.warn(skipped.get() + " invalid lines of <" + file + "> skipped.");
+			return sink;
+		} catch (InterruptedException e) {
+			throw new GeneratorException("Interrupted while reading RDF document <" + file + ">.", e);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+	
+	/**
+	 * @param length file length
+	 * @return range bounds, range r is [bounds[r]; bounds[r+1])
+	 */
+	private long[] split(long length) {
+		long ranges = Math.min((long) threads * RANGES_PER_THREAD, (length + minRangeSize - 1) / minRangeSize);
+		ranges = Math.max(ranges, 1);
+		long[] bounds = new long[(int) ranges + 1];
+		for (int r = 0; r <= ranges; r++)
+			bounds[r] = length * r / ranges;
+		return bounds;
+	}
+	
+	/**
+	 * Parses all lines starting within [start; end) into the sink. A line starting before start belongs to the
+	 * previous range, a line starting before end but ending after it belongs to this range.
+	 */
+	private void readRange(HistogramBuilderSink sink, NTriplesLineParser parser, long start, long end) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			LineReader reader = new LineReader(in, Math.max(start - 1, 0));
+			if (start > 0) // skip the rest of the line containing start - 1, nothing is skipped if start begins a line
+				reader.readLine();
+			
+			while (reader.offset < end) {
+				long lineStart = reader.offset;
+				String line = reader.readLine();
+				if (line == null)
+					break;
+				try {
+					Triple t = parser.parse(line);
+					if (t != null)
+						sink.performAdd(t);
+				} catch (ParseException e) {
+					skipped.incrementAndGet();
+					log.warn("Skipping invalid line at byte offset " + lineStart + " of <" + file + ">: " + e.getMessage());
+				}
+			}
+		} finally {
+			in.close();
+		}
+	}
+	
+	/** reads UTF-8 lines and keeps track of the byte offset */
+	private static class LineReader {
+		final FileInputStream in;
+		final byte[] buffer = new byte[BUFFER_SIZE];
+		int pos = 0, limit = 0;
+		byte[] line = new byte[256];
+		
+		/** offset of the next byte to read */
+		long offset;
+		
+		LineReader(FileInputStream in, long offset) throws IOException {
+			this.in = in;
+			this.offset = offset;
+			in.getChannel().position(offset);
+		}
+		
+		/** @return the next line without line terminator, null at the end of the file */
+		String readLine() throws IOException {
+			int len = 0;
+			boolean eof = true;
+			while (true) {
+				if (pos == limit) {
+					limit = in.read(buffer);
+					pos = 0;
+					if (limit <= 0) {
+						limit = 0;
+						break;
+					}
+				}
+				eof = false;
+				byte b = buffer[pos++];
+				offset++;
+				if (b == '\n')
+					break;
+				if (len == line.length) {
+					byte[] grown = new byte[2 * len];
+					System.arraycopy(line, 0, grown, 0, len);
+					line = grown;
+				}
+				line[len++] = b;
+			}
+			if (eof)
+				return null;
+			if (len > 0 && line[len - 1] == '\r')
+				len--;
+			return new String(line, 0, len, "UTF-8");
+		}
+	}
+
+}
@@ -0,0 +1,299 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.generator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.query.QuerySolution;
+import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.rdf.model.Literal;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+
+/**
+ * Iterates over the solutions of a SELECT query, which is issued in pages if paging is enabled. Endpoints truncate
+ * large results or time out, so that histograms would be incomplete otherwise.
+ * 
+ * Pages are fetched by ORDER BY ... LIMIT ... OFFSET ..., or by keyset pagination if a key variable is given: the
+ * query is ordered by the string value of the key and each page continues after the last key seen, which avoids
+ * expensive large offsets. Keys must be unique per solution and bound to URIs or literals. If the first keyset query
+ * fails, the endpoint is assumed not to support it and OFFSET is used from then on.
+ * 
+ * Pages are fetched until an empty one is returned, hence results truncated by the endpoint are continued with the
+ * next page. The page size is adapted to the response latency: it is doubled after fast full pages and halved after
+ * slow or failed pages (which are retried). The page size and keyset support are shared by all pagers of a generator
+ * via {@link Paging}.
+ * 
+ * @author dorgon
+ *
+ */
+class QueryPager {
+	private static final Log log = LogFactory.getLog(QueryPager.class);
+
+	/** failed pages are retried with smaller size at most this often */
+	static final int MAX_RETRIES = 3;
+	
+	private final RDFStatsGeneratorBase generator;
+	private final Paging paging;
+	private final String select;
+	private final String where;
+	private final String orderBy;
+	private final String key;
+	
+	/** true if keyset pagination is used, false for LIMIT/OFFSET */
+	private boolean keyset;
+	
+	/** solutions of the current page */
+	private Iterator<QuerySolution> page;
+	
+	/** solutions fetched so far */
+	private long offset = 0;
+	
+	/** string value of the key of the last solution */
+	private String lastKey = null;
+	
+	private boolean finished = false;
+	
+	/** pages fetched so far */
+	private int pages = 0;
+	
+	/** only used if paging is disabled */
+	private QueryExecution qe;
+	private ResultSet unpaged;
+	
+	/**
+	 * @param generator used for executing the queries
+	 * @param paging paging settings of the generator, if null the query is issued at once
+	 * @param select the SELECT clause, e.g. "SELECT DISTINCT ?s"
+	 * @param where the group graph pattern of the WHERE clause without braces
+	 * @param orderBy variables ordered by for stable pages with LIMIT/OFFSET, e.g. "?s ?o", all projected variables if
+	 * the solutions may contain duplicates
+	 * @param key name of the key variable for keyset pagination, or null
+	 */
+	QueryPager(RDFStatsGeneratorBase generator, Paging paging, String select, String where, String orderBy, String key) {
+		this.generator = generator;
+		this.paging = paging;
+		this.select = select;
+		this.where = where;
+		this.orderBy = orderBy;
+		this.key = key;
+		this.keyset = (key != null && paging != null && paging.keysetSupported());
+	}
+	
+	public boolean hasNext() {
+		if (paging == null) {
+			if (unpaged == null) {
+				qe = generator.getQueryExecution(QueryFactory.create(select + " WHERE { " + where + " }" + ((orderBy != null) ? " ORDER BY " + orderBy : "")));
+				unpaged = qe.execSelect();
+			}
+			return unpaged.hasNext();
+		}
+		
+		while (!finished && (page == null || !page.hasNext()))
+			fetchPage();
+		return !finished;
+	}
+	
+	public QuerySolution nextSolution() {
+		if (paging == null)
+			return unpaged.nextSolution();
+		
+		if (!hasNext())
+			throw new IllegalStateException("No more solutions.");
+		QuerySolution s = page.next();
+		if (keyset)
+			lastKey = keyValue(s.get(key));
+		return s;
+	}
+	
+	public void close() {
+		if (qe != null)
+			qe.close();
+		page = null;
+		finished = true;
+	}
+	
+	/** @return number of pages fetched so far */
+	public int getPages() {
+		return pages;
+	}
+	
+	/**
+	 * fetches the next page, retries with smaller pages on failures
+	 */
+	private void fetchPage() {
+		int failures = 0;
+		while (true) {
+			int size = paging.getPageSize();
+			String qry = keyset ? keysetQuery(size) : offsetQuery(size);
+			List<QuerySolution> solutions = new ArrayList<QuerySolution>(size);
+			long start = System.currentTimeMillis();
+			QueryExecution pqe = null;
+			try {
+				pqe = generator.getQueryExecution(QueryFactory.create(qry));
+				ResultSet r = pqe.execSelect();
+				while (r.hasNext())
+					solutions.add(r.nextSolution());
+			} catch (RuntimeException e) {
+				if (keyset && pages == 0 && paging.keysetFailed()) {
+					log.warn("Keyset pagination failed, falling back to LIMIT/OFFSET: " + e.getMessage());
+					keyset = false;
+					continue;
+				}
+				if (++failures > MAX_RETRIES)
+					throw e;
+				paging.failed();
+				log.warn("Query for page " + (pages + 1) + " failed (" + e.getMessage() + "), retrying with page size " + paging.getPageSize() + "...");
+				continue;
+			} finally {
+				if (pqe != null)
+					pqe.close();
+			}
+			
+			long elapsed = System.currentTimeMillis() - start;
+			if (keyset && pages == 0)
+				paging.keysetSucceeded();
+			paging.adapt(elapsed, solutions.size() >= size);
+			pages++;
+			offset += solutions.size();
+			if (log.isDebugEnabled())
+				log.debug("Fetched page " + pages + " with " + solutions.size() + " solutions in " + elapsed + " ms.");
+			
+			if (solutions.isEmpty())
+				finished = true; // only an empty page guarantees the end, smaller pages may have been truncated
+			else
+				page = solutions.iterator();
+			return;
+		}
+	}
+	
+	private String offsetQuery(int size) {
+		return select + " WHERE { " + where + " } ORDER BY " + orderBy + " LIMIT " + size + ((offset > 0) ? " OFFSET " + offset : "");
+	}
+	
+	private String keysetQuery(int size) {
+		String after = (lastKey != null) ? " FILTER (str(?" + key + ") > \"" + escape(lastKey) + "\")" : "";
+		return select + " WHERE { " + where + after + " } ORDER BY str(?" + key + ") LIMIT " + size;
+	}
+	
+	/** @return the value compared by keyset pagination, i.e. str(n) */
+	private static String keyValue(RDFNode n) {
+		if (n == null)
+			throw new IllegalStateException("Unbound key variable, keyset pagination is not applicable.");
+		else if (n.isLiteral())
+			return ((Literal) n).getLexicalForm();
+		else if (n.isURIResource())
+			return ((Resource) n).getURI();
+		else
+			throw new IllegalStateException("Key variable bound to a blank node, keyset pagination is not applicable.");
+	}
+	
+	/** @return s escaped for a SPARQL string literal */
+	private static String escape(String s) {
+		StringBuilder sb = new StringBuilder(s.length() + 8);
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+				case '\\': sb.append("\\\\"); break;
+				case '"': sb.append("\\\""); break;
+				case '\n': sb.append("\\n"); break;
+				case '\r': sb.append("\\r"); break;
+				case '\t': sb.append("\\t"); break;
+				default: sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Page size and keyset support shared by all pagers of a generator, safe for use by multiple threads.
+	 * 
+	 * The page size starts at the configured size and stays between {@link #MIN_PAGE_SIZE} and
+	 * {@link #MAX_GROWTH} times the configured size.
+	 */
+	static class Paging {
+		/** pages taking longer are halved, pages taking less than a quarter are doubled */
+		static final long TARGET_MILLIS = 5000;
+		
+		static final int MIN_PAGE_SIZE = 100;
+		static final int MAX_GROWTH = 16;
+		
+		private final int maxPageSize;
+		private int pageSize;
+		
+		/** null until the first keyset query finished */
+		private Boolean keysetSupported = null;
+		
+		/**
+		 * @param pageSize initial page size
+		 */
+		Paging(int pageSize) {
+			this.pageSize = Math.max(pageSize, MIN_PAGE_SIZE);
+			this.maxPageSize = (int) Math.min(Integer.MAX_VALUE, (long) this.pageSize * MAX_GROWTH);
+		}
+		
+		synchronized int getPageSize() {
+			return pageSize;
+		}
+		
+		/** @return false if keyset pagination is known not to work with the endpoint */
+		synchronized boolean keysetSupported() {
+			return keysetSupported == null || keysetSupported;
+		}
+		
+		synchronized void keysetSucceeded() {
+			keysetSupported = true;
+		}
+		
+		/** @return true if keyset pagination has not worked before and is disabled now */
+		synchronized boolean keysetFailed() {
+			if (keysetSupported != null && keysetSupported)
+				return false; // worked before, hence a temporary failure
+			keysetSupported = false;
+			return true;
+		}
+		
+		/**
+		 * @param millis response time of a page
+		 * @param full true if the page had the size requested
+		 */
+		synchronized void adapt(long millis, boolean full) {
+			if (millis > TARGET_MILLIS)
+				setPageSize(pageSize / 2);
+			else if (full && millis < TARGET_MILLIS / 4)
+				setPageSize(pageSize * 2L);
+		}
+		
+		synchronized void failed() {
+			setPageSize(pageSize / 2);
+		}
+		
+		private void setPageSize(long size) {
+			int s = (int) Math.max(MIN_PAGE_SIZE, Math.min(maxPageSize, size));
+			if (s != pageSize && log.isDebugEnabled())
+				log.debug("Changed page size from " + pageSize + " to " + s + ".");
+			pageSize = s;
+		}
+	}
+	
+}
@@ -16,6 +16,7 @@
 
 package at.jku.rdfstats.generator;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -23,10 +24,18 @@ import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import at.jku.rdfstats.CharacteristicSets;
 import at.jku.rdfstats.Constants;
 import at.jku.rdfstats.GeneratorException;
 import at.jku.rdfstats.RDFStatsConfiguration;
@@ -36,22 +45,21 @@ import at.jku.rdfstats.RDFStatsModelException;
 import at.jku.rdfstats.RDFStatsModelFactory;
 import at.jku.rdfstats.RDFStatsUpdatableModel;
 import at.jku.rdfstats.RDFStatsUpdatableModelImpl;
+import at.jku.rdfstats.SubjectFilter;
 import at.jku.rdfstats.hist.Histogram;
 import at.jku.rdfstats.hist.RDF2JavaMapper;
 import at.jku.rdfstats.hist.builder.HistogramBuilder;
 import at.jku.rdfstats.hist.builder.HistogramBuilderException;
 import at.jku.rdfstats.hist.builder.HistogramBuilderFactory;
 import at.jku.rdfstats.hist.builder.HistogramCodec;
+import at.jku.rdfstats.hist.builder.HyperLogLog;
 import at.jku.rdfstats.vocabulary.Stats;
 
 import com.hp.hpl.jena.graph.Node;
 import com.hp.hpl.jena.query.Query;
 import com.hp.hpl.jena.query.QueryExecution;
-import com.hp.hpl.jena.query.QueryFactory;
 import com.hp.hpl.jena.query.QuerySolution;
-import com.hp.hpl.jena.query.ResultSet;
 import com.hp.hpl.jena.query.ResultSetFormatter;
-import com.hp.hpl.jena.query.Syntax;
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
 import com.hp.hpl.jena.rdf.model.Property;
@@ -70,6 +78,9 @@ import com.hp.hpl.jena.vocabulary.RDFS;
 public abstract class RDFStatsGeneratorBase {
 	private static final Log log = LogFactory.getLog(RDFStatsGeneratorBase.class);
 
+	/** precision of the estimators counting the distinct subjects of each property (3.2% standard error, 1 KB each) */
+	static final int DISTINCT_SUBJECTS_PRECISION = 10;
+
 	/** model for the generated statistics */
 	protected final RDFStatsUpdatableModel stats;
 	
@@ -87,6 +98,12 @@ public abstract class RDFStatsGeneratorBase {
 	
 	/** generator already used => invalid = true */
 	protected boolean invalid = false;
+	
+	/** page size and keyset support shared by all queries, null if paging is disabled */
+	private final QueryPager.Paging paging;
+	
+	/** checkpoint of the completed properties, null if disabled */
+	private GeneratorCheckpoint checkpoint;
 
 //	/* processing statistics */
 //	public final int[] n_queries;
@@ -114,6 +131,7 @@ public abstract class RDFStatsGeneratorBase {
 
 		stats = RDFStatsModelFactory.createUpdatable(this.config.getStatsModel());
 		tempModel = ModelFactory.createDefaultModel();
+		paging = (this.config.getPageSize() > 0) ? new QueryPager.Paging(this.config.getPageSize()) : null;
 			
 //		n_queries = new int[4];
 //		n_results_getClasses =  new ArrayList<Integer>();
@@ -188,21 +206,17 @@ public abstract class RDFStatsGeneratorBase {
 					log.debug("Generating subject and property histograms...");
 				
 				// generate subject and property histograms over all subjects
-				boolean changed = generateSubjectHistograms();
-				if (changed || !config.quickMode())
-					generatePropertyHistograms();
-				
-				else {
-					// keep existing
-					for (String prop : stats.getPropertyHistogramProperties(dataset.getSourceUrl()))
-						for (String range : stats.getPropertyHistogramRanges(dataset.getSourceUrl(), prop))
-							stats.keepPropertyHistogram(dataset, prop, range);
-				}
+				generateHistograms();
 //			}
 			
 			// delete old (unchanged or keep-tagged) items
 			stats.removeUnchangedItems(dataset);
 			
+			if (checkpoint != null) {
+				checkpoint.close(true);
+				checkpoint = null;
+			}
+			
 			if (log.isInfoEnabled())
 				log.info("Statistics for " + dataset + " generated.");
 			
@@ -217,6 +231,8 @@ public abstract class RDFStatsGeneratorBase {
 			} catch (RDFStatsModelException e) {
 				log.error("Failed to return the exclusive lock.", e);
 			}
+			if (checkpoint != null)
+				checkpoint.close(false); // keep for resuming
 
 // fails with some model types even if supportsTransactions() returns true, necessary?
 //			if (stats.getWrappedModel().supportsTransactions())
@@ -225,6 +241,42 @@ public abstract class RDFStatsGeneratorBase {
 		}
 	}
 	
+	/**
+	 * generates the subject and property histograms for the dataset
+	 * 
+	 * The default implementation issues one query for the subjects, one for the set of properties,
+	 * one for each property, and one for the characteristic sets. If paging is configured, each query is issued
+	 * in pages (see {@link QueryPager}), and completed properties are recorded in a checkpoint file if a checkpoint
+	 * directory is configured. Subclasses may override this method
+	 * if the source can be processed more efficiently (e.g. in a single pass).
+	 * 
+	 * @throws GeneratorException
+	 * @throws HistogramBuilderException
+	 * @throws RDFStatsModelException
+	 */
+	protected void generateHistograms() throws GeneratorException, HistogramBuilderException, RDFStatsModelException {
+		boolean changed = generateSubjectHistograms();
+		if (changed || !config.quickMode()) {
+			generatePropertyHistograms();
+			generateCharacteristicSets();
+		} else
+			keepPropertyHistograms();
+	}
+	
+	/**
+	 * keep all existing property histograms, property statistics, and characteristic sets of the dataset (used in quickMode if subjects didn't change)
+	 * 
+	 * @throws RDFStatsModelException
+	 */
+	protected void keepPropertyHistograms() throws RDFStatsModelException {
+		for (String prop : stats.getPropertyHistogramProperties(dataset.getSourceUrl())) {
+			for (String range : stats.getPropertyHistogramRanges(dataset.getSourceUrl(), prop))
+				stats.keepPropertyHistogram(dataset, prop, range);
+			stats.keepPropertyStatistics(dataset, prop);
+		}
+		stats.keepCharacteristicSets(dataset);
+	}
+	
 	/**
 	 * generate histograms over subjects (one for URI subjects and one for bnodes)
 	 * returns boolean state value in order to make use of quickMode
@@ -235,11 +287,16 @@ public abstract class RDFStatsGeneratorBase {
 	 * @throws HistogramBuilderException 
 	 */
 	private boolean generateSubjectHistograms() throws GeneratorException, HistogramBuilderException, RDFStatsModelException {
-		String qry;
+		List<QueryPager> queries = new ArrayList<QueryPager>();
 		
 //		if (all) {
 			log.info("Generating subject histograms...");
-			qry = "SELECT DISTINCT ?s WHERE { ?s ?p ?o }";
+			if (paging != null) {
+				// keyset pagination for URIs, blank nodes have no comparable key
+				queries.add(new QueryPager(this, paging, "SELECT DISTINCT ?s", "?s ?p ?o FILTER (isIRI(?s))", "?s", "s"));
+				queries.add(new QueryPager(this, paging, "SELECT DISTINCT ?s", "?s ?p ?o FILTER (isBlank(?s))", "?s", null));
+			} else
+				queries.add(new QueryPager(this, null, "SELECT DISTINCT ?s", "?s ?p ?o", null, null));
 //		}
 //		else if (cl != null) {
 //			log.info("Generating subject histograms for class <" + cl + ">...");
@@ -253,26 +310,27 @@ public abstract class RDFStatsGeneratorBase {
 //					"}";
 //		}
 		
-		Query q = QueryFactory.create(qry);
 		HistogramBuilder<?> histBuilderURI = null;
 		histBuilderURI = HistogramBuilderFactory.createBuilder(RDFS.Resource.getURI(), null, config.getPrefSize(), config);
 		HistogramBuilder<?> histBuilderBNode = null;
 		histBuilderBNode = HistogramBuilderFactory.createBuilder(Stats.blankNode.getURI(), null, config.getPrefSize(), config);
+		SubjectFilterBuilder filterBuilder = (config.getSubjectFilterFalsePositiveRate() > 0) ? new SubjectFilterBuilder(config.getSubjectFilterFalsePositiveRate()) : null;
 		Node sbj = null;
 		
-		QueryExecution qe = null;
 		try {
-			qe = getQueryExecution(q);
-			ResultSet r = qe.execSelect();
-
-			while (r.hasNext()) {
-				sbj = r.nextSolution().get("s").asNode();
-				
-				// add value to histogram
-				if (sbj.isURI())
-					histBuilderURI.addNodeValue(sbj);
-				else if (sbj.isBlank())
-					histBuilderBNode.addNodeValue(sbj);
+			for (QueryPager r : queries) {
+				while (r.hasNext()) {
+					sbj = r.nextSolution().get("s").asNode();
+					
+					// add value to histogram
+					if (sbj.isURI()) {
+						histBuilderURI.addNodeValue(sbj);
+						if (filterBuilder != null)
+							filterBuilder.add(sbj);
+					}
+					else if (sbj.isBlank())
+						histBuilderBNode.addNodeValue(sbj);
+				}
 			}
 		} catch (Exception e) {
 //			if (all)
@@ -283,7 +341,8 @@ public abstract class RDFStatsGeneratorBase {
 //				log.error("Error adding subject <" + sbj + "> (untyped) to histogram builder, value skipped.", e);
 			
 		} finally {
-			if (qe != null) qe.close();
+			for (QueryPager r : queries)
+				r.close();
 		}
 		
 //		n_queries[3]++;
@@ -300,6 +359,20 @@ public abstract class RDFStatsGeneratorBase {
 //			else
 //				log.debug("Generated subject histogram for untyped subjects.");
 
+		return storeSubjectHistograms(histBuilderURI, histBuilderBNode, (filterBuilder != null) ? filterBuilder.getSubjectFilter() : null);
+	}
+	
+	/**
+	 * stores the subject histograms built by the given builders and the subject filter into the statistics model
+	 * 
+	 * @param histBuilderURI builder for URI subjects
+	 * @param histBuilderBNode builder for blank node subjects
+	 * @param filter filter over the URI subjects, null if disabled
+	 * @return true if subject histograms already existed and values changed (only checked in quickMode)
+	 * @throws HistogramBuilderException
+	 * @throws RDFStatsModelException
+	 */
+	protected boolean storeSubjectHistograms(HistogramBuilder<?> histBuilderURI, HistogramBuilder<?> histBuilderBNode, SubjectFilter filter) throws HistogramBuilderException, RDFStatsModelException {
 		Histogram<?> shURI = histBuilderURI.getHistogram();
 		Histogram<?> shBNode = histBuilderBNode.getHistogram();
 		
@@ -307,19 +380,69 @@ public abstract class RDFStatsGeneratorBase {
 		String beforeURI = stats.getSubjectHistogramEncoded(dataset.getSourceUrl(), false);
 		String encodedBNode = HistogramCodec.base64encode(shBNode);
 		String beforeBNode = stats.getSubjectHistogramEncoded(dataset.getSourceUrl(), true);
+		String encodedFilter = (filter != null) ? filter.base64encode() : null;
+		String beforeFilter = stats.getSubjectFilterEncoded(dataset.getSourceUrl());
 		
 		if (config.quickMode() && beforeURI != null && encodedURI.equals(beforeURI) &&
-	   						      beforeBNode != null && encodedBNode.equals(beforeBNode)) {
+	   						      beforeBNode != null && encodedBNode.equals(beforeBNode) &&
+	   						      (encodedFilter == null ? beforeFilter == null : encodedFilter.equals(beforeFilter))) {
 			stats.keepSubjectHistogram(dataset, false);
 			stats.keepSubjectHistogram(dataset, true);
 			return false; // no changes (check only if quickMode enabled for performance reasons)
 		} else {
 			stats.addOrUpdateSubjectHistogram(dataset, false, encodedURI);
 			stats.addOrUpdateSubjectHistogram(dataset, true, encodedBNode);
+			stats.setSubjectFilter(dataset, encodedFilter);
+			if (filter != null && log.isDebugEnabled())
+				log.debug("Generated subject filter: " + filter + ".");
 			return true; // changed
 		}
 	}
 	
+	/**
+	 * generates the characteristic sets in a single pass over the triples ordered by subject, unless disabled
+	 * by the configuration
+	 * 
+	 * @throws RDFStatsModelException
+	 */
+	private void generateCharacteristicSets() throws RDFStatsModelException {
+		if (config.getCharacteristicSetsSize() <= 0)
+			return;
+		
+		log.info("Generating characteristic sets...");
+		CharacteristicSetsBuilder builder = new CharacteristicSetsBuilder(config.getCharacteristicSetsSize(), true);
+		
+		// ordered by subject for the grouped builder, also by property for stable pages
+		QueryPager r = new QueryPager(this, paging, "SELECT ?s ?p", "?s ?p ?o", (paging != null) ? "?s ?p" : "?s", null);
+		try {
+			while (r.hasNext()) {
+				QuerySolution sol = r.nextSolution();
+				RDFNode p = sol.get("p");
+				if (p.isURIResource())
+					builder.add(sol.get("s").asNode(), ((Resource) p).getURI());
+			}
+		} catch (Exception e) {
+			log.error("Error generating characteristic sets, skipping...", e);
+			return;
+		} finally {
+			r.close();
+		}
+		
+		storeCharacteristicSets(builder.getCharacteristicSets());
+	}
+	
+	/**
+	 * stores the characteristic sets into the statistics model
+	 * 
+	 * @param sets
+	 * @throws RDFStatsModelException
+	 */
+	protected void storeCharacteristicSets(CharacteristicSets sets) throws RDFStatsModelException {
+		stats.addOrUpdateCharacteristicSets(dataset, sets.base64encode());
+		if (log.isDebugEnabled())
+			log.debug("Generated " + sets.size() + " characteristic sets, " + sets.getResidualSubjects() + " subjects in the residual.");
+	}
+	
 	/**
 	 * @throws GeneratorException
 	 */
@@ -343,18 +466,37 @@ public abstract class RDFStatsGeneratorBase {
 //				log.debug("Generating property histograms over " + properties.size() + " properties used for untyped subjects...");
 		}
 
+		// take the properties completed by an interrupted run from the checkpoint
+		List<String> pending = properties;
+		if (config.getCheckpointDirectory() != null) {
+			try {
+				checkpoint = new GeneratorCheckpoint(new File(config.getCheckpointDirectory()), sourceUrl, config);
+				pending = new ArrayList<String>();
+				for (String p : properties) {
+					GeneratedProperty completed = checkpoint.get(p);
+					if (completed == null)
+						pending.add(p);
+					else try {
+						storeGeneratedProperty(p, completed);
+					} catch (RDFStatsModelException e) {
+						logPropertyError(p, e);
+					}
+				}
+			} catch (GeneratorException e) {
+				log.error("Cannot use checkpoint, continuing without.", e);
+			}
+		}
+		
 		// process properties
-		for (String p : properties) {			
+		int threads = Math.min(config.getGeneratorThreads(), pending.size());
+		if (threads > 1)
+			generatePropertyHistogramsConcurrently(pending, threads);
+		
+		else for (String p : pending) {			
 			try {
-				generatePropertyHistograms(p);
-			} catch (HistogramBuilderException e) {
-				String part = //(cl != null) ? "class <" + cl + "> and property <" + p + "> " : 
-					"property <" + p + "> "; 
-				log.error("Couldn't generate histograms for " + part + "because of a problem with the histogram builder, skipping...", e);
+				storeCompletedProperty(p, generatePropertyHistograms(p));
 			} catch (Exception e) {
-				String part = //(cl != null) ? "class <" + cl + "> and property <" + p + "> " : 
-					"property <" + p + "> "; 
-				log.error("Couldn't generate histograms for " + part + ", skipping...", e);
+				logPropertyError(p, e);
 			}
 
 			if (Constants.WAIT_BETWEEN_QUERIES > 0)
@@ -370,6 +512,72 @@ public abstract class RDFStatsGeneratorBase {
 //				log.info(properties.size() + " properties of untyped subjects processed.");
 		}
 	}
+	
+	/**
+	 * Generates the histograms of the given properties with a pool of worker threads. Queries, building, and
+	 * encoding of the histograms are done by the workers, the statistics model is only updated by the calling
+	 * thread which holds the exclusive write lock for the dataset.
+	 * 
+	 * @param properties
+	 * @param threads number of worker threads
+	 * @throws GeneratorException if interrupted while waiting for the workers
+	 */
+	private void generatePropertyHistogramsConcurrently(List<String> properties, int threads) throws GeneratorException {
+		if (log.isDebugEnabled())
+			log.debug("Using " + threads + " worker threads for generating property histograms...");
+		
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		CompletionService<GeneratedProperty> results = new ExecutorCompletionService<GeneratedProperty>(pool);
+		Map<Future<GeneratedProperty>, String> submitted = new HashMap<Future<GeneratedProperty>, String>();
+		
+		try {
+			for (final String p : properties) {
+				Future<GeneratedProperty> f = results.submit(new Callable<GeneratedProperty>() {
+					public GeneratedProperty call() throws Exception {
+						try {
+							return generatePropertyHistograms(p);
+						} finally {
+							if (Constants.WAIT_BETWEEN_QUERIES > 0)
+								Thread.sleep(Constants.WAIT_BETWEEN_QUERIES);
+						}
+					}
+				});
+				submitted.put(f, p);
+			}
+			
+			// store results in order of completion
+			for (int i = 0; i < properties.size(); i++) {
+				Future<GeneratedProperty> f = results.take();
+				String p = submitted.get(f);
+				try {
+					storeCompletedProperty(p, f.get());
+				} catch (ExecutionException e) {
+					logPropertyError(p, e.getCause());
+				} catch (RDFStatsModelException e) {
+					logPropertyError(p, e);
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new GeneratorException("Interrupted while generating property histograms.", e);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+	
+	/**
+	 * logs a problem which occurred during generating the histograms of property p
+	 * 
+	 * @param p
+	 * @param e
+	 */
+	private void logPropertyError(String p, Throwable e) {
+		String part = //(cl != null) ? "class <" + cl + "> and property <" + p + "> " : 
+			"property <" + p + "> "; 
+		if (e instanceof HistogramBuilderException)
+			log.error("Couldn't generate histograms for " + part + "because of a problem with the histogram builder, skipping...", e);
+		else
+			log.error("Couldn't generate histograms for " + part + ", skipping...", e);
+	}
 
 //	/**
 //	 * Example:
@@ -554,16 +762,22 @@ public abstract class RDFStatsGeneratorBase {
 	 *		stats:range		<xsd:string> ] ;
 	 *	rdf:value "ENCODED HISTOGRAM h1213" .
 	 * 
+	 * Additionally, the distinct subjects of p are counted for the property statistics.
+	 * 
+	 * The histograms are only generated and encoded, the statistics model is not modified, hence this
+	 * method may be called concurrently by multiple worker threads.
+	 * 
 	 * @param p
+	 * @return the encoded histograms and the property statistics
 	 * 
 	 * @throws QueryExceptionHTTP
-	 * @throws RDFStatsModelException 
+	 * @throws HistogramBuilderException 
 	 */
-	private void generatePropertyHistograms(String p) throws QueryExceptionHTTP, HistogramBuilderException, RDFStatsModelException {
-		String qry;
+	private GeneratedProperty generatePropertyHistograms(String p) throws QueryExceptionHTTP, HistogramBuilderException {
+		QueryPager r;
 //		if (allOnly) {
 			log.info("Generating property histograms for <" + p + ">...");
-			qry = "SELECT ?val WHERE { ?s <" + p + "> ?val }";
+			r = new QueryPager(this, paging, "SELECT ?s ?val", "?s <" + p + "> ?val", (paging != null) ? "?s ?val" : null, null);
 //		}
 //		else if (cl != null) {
 //			log.info("Generating histograms for class <" + cl + "> and property <" + p + ">...");
@@ -578,14 +792,10 @@ public abstract class RDFStatsGeneratorBase {
 //		}
 		
 		Map<String, HistogramBuilder<?>> histBuilders = new HashMap<String, HistogramBuilder<?>>();
+		HyperLogLog subjects = new HyperLogLog(DISTINCT_SUBJECTS_PRECISION);
 		
-		Query q = QueryFactory.create(qry);
 		long records = 0;
-		QueryExecution qe = null;
 		try {
-			qe = getQueryExecution(q);
-			ResultSet r = qe.execSelect();
-	
 			QuerySolution s = null;
 			Node val = null;
 			String type = null;
@@ -598,6 +808,7 @@ public abstract class RDFStatsGeneratorBase {
 					s = r.nextSolution();
 					val = s.get("val").asNode();
 					records++;
+					subjects.add(nodeKey(s.get("s").asNode()));
 					type = RDF2JavaMapper.getType(val);
 					
 					// reuse or create new histogram
@@ -622,8 +833,7 @@ public abstract class RDFStatsGeneratorBase {
 				}
 			}
 		} finally {
-			if (qe != null)
-				qe.close();
+			r.close();
 		}
 //		n_queries[3]++;
 //		n_results_generateHistograms.add(new Long(records));
@@ -631,10 +841,7 @@ public abstract class RDFStatsGeneratorBase {
 //
 //		recordsTotal += records;
 				
-		for (String t : histBuilders.keySet()) {
-			String encoded = HistogramCodec.base64encode(histBuilders.get(t).getHistogram());
-			stats.addOrUpdatePropertyHistogram(dataset, p, t, encoded);
-		}
+		GeneratedProperty generated = generate(histBuilders, subjects.estimate());
 		
 		int n = histBuilders.size();
 		if (log.isDebugEnabled())
@@ -648,6 +855,7 @@ public abstract class RDFStatsGeneratorBase {
 //			else
 //				log.debug("Generated " + n + " histogram" + ((n != 1) ? "s" : "") + " for different ranges of untyped subjects and property <" + p + ">. " + records + " property values have been analyzed.");
 		histBuilders.clear();
+		return generated;
 	}
 
 //	/**
@@ -692,6 +900,94 @@ public abstract class RDFStatsGeneratorBase {
 //		return classes;
 //	}
 
+	/**
+	 * stores the histograms built for the different ranges of property p and the property statistics into the statistics model
+	 * 
+	 * @param p property URI
+	 * @param histBuilders map of range URI => histogram builder
+	 * @param distinctSubjects number of distinct subjects having property p
+	 * @throws HistogramBuilderException
+	 * @throws RDFStatsModelException
+	 */
+	protected void storePropertyHistograms(String p, Map<String, HistogramBuilder<?>> histBuilders, long distinctSubjects) throws HistogramBuilderException, RDFStatsModelException {
+		storeGeneratedProperty(p, generate(histBuilders, distinctSubjects));
+	}
+	
+	/**
+	 * records property p in the checkpoint, if enabled, and stores it into the statistics model
+	 * 
+	 * @param p property URI
+	 * @param generated
+	 * @throws RDFStatsModelException
+	 */
+	private void storeCompletedProperty(String p, GeneratedProperty generated) throws RDFStatsModelException {
+		if (checkpoint != null)
+			checkpoint.add(p, generated);
+		storeGeneratedProperty(p, generated);
+	}
+	
+	/**
+	 * stores already encoded histograms and the property statistics of property p into the statistics model
+	 * 
+	 * @param p property URI
+	 * @param generated
+	 * @throws RDFStatsModelException
+	 */
+	private void storeGeneratedProperty(String p, GeneratedProperty generated) throws RDFStatsModelException {
+		for (String t : generated.histograms.keySet())
+			stats.addOrUpdatePropertyHistogram(dataset, p, t, generated.histograms.get(t));
+		stats.addOrUpdatePropertyStatistics(dataset, p, generated.distinctSubjects, generated.distinctObjects);
+	}
+	
+	/**
+	 * builds and encodes the histograms of the given builders, the distinct objects are summed up over the histograms of all ranges
+	 * 
+	 * @param histBuilders map of range URI => histogram builder
+	 * @param distinctSubjects
+	 * @return the encoded histograms and the property statistics
+	 * @throws HistogramBuilderException
+	 */
+	protected static GeneratedProperty generate(Map<String, HistogramBuilder<?>> histBuilders, long distinctSubjects) throws HistogramBuilderException {
+		Map<String, String> encoded = new HashMap<String, String>();
+		long distinctObjects = 0;
+		for (String t : histBuilders.keySet()) {
+			Histogram<?> h = histBuilders.get(t).getHistogram();
+			encoded.put(t, HistogramCodec.base64encode(h));
+			distinctObjects += h.getDistinctValues();
+		}
+		return new GeneratedProperty(encoded, toInt(distinctSubjects), toInt(distinctObjects));
+	}
+	
+	/**
+	 * @param n
+	 * @return n, at most Integer.MAX_VALUE
+	 */
+	private static int toInt(long n) {
+		return (int) Math.min(Integer.MAX_VALUE, n);
+	}
+	
+	/**
+	 * @param n a subject node
+	 * @return a string identifying n, used for counting distinct subjects
+	 */
+	static String nodeKey(Node n) {
+		return n.isURI() ? n.getURI() : "_:" + n.getBlankNodeLabel();
+	}
+	
+	/** encoded histograms and property statistics of a single property */
+	protected static class GeneratedProperty {
+		/** range URI => encoded histogram */
+		final Map<String, String> histograms;
+		final int distinctSubjects;
+		final int distinctObjects;
+		
+		GeneratedProperty(Map<String, String> histograms, int distinctSubjects, int distinctObjects) {
+			this.histograms = histograms;
+			this.distinctSubjects = distinctSubjects;
+			this.distinctObjects = distinctObjects;
+		}
+	}
+
 	/**
 	 * Fetches the distinct set of properties
 	 * 
@@ -699,11 +995,12 @@ public abstract class RDFStatsGeneratorBase {
 	 * @throws QueryExceptionHTTP
 	 */
 	private List<String> getProperties() throws QueryExceptionHTTP {
-		String pQry;
+		String pSelect, pWhere;
 //		if (allOnly) {
 			if (log.isInfoEnabled())
 				log.info("Fetching distinct set of properties...");
-			pQry = "SELECT DISTINCT ?prop WHERE { [] ?prop ?o }";
+			pSelect = "SELECT DISTINCT ?prop";
+			pWhere = "[] ?prop ?o";
 //		} else if (cl != null) {
 //			if (log.isInfoEnabled())
 //				log.info("Fetching distinct set of properties used with class <" + cl + ">...");
@@ -716,12 +1013,8 @@ public abstract class RDFStatsGeneratorBase {
 
 		List<String> properties = new ArrayList<String>();
 		
-		Query cq = QueryFactory.create(pQry, Syntax.syntaxARQ);
-		QueryExecution qe = null;
+		QueryPager r = new QueryPager(this, paging, pSelect, pWhere, "?prop", "prop");
 		try {
-			qe = getQueryExecution(cq);
-
-			ResultSet r = qe.execSelect();
 			QuerySolution s;
 			Resource re;
 			
@@ -735,8 +1028,7 @@ public abstract class RDFStatsGeneratorBase {
 				else log.error("Invalid property '" + s.get("prop") + "' ingnored (should be an URI resource).");
 			}
 		} finally {
-			if (qe != null)
-				qe.close();
+			r.close();
 		}
 		
 
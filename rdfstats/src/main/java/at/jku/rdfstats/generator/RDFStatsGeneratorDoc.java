@@ -15,25 +15,36 @@
  */
 package at.jku.rdfstats.generator;
 
+import java.io.File;
 import java.util.Calendar;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import at.jku.rdfstats.CharacteristicSets;
 import at.jku.rdfstats.GeneratorException;
 import at.jku.rdfstats.RDFStatsConfiguration;
 import at.jku.rdfstats.RDFStatsDataset;
 import at.jku.rdfstats.RDFStatsModelException;
+import at.jku.rdfstats.hist.builder.HistogramBuilderException;
 import at.jku.rdfstats.vocabulary.Stats;
 
 import com.hp.hpl.jena.query.Query;
 import com.hp.hpl.jena.query.QueryExecution;
 import com.hp.hpl.jena.query.QueryExecutionFactory;
 import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.shared.JenaException;
 import com.hp.hpl.jena.util.FileManager;
 import com.hp.hpl.jena.util.FileUtils;
 
 /**
+ * Generates statistics for an RDF document. The document is parsed only once and all triples
+ * are passed directly to the histogram builders (see {@link HistogramBuilderSink}).
+ * 
+ * Local N-Triples and N-Quads files are split into ranges and read with several threads
+ * (see {@link ParallelDocumentReader}) if more than one generator thread is configured.
+ * N-Quads files are always read this way, because there is no Jena reader for them.
+ * 
  * @author dorgon
  *
  */
@@ -73,6 +84,51 @@ public class RDFStatsGeneratorDoc extends RDFStatsGeneratorBase {
 		}
 	}
 	
+	/**
+	 * generates all histograms in a single pass over the document
+	 */
+	@Override
+	protected void generateHistograms() throws GeneratorException, HistogramBuilderException, RDFStatsModelException {
+		if (log.isInfoEnabled())
+			log.info("Reading <" + sourceUrl + "> and generating subject and property histograms in a single pass...");
+		
+		HistogramBuilderSink sink;
+		String filename = FileUtils.toFilename(sourceUrl);
+		if (filename != null && ParallelDocumentReader.isLineBased(filename) &&
+				(config.getGeneratorThreads() > 1 || ParallelDocumentReader.isNQuads(filename))) {
+			sink = new ParallelDocumentReader(config, new File(filename)).read();
+		} else {
+			sink = new HistogramBuilderSink(config);
+			try {
+				FileManager.get().readModel(sink.getModel(), sourceUrl);
+			} catch (JenaException e) {
+				throw new GeneratorException("Failed to read RDF document <" + sourceUrl + ">.", e);
+			}
+		}
+		
+		if (log.isDebugEnabled())
+			log.debug(sink.getTriplesProcessed() + " triples processed, " + sink.getProperties().size() + " distinct properties found.");
+		
+		boolean changed = storeSubjectHistograms(sink.getSubjectBuilder(false), sink.getSubjectBuilder(true), sink.getSubjectFilter());
+		if (changed || !config.quickMode()) {
+			for (String p : sink.getProperties()) {
+				try {
+					storePropertyHistograms(p, sink.getPropertyBuilders(p), sink.getDistinctSubjects(p));
+				} catch (HistogramBuilderException e) {
+					log.error("Couldn't generate histograms for property <" + p + "> because of a problem with the histogram builder, skipping...", e);
+				}
+			}
+			
+			if (log.isInfoEnabled())
+				log.info(sink.getProperties().size() + " properties processed.");
+			
+			CharacteristicSets sets = sink.getCharacteristicSets();
+			if (sets != null)
+				storeCharacteristicSets(sets);
+		} else
+			keepPropertyHistograms();
+	}
+	
 	@Override
 	public QueryExecution getQueryExecution(Query q) {
 		Model data = FileManager.get().loadModel(sourceUrl);
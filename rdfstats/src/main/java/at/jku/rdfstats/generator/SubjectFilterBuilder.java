@@ -0,0 +1,101 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.generator;
+
+import java.util.Arrays;
+
+import at.jku.rdfstats.SubjectFilter;
+
+import com.hp.hpl.jena.graph.Node;
+
+/**
+ * Builds the {@link SubjectFilter} of a dataset from its URI subjects, other nodes are ignored. Subjects may be added
+ * repeatedly, e.g. once per triple.
+ * 
+ * The number of distinct subjects has to be known for sizing the filter, hence the 64 bit hashes of all subjects are
+ * kept (8 bytes per subject) until {@link #getSubjectFilter()} is called.
+ * 
+ * @author dorgon
+ *
+ */
+public class SubjectFilterBuilder {
+
+	/** targeted false positive rate */
+	private final double falsePositiveRate;
+	
+	/** hashes of the subjects added so far, may contain duplicates */
+	private long[] hashes = new long[1024];
+	private int size = 0;
+	
+	/** last subject added, skips consecutive duplicates */
+	private Node last;
+	
+	/**
+	 * @param falsePositiveRate targeted false positive rate of the filter, 0 &lt; rate &lt; 1
+	 */
+	public SubjectFilterBuilder(double falsePositiveRate) {
+		this.falsePositiveRate = falsePositiveRate;
+	}
+	
+	/**
+	 * @param s a subject
+	 */
+	public void add(Node s) {
+		if (!s.isURI() || s.equals(last))
+			return;
+		last = s;
+		if (size == hashes.length) {
+			long[] grown = new long[hashes.length * 2];
+			System.arraycopy(hashes, 0, grown, 0, size);
+			hashes = grown;
+		}
+		hashes[size++] = SubjectFilter.hash(s.getURI());
+	}
+	
+	/**
+	 * Adds the subjects of another builder, e.g. one fed by a different thread with another part of the same dataset.
+	 * The other builder must not be used afterwards.
+	 * 
+	 * @param other
+	 */
+	public void merge(SubjectFilterBuilder other) {
+		if (size + other.size > hashes.length) {
+			long[] grown = new long[Math.max(hashes.length * 2, size + other.size)];
+			System.arraycopy(hashes, 0, grown, 0, size);
+			hashes = grown;
+		}
+		System.arraycopy(other.hashes, 0, hashes, size, other.size);
+		size += other.size;
+		other.hashes = null;
+	}
+	
+	/**
+	 * @return the filter for the distinct subjects added so far, the builder must not be used afterwards
+	 */
+	public SubjectFilter getSubjectFilter() {
+		// remove duplicates
+		Arrays.sort(hashes, 0, size);
+		int distinct = 0;
+		for (int i = 0; i < size; i++)
+			if (distinct == 0 || hashes[i] != hashes[distinct - 1])
+				hashes[distinct++] = hashes[i];
+		
+		SubjectFilter filter = new SubjectFilter(hashes, distinct, falsePositiveRate);
+		hashes = null;
+		return filter;
+	}
+
+}
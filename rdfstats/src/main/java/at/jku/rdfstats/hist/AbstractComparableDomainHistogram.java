@@ -29,12 +29,19 @@ public abstract class AbstractComparableDomainHistogram<NATIVE extends Comparabl
 	/** maximum value (may be unused by some histogram implementations) */
 	protected final NATIVE max;
 
+	/** cumulative[i] = sum of the bins 0..i-1, precomputed for constant time cumulative quantities */
+	protected final int[] cumulative;
+
 	/** constructor with min, max */
 	public AbstractComparableDomainHistogram(String typeUri, int[] bins, int distinctValues, NATIVE min, NATIVE max, Class<? extends HistogramBuilder<?>> builderClass) {
 		super(typeUri, bins, distinctValues, builderClass);
 		
 		this.min = min;
 		this.max = max;
+		
+		cumulative = new int[bins.length + 1];
+		for (int i = 0; i < bins.length; i++)
+			cumulative[i+1] = cumulative[i] + bins[i];
 	}
 
 	/* (non-Javadoc)
@@ -55,10 +62,34 @@ public abstract class AbstractComparableDomainHistogram<NATIVE extends Comparabl
 	 * @see at.jku.rdfstats.hist.Histogram#getCumulativeFrequency(int)
 	 */
 	public final int getCumulativeBinQuantity(int idx) {
-		int cf = 0;
-		for (int i = 0; i < bins.length && i <= idx; i++)
-			cf += bins[i];
-		return cf;
+		if (idx < 0)
+			return 0;
+		else if (idx >= bins.length)
+			return totalValues;
+		else
+			return cumulative[idx+1];
+	}
+	
+	/**
+	 * estimates the cumulative quantity up to a position inside bin idx by linear interpolation,
+	 * assuming the values of the bin are distributed uniformly
+	 * 
+	 * @param idx bin index
+	 * @param offset position inside the bin relative to the bin width, clamped to [0; 1]
+	 * @return the quantity of all bins before idx plus the interpolated part of bin idx, at least 1 for a non-empty bin
+	 */
+	protected final int getInterpolatedQuantity(int idx, double offset) {
+		int total = cumulative[idx];
+		int l = bins[idx];
+		if (l == 0)
+			return total;
+		
+		if (offset < 0)
+			offset = 0;
+		else if (offset > 1)
+			offset = 1;
+		int add = (int) (l * offset); // relative amount of bin size
+		return total + ((add == 0) ? 1 : add); // at least add 1, because l > 0
 	}
 	
 	/* (non-Javadoc)
@@ -0,0 +1,225 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.jku.rdfstats.hist;
+
+import at.jku.rdfstats.hist.builder.HistogramBuilder;
+
+/**
+ * @author dorgon
+ *
+ * Equi-depth (equi-height) histogram: in contrast to the equi-width histograms, bins have explicit
+ * boundaries chosen such that each bin holds about the same number of values. A distinct value never
+ * spans two bins, hence frequent values end up in a bin of their own and skewed distributions are
+ * still represented accurately.
+ *
+ * Values are handled as order-preserving long keys, bin idx covers the keys (upperKeys[idx-1]; upperKeys[idx]],
+ * the first bin covers [minKey; upperKeys[0]].
+ */
+public abstract class AbstractEquiDepthHistogram<NATIVE extends Comparable<NATIVE>> extends AbstractComparableDomainHistogram<NATIVE> {
+
+	/** key of the minimum value */
+	protected final long minKey;
+
+	/** inclusive upper bound key of each bin, the last one is the key of the maximum value */
+	protected final long[] upperKeys;
+
+	/** number of distinct values of each bin */
+	protected final int[] binDistinctValues;
+
+	/** constructor
+	 *
+	 * @param typeUri
+	 * @param bins
+	 * @param binDistinctValues
+	 * @param minKey
+	 * @param upperKeys
+	 * @param distinctValues
+	 * @param min
+	 * @param max
+	 * @param builderClass
+	 */
+	public AbstractEquiDepthHistogram(String typeUri, int[] bins, int[] binDistinctValues, long minKey, long[] upperKeys, int distinctValues, NATIVE min, NATIVE max, Class<? extends HistogramBuilder<?>> builderClass) {
+		super(typeUri, bins, distinctValues, min, max, builderClass);
+
+		this.minKey = minKey;
+		this.upperKeys = upperKeys;
+		this.binDistinctValues = binDistinctValues;
+	}
+
+	/**
+	 * @param val
+	 * @return order-preserving long key of val
+	 */
+	protected abstract long getKey(NATIVE val);
+
+	/**
+	 * @param key
+	 * @return the native value of key
+	 */
+	protected abstract NATIVE getValue(long key);
+
+	/**
+	 * @param key
+	 * @return position of key on a linear scale, used for interpolation within a bin
+	 */
+	protected abstract double getPosition(long key);
+
+	/** creates a histogram of the same class and data type with other bin boundaries,
+	 * used by {@link HistogramMerger} to merge histograms
+	 * 
+	 * @param bins bin data
+	 * @param binDistinctValues number of distinct values of each bin
+	 * @param minKey key of the minimum value
+	 * @param upperKeys inclusive upper bound key of each bin
+	 * @param distinctValues total number of distinct values
+	 * @return the new histogram
+	 */
+	protected abstract AbstractEquiDepthHistogram<NATIVE> withBins(int[] bins, int[] binDistinctValues, long minKey, long[] upperKeys, int distinctValues);
+
+	/**
+	 * @return key of the minimum value
+	 */
+	public long getMinKey() {
+		return minKey;
+	}
+
+	/**
+	 * @return inclusive upper bound keys of all bins
+	 */
+	public long[] getUpperKeys() {
+		return upperKeys;
+	}
+
+	/**
+	 * @param idx bin index
+	 * @return inclusive upper bound of the bin with index idx
+	 */
+	public NATIVE getBinUpperBound(int idx) {
+		return getValue(upperKeys[idx]);
+	}
+
+	/**
+	 * @return number of distinct values of all bins
+	 */
+	public int[] getBinDistinctData() {
+		return binDistinctValues;
+	}
+
+	/**
+	 * @param idx bin index
+	 * @return number of distinct values in the bin with index idx
+	 */
+	public int getBinDistinctValues(int idx) {
+		return binDistinctValues[idx];
+	}
+
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.Histogram#getBinIndex(java.lang.Object)
+	 */
+	public int getBinIndex(NATIVE val) {
+		return getBinIndexForKey(getKey(val));
+	}
+
+	/** binary search for the first bin whose upper bound is >= key
+	 *
+	 * @param key
+	 * @return bin index or -1 if key is outside of the histogram data range
+	 */
+	protected int getBinIndexForKey(long key) {
+		if (key < minKey || key > upperKeys[upperKeys.length-1])
+			return -1;
+
+		int lo = 0;
+		int hi = upperKeys.length-1;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (upperKeys[mid] < key)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.Histogram#getEstimatedQuantity(java.lang.Object)
+	 */
+	public int getEstimatedQuantity(NATIVE val) {
+		int idx = getBinIndex(val);
+		if (idx >= 0) {
+			int l = getBinQuantity(idx);
+			if (l <= 1 || binDistinctValues[idx] <= 1)
+				return l;
+			else
+				return (int) Math.ceil(l / (double) binDistinctValues[idx]); // values of a bin are assumed to be uniformly distributed
+		} else
+			return 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.Histogram#getEstimatedQuantityRelative(java.lang.Object)
+	 */
+	public float getEstimatedQuantityRelative(NATIVE val) {
+		return getEstimatedQuantity(val) / (float) totalValues;
+	}
+
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.ComparableDomainHistogram#getCumulativeQuantity(java.lang.Comparable)
+	 */
+	public int getCumulativeQuantity(NATIVE val) {
+		long key = getKey(val);
+		if (key >= upperKeys[upperKeys.length-1])
+			return totalValues;
+		else if (key < minKey)
+			return 0;
+
+		int idx = getBinIndexForKey(key);
+		int total = (idx > 0) ? getCumulativeBinQuantity(idx-1) : 0;
+
+		// finally add estimated quantity for bin # idx
+		int l = getBinQuantity(idx);
+		if (l > 0) {
+			if (key == upperKeys[idx])
+				return total + l;
+
+			double lower = getPosition((idx > 0) ? upperKeys[idx-1] : minKey);
+			double upper = getPosition(upperKeys[idx]);
+			int add = (int) (l * (getPosition(key) - lower) / (upper - lower)); // relative amount of bin range
+			if (add == 0) // at least add 1, because l > 0
+				return ++total;
+			else
+				return total + add;
+		} else
+			return total;
+	}
+
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.ComparableDomainHistogram#getCumulativeQuantityRelative(java.lang.Comparable)
+	 */
+	public float getCumulativeQuantityRelative(NATIVE val) {
+		return getCumulativeQuantity(val) / (float) totalValues;
+	}
+
+	@Override
+	protected String dataToString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<bins.length; i++)
+			sb.append("\t\t").append(i).append(": ").append(bins[i]).append(" (<= ").append(getBinUpperBound(i)).append(", ").append(binDistinctValues[i]).append(" distinct)\n");
+		return sb.toString();
+	}
+
+}
@@ -121,6 +121,16 @@ public abstract class AbstractHistogram<NATIVE> implements Histogram<NATIVE> {
 	public Class<? extends HistogramBuilder<?>> getBuilderClass() {
 		return builderClass;
 	}
+
+	/** creates a histogram of the same class, data type, and bin boundaries (or labels) holding other bin data,
+	 * used by {@link HistogramUpdate} to maintain histograms incrementally
+	 * 
+	 * @param bins new bin data, same length as the bins of this histogram
+	 * @param binDistinctValues number of distinct values of each bin, ignored by histograms which do not store them
+	 * @param distinctValues total number of distinct values
+	 * @return the new histogram
+	 */
+	protected abstract AbstractHistogram<NATIVE> withBinData(int[] bins, int[] binDistinctValues, int distinctValues);
 	
 	/** pretty-printing histogram instances
 	 * 
@@ -65,6 +65,14 @@ public class BooleanHistogram extends AbstractHistogram<Boolean> {
 	}
 	
 	
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.AbstractHistogram#withBinData(int[], int[], int)
+	 */
+	@Override
+	protected BooleanHistogram withBinData(int[] bins, int[] binDistinctValues, int distinctValues) {
+		return new BooleanHistogram(typeUri, bins, distinctValues, builderClass);
+	}
+
 	public Boolean parseNodeValue(Node val) throws ParseException {
 		return parseNodeValueImpl(val);
 	}
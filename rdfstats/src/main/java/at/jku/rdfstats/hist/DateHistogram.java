@@ -85,35 +85,28 @@ public class DateHistogram extends AbstractComparableDomainHistogram<Date> {
 	}
 
 	public int getCumulativeQuantity(Date val) {
-		int total = 0;
 		if (val.compareTo(max) >= 0)
 			return totalValues;
 		else if (val.compareTo(min) < 0)
 			return 0;
 		
+		// quantity of the bins before valIndex plus the interpolated part of bin valIndex
 		int valIndex = getBinIndex(val);
-		int idx;
-		
-		// add bin quantities from 0 to the bin before
-		for (idx = 0; idx < valIndex; idx++)
-			total += bins[idx];
-
-		// finally add estimated quantity for bin # idx
-		int l = getBinQuantity(idx);
-		if (l > 0) {
-			int add = (int) ((float) l * ((val.getTime()-min.getTime()) % binWidth) / binWidth); // relative amount of bin size
-			if (add == 0) // at least add 1, because l > 0
-				return ++total;
-			else
-				return total + add;
-		} else
-			return total;
+		return getInterpolatedQuantity(valIndex, (val.getTime()-min.getTime()) / (double) binWidth - valIndex);
 	}
 	
 	public float getCumulativeQuantityRelative(Date val) {
 		return getCumulativeQuantity(val) / (float) totalValues;
 	}
 
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.AbstractHistogram#withBinData(int[], int[], int)
+	 */
+	@Override
+	protected DateHistogram withBinData(int[] bins, int[] binDistinctValues, int distinctValues) {
+		return new DateHistogram(typeUri, bins, distinctValues, min, max, builderClass);
+	}
+
 	public Date parseNodeValue(Node val) throws ParseException {
 		return parseNodeValueImpl(val);
 	}
@@ -97,29 +97,14 @@ public class DoubleHistogram extends AbstractComparableDomainHistogram<Double> {
 	 * @see at.jku.rdfstats.hist.ComparableDomainHistogram#getCumulativeQuantity(java.lang.Comparable, boolean)
 	 */
 	public int getCumulativeQuantity(Double val) {
-		int total = 0;
 		if (val >= max)
 			return totalValues; 
 		else if (val < min)
 			return 0;
 		
+		// quantity of the bins before valIndex plus the interpolated part of bin valIndex
 		int valIndex = getBinIndex(val);
-		int idx;
-		
-		// add bin quantities from 0 to the bin before
-		for (idx = 0; idx < valIndex; idx++)
-			total += bins[idx];
-
-		// finally add estimated quantity for bin # idx
-		int l = getBinQuantity(idx);
-		if (l > 0) {
-			int add = (int) ((double) l * ((val-min) % binWidth) / binWidth); // relative amount of bin size
-			if (add == 0) // at least add 1, because l > 0
-				return ++total;
-			else
-				return total + add;
-		} else
-			return total;
+		return getInterpolatedQuantity(valIndex, (val-min) / binWidth - valIndex);
 	}
 
 	// convenience
@@ -133,6 +118,14 @@ public class DoubleHistogram extends AbstractComparableDomainHistogram<Double> {
 	public float getCumulativeQuantityRelative(float val) { return getCumulativeQuantityRelative((double) val); }
 	
 
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.AbstractHistogram#withBinData(int[], int[], int)
+	 */
+	@Override
+	protected DoubleHistogram withBinData(int[] bins, int[] binDistinctValues, int distinctValues) {
+		return new DoubleHistogram(typeUri, bins, distinctValues, min, max, builderClass);
+	}
+
 	public Double parseNodeValue(Node val) throws ParseException {
 		return parseNodeValueImpl(val);
 	}
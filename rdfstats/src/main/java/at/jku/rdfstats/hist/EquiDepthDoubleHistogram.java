@@ -0,0 +1,97 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.jku.rdfstats.hist;
+
+
+import at.jku.rdfstats.ParseException;
+import at.jku.rdfstats.hist.builder.HistogramBuilder;
+
+import com.hp.hpl.jena.graph.Node;
+
+/**
+ * @author dorgon
+ *
+ * Equi-depth variant of {@link DoubleHistogram}, see {@link AbstractEquiDepthHistogram}.
+ * Keys are order-preserving transformations of the IEEE 754 bit patterns.
+ */
+public class EquiDepthDoubleHistogram extends AbstractEquiDepthHistogram<Double> {
+
+	/** constructor
+	 * 
+	 * @param typeUri
+	 * @param bins
+	 * @param binDistinctValues
+	 * @param minKey
+	 * @param upperKeys
+	 * @param distinctValues
+	 * @param builderClass
+	 */
+	public EquiDepthDoubleHistogram(String typeUri, int[] bins, int[] binDistinctValues, long minKey, long[] upperKeys, int distinctValues, Class<? extends HistogramBuilder<?>> builderClass) {
+		super(typeUri, bins, binDistinctValues, minKey, upperKeys, distinctValues, fromKey(minKey), fromKey(upperKeys[upperKeys.length-1]), builderClass);
+	}
+
+	@Override
+	protected long getKey(Double val) {
+		return toKey(val);
+	}
+
+	@Override
+	protected Double getValue(long key) {
+		return fromKey(key);
+	}
+
+	@Override
+	protected double getPosition(long key) {
+		return fromKey(key);
+	}
+
+	/** order-preserving mapping of a double to a long key */
+	public static long toKey(double d) {
+		long bits = Double.doubleToLongBits(d);
+		return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+	}
+
+	/** inverse of {@link #toKey(double)} */
+	public static double fromKey(long key) {
+		return Double.longBitsToDouble(key ^ ((key >> 63) & Long.MAX_VALUE));
+	}
+
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.AbstractHistogram#withBinData(int[], int[], int)
+	 */
+	@Override
+	protected EquiDepthDoubleHistogram withBinData(int[] bins, int[] binDistinctValues, int distinctValues) {
+		return new EquiDepthDoubleHistogram(typeUri, bins, binDistinctValues, minKey, upperKeys, distinctValues, builderClass);
+	}
+
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.AbstractEquiDepthHistogram#withBins(int[], int[], long, long[], int)
+	 */
+	@Override
+	protected EquiDepthDoubleHistogram withBins(int[] bins, int[] binDistinctValues, long minKey, long[] upperKeys, int distinctValues) {
+		return new EquiDepthDoubleHistogram(typeUri, bins, binDistinctValues, minKey, upperKeys, distinctValues, builderClass);
+	}
+
+	public Double parseNodeValue(Node val) throws ParseException {
+		return parseNodeValueImpl(val);
+	}
+
+	public static Double parseNodeValueImpl(Node val) throws ParseException {
+		return DoubleHistogram.parseNodeValueImpl(val);
+	}
+
+}
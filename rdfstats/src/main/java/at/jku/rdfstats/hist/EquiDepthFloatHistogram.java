@@ -0,0 +1,98 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.jku.rdfstats.hist;
+
+
+import at.jku.rdfstats.ParseException;
+import at.jku.rdfstats.hist.builder.HistogramBuilder;
+
+import com.hp.hpl.jena.graph.Node;
+
+/**
+ * @author dorgon
+ *
+ * Equi-depth variant of {@link FloatHistogram}, see {@link AbstractEquiDepthHistogram}.
+ * Keys are order-preserving transformations of the IEEE 754 bit patterns.
+ */
+public class EquiDepthFloatHistogram extends AbstractEquiDepthHistogram<Float> {
+
+	/** constructor
+	 * 
+	 * @param typeUri
+	 * @param bins
+	 * @param binDistinctValues
+	 * @param minKey
+	 * @param upperKeys
+	 * @param distinctValues
+	 * @param builderClass
+	 */
+	public EquiDepthFloatHistogram(String typeUri, int[] bins, int[] binDistinctValues, long minKey, long[] upperKeys, int distinctValues, Class<? extends HistogramBuilder<?>> builderClass) {
+		super(typeUri, bins, binDistinctValues, minKey, upperKeys, distinctValues, fromKey(minKey), fromKey(upperKeys[upperKeys.length-1]), builderClass);
+	}
+
+	@Override
+	protected long getKey(Float val) {
+		return toKey(val);
+	}
+
+	@Override
+	protected Float getValue(long key) {
+		return fromKey(key);
+	}
+
+	@Override
+	protected double getPosition(long key) {
+		return fromKey(key);
+	}
+
+	/** order-preserving mapping of a float to a long key */
+	public static long toKey(float f) {
+		int bits = Float.floatToIntBits(f);
+		return bits ^ ((bits >> 31) & Integer.MAX_VALUE);
+	}
+
+	/** inverse of {@link #toKey(float)} */
+	public static float fromKey(long key) {
+		int k = (int) key;
+		return Float.intBitsToFloat(k ^ ((k >> 31) & Integer.MAX_VALUE));
+	}
+
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.AbstractHistogram#withBinData(int[], int[], int)
+	 */
+	@Override
+	protected EquiDepthFloatHistogram withBinData(int[] bins, int[] binDistinctValues, int distinctValues) {
+		return new EquiDepthFloatHistogram(typeUri, bins, binDistinctValues, minKey, upperKeys, distinctValues, builderClass);
+	}
+
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.AbstractEquiDepthHistogram#withBins(int[], int[], long, long[], int)
+	 */
+	@Override
+	protected EquiDepthFloatHistogram withBins(int[] bins, int[] binDistinctValues, long minKey, long[] upperKeys, int distinctValues) {
+		return new EquiDepthFloatHistogram(typeUri, bins, binDistinctValues, minKey, upperKeys, distinctValues, builderClass);
+	}
+
+	public Float parseNodeValue(Node val) throws ParseException {
+		return parseNodeValueImpl(val);
+	}
+
+	public static Float parseNodeValueImpl(Node val) throws ParseException {
+		return FloatHistogram.parseNodeValueImpl(val);
+	}
+
+}
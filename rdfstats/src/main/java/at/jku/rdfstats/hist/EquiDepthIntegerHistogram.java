@@ -0,0 +1,85 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.jku.rdfstats.hist;
+
+
+import at.jku.rdfstats.ParseException;
+import at.jku.rdfstats.hist.builder.HistogramBuilder;
+
+import com.hp.hpl.jena.graph.Node;
+
+/**
+ * @author dorgon
+ *
+ * Equi-depth variant of {@link IntegerHistogram}, see {@link AbstractEquiDepthHistogram}.
+ */
+public class EquiDepthIntegerHistogram extends AbstractEquiDepthHistogram<Integer> {
+
+	/** constructor
+	 * 
+	 * @param typeUri
+	 * @param bins
+	 * @param binDistinctValues
+	 * @param minKey
+	 * @param upperKeys
+	 * @param distinctValues
+	 * @param builderClass
+	 */
+	public EquiDepthIntegerHistogram(String typeUri, int[] bins, int[] binDistinctValues, long minKey, long[] upperKeys, int distinctValues, Class<? extends HistogramBuilder<?>> builderClass) {
+		super(typeUri, bins, binDistinctValues, minKey, upperKeys, distinctValues, (int) minKey, (int) upperKeys[upperKeys.length-1], builderClass);
+	}
+
+	@Override
+	protected long getKey(Integer val) {
+		return val;
+	}
+
+	@Override
+	protected Integer getValue(long key) {
+		return (int) key;
+	}
+
+	@Override
+	protected double getPosition(long key) {
+		return key;
+	}
+
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.AbstractHistogram#withBinData(int[], int[], int)
+	 */
+	@Override
+	protected EquiDepthIntegerHistogram withBinData(int[] bins, int[] binDistinctValues, int distinctValues) {
+		return new EquiDepthIntegerHistogram(typeUri, bins, binDistinctValues, minKey, upperKeys, distinctValues, builderClass);
+	}
+
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.AbstractEquiDepthHistogram#withBins(int[], int[], long, long[], int)
+	 */
+	@Override
+	protected EquiDepthIntegerHistogram withBins(int[] bins, int[] binDistinctValues, long minKey, long[] upperKeys, int distinctValues) {
+		return new EquiDepthIntegerHistogram(typeUri, bins, binDistinctValues, minKey, upperKeys, distinctValues, builderClass);
+	}
+
+	public Integer parseNodeValue(Node val) throws ParseException {
+		return parseNodeValueImpl(val);
+	}
+
+	public static Integer parseNodeValueImpl(Node val) throws ParseException {
+		return IntegerHistogram.parseNodeValueImpl(val);
+	}
+
+}
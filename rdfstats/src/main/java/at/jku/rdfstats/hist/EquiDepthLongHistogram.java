@@ -0,0 +1,85 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.jku.rdfstats.hist;
+
+
+import at.jku.rdfstats.ParseException;
+import at.jku.rdfstats.hist.builder.HistogramBuilder;
+
+import com.hp.hpl.jena.graph.Node;
+
+/**
+ * @author dorgon
+ *
+ * Equi-depth variant of {@link LongHistogram}, see {@link AbstractEquiDepthHistogram}.
+ */
+public class EquiDepthLongHistogram extends AbstractEquiDepthHistogram<Long> {
+
+	/** constructor
+	 * 
+	 * @param typeUri
+	 * @param bins
+	 * @param binDistinctValues
+	 * @param minKey
+	 * @param upperKeys
+	 * @param distinctValues
+	 * @param builderClass
+	 */
+	public EquiDepthLongHistogram(String typeUri, int[] bins, int[] binDistinctValues, long minKey, long[] upperKeys, int distinctValues, Class<? extends HistogramBuilder<?>> builderClass) {
+		super(typeUri, bins, binDistinctValues, minKey, upperKeys, distinctValues, minKey, upperKeys[upperKeys.length-1], builderClass);
+	}
+
+	@Override
+	protected long getKey(Long val) {
+		return val;
+	}
+
+	@Override
+	protected Long getValue(long key) {
+		return key;
+	}
+
+	@Override
+	protected double getPosition(long key) {
+		return key;
+	}
+
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.AbstractHistogram#withBinData(int[], int[], int)
+	 */
+	@Override
+	protected EquiDepthLongHistogram withBinData(int[] bins, int[] binDistinctValues, int distinctValues) {
+		return new EquiDepthLongHistogram(typeUri, bins, binDistinctValues, minKey, upperKeys, distinctValues, builderClass);
+	}
+
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.AbstractEquiDepthHistogram#withBins(int[], int[], long, long[], int)
+	 */
+	@Override
+	protected EquiDepthLongHistogram withBins(int[] bins, int[] binDistinctValues, long minKey, long[] upperKeys, int distinctValues) {
+		return new EquiDepthLongHistogram(typeUri, bins, binDistinctValues, minKey, upperKeys, distinctValues, builderClass);
+	}
+
+	public Long parseNodeValue(Node val) throws ParseException {
+		return parseNodeValueImpl(val);
+	}
+
+	public static Long parseNodeValueImpl(Node val) throws ParseException {
+		return LongHistogram.parseNodeValueImpl(val);
+	}
+
+}
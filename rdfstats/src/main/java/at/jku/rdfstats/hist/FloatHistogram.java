@@ -87,35 +87,28 @@ public class FloatHistogram extends AbstractComparableDomainHistogram<Float> {
 	 * @see at.jku.rdfstats.hist.Histogram#getCumulativeFrequency(java.lang.Object)
 	 */
 	public int getCumulativeQuantity(Float val) {
-		int total = 0;
 		if (val >= max)
 			return totalValues; 
 		else if (val < min)
 			return 0;
 		
+		// quantity of the bins before valIndex plus the interpolated part of bin valIndex
 		int valIndex = getBinIndex(val);
-		int idx;
-		
-		// add bin quantities from 0 to the bin before
-		for (idx = 0; idx < valIndex; idx++)
-			total += bins[idx];
-
-		// finally add estimated quantity for bin # idx
-		int l = getBinQuantity(idx);
-		if (l > 0) {
-			int add = (int) ((float) l * ((val-min) % binWidth) / binWidth); // relative amount of bin size
-			if (add == 0) // at least add 1, because l > 0
-				return ++total;
-			else
-				return total + add;
-		} else
-			return total;
+		return getInterpolatedQuantity(valIndex, (val-min) / (double) binWidth - valIndex);
 	}
 
 	public float getCumulativeQuantityRelative(Float val) {
 		return getCumulativeQuantity(val) / (float) totalValues;
 	}
 
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.AbstractHistogram#withBinData(int[], int[], int)
+	 */
+	@Override
+	protected FloatHistogram withBinData(int[] bins, int[] binDistinctValues, int distinctValues) {
+		return new FloatHistogram(typeUri, bins, distinctValues, min, max, builderClass);
+	}
+
 	public Float parseNodeValue(Node val) throws ParseException {
 		return parseNodeValueImpl(val);
 	}
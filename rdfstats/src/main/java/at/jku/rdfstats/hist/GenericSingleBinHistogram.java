@@ -57,6 +57,14 @@ public class GenericSingleBinHistogram extends AbstractHistogram<Object> {
 		return "\tdistinct values: " + distinctValues + "\n";
 	}
 
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.AbstractHistogram#withBinData(int[], int[], int)
+	 */
+	@Override
+	protected GenericSingleBinHistogram withBinData(int[] bins, int[] binDistinctValues, int distinctValues) {
+		return new GenericSingleBinHistogram(typeUri, bins[0], distinctValues, builderClass);
+	}
+
 	/* (non-Javadoc)
 	 * @see at.jku.rdfstats.hist.Histogram#parseNodeValue(com.hp.hpl.jena.graph.Node)
 	 */
@@ -0,0 +1,470 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.hist;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import at.jku.rdfstats.hist.builder.URIHistogramBuilder;
+
+/**
+ * @author dorgon
+ *
+ * Merges two histograms of the same class and data type summarizing different values of a (property, range), e.g.
+ * built on shards of a dataset, by parallel workers, or for different graphs, into one histogram of at most about
+ * prefSize bins:
+ * 
+ * - {@link BooleanHistogram} and {@link SimpleStringHistogram}: the quantities of equal values (labels) are summed up
+ * - {@link GenericSingleBinHistogram}: the totals are summed up
+ * - {@link OrderedStringHistogram}: the union of labels is cut to the shorter prefix length of both histograms,
+ *   then the prefix length is halved until there are at most prefSize bins (like the builder does)
+ * - {@link URIHistogram}: the union of labels, the last path segment of the deepest labels is cut until there are at most
+ *   prefSize bins or all labels are at the minimum (domain) level
+ * - equi-width numeric and date histograms: re-binned over the union of both data ranges, the quantity of a bin is
+ *   apportioned to the overlapping new bins assuming its values are distributed uniformly
+ * - equi-depth histograms: the bins of both are split at the union of their bin boundaries and regrouped into at most
+ *   prefSize bins of about equal depth, hence a distinct value still never spans two bins
+ * 
+ * Total quantities are exact, bin quantities are exact unless bins are split (re-binning, regrouping).
+ * 
+ * Error behaviour of distinct values: a histogram does not tell which values it holds, hence the number of distinct values
+ * of two merged bins with d1 and d2 distinct values is only known to be in [max(d1, d2); d1 + d2]. The merger uses the
+ * upper bound d1 + d2, capped at the number of values and at the size of the domain where it is known (integer and date
+ * ranges, key ranges of equi-depth bins, boolean values, labels of simple string histograms). So the distinct values are
+ * exact if both inputs share no value (e.g. disjoint subjects of a functional property or disjoint value ranges) and are
+ * over-estimated by the number of shared distinct values otherwise. Boolean and simple string histograms are always exact.
+ */
+public class HistogramMerger {
+
+	/**
+	 * @param h1
+	 * @param h2 a histogram of the same class and data type as h1
+	 * @param prefSize preferred number of bins of the merged histogram
+	 * @return the merged histogram
+	 * @throws HistogramException if the histograms cannot be merged
+	 */
+	@SuppressWarnings("unchecked")
+	public static <NATIVE> Histogram<NATIVE> merge(Histogram<NATIVE> h1, Histogram<NATIVE> h2, int prefSize) throws HistogramException {
+		if (h1.getClass() != h2.getClass())
+			throw new HistogramException("Cannot merge a " + h1.getClass().getSimpleName() + " with a " + h2.getClass().getSimpleName() + ".");
+		if ((h1.getDatatypeUri() == null) ? h2.getDatatypeUri() != null : !h1.getDatatypeUri().equals(h2.getDatatypeUri()))
+			throw new HistogramException("Cannot merge histograms of different data types (" + h1.getDatatypeUri() + ", " + h2.getDatatypeUri() + ").");
+		if (prefSize < 1)
+			throw new HistogramException("Invalid preferred number of bins: " + prefSize + ".");
+		
+		Histogram<?> h;
+		if (h1 instanceof BooleanHistogram)
+			h = mergeBoolean((BooleanHistogram) h1, (BooleanHistogram) h2);
+		else if (h1 instanceof SimpleStringHistogram)
+			h = mergeSimpleString((SimpleStringHistogram) h1, (SimpleStringHistogram) h2);
+		else if (h1 instanceof GenericSingleBinHistogram)
+			h = mergeGeneric((GenericSingleBinHistogram) h1, (GenericSingleBinHistogram) h2);
+		else if (h1 instanceof URIHistogram)
+			h = mergeURI((URIHistogram) h1, (URIHistogram) h2, prefSize);
+		else if (h1 instanceof OrderedStringHistogram)
+			h = mergeOrderedString((OrderedStringHistogram) h1, (OrderedStringHistogram) h2, prefSize);
+		else if (h1 instanceof AbstractEquiDepthHistogram<?>)
+			h = mergeEquiDepth((AbstractEquiDepthHistogram<?>) h1, (AbstractEquiDepthHistogram<?>) h2, prefSize);
+		else if (h1 instanceof IntegerHistogram)
+			h = mergeInteger((IntegerHistogram) h1, (IntegerHistogram) h2, prefSize);
+		else if (h1 instanceof LongHistogram)
+			h = mergeLong((LongHistogram) h1, (LongHistogram) h2, prefSize);
+		else if (h1 instanceof FloatHistogram)
+			h = mergeFloat((FloatHistogram) h1, (FloatHistogram) h2, prefSize);
+		else if (h1 instanceof DoubleHistogram)
+			h = mergeDouble((DoubleHistogram) h1, (DoubleHistogram) h2, prefSize);
+		else if (h1 instanceof DateHistogram)
+			h = mergeDate((DateHistogram) h1, (DateHistogram) h2, prefSize);
+		else
+			throw new HistogramException("Merging histograms of type " + h1.getClass().getSimpleName() + " is not supported.");
+		
+		return (Histogram<NATIVE>) h;
+	}
+	
+	private static BooleanHistogram mergeBoolean(BooleanHistogram h1, BooleanHistogram h2) {
+		int[] bins = new int[2];
+		for (int i = 0; i < bins.length; i++)
+			bins[i] = h1.getBinQuantity(i) + h2.getBinQuantity(i);
+		int distinct = ((bins[0] > 0) ? 1 : 0) + ((bins[1] > 0) ? 1 : 0);
+		return new BooleanHistogram(h1.typeUri, bins, distinct, h1.builderClass);
+	}
+	
+	private static SimpleStringHistogram mergeSimpleString(SimpleStringHistogram h1, SimpleStringHistogram h2) {
+		Map<String, Integer> union = new TreeMap<String, Integer>();
+		for (SimpleStringHistogram h : new SimpleStringHistogram[] { h1, h2 }) {
+			String[] labels = h.getLabels();
+			for (int i = 0; i < labels.length; i++) {
+				Integer old = union.get(labels[i]);
+				union.put(labels[i], (old == null) ? h.getBinQuantity(i) : old + h.getBinQuantity(i));
+			}
+		}
+		
+		String[] labels = new String[union.size()];
+		int[] bins = new int[labels.length];
+		int i = 0;
+		for (Map.Entry<String, Integer> e : union.entrySet()) {
+			labels[i] = e.getKey();
+			bins[i++] = e.getValue();
+		}
+		return new SimpleStringHistogram(h1.typeUri, bins, labels, h1.builderClass);
+	}
+	
+	private static GenericSingleBinHistogram mergeGeneric(GenericSingleBinHistogram h1, GenericSingleBinHistogram h2) {
+		int total = h1.getTotalValues() + h2.getTotalValues();
+		return new GenericSingleBinHistogram(h1.typeUri, total, cap(h1.getDistinctValues() + (double) h2.getDistinctValues(), total), h1.builderClass);
+	}
+	
+	private static OrderedStringHistogram mergeOrderedString(OrderedStringHistogram h1, OrderedStringHistogram h2, int prefSize) {
+		int length = Math.min(getMaxLabelLength(h1), getMaxLabelLength(h2));
+		Map<String, int[]> union = group(h1, h2, length);
+		while (union.size() > prefSize && length > 1) {
+			length /= 2;
+			union = group(h1, h2, length);
+		}
+		
+		String[] labels = new String[union.size()];
+		int[] bins = new int[labels.length];
+		int[] distinct = new int[labels.length];
+		int distinctTotal = toArrays(union, labels, bins, distinct);
+		return new OrderedStringHistogram(h1.typeUri, bins, distinctTotal, distinct, labels,
+				min(h1.getMin(), h2.getMin()), max(h1.getMax(), h2.getMax()), h1.builderClass);
+	}
+	
+	private static URIHistogram mergeURI(URIHistogram h1, URIHistogram h2, int prefSize) {
+		Map<String, int[]> union = group(h1, h2, Integer.MAX_VALUE);
+		while (union.size() > prefSize) {
+			int depth = 0;
+			for (String label : union.keySet())
+				depth = Math.max(depth, getSegmentDepth(label));
+			if (depth == 0) // all labels at the minimum level
+				break;
+			
+			Map<String, int[]> cut = new TreeMap<String, int[]>();
+			for (Map.Entry<String, int[]> e : union.entrySet()) {
+				String label = e.getKey();
+				if (getSegmentDepth(label) == depth)
+					label = getParentLabel(label);
+				add(cut, label, e.getValue()[0], e.getValue()[1]);
+			}
+			union = cut;
+		}
+
+		String[] labels = new String[union.size()];
+		int[] bins = new int[labels.length];
+		int[] distinct = new int[labels.length];
+		int distinctTotal = toArrays(union, labels, bins, distinct);
+		return new URIHistogram(h1.typeUri, bins, distinctTotal, distinct, labels,
+				min(h1.getMin(), h2.getMin()), max(h1.getMax(), h2.getMax()), h1.builderClass);
+	}
+	
+	private static int getMaxLabelLength(OrderedStringHistogram h) {
+		int max = 0;
+		for (String label : h.getLabels())
+			max = Math.max(max, label.length());
+		return max;
+	}
+	
+	/**
+	 * @param h1
+	 * @param h2
+	 * @param length labels are cut to length
+	 * @return ordered label => {quantity, distinct values} of both histograms
+	 */
+	private static Map<String, int[]> group(OrderedStringHistogram h1, OrderedStringHistogram h2, int length) {
+		Map<String, int[]> union = new TreeMap<String, int[]>();
+		for (OrderedStringHistogram h : new OrderedStringHistogram[] { h1, h2 }) {
+			String[] labels = h.getLabels();
+			for (int i = 0; i < labels.length; i++) {
+				String label = (labels[i].length() > length) ? labels[i].substring(0, length) : labels[i];
+				add(union, label, h.getBinQuantity(i), h.getDistinctBinValues(i));
+			}
+		}
+		return union;
+	}
+	
+	private static void add(Map<String, int[]> union, String label, int quantity, int distinct) {
+		int[] bin = union.get(label);
+		if (bin == null)
+			union.put(label, new int[] { quantity, distinct });
+		else {
+			bin[0] += quantity;
+			bin[1] += distinct;
+		}
+	}
+	
+	/** fills the arrays with the bins of union, distinct values are capped at the bin quantity, returns the total distinct values */
+	private static int toArrays(Map<String, int[]> union, String[] labels, int[] bins, int[] distinct) {
+		int distinctTotal = 0;
+		int i = 0;
+		for (Map.Entry<String, int[]> e : union.entrySet()) {
+			labels[i] = e.getKey();
+			bins[i] = e.getValue()[0];
+			distinct[i] = Math.min(e.getValue()[1], bins[i]);
+			distinctTotal += distinct[i++];
+		}
+		return distinctTotal;
+	}
+
+	/** position after which URI labels are split into path segments, the domain of http URIs is kept */
+	private static int getSegmentBegin(String label) {
+		return (URIHistogramBuilder.KEEP_HTTP_DOMAINS && label.startsWith("http://")) ? 7 : 0;
+	}
+	
+	/** @return number of path segments of label which can be cut (a trailing separator counts as one) */
+	private static int getSegmentDepth(String label) {
+		int depth = 0;
+		for (int i = label.indexOf(URIHistogramBuilder.SEPARATOR, getSegmentBegin(label)); i >= 0; i = label.indexOf(URIHistogramBuilder.SEPARATOR, i + 1))
+			depth++;
+		return depth;
+	}
+	
+	/** @return label without its trailing separator and its last path segment (like {@link URIHistogramBuilder} cuts labels) */
+	private static String getParentLabel(String label) {
+		if (label.endsWith(URIHistogramBuilder.SEPARATOR))
+			label = label.substring(0, label.length() - 1);
+		int sep = label.lastIndexOf(URIHistogramBuilder.SEPARATOR);
+		return (sep < getSegmentBegin(label)) ? label : label.substring(0, sep);
+	}
+
+	private static String min(String s1, String s2) {
+		return (s1 == null || (s2 != null && s2.compareTo(s1) < 0)) ? s2 : s1;
+	}
+	
+	private static String max(String s1, String s2) {
+		return (s1 == null || (s2 != null && s2.compareTo(s1) > 0)) ? s2 : s1;
+	}
+	
+	private static IntegerHistogram mergeInteger(IntegerHistogram h1, IntegerHistogram h2, int prefSize) {
+		int min = Math.min(h1.getMin(), h2.getMin());
+		int max = Math.max(h1.getMax(), h2.getMax());
+		int total = h1.getTotalValues() + h2.getTotalValues();
+		int distinct = cap(h1.getDistinctValues() + (double) h2.getDistinctValues(), Math.min(total, (double) max - min + 1));
+
+		// integer bins cover [min; max + 1)
+		double[] data = new double[Math.min(prefSize, distinct)];
+		apportion(h1.getBinData(), h1.getMin(), h1.getMax() + 1.0, min, max + 1.0, data);
+		apportion(h2.getBinData(), h2.getMin(), h2.getMax() + 1.0, min, max + 1.0, data);
+		return new IntegerHistogram(h1.typeUri, round(data), distinct, min, max, h1.builderClass);
+	}
+	
+	private static LongHistogram mergeLong(LongHistogram h1, LongHistogram h2, int prefSize) {
+		long min = Math.min(h1.getMin(), h2.getMin());
+		long max = Math.max(h1.getMax(), h2.getMax());
+		int total = h1.getTotalValues() + h2.getTotalValues();
+		int distinct = cap(h1.getDistinctValues() + (double) h2.getDistinctValues(), Math.min(total, (double) max - min + 1));
+		
+		double[] data = new double[Math.min(prefSize, distinct)];
+		apportion(h1.getBinData(), h1.getMin(), h1.getMax() + 1.0, min, max + 1.0, data);
+		apportion(h2.getBinData(), h2.getMin(), h2.getMax() + 1.0, min, max + 1.0, data);
+		return new LongHistogram(h1.typeUri, round(data), distinct, min, max, h1.builderClass);
+	}
+	
+	private static FloatHistogram mergeFloat(FloatHistogram h1, FloatHistogram h2, int prefSize) {
+		float min = Math.min(h1.getMin(), h2.getMin());
+		float max = Math.max(h1.getMax(), h2.getMax());
+		int total = h1.getTotalValues() + h2.getTotalValues();
+		int distinct = cap(h1.getDistinctValues() + (double) h2.getDistinctValues(), total);
+		
+		double[] data = new double[(max > min) ? Math.min(prefSize, distinct) : 1];
+		apportion(h1.getBinData(), h1.getMin(), h1.getMax(), min, max, data);
+		apportion(h2.getBinData(), h2.getMin(), h2.getMax(), min, max, data);
+		return new FloatHistogram(h1.typeUri, round(data), distinct, min, max, h1.builderClass);
+	}
+	
+	private static DoubleHistogram mergeDouble(DoubleHistogram h1, DoubleHistogram h2, int prefSize) {
+		double min = Math.min(h1.getMin(), h2.getMin());
+		double max = Math.max(h1.getMax(), h2.getMax());
+		int total = h1.getTotalValues() + h2.getTotalValues();
+		int distinct = cap(h1.getDistinctValues() + (double) h2.getDistinctValues(), total);
+		
+		double[] data = new double[(max > min) ? Math.min(prefSize, distinct) : 1];
+		apportion(h1.getBinData(), h1.getMin(), h1.getMax(), min, max, data);
+		apportion(h2.getBinData(), h2.getMin(), h2.getMax(), min, max, data);
+		return new DoubleHistogram(h1.typeUri, round(data), distinct, min, max, h1.builderClass);
+	}
+	
+	private static DateHistogram mergeDate(DateHistogram h1, DateHistogram h2, int prefSize) {
+		long min = Math.min(h1.getMin().getTime(), h2.getMin().getTime());
+		long max = Math.max(h1.getMax().getTime(), h2.getMax().getTime());
+		int total = h1.getTotalValues() + h2.getTotalValues();
+		int distinct = cap(h1.getDistinctValues() + (double) h2.getDistinctValues(), Math.min(total, (double) max - min + 1)); // milliseconds
+		
+		double[] data = new double[(max > min) ? Math.min(prefSize, distinct) : 1];
+		apportion(h1.getBinData(), h1.getMin().getTime(), h1.getMax().getTime(), min, max, data);
+		apportion(h2.getBinData(), h2.getMin().getTime(), h2.getMax().getTime(), min, max, data);
+		return new DateHistogram(h1.typeUri, round(data), distinct, new Date(min), new Date(max), h1.builderClass);
+	}
+	
+	/**
+	 * adds the quantities of equi-width bins to the overlapping equi-width target bins
+	 * 
+	 * @param bins source bins covering [srcLo; srcHi]
+	 * @param srcLo
+	 * @param srcHi
+	 * @param lo target bins cover [lo; hi]
+	 * @param hi
+	 * @param data target bins
+	 */
+	private static void apportion(int[] bins, double srcLo, double srcHi, double lo, double hi, double[] data) {
+		double srcWidth = (srcHi - srcLo) / bins.length;
+		double width = (hi - lo) / data.length;
+		for (int i = 0; i < bins.length; i++) {
+			if (bins[i] == 0)
+				continue;
+			
+			double start = srcLo + i * srcWidth;
+			double end = start + srcWidth;
+			int first = getIndex(start, lo, width, data.length);
+			int last = getIndex(end, lo, width, data.length);
+			if (srcWidth <= 0 || first == last) {
+				data[first] += bins[i];
+				continue;
+			}
+			
+			for (int j = first; j <= last; j++) {
+				double overlap = Math.min(end, lo + (j+1) * width) - Math.max(start, lo + j * width);
+				if (overlap > 0)
+					data[j] += bins[i] * overlap / srcWidth;
+			}
+		}
+	}
+	
+	private static int getIndex(double val, double lo, double width, int numBins) {
+		if (width <= 0)
+			return 0;
+		int idx = (int) Math.floor((val - lo) / width);
+		return (idx < 0) ? 0 : (idx >= numBins) ? numBins - 1 : idx;
+	}
+	
+	private static AbstractEquiDepthHistogram<?> mergeEquiDepth(AbstractEquiDepthHistogram<?> h1, AbstractEquiDepthHistogram<?> h2, int prefSize) {
+		// segments are the union of both bin boundaries: [minKey; cuts[0]], (cuts[j-1]; cuts[j]]
+		long minKey = Math.min(h1.getMinKey(), h2.getMinKey());
+		TreeSet<Long> union = new TreeSet<Long>();
+		for (long k : h1.getUpperKeys())
+			union.add(k);
+		for (long k : h2.getUpperKeys())
+			union.add(k);
+		long[] cuts = new long[union.size()];
+		int n = 0;
+		for (long k : union)
+			cuts[n++] = k;
+		
+		double[] quantities = new double[cuts.length];
+		double[] distinct = new double[cuts.length];
+		split(h1, minKey, cuts, quantities, distinct);
+		split(h2, minKey, cuts, quantities, distinct);
+		int[] segments = round(quantities);
+		for (int j = 0; j < cuts.length; j++) {
+			double keys = (j == 0) ? (double) cuts[0] - minKey + 1 : (double) cuts[j] - cuts[j-1];
+			distinct[j] = Math.min(distinct[j], keys);
+		}
+		
+		// regroup consecutive segments into bins of about total / numBins values, skip empty bins
+		int total = h1.getTotalValues() + h2.getTotalValues();
+		int numBins = Math.min(prefSize, cuts.length);
+		int[] bins = new int[numBins];
+		int[] binDistinct = new int[numBins];
+		long[] upperKeys = new long[numBins];
+		int b = 0;
+		int cumulative = 0;
+		double binDist = 0;
+		for (int j = 0; j < cuts.length; j++) {
+			bins[b] += segments[j];
+			binDist += distinct[j];
+			cumulative += segments[j];
+			upperKeys[b] = cuts[j];
+			boolean last = (j == cuts.length - 1);
+			if (last || (b < numBins - 1 && bins[b] > 0 && cumulative >= (double) total * (b + 1) / numBins)) {
+				if (bins[b] == 0) { // empty last bin, extend the previous one
+					if (b > 0)
+						upperKeys[b-1] = upperKeys[b];
+					break;
+				}
+				binDistinct[b] = Math.max(1, Math.min(bins[b], (int) Math.round(binDist)));
+				binDist = 0;
+				b++;
+			}
+		}
+		
+		int[] binsFinal = new int[b];
+		int[] binDistinctFinal = new int[b];
+		long[] upperKeysFinal = new long[b];
+		System.arraycopy(bins, 0, binsFinal, 0, b);
+		System.arraycopy(binDistinct, 0, binDistinctFinal, 0, b);
+		System.arraycopy(upperKeys, 0, upperKeysFinal, 0, b);
+		int distinctTotal = 0;
+		for (int d : binDistinctFinal)
+			distinctTotal += d;
+		
+		return h1.withBins(binsFinal, binDistinctFinal, minKey, upperKeysFinal, distinctTotal);
+	}
+	
+	/**
+	 * adds the quantities and distinct values of the bins of h to the segments, a bin spanning multiple segments
+	 * is apportioned by the positions of the segment boundaries
+	 */
+	private static void split(AbstractEquiDepthHistogram<?> h, long minKey, long[] cuts, double[] quantities, double[] distinct) {
+		long[] upperKeys = h.getUpperKeys();
+		int j = 0;
+		for (int i = 0; i < upperKeys.length; i++) {
+			long lowerKey = (i == 0) ? h.getMinKey() : upperKeys[i-1];
+			while (cuts[j] < lowerKey || (i > 0 && cuts[j] == lowerKey)) // first segment containing the bin
+				j++;
+			int first = j;
+			while (cuts[j] < upperKeys[i]) // segment of the upper bound
+				j++;
+			
+			int q = h.getBinQuantity(i);
+			int d = h.getBinDistinctValues(i);
+			if (first == j) {
+				quantities[j] += q;
+				distinct[j] += d;
+				continue;
+			}
+			
+			double lower = h.getPosition(lowerKey);
+			double width = h.getPosition(upperKeys[i]) - lower;
+			for (int s = first; s <= j; s++) {
+				double start = (s == first) ? lower : h.getPosition(cuts[s-1]);
+				double fraction = (width > 0) ? (h.getPosition(cuts[s]) - start) / width : ((s == j) ? 1 : 0);
+				quantities[s] += q * fraction;
+				distinct[s] += d * fraction;
+			}
+		}
+	}
+	
+	/** rounds the cumulative quantities, so the rounded quantities sum up to the rounded total */
+	private static int[] round(double[] data) {
+		int[] bins = new int[data.length];
+		double cumulative = 0;
+		long prev = 0;
+		for (int i = 0; i < data.length; i++) {
+			cumulative += data[i];
+			long rounded = Math.round(cumulative);
+			bins[i] = (int) (rounded - prev);
+			prev = rounded;
+		}
+		return bins;
+	}
+	
+	/** @return distinct values capped at max, at least 1 */
+	private static int cap(double distinct, double max) {
+		return (int) Math.max(1, Math.min(distinct, Math.min(max, Integer.MAX_VALUE)));
+	}
+	
+}
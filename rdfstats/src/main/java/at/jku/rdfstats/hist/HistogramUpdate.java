@@ -0,0 +1,225 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.jku.rdfstats.hist;
+
+import at.jku.rdfstats.ParseException;
+
+import com.hp.hpl.jena.graph.Node;
+
+/**
+ * @author dorgon
+ *
+ * Incremental maintenance of a histogram: values are added to or removed from the bins of an existing histogram
+ * without rebuilding it from the source data, hence the cost only depends on the number of changed values.
+ * 
+ * The bin boundaries (or labels) of the original histogram are kept. Values outside of the histogram data range
+ * are counted in the closest bin (the first or last bin of comparable domains, the bin of the next lower label of
+ * ordered string histograms), values which cannot be assigned to any bin (unknown labels of a
+ * {@link SimpleStringHistogram}) are skipped.
+ * 
+ * Distinct values are tracked for each bin, initialized from the per-bin distinct values if the histogram stores
+ * them, otherwise from the total distinct values proportionally to the bin quantities. If the caller knows whether a
+ * value is new or has disappeared (e.g. by looking it up in the source), it passes the exact change of distinct
+ * values, otherwise the change is estimated assuming the values of a bin occur equally often: a bin of n values and
+ * d distinct values gains (loses) d/n distinct values per added (removed) value.
+ * 
+ * {@link #isExact()} tells whether the updated histogram equals the histogram which would be built from the changed
+ * source with the same bin boundaries.
+ */
+public class HistogramUpdate<NATIVE> {
+
+	/** the original histogram */
+	protected final AbstractHistogram<NATIVE> histogram;
+	
+	/** updated bin data */
+	protected final int[] bins;
+	
+	/** updated (estimated) distinct values of each bin */
+	protected final double[] binDistinctValues;
+	
+	/** updated (estimated) total distinct values */
+	protected double distinctValues;
+	
+	/** updated total values */
+	protected int totalValues;
+	
+	/** false if any change has been estimated, clamped, or skipped */
+	protected boolean exact = true;
+	
+	/**
+	 * @param h the histogram to update, must be an {@link AbstractHistogram}
+	 */
+	public HistogramUpdate(Histogram<NATIVE> h) {
+		this.histogram = (AbstractHistogram<NATIVE>) h;
+		this.bins = h.getBinData().clone();
+		this.totalValues = h.getTotalValues();
+		this.distinctValues = h.getDistinctValues();
+		
+		int[] stored = null;
+		if (h instanceof OrderedStringHistogram)
+			stored = ((OrderedStringHistogram) h).getDistinctBinValues();
+		else if (h instanceof AbstractEquiDepthHistogram<?>)
+			stored = ((AbstractEquiDepthHistogram<?>) h).getBinDistinctData();
+		
+		binDistinctValues = new double[bins.length];
+		for (int i = 0; i < bins.length; i++) {
+			if (stored != null)
+				binDistinctValues[i] = stored[i];
+			else if (h instanceof SimpleStringHistogram || h instanceof BooleanHistogram)
+				binDistinctValues[i] = (bins[i] > 0) ? 1 : 0; // each bin holds a single value
+			else if (totalValues > 0)
+				binDistinctValues[i] = distinctValues * bins[i] / totalValues;
+		}
+	}
+	
+	/**
+	 * adds or removes occurrences of a value whose change of distinct values is known
+	 * 
+	 * @param val
+	 * @param occurrences number of added (positive) or removed (negative) occurrences of val
+	 * @param distinct 1 if val is a new value, -1 if all occurrences of val have been removed, 0 otherwise
+	 */
+	public void update(NATIVE val, int occurrences, int distinct) {
+		int idx = getBinIndex(val);
+		if (idx < 0)
+			return;
+		
+		if (bins[idx] + occurrences < 0) { // removes more values than the bin holds
+			exact = false;
+			occurrences = -bins[idx];
+		}
+		bins[idx] += occurrences;
+		totalValues += occurrences;
+		binDistinctValues[idx] += distinct;
+		distinctValues += distinct;
+	}
+
+	/**
+	 * adds or removes occurrences of a value, the change of distinct values is estimated
+	 * 
+	 * @param val
+	 * @param occurrences number of added (positive) or removed (negative) occurrences of val
+	 */
+	public void update(NATIVE val, int occurrences) {
+		int idx = getBinIndex(val);
+		if (idx < 0)
+			return;
+		
+		exact = false;
+		for (; occurrences > 0; occurrences--) {
+			double d = (bins[idx] == 0) ? 1 : binDistinctValues[idx] / bins[idx];
+			bins[idx]++;
+			totalValues++;
+			binDistinctValues[idx] += d;
+			distinctValues += d;
+		}
+		for (; occurrences < 0 && bins[idx] > 0; occurrences++) {
+			double d = binDistinctValues[idx] / bins[idx];
+			bins[idx]--;
+			totalValues--;
+			binDistinctValues[idx] -= d;
+			distinctValues -= d;
+		}
+	}
+
+	/**
+	 * convenience method for RDF node values, see {@link #update(Object, int, int)} and {@link #update(Object, int)}
+	 * 
+	 * @param val
+	 * @param occurrences
+	 * @param distinct exact change of distinct values or null if it should be estimated
+	 * @throws ParseException if val cannot be parsed by the histogram
+	 */
+	public void updateNodeValue(Node val, int occurrences, Integer distinct) throws ParseException {
+		NATIVE v = histogram.parseNodeValue(val);
+		if (distinct != null)
+			update(v, occurrences, distinct);
+		else
+			update(v, occurrences);
+	}
+
+	/**
+	 * @param val
+	 * @return the bin of val, the closest bin if val is outside of the histogram data range, or -1 if val cannot be assigned to a bin
+	 */
+	@SuppressWarnings("unchecked")
+	protected int getBinIndex(NATIVE val) {
+		int idx = histogram.getBinIndex(val);
+		if (idx >= 0)
+			return idx;
+		
+		if (histogram instanceof BooleanHistogram)
+			return ((Boolean) val) ? 1 : 0; // the bin of a boolean value is only reported if it is not empty
+		
+		exact = false;
+		if (histogram instanceof OrderedStringHistogram) {
+			PrefixLabelIndex labels = ((OrderedStringHistogram) histogram).lookupTable;
+			return labels.getBinIndex(Math.max(labels.getLowerCount((String) val) - 1, 0));
+		} else if (histogram instanceof AbstractComparableDomainHistogram<?>) {
+			AbstractComparableDomainHistogram h = (AbstractComparableDomainHistogram) histogram;
+			return (((Comparable) val).compareTo(h.getMin()) < 0) ? 0 : bins.length - 1;
+		} else
+			return -1;
+	}
+	
+	/**
+	 * @return false if any change of distinct values has been estimated, or values have been counted in the closest
+	 * bin or skipped because they are outside of the histogram data range
+	 */
+	public boolean isExact() {
+		return exact;
+	}
+	
+	/**
+	 * @return the updated total values
+	 */
+	public int getTotalValues() {
+		return totalValues;
+	}
+
+	/**
+	 * @return the updated (estimated) distinct values
+	 */
+	public int getDistinctValues() {
+		return bounded(distinctValues, totalValues);
+	}
+	
+	/**
+	 * @return the original histogram
+	 */
+	public Histogram<NATIVE> getOriginalHistogram() {
+		return histogram;
+	}
+	
+	/**
+	 * @return a new histogram holding the updated bin data, bins which have become empty count 1 distinct value
+	 */
+	public Histogram<NATIVE> getHistogram() {
+		int[] distinct = new int[bins.length];
+		for (int i = 0; i < bins.length; i++)
+			distinct[i] = (bins[i] > 0) ? bounded(binDistinctValues[i], bins[i]) : 1; // an emptied bin keeps its boundaries, 1 avoids divisions by zero
+		return histogram.withBinData(bins.clone(), distinct, getDistinctValues());
+	}
+	
+	/** @return the rounded distinct values, at least 1 for any values, at most the number of values */
+	private static int bounded(double distinct, int values) {
+		if (values == 0)
+			return 0;
+		return (int) Math.max(1, Math.min(values, Math.round(distinct)));
+	}
+	
+}
@@ -98,29 +98,14 @@ public class IntegerHistogram extends AbstractComparableDomainHistogram<Integer>
 	 * @see at.jku.rdfstats.hist.Histogram#getCumulativeFrequency(java.lang.Object)
 	 */
 	public int getCumulativeQuantity(Integer val) {
-		int total = 0;
 		if (val >= max)
 			return totalValues; 
 		else if (val < min)
 			return 0;
 		
+		// quantity of the bins before valIndex plus the interpolated part of bin valIndex
 		int valIndex = getBinIndex(val);
-		int idx;
-		
-		// add bin quantities from 0 to the bin before (b < idx)
-		for (idx = 0; idx < valIndex; idx++)
-			total += bins[idx];
-		
-		// finally add estimated quantity for bin # idx
-		int l = getBinQuantity(idx);
-		if (l > 0) {
-			int add = (int) ((float) l * ((val-min) % binWidth) / binWidth); // relative amount of bin size
-			if (add == 0) // at least add 1, because l > 0
-				return ++total;
-			else
-				return total + add;
-		} else
-			return total;
+		return getInterpolatedQuantity(valIndex, (val-min) / (double) binWidth - valIndex);
 	}
 	
 	// convenience
@@ -135,6 +120,14 @@ public class IntegerHistogram extends AbstractComparableDomainHistogram<Integer>
 	public float getCumulativeQuantityRelative(byte val) { return getCumulativeQuantityRelative((int) val); }
 	public float getCumulativeQuantityRelative(short val) { return getCumulativeQuantityRelative((int) val); }
 	
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.AbstractHistogram#withBinData(int[], int[], int)
+	 */
+	@Override
+	protected IntegerHistogram withBinData(int[] bins, int[] binDistinctValues, int distinctValues) {
+		return new IntegerHistogram(typeUri, bins, distinctValues, min, max, builderClass);
+	}
+
 	public Integer parseNodeValue(Node val) throws ParseException {
 		return parseNodeValueImpl(val);
 	}
@@ -98,29 +98,14 @@ public class LongHistogram extends AbstractComparableDomainHistogram<Long> {
 	 * @see at.jku.rdfstats.hist.Histogram#getCumulativeFrequency(java.lang.Object)
 	 */
 	public int getCumulativeQuantity(Long val) {
-		int total = 0;
 		if (val >= max)
 			return totalValues;
 		else if (val < min)
 			return 0;
 		
+		// quantity of the bins before valIndex plus the interpolated part of bin valIndex
 		int valIndex = getBinIndex(val);
-		int idx;
-		
-		// add bin quantities from 0 to the bin before (b < idx)
-		for (idx = 0; idx < valIndex; idx++)
-			total += bins[idx];
-
-		// finally add estimated quantity for bin # idx
-		int l = getBinQuantity(idx);
-		if (l > 0) {
-			int add = (int) ((float) l * ((val-min) % binWidth) / binWidth); // relative amount of bin size
-			if (add == 0) // at least add 1, because l > 0
-				return ++total;
-			else
-				return total + add;
-		} else
-			return total;	
+		return getInterpolatedQuantity(valIndex, (val-min) / (double) binWidth - valIndex);
 	}
 
 	public int getCumulativeQuantity(byte val) { return getCumulativeQuantity((long) val); }
@@ -135,6 +120,14 @@ public class LongHistogram extends AbstractComparableDomainHistogram<Long> {
 	public float getCumulativeQuantityRelative(short val) { return getCumulativeQuantityRelative((long) val); }
 	public float getCumulativeQuantityRelative(int val) { return getCumulativeQuantityRelative((long) val); }
 
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.AbstractHistogram#withBinData(int[], int[], int)
+	 */
+	@Override
+	protected LongHistogram withBinData(int[] bins, int[] binDistinctValues, int distinctValues) {
+		return new LongHistogram(typeUri, bins, distinctValues, min, max, builderClass);
+	}
+
 	public Long parseNodeValue(Node val) throws ParseException {
 		return parseNodeValueImpl(val);
 	}
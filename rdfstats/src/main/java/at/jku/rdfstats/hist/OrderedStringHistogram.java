@@ -34,8 +34,11 @@ public class OrderedStringHistogram extends AbstractComparableDomainHistogram<St
 	/** distinct values for each bin */
 	protected int[] distinctBinValues;
 	
-	/** temporary lookup table for quick mapping from label => bin index */
-	protected PrefixSearchTreeMap<String, Integer> lookupTable;
+	/** lookup table for quick mapping from label => bin index */
+	protected PrefixLabelIndex lookupTable;
+	
+	/** lowerSums[k] = sum of the bins of the k lexicographically lowest labels */
+	protected int[] lowerSums;
 	
 	/** constructor
 	 * 
@@ -49,9 +52,10 @@ public class OrderedStringHistogram extends AbstractComparableDomainHistogram<St
 		this.labels = labels;
 		
 		// generate lookup table
-		lookupTable = new PrefixSearchTreeMap<String, Integer>();
-		for (int i=0; i<labels.length; i++) 
-			lookupTable.put(labels[i], i);
+		lookupTable = new PrefixLabelIndex(labels);
+		lowerSums = new int[labels.length + 1];
+		for (int k=0; k<labels.length; k++)
+			lowerSums[k+1] = lowerSums[k] + bins[lookupTable.getBinIndex(k)];
 	}
 
 	/**
@@ -93,11 +97,7 @@ public class OrderedStringHistogram extends AbstractComparableDomainHistogram<St
 	 * @see at.jku.rdfstats.hist.Histogram#getBinIndex(java.lang.Object)
 	 */
 	public int getBinIndex(String val) {
-		String prefix = lookupTable.getClosestPrefix(val);
-		if (prefix != null)
-			return lookupTable.get(prefix);
-		else
-			return -1;
+		return lookupTable.getClosestPrefix(val);
 	}
 
 	/**
@@ -109,8 +109,16 @@ public class OrderedStringHistogram extends AbstractComparableDomainHistogram<St
 		int idx = getBinIndex(val);
 		if (idx < 0 || idx >= bins.length)
 			return 0;
-		else return
-			bins[idx] / distinctBinValues[idx];
+		else
+			return getEstimatedBinValueQuantity(idx);
+	}
+	
+	/**
+	 * @param index a bin index
+	 * @return estimated quantity of a single value of the bin, 0 if the bin is empty
+	 */
+	public int getEstimatedBinValueQuantity(int index) {
+		return (distinctBinValues[index] > 0) ? bins[index] / distinctBinValues[index] : 0;
 	}
 	
 	/* (non-Javadoc)
@@ -124,21 +132,13 @@ public class OrderedStringHistogram extends AbstractComparableDomainHistogram<St
 	 * @see at.jku.rdfstats.hist.Histogram#getCumulativeQuantity(java.lang.Object)
 	 */
 	public int getCumulativeQuantity(String val) {
-		int sum = 0;
-		
 		// first sum up all bin sizes where label < val
-		int idx = 0;
-		for (idx=0; idx<labels.length; idx++) {
-			if (labels[idx].compareTo(val) < 0)
-				sum += bins[idx];
-			else
-				break;
-		}
+		int sum = lowerSums[lookupTable.getLowerCount(val)];
 		
 		int idxDirect = getBinIndex(val);
 
-		// if value falls into a bin and the bin size was not already added before
-		if (idxDirect >= idx && idxDirect >= 0 && idxDirect < bins.length) {
+		// if value falls into a bin and the bin size was not already added before (i.e. the label is not a proper prefix of val)
+		if (idxDirect >= 0 && idxDirect < bins.length && labels[idxDirect].length() == val.length()) {
 			if (bins[idxDirect] == 1)
 				sum++;						// at least 1 (add full bin)
 			else if (distinctBinValues[idxDirect] == 1)
@@ -154,7 +154,7 @@ public class OrderedStringHistogram extends AbstractComparableDomainHistogram<St
 	 * @see at.jku.rdfstats.hist.Histogram#getCumulativeQuantityRelative(java.lang.Object)
 	 */
 	public float getCumulativeQuantityRelative(String val) {
-		return getCumulativeQuantityRelative(val) / (float) totalValues;
+		return getCumulativeQuantity(val) / (float) totalValues;
 	}
 
 	/* (non-Javadoc)
@@ -168,6 +168,14 @@ public class OrderedStringHistogram extends AbstractComparableDomainHistogram<St
 		return sb.toString();
 	}
 	
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.AbstractHistogram#withBinData(int[], int[], int)
+	 */
+	@Override
+	protected OrderedStringHistogram withBinData(int[] bins, int[] binDistinctValues, int distinctValues) {
+		return new OrderedStringHistogram(typeUri, bins, distinctValues, binDistinctValues, labels, min, max, builderClass);
+	}
+
 	public String parseNodeValue(Node val) throws ParseException {
 		return parseNodeValueImpl(val);
 	}
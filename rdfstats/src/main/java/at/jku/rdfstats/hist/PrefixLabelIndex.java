@@ -0,0 +1,125 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.hist;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * @author dorgon
+ *
+ * Immutable lookup structure over the prefix labels of a histogram. Labels are kept in a sorted array, additionally
+ * for each label the position of the longest other label being a prefix of it is stored. Lookups use binary search
+ * and walk up this prefix chain, they do not allocate any objects.
+ * 
+ * Labels are usually sorted already (as generated by the builders), otherwise a sorted copy is used and positions are
+ * mapped back to the original bin indexes.
+ */
+public class PrefixLabelIndex {
+	
+	/** sorted labels */
+	private final String[] labels;
+	
+	/** sorted position => bin index, null if the labels were sorted already */
+	private final int[] binIndexes;
+	
+	/** sorted position => sorted position of the longest label being a proper prefix, -1 if none */
+	private final int[] prefixes;
+	
+	/**
+	 * @param labels bin labels, ordered or not
+	 */
+	public PrefixLabelIndex(final String[] labels) {
+		boolean sorted = true;
+		for (int i = 1; i < labels.length && sorted; i++)
+			sorted = labels[i - 1].compareTo(labels[i]) <= 0;
+		
+		if (sorted) {
+			this.labels = labels;
+			this.binIndexes = null;
+		} else {
+			Integer[] order = new Integer[labels.length];
+			for (int i = 0; i < order.length; i++)
+				order[i] = i;
+			Arrays.sort(order, new Comparator<Integer>() {
+				public int compare(Integer a, Integer b) {
+					return labels[a].compareTo(labels[b]);
+				}
+			});
+			this.labels = new String[labels.length];
+			this.binIndexes = new int[labels.length];
+			for (int i = 0; i < order.length; i++) {
+				this.labels[i] = labels[order[i]];
+				this.binIndexes[i] = order[i];
+			}
+		}
+		
+		// all labels being a prefix of labels[i] precede it, they are kept in a stack
+		prefixes = new int[labels.length];
+		int[] stack = new int[labels.length];
+		int size = 0;
+		for (int i = 0; i < this.labels.length; i++) {
+			while (size > 0 && !this.labels[i].startsWith(this.labels[stack[size - 1]]))
+				size--;
+			prefixes[i] = (size > 0) ? stack[size - 1] : -1;
+			stack[size++] = i;
+		}
+	}
+	
+	/**
+	 * @return number of labels
+	 */
+	public int size() {
+		return labels.length;
+	}
+	
+	/**
+	 * @param pos position in lexicographical order
+	 * @return the bin index of the label at pos
+	 */
+	public int getBinIndex(int pos) {
+		return (binIndexes != null) ? binIndexes[pos] : pos;
+	}
+	
+	/**
+	 * @param val
+	 * @return the number of labels lexicographically lower than val
+	 */
+	public int getLowerCount(String val) {
+		int pos = Arrays.binarySearch(labels, val);
+		return (pos >= 0) ? pos : -pos - 1;
+	}
+	
+	/**
+	 * returns the bin index of the longest label being a prefix of val
+	 * e.g. finds "Dani" for key "Daniel" but not "Daniel" for key "Dani"
+	 * 
+	 * @param val
+	 * @return the bin index or -1 if no label is a prefix of val
+	 */
+	public int getClosestPrefix(String val) {
+		int pos = Arrays.binarySearch(labels, val);
+		if (pos >= 0)
+			return getBinIndex(pos);
+		
+		// a label being a prefix of val is also a prefix of the greatest label lower than val
+		pos = -pos - 2;
+		while (pos >= 0 && !val.startsWith(labels[pos]))
+			pos = prefixes[pos];
+		return (pos >= 0) ? getBinIndex(pos) : -1;
+	}
+	
+}
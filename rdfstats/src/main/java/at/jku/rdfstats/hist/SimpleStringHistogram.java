@@ -111,6 +111,14 @@ public class SimpleStringHistogram extends AbstractHistogram<String> {
 		return sb.toString();
 	}
 	
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.AbstractHistogram#withBinData(int[], int[], int)
+	 */
+	@Override
+	protected SimpleStringHistogram withBinData(int[] bins, int[] binDistinctValues, int distinctValues) {
+		return new SimpleStringHistogram(typeUri, bins, labels, builderClass);
+	}
+
 	/* (non-Javadoc)
 	 * @see at.jku.rdfstats.hist.Histogram#parseNodeValue(com.hp.hpl.jena.graph.Node)
 	 */
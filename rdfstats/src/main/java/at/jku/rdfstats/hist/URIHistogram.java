@@ -26,5 +26,13 @@ public class URIHistogram extends OrderedStringHistogram {
 	public URIHistogram(String typeUri, int[] bins, int distinctValues, int[] distinctBinValues, String[] labels, String min, String max, Class<? extends HistogramBuilder<?>> builderClass) {
 		super(typeUri, bins, distinctValues, distinctBinValues, labels, min, max, builderClass);
 	}
+
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.OrderedStringHistogram#withBinData(int[], int[], int)
+	 */
+	@Override
+	protected URIHistogram withBinData(int[] bins, int[] binDistinctValues, int distinctValues) {
+		return new URIHistogram(typeUri, bins, distinctValues, binDistinctValues, labels, min, max, builderClass);
+	}
 	
 }
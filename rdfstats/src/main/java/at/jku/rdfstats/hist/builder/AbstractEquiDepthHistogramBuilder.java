@@ -0,0 +1,188 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.hist.builder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.hist.AbstractEquiDepthHistogram;
+import at.jku.rdfstats.hist.Histogram;
+
+/**
+ * @author dorgon
+ *
+ * Abstract base of the equi-depth histogram builders. Values are collected as order-preserving long keys
+ * in a {@link LongCountMap}. Bin boundaries are then placed such that each bin holds about
+ * (remaining values / remaining bins) values, a single frequent value may fill a bin on its own.
+ *
+ * Byte stream layout (following the common header written by {@link HistogramCodec}, size = number of bins):
+ * minKey, upperKeys[size], bins[size], distinct values per bin[size], distinctValues. The compact encoding
+ * writes the upper keys as deltas starting from minKey.
+ */
+public abstract class AbstractEquiDepthHistogramBuilder<NATIVE extends Comparable<NATIVE>> extends AbstractHistogramBuilder<NATIVE> {
+
+	/** distinct value keys and their frequencies */
+	protected LongCountMap counts = new LongCountMap();
+
+	/**
+	 * @param conf
+	 * @param typeUri
+	 * @param prefSize
+	 */
+	public AbstractEquiDepthHistogramBuilder(RDFStatsConfiguration conf, String typeUri, int prefSize) {
+		super(conf, typeUri, prefSize);
+	}
+
+	@Override
+	public void addValue(NATIVE val) {
+		counts.add(toKey(val));
+	}
+
+	/**
+	 * @param key order-preserving long representation of a value
+	 */
+	protected void addKey(long key) {
+		counts.add(key);
+	}
+
+	/**
+	 * @param val
+	 * @return order-preserving long representation of val
+	 */
+	protected abstract long toKey(NATIVE val);
+
+	/**
+	 * @return a new concrete histogram instance
+	 */
+	protected abstract AbstractEquiDepthHistogram<NATIVE> createHistogram(int[] bins, int[] binDistinctValues, long minKey, long[] upperKeys, int distinctValues);
+
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#mergeData(at.jku.rdfstats.hist.builder.AbstractHistogramBuilder)
+	 */
+	@Override
+	protected void mergeData(AbstractHistogramBuilder<NATIVE> other) {
+		counts.addAll(((AbstractEquiDepthHistogramBuilder<NATIVE>) other).counts);
+	}
+	
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#generateHistogram()
+	 */
+	@Override
+	protected Histogram<NATIVE> generateHistogram() {
+		long[] keys = counts.keys();
+		Arrays.sort(keys);
+
+		long total = 0;
+		for (long key : keys)
+			total += counts.get(key);
+
+		int maxBins = Math.max(1, Math.min(prefSize, keys.length));
+		int[] data = new int[maxBins];
+		int[] distinct = new int[maxBins];
+		long[] upper = new long[maxBins];
+
+		int numBins = 0;
+		long closed = 0; // number of values in closed bins
+		long cum = 0;
+		for (int i = 0; i < keys.length; i++) {
+			int c = counts.get(keys[i]);
+			int binsLeft = maxBins - numBins;
+
+			// close the bin before a frequent value if it would overshoot the depth more than it is short of it now
+			if (data[numBins] > 0 && binsLeft > 1) {
+				double depth = (total - closed) / (double) binsLeft;
+				if (data[numBins] + c - depth > depth - data[numBins]) {
+					upper[numBins++] = keys[i-1];
+					closed = cum;
+					binsLeft--;
+				}
+			}
+
+			data[numBins] += c;
+			distinct[numBins]++;
+			cum += c;
+
+			// close the bin if it reached the remaining depth, the last bin takes all remaining values
+			if (i == keys.length-1 || (binsLeft > 1 && (cum - closed) * binsLeft >= total - closed)) {
+				upper[numBins++] = keys[i];
+				closed = cum;
+			}
+		}
+
+		if (numBins < maxBins) {
+			data = trim(data, numBins);
+			distinct = trim(distinct, numBins);
+			long[] u = new long[numBins];
+			System.arraycopy(upper, 0, u, 0, numBins);
+			upper = u;
+		}
+
+		int distinctValues = keys.length;
+		long minKey = keys[0];
+		counts = null;
+
+		return createHistogram(data, distinct, minKey, upper, distinctValues);
+	}
+
+	private static int[] trim(int[] a, int len) {
+		int[] t = new int[len];
+		System.arraycopy(a, 0, t, 0, len);
+		return t;
+	}
+
+	public void writeData(ByteArrayOutputStream stream, Histogram<NATIVE> h) {
+		AbstractEquiDepthHistogram<NATIVE> hist = (AbstractEquiDepthHistogram<NATIVE>) h;
+		HistogramCodec.writeLong(stream, hist.getMinKey());
+		HistogramCodec.writeLongArray(stream, hist.getUpperKeys());
+		HistogramCodec.writeIntArray(stream, hist.getBinData());
+		HistogramCodec.writeIntArray(stream, hist.getBinDistinctData());
+		HistogramCodec.writeInt(stream, hist.getDistinctValues());
+	}
+
+	public AbstractEquiDepthHistogram<NATIVE> readData(ByteArrayInputStream stream) {
+		long minKey = HistogramCodec.readLong(stream);
+		long[] upperKeys = HistogramCodec.readLongArray(stream, prefSize);
+		int[] bins = HistogramCodec.readIntArray(stream, prefSize);
+		int[] binDistinctValues = HistogramCodec.readIntArray(stream, prefSize);
+		int distinctValues = HistogramCodec.readInt(stream);
+
+		return createHistogram(bins, binDistinctValues, minKey, upperKeys, distinctValues);
+	}
+
+	@Override
+	public void writeCompactData(CompactDataOutput out, Histogram<NATIVE> h) {
+		AbstractEquiDepthHistogram<NATIVE> hist = (AbstractEquiDepthHistogram<NATIVE>) h;
+		out.writeZigZagLong(hist.getMinKey());
+		out.writeLongArray(hist.getUpperKeys(), hist.getMinKey());
+		out.writeIntArray(hist.getBinData());
+		out.writeIntArray(hist.getBinDistinctData());
+		out.writeVarInt(hist.getDistinctValues());
+	}
+
+	@Override
+	public AbstractEquiDepthHistogram<NATIVE> readCompactData(CompactDataInput in) {
+		long minKey = in.readZigZagLong();
+		long[] upperKeys = in.readLongArray(prefSize, minKey);
+		int[] bins = in.readIntArray(prefSize);
+		int[] binDistinctValues = in.readIntArray(prefSize);
+		int distinctValues = in.readVarInt();
+
+		return createHistogram(bins, binDistinctValues, minKey, upperKeys, distinctValues);
+	}
+
+}
@@ -70,6 +70,40 @@ public abstract class AbstractHistogramBuilder<NATIVE> implements HistogramBuild
 			values.put(val, ++old);
 	}
 
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.builder.HistogramBuilder#merge(at.jku.rdfstats.hist.builder.HistogramBuilder)
+	 */
+	public final void merge(HistogramBuilder<NATIVE> other) throws HistogramBuilderException {
+		if (other == this)
+			throw new HistogramBuilderException("Cannot merge a histogram builder into itself.");
+		if (other.getClass() != getClass())
+			throw new HistogramBuilderException("Cannot merge a " + other.getClass().getSimpleName() + " into a " + getClass().getSimpleName() + ".");
+		
+		AbstractHistogramBuilder<NATIVE> o = (AbstractHistogramBuilder<NATIVE>) other;
+		if ((typeUri == null) ? o.typeUri != null : !typeUri.equals(o.typeUri))
+			throw new HistogramBuilderException("Cannot merge histogram builders of different types (" + typeUri + ", " + o.typeUri + ").");
+		if (histogram != null || o.histogram != null)
+			throw new HistogramBuilderException("Cannot merge histogram builders after the histogram has been generated.");
+		
+		mergeData(o);
+	}
+	
+	/**
+	 * merges the data collected by other into this builder, the default implementation sums up the values maps,
+	 * builders using custom data structures must override it
+	 * 
+	 * @param other a builder of the same class and type URI
+	 */
+	protected void mergeData(AbstractHistogramBuilder<NATIVE> other) {
+		for (Map.Entry<NATIVE, Integer> e : other.values.entrySet()) {
+			Integer old = values.get(e.getKey());
+			if (old == null)
+				values.put(e.getKey(), e.getValue());
+			else
+				values.put(e.getKey(), (old > Integer.MAX_VALUE - e.getValue()) ? Integer.MAX_VALUE : old + e.getValue());
+		}
+	}
+	
 	/* (non-Javadoc)
 	 * @see at.jku.rdfstats.hist.builder.HistogramBuilder#getHistogram()
 	 */
@@ -90,5 +124,24 @@ public abstract class AbstractHistogramBuilder<NATIVE> implements HistogramBuild
 	/** must implement byte stream decoding used by {@link HistogramCodec} */
 	public abstract void writeData(ByteArrayOutputStream out, Histogram<NATIVE> h);
 	
+	/** compact encoding used by {@link HistogramCodec} since version {@link HistogramCodec#VERSION},
+	 * the default implementation embeds the data written by {@link #writeData(ByteArrayOutputStream, Histogram)}
+	 * and should be overridden by builders of frequently used histograms
+	 */
+	public void writeCompactData(CompactDataOutput out, Histogram<NATIVE> h) {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		writeData(stream, h);
+		byte[] data = stream.toByteArray();
+		out.writeVarInt(data.length);
+		out.write(data, 0, data.length);
+	}
+	
+	/** reads the compact encoding written by {@link #writeCompactData(CompactDataOutput, Histogram)} */
+	public Histogram<NATIVE> readCompactData(CompactDataInput in) {
+		byte[] data = new byte[in.readVarInt()];
+		in.getBuffer().get(data);
+		return readData(new ByteArrayInputStream(data));
+	}
+	
 }
 
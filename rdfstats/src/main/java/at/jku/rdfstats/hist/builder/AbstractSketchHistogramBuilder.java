@@ -0,0 +1,126 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.hist.builder;
+
+import at.jku.rdfstats.RDFStatsConfiguration;
+
+/**
+ * @author dorgon
+ *
+ * Abstract base of the approximate numeric histogram builders. Instead of keeping all distinct values,
+ * values are mapped to order-preserving long keys and collected in a {@link LongQuantileSketch}
+ * and a {@link HyperLogLog}, hence memory usage is constant (about 10 KB per builder) independent
+ * of the number of values.
+ *
+ * Error bounds: min and max are exact, the number of values falling into a bin is off by at most about
+ * 2 * 1.7% of the total number of values (with 99% probability), the number of distinct values has a
+ * relative standard error of 1.6%. The bounds also hold for merged builders because both sketches are mergeable.
+ *
+ * The generated histograms are the same as those of the exact builders and are encoded by them,
+ * so decoding does not depend on which builder was used.
+ */
+public abstract class AbstractSketchHistogramBuilder<NATIVE> extends AbstractHistogramBuilder<NATIVE> {
+
+	/** quantile sketch over the value keys */
+	protected LongQuantileSketch sketch = new LongQuantileSketch();
+
+	/** distinct value estimator */
+	protected HyperLogLog distinct = new HyperLogLog();
+
+	/** exact min and max keys */
+	protected long minKey = Long.MAX_VALUE;
+	protected long maxKey = Long.MIN_VALUE;
+
+	/**
+	 * @param conf
+	 * @param typeUri
+	 * @param prefSize
+	 */
+	public AbstractSketchHistogramBuilder(RDFStatsConfiguration conf, String typeUri, int prefSize) {
+		super(conf, typeUri, prefSize);
+	}
+
+	@Override
+	public void addValue(NATIVE val) {
+		addKey(toKey(val));
+	}
+
+	/**
+	 * @param key order-preserving long representation of a value
+	 */
+	protected void addKey(long key) {
+		sketch.update(key);
+		distinct.add(key);
+		if (key < minKey) minKey = key;
+		if (key > maxKey) maxKey = key;
+	}
+
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#mergeData(at.jku.rdfstats.hist.builder.AbstractHistogramBuilder)
+	 */
+	@Override
+	protected void mergeData(AbstractHistogramBuilder<NATIVE> other) {
+		AbstractSketchHistogramBuilder<NATIVE> o = (AbstractSketchHistogramBuilder<NATIVE>) other;
+		sketch.merge(o.sketch);
+		distinct.merge(o.distinct);
+		if (o.minKey < minKey) minKey = o.minKey;
+		if (o.maxKey > maxKey) maxKey = o.maxKey;
+	}
+
+	/**
+	 * @param val
+	 * @return order-preserving long representation of val
+	 */
+	protected abstract long toKey(NATIVE val);
+
+	/**
+	 * @param maxDistinct upper bound for the number of distinct values (e.g. the size of an integer range)
+	 * @return estimated number of distinct values, at least 1 and at most the number of values
+	 */
+	protected int estimateDistinctValues(long maxDistinct) {
+		long est = Math.min(distinct.estimate(), Math.min(sketch.getN(), maxDistinct));
+		return (int) Math.max(1, Math.min(est, Integer.MAX_VALUE));
+	}
+
+	/** @return v interpreted as unsigned, e.g. the difference of two longs exceeding Long.MAX_VALUE */
+	protected static double unsignedToDouble(long v) {
+		return (v >= 0) ? v : (v >>> 1) * 2.0 + (v & 1);
+	}
+
+	/** order-preserving mapping of a double to a long key */
+	protected static long doubleToKey(double d) {
+		long bits = Double.doubleToLongBits(d);
+		return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+	}
+
+	/** inverse of {@link #doubleToKey(double)} */
+	protected static double keyToDouble(long key) {
+		return Double.longBitsToDouble(key ^ ((key >> 63) & Long.MAX_VALUE));
+	}
+
+	/** order-preserving mapping of a float to a long key */
+	protected static long floatToKey(float f) {
+		int bits = Float.floatToIntBits(f);
+		return bits ^ ((bits >> 31) & Integer.MAX_VALUE);
+	}
+
+	/** inverse of {@link #floatToKey(float)} */
+	protected static float keyToFloat(long key) {
+		int k = (int) key;
+		return Float.intBitsToFloat(k ^ ((k >> 31) & Integer.MAX_VALUE));
+	}
+
+}
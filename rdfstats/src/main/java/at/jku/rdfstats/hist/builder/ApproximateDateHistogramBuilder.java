@@ -0,0 +1,94 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.hist.builder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Date;
+
+import at.jku.rdfstats.ParseException;
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.hist.Histogram;
+import at.jku.rdfstats.hist.DateHistogram;
+
+import com.hp.hpl.jena.graph.Node;
+
+/**
+ * Approximate variant of {@link DateHistogramBuilder} using constant memory, see {@link AbstractSketchHistogramBuilder}
+ * for error bounds.
+ * 
+ * @author dorgon
+ *
+ */
+public class ApproximateDateHistogramBuilder extends AbstractSketchHistogramBuilder<Date> {
+
+	/**
+	 * @param conf
+	 * @param typeUri
+	 * @param prefSize
+	 */
+	public ApproximateDateHistogramBuilder(RDFStatsConfiguration conf, String typeUri, int prefSize) {
+		super(conf, typeUri, prefSize);
+	}
+	
+	public void addNodeValue(Node val) throws HistogramBuilderException {
+		try {
+			addKey(DateHistogram.parseNodeValueImpl(val).getTime());
+		} catch (ParseException e) {
+			throw new HistogramBuilderException("Error parsing node value: " + e.getMessage(), e);
+		}		
+	}
+	
+	@Override
+	protected long toKey(Date val) {
+		return val.getTime();
+	}
+
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#generateHistogram()
+	 */
+	@Override
+	public Histogram<Date> generateHistogram() {
+		long[][] items = sketch.getWeightedItems();
+		Date min = new Date(minKey);
+		Date max = new Date(maxKey);
+		long range = maxKey - minKey;
+		int distinctValues = estimateDistinctValues(range + 1);
+
+		int numBins = (range > 0) ? prefSize : 1;
+		if (distinctValues < numBins) numBins = distinctValues;
+		
+		double binWidth = range / (double) numBins;
+		int[] data = new int[numBins];
+		for (int i = 0; i < items[0].length; i++) {
+			int idx = (int) Math.floor((items[0][i]-minKey) / binWidth);
+			if (idx >= data.length) idx = data.length-1; // corner case, last entry fits into last bin even if slightly higher
+			data[idx] += items[1][i];
+		}
+		sketch = null;
+		distinct = null;
+		
+		return new DateHistogram(typeUri, data, distinctValues, min, max, DateHistogramBuilder.class);
+	}
+	
+	public void writeData(ByteArrayOutputStream stream, Histogram<Date> h) {
+		new DateHistogramBuilder(conf, typeUri, prefSize).writeData(stream, h);
+	}	
+	
+	public DateHistogram readData(ByteArrayInputStream stream) {
+		return new DateHistogramBuilder(conf, typeUri, prefSize).readData(stream);
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.hist.builder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import at.jku.rdfstats.ParseException;
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.hist.Histogram;
+import at.jku.rdfstats.hist.DoubleHistogram;
+
+import com.hp.hpl.jena.graph.Node;
+
+/**
+ * Approximate variant of {@link DoubleHistogramBuilder} using constant memory, see {@link AbstractSketchHistogramBuilder}
+ * for error bounds.
+ * 
+ * @author dorgon
+ *
+ */
+public class ApproximateDoubleHistogramBuilder extends AbstractSketchHistogramBuilder<Double> {
+
+	/**
+	 * @param conf
+	 * @param typeUri
+	 * @param prefSize
+	 */
+	public ApproximateDoubleHistogramBuilder(RDFStatsConfiguration conf, String typeUri, int prefSize) {
+		super(conf, typeUri, prefSize);
+	}
+	
+	public void addNodeValue(Node val) throws HistogramBuilderException {
+		try {
+			addKey(doubleToKey(DoubleHistogram.parseNodeValueImpl(val)));
+		} catch (ParseException e) {
+			throw new HistogramBuilderException("Error parsing node value: " + e.getMessage(), e);
+		}		
+	}
+	
+	@Override
+	protected long toKey(Double val) {
+		return doubleToKey(val);
+	}
+	
+	public void addValue(double val) {
+		addKey(doubleToKey(val));
+	}
+
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#generateHistogram()
+	 */
+	@Override
+	public Histogram<Double> generateHistogram() {
+		long[][] items = sketch.getWeightedItems();
+		double min = keyToDouble(minKey);
+		double max = keyToDouble(maxKey);
+		// max - min overflows if the values span more than half of the domain, halved values are binned then
+		double scale = (Double.isInfinite(max - min) && !Double.isInfinite(min) && !Double.isInfinite(max)) ? 0.5 : 1;
+		double range = max * scale - min * scale;
+		int distinctValues = estimateDistinctValues(Long.MAX_VALUE);
+	
+		int numBins = (range > 0) ? prefSize : 1;
+		if (distinctValues < numBins) numBins = distinctValues;
+
+		double binWidth = range / (double) numBins;
+		int[] data = new int[numBins];
+		for (int i = 0; i < items[0].length; i++) {
+			int idx = (int) Math.floor((keyToDouble(items[0][i]) * scale - min * scale) / binWidth);
+			if (idx >= data.length) idx = data.length-1; // corner case, last entry fits into last bin even if slightly higher
+			data[idx] += items[1][i];
+		}
+		sketch = null;
+		distinct = null;
+		
+		return new DoubleHistogram(typeUri, data, distinctValues, min, max, DoubleHistogramBuilder.class);
+	}
+	
+	public void writeData(ByteArrayOutputStream stream, Histogram<Double> h) {
+		new DoubleHistogramBuilder(conf, typeUri, prefSize).writeData(stream, h);
+	}	
+	
+	public DoubleHistogram readData(ByteArrayInputStream stream) {
+		return new DoubleHistogramBuilder(conf, typeUri, prefSize).readData(stream);
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.hist.builder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import at.jku.rdfstats.ParseException;
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.hist.Histogram;
+import at.jku.rdfstats.hist.IntegerHistogram;
+
+import com.hp.hpl.jena.graph.Node;
+
+/**
+ * Approximate variant of {@link IntegerHistogramBuilder} using constant memory, see {@link AbstractSketchHistogramBuilder}
+ * for error bounds.
+ * 
+ * @author dorgon
+ *
+ */
+public class ApproximateIntegerHistogramBuilder extends AbstractSketchHistogramBuilder<Integer> {
+
+	/**
+	 * @param conf
+	 * @param typeUri
+	 * @param prefSize
+	 */
+	public ApproximateIntegerHistogramBuilder(RDFStatsConfiguration conf, String typeUri, int prefSize) {
+		super(conf, typeUri, prefSize);
+	}
+	
+	public void addNodeValue(Node val) throws HistogramBuilderException {
+		try {
+			addKey(IntegerHistogram.parseNodeValueImpl(val));
+		} catch (ParseException e) {
+			throw new HistogramBuilderException("Error parsing node value: " + e.getMessage(), e);
+		}		
+	}
+	
+	@Override
+	protected long toKey(Integer val) {
+		return val;
+	}
+	
+	public void addValue(int val) {
+		addKey(val);
+	}
+
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#generateHistogram()
+	 */
+	@Override
+	public Histogram<Integer> generateHistogram() {
+		long[][] items = sketch.getWeightedItems();
+		int min = (int) minKey;
+		int max = (int) maxKey;
+		long range = (long) max - min + 1L; // add one in case of integer values, otherwise the last value would be out of the range
+		int distinctValues = estimateDistinctValues(range);
+	
+		int numBins = (range > 0) ? prefSize : 1;
+		if (distinctValues < numBins) numBins = distinctValues;
+		
+		double binWidth = range / (double) numBins;
+		int[] data = new int[numBins];
+		for (int i = 0; i < items[0].length; i++) {
+			int idx = (int) Math.floor((items[0][i]-min) / binWidth);
+			if (idx >= data.length) idx = data.length-1; // corner case, last entry fits into last bin even if slightly higher
+			data[idx] += items[1][i];
+		}
+		sketch = null;
+		distinct = null;
+		
+		return new IntegerHistogram(typeUri, data, distinctValues, min, max, IntegerHistogramBuilder.class);
+	}
+	
+	public void writeData(ByteArrayOutputStream stream, Histogram<Integer> h) {
+		new IntegerHistogramBuilder(conf, typeUri, prefSize).writeData(stream, h);
+	}	
+	
+	public IntegerHistogram readData(ByteArrayInputStream stream) {
+		return new IntegerHistogramBuilder(conf, typeUri, prefSize).readData(stream);
+	}
+}
@@ -0,0 +1,423 @@
+/**
+ * Copyright 2007-2008 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.hist.builder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import at.jku.rdfstats.ParseException;
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.hist.Histogram;
+import at.jku.rdfstats.hist.URIHistogram;
+
+import com.hp.hpl.jena.graph.Node;
+
+/**
+ * @author dorgon
+ *
+ * Approximate variant of {@link URIHistogramBuilder} with memory bounded by a node budget instead of the number of
+ * distinct URIs.
+ * 
+ * URIs are folded online into a trie of path segments (separated by {@link URIHistogramBuilder#SEPARATOR}, the domain
+ * of http URIs is kept as the first segment). If the number of nodes exceeds {@link RDFStatsConfiguration#getUriHistogramNodeBudget()},
+ * the deepest level of the trie is merged into its parents and URIs are not resolved beyond that depth anymore.
+ * Merged nodes estimate their distinct values with a {@link HyperLogLog} of precision {@link #SKETCH_PRECISION}
+ * (1 KB, relative standard error 3.3%). If even the first level exceeds the budget, further new first segments are
+ * collected in a bin labeled with the empty string.
+ * 
+ * Bins are the nodes of the deepest level for which the histogram has at most prefSize bins (at least the first level).
+ * Bin quantities are exact, min and max are exact. Merging builders merges their tries, nodes which are merged in any
+ * of both tries collect the whole subtree of the other one. The generated histograms are the same as those of the exact builder
+ * and are encoded by it.
+ */
+public class ApproximateURIHistogramBuilder extends AbstractHistogramBuilder<String> {
+	
+	/** precision of the distinct value sketches of merged nodes */
+	public static final int SKETCH_PRECISION = 10;
+	
+	/** maximum number of nodes (excluding the root) */
+	protected final int nodeBudget;
+
+	/** root node, represents the empty prefix and collects values exceeding the budget at the first level */
+	protected SegmentNode root = new SegmentNode("", 0);
+
+	/** current number of nodes (excluding the root) */
+	protected int nodes = 0;
+	
+	/** depth of the deepest node */
+	protected int maxDepth = 0;
+	
+	/** URIs are not resolved beyond this depth, nodes at this depth collect all values below */
+	protected int depthLimit = Integer.MAX_VALUE;
+	
+	/** lexicographically lowest value found */
+	protected String min;
+	
+	/** lexicographically highest value found */
+	protected String max;
+	
+	/**
+	 * @param conf
+	 * @param typeUri
+	 * @param prefSize
+	 */
+	public ApproximateURIHistogramBuilder(RDFStatsConfiguration conf, String typeUri, int prefSize) {
+		super(conf, typeUri, prefSize);
+		nodeBudget = (conf != null) ? conf.getUriHistogramNodeBudget() : RDFStatsConfiguration.DEFAULT_URIHIST_NODE_BUDGET;
+	}
+
+	@Override
+	public void addValue(String uri) {
+		if (min == null || uri.compareTo(min) < 0) min = uri;
+		if (max == null || uri.compareTo(max) > 0) max = uri;
+
+		int len = uri.length();
+		int from = Math.max(1, (URIHistogramBuilder.KEEP_HTTP_DOMAINS && uri.startsWith("http://")) ? 7 : 0);
+		boolean end = (len == 0);
+		
+		SegmentNode node = root;
+		node.total++;
+		while (!end) {
+			if (node != root && (node.sketch != null || node.depth >= depthLimit)) {
+				node.merge();
+				break;
+			}
+			
+			int sep = (from < len) ? uri.indexOf(URIHistogramBuilder.SEPARATOR, from) : -1;
+			String label = (sep < 0) ? uri : uri.substring(0, sep);
+			end = (sep < 0);
+			from = sep + 1;
+			
+			SegmentNode child = node.getChild(label);
+			if (child == null) {
+				if (node == root && nodes >= nodeBudget && maxDepth <= 1) { // collect in root
+					root.merge();
+					break;
+				}
+				child = node.addChild(label);
+				nodes++;
+				if (child.depth > maxDepth)
+					maxDepth = child.depth;
+			}
+			node = child;
+			node.total++;
+		}
+		
+		node.terminal++;
+		if (node.sketch != null)
+			node.sketch.add(uri);
+		
+		if (nodes > nodeBudget)
+			compress();
+	}
+	
+	public void addNodeValue(Node val) throws HistogramBuilderException {
+		try {
+			if (val.isURI()) { // don't add blank nodes
+				String s = URIHistogram.parseNodeValueImpl(val);
+				addValue(s);
+			}
+		} catch (ParseException e) {
+			throw new HistogramBuilderException("Error parsing node value: " + e.getMessage(), e);
+		}	
+	}
+	
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#mergeData(at.jku.rdfstats.hist.builder.AbstractHistogramBuilder)
+	 */
+	@Override
+	protected void mergeData(AbstractHistogramBuilder<String> other) {
+		ApproximateURIHistogramBuilder o = (ApproximateURIHistogramBuilder) other;
+		if (o.min != null && (min == null || o.min.compareTo(min) < 0)) min = o.min;
+		if (o.max != null && (max == null || o.max.compareTo(max) > 0)) max = o.max;
+		
+		root.total += o.root.total;
+		root.terminal += o.root.terminal;
+		if (o.root.sketch != null) {
+			root.merge();
+			root.sketch.merge(o.root.sketch);
+		}
+		if (o.root.children != null)
+			for (SegmentNode c : o.root.children.values())
+				mergeNode(root, c);
+		
+		if (nodes > nodeBudget)
+			compress();
+		
+		// the first level is still too large, collect the remaining first segments in the root
+		if (nodes > nodeBudget) {
+			root.merge();
+			Iterator<SegmentNode> it = root.children.values().iterator();
+			while (nodes > nodeBudget && it.hasNext()) {
+				SegmentNode c = it.next();
+				root.terminal += c.total;
+				nodes -= fold(root.sketch, c);
+				it.remove();
+			}
+		}
+	}
+	
+	/**
+	 * merges the subtree of other (from another trie) into the child with the same label of parent
+	 * 
+	 * @param parent
+	 * @param other
+	 */
+	private void mergeNode(SegmentNode parent, SegmentNode other) {
+		SegmentNode node = parent.getChild(other.label);
+		if (node == null) {
+			node = parent.addChild(other.label);
+			nodes++;
+			if (node.depth > maxDepth)
+				maxDepth = node.depth;
+		}
+		node.total += other.total;
+		
+		if (node.sketch != null || other.sketch != null || node.depth >= depthLimit) {
+			// collapse both subtrees into node
+			node.merge();
+			if (node.children != null) {
+				for (SegmentNode c : node.children.values()) {
+					node.terminal += c.total;
+					nodes -= fold(node.sketch, c);
+				}
+				node.children = null;
+			}
+			node.terminal += other.total;
+			if (other.sketch != null)
+				node.sketch.merge(other.sketch);
+			else if (other.terminal > 0)
+				node.sketch.add(other.label);
+			if (other.children != null)
+				for (SegmentNode c : other.children.values())
+					fold(node.sketch, c);
+		} else {
+			node.terminal += other.terminal;
+			if (other.children != null)
+				for (SegmentNode c : other.children.values())
+					mergeNode(node, c);
+		}
+	}
+	
+	/**
+	 * adds the distinct values of a subtree to a sketch
+	 * 
+	 * @param sketch
+	 * @param node
+	 * @return number of nodes of the subtree
+	 */
+	private int fold(HyperLogLog sketch, SegmentNode node) {
+		int n = 1;
+		if (node.sketch != null)
+			sketch.merge(node.sketch);
+		else if (node.terminal > 0)
+			sketch.add(node.label);
+		if (node.children != null)
+			for (SegmentNode c : node.children.values())
+				n += fold(sketch, c);
+		return n;
+	}
+	
+	/**
+	 * @return current number of trie nodes (excluding the root)
+	 */
+	public int getNumNodes() {
+		return nodes;
+	}
+	
+	/**
+	 * merges the deepest level into the parents until the number of nodes is within the budget
+	 */
+	protected void compress() {
+		while (nodes > nodeBudget && maxDepth > 1) {
+			depthLimit = maxDepth - 1;
+			merge(root);
+			maxDepth = depthLimit;
+		}
+	}
+	
+	private void merge(SegmentNode node) {
+		if (node.children == null)
+			return;
+		if (node.depth < depthLimit) {
+			for (SegmentNode child : node.children.values())
+				merge(child);
+		} else {
+			node.merge();
+			for (SegmentNode child : node.children.values()) { // leaves, because they are at the maximum depth
+				if (child.sketch != null)
+					node.sketch.merge(child.sketch);
+				else if (child.terminal > 0)
+					node.sketch.add(child.label);
+				node.terminal += child.total;
+				nodes--;
+			}
+			node.children = null;
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#generateHistogram()
+	 */
+	@Override
+	public URIHistogram generateHistogram() {
+		// bins[l] = number of bins if cut at depth l: nodes at depth l and nodes above with own values
+		int[] numBins = new int[maxDepth + 2];
+		count(root, numBins);
+		for (int l = 1; l < numBins.length; l++)
+			numBins[l] += numBins[l - 1];
+		int depth = Math.max(1, maxDepth);
+		while (depth > 1 && numBins[depth] > prefSize)
+			depth--;
+		
+		Bin[] bins = new Bin[numBins[depth]];
+		emit(root, depth, bins, 0);
+		Arrays.sort(bins);
+		
+		String[] labels = new String[bins.length];
+		int[] data = new int[bins.length];
+		int[] distinct = new int[bins.length];
+		int distinctTotal = 0;
+		for (int i = 0; i < bins.length; i++) {
+			labels[i] = bins[i].label;
+			data[i] = bins[i].quantity;
+			distinct[i] = bins[i].distinct;
+			distinctTotal += distinct[i];
+		}
+		root = null;
+		
+		return new URIHistogram(typeUri, data, distinctTotal, distinct, labels, min, max, URIHistogramBuilder.class);
+	}
+	
+	/** adds node to numBins[depth] and, if it has values, to numBins[depth + 1] (prefix sums are built afterwards) */
+	private void count(SegmentNode node, int[] numBins) {
+		if (node != root) {
+			numBins[node.depth]++;
+			numBins[node.depth + 1]--;
+		}
+		if (node.terminal > 0)
+			numBins[node.depth + 1]++;
+		if (node.children != null)
+			for (SegmentNode child : node.children.values())
+				count(child, numBins);
+	}
+	
+	private int emit(SegmentNode node, int depth, Bin[] bins, int i) {
+		if (node.depth == depth && node != root) {
+			HyperLogLog sketch = new HyperLogLog(SKETCH_PRECISION);
+			long exact = collect(node, sketch);
+			bins[i++] = new Bin(node.label, node.total, exact + sketch.estimate());
+		} else {
+			if (node.terminal > 0)
+				bins[i++] = new Bin(node.label, node.terminal, (node.sketch != null) ? node.sketch.estimate() : 1);
+			if (node.children != null)
+				for (SegmentNode child : node.children.values())
+					i = emit(child, depth, bins, i);
+		}
+		return i;
+	}
+	
+	/**
+	 * @param node
+	 * @param sketch receives the sketches of the subtree
+	 * @return number of distinct values of the subtree not covered by sketches
+	 */
+	private long collect(SegmentNode node, HyperLogLog sketch) {
+		long exact = 0;
+		if (node.sketch != null)
+			sketch.merge(node.sketch);
+		else if (node.terminal > 0)
+			exact++;
+		if (node.children != null)
+			for (SegmentNode child : node.children.values())
+				exact += collect(child, sketch);
+		return exact;
+	}
+
+	public void writeData(ByteArrayOutputStream stream, Histogram<String> h) {
+		new URIHistogramBuilder(conf, typeUri, prefSize).writeData(stream, h);
+	}
+	
+	public URIHistogram readData(ByteArrayInputStream stream) {
+		return new URIHistogramBuilder(conf, typeUri, prefSize).readData(stream);
+	}
+
+	/** node of the segment trie, represents the prefix label */
+	protected static class SegmentNode {
+		final String label;
+		final int depth;
+		
+		/** number of values equal to label, or collected by this node after merging */
+		int terminal;
+		
+		/** number of values in the subtree */
+		int total;
+		
+		/** distinct values collected after merging, null if not merged */
+		HyperLogLog sketch;
+		
+		/** label => child */
+		Map<String, SegmentNode> children;
+		
+		SegmentNode(String label, int depth) {
+			this.label = label;
+			this.depth = depth;
+		}
+		
+		SegmentNode getChild(String label) {
+			return (children != null) ? children.get(label) : null;
+		}
+		
+		SegmentNode addChild(String label) {
+			if (children == null)
+				children = new HashMap<String, SegmentNode>(4);
+			SegmentNode child = new SegmentNode(label, depth + 1);
+			children.put(label, child);
+			return child;
+		}
+		
+		/** turns this node into a merged node collecting all values of its subtree */
+		void merge() {
+			if (sketch == null) {
+				sketch = new HyperLogLog(SKETCH_PRECISION);
+				if (terminal > 0)
+					sketch.add(label);
+			}
+		}
+	}
+	
+	/** bin of the generated histogram, ordered by label */
+	private static class Bin implements Comparable<Bin> {
+		final String label;
+		final int quantity;
+		final int distinct;
+		
+		Bin(String label, int quantity, long distinct) {
+			this.label = label;
+			this.quantity = quantity;
+			this.distinct = (int) Math.max(1, Math.min(distinct, quantity));
+		}
+		
+		public int compareTo(Bin o) {
+			return label.compareTo(o.label);
+		}
+	}
+	
+}
@@ -86,5 +86,19 @@ public class BooleanHistogramBuilder extends AbstractHistogramBuilder<Boolean> {
 		
 		return new BooleanHistogram(typeUri, bins, distinctValues, this.getClass());
 	}
+
+	@Override
+	public void writeCompactData(CompactDataOutput out, Histogram<Boolean> hist) {
+		out.writeIntArray(hist.getBinData());
+		out.writeVarInt(hist.getDistinctValues());
+	}
+	
+	@Override
+	public BooleanHistogram readCompactData(CompactDataInput in) {
+		int[] bins = in.readIntArray(prefSize);
+		int distinctValues = in.readVarInt();
+		
+		return new BooleanHistogram(typeUri, bins, distinctValues, this.getClass());
+	}
 	
 }
@@ -0,0 +1,161 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.hist.builder;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the compact encoding written by {@link CompactDataOutput} directly from a {@link ByteBuffer}.
+ * 
+ * Lengths read from the data are checked before use: a {@link BufferUnderflowException} is thrown if they exceed
+ * the remaining data, an {@link IllegalArgumentException} if the data is malformed otherwise.
+ *
+ * @author dorgon
+ *
+ */
+public class CompactDataInput {
+
+	private final ByteBuffer buf;
+
+	/**
+	 * @param buf read from the current position up to the limit
+	 */
+	public CompactDataInput(ByteBuffer buf) {
+		this.buf = buf;
+	}
+
+	/**
+	 * @return the underlying buffer, positioned after the data read so far
+	 */
+	public ByteBuffer getBuffer() {
+		return buf;
+	}
+
+	public int readByte() {
+		return buf.get() & 0xFF;
+	}
+
+	public int readFixedInt() {
+		return buf.getInt(); // big-endian by default
+	}
+
+	public long readFixedLong() {
+		return buf.getLong();
+	}
+
+	public int readVarInt() {
+		int v = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			byte b = buf.get();
+			v |= (b & 0x7F) << shift;
+			if (b >= 0)
+				return v;
+		}
+		throw new IllegalArgumentException("Malformed varint.");
+	}
+
+	public long readVarLong() {
+		long v = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			byte b = buf.get();
+			v |= (long) (b & 0x7F) << shift;
+			if (b >= 0)
+				return v;
+		}
+		throw new IllegalArgumentException("Malformed varlong.");
+	}
+
+	public int readZigZagInt() {
+		int v = readVarInt();
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	public long readZigZagLong() {
+		long v = readVarLong();
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	public String readString() {
+		int len = readVarInt() - 1;
+		if (len == -1)
+			return null;
+		if (len < 0)
+			throw new IllegalArgumentException("Malformed string length " + len + ".");
+		if (len > buf.remaining())
+			throw new BufferUnderflowException();
+
+		try {
+			String s;
+			if (buf.hasArray()) {
+				s = new String(buf.array(), buf.arrayOffset() + buf.position(), len, "UTF-8");
+				buf.position(buf.position() + len);
+			} else {
+				byte[] b = new byte[len];
+				buf.get(b);
+				s = new String(b, "UTF-8");
+			}
+			return s;
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException("Unexpected error: UTF-8 not supported.", e);
+		}
+	}
+
+	public int[] readIntArray(int size) {
+		checkSize(size);
+		int[] data = new int[size];
+		int prev = 0;
+		for (int i=0; i<size; i++)
+			data[i] = prev = prev + readZigZagInt();
+		return data;
+	}
+
+	public long[] readLongArray(int size, long base) {
+		checkSize(size);
+		long[] data = new long[size];
+		long prev = base;
+		for (int i=0; i<size; i++)
+			data[i] = prev = prev + readZigZagLong();
+		return data;
+	}
+
+	public String[] readStringArray(int size) {
+		checkSize(size);
+		String[] data = new String[size];
+		String prev = "";
+		for (int i=0; i<size; i++) {
+			int common = readVarInt();
+			String suffix = readString();
+			if (suffix == null)
+				continue;
+			if (common < 0 || common > prev.length())
+				throw new IllegalArgumentException("Malformed common prefix length " + common + ".");
+			data[i] = (common > 0) ? prev.substring(0, common) + suffix : suffix;
+			prev = data[i];
+		}
+		return data;
+	}
+
+	/** each element takes at least one byte, checked before allocating the array */
+	private void checkSize(int size) {
+		if (size < 0)
+			throw new IllegalArgumentException("Malformed array size " + size + ".");
+		if (size > buf.remaining())
+			throw new BufferUnderflowException();
+	}
+
+}
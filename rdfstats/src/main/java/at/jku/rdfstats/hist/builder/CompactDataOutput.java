@@ -0,0 +1,188 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.hist.builder;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Growable byte buffer used by {@link HistogramCodec} for the compact encoding: integers are written as
+ * (zig-zag) varints, arrays of counts as deltas, and sorted string arrays front-coded. Strings are UTF-8.
+ *
+ * @author dorgon
+ *
+ */
+public class CompactDataOutput {
+
+	private byte[] buf;
+	private int count = 0;
+
+	public CompactDataOutput() {
+		this(64);
+	}
+
+	/**
+	 * @param size initial capacity
+	 */
+	public CompactDataOutput(int size) {
+		buf = new byte[Math.max(16, size)];
+	}
+
+	private void ensureCapacity(int additional) {
+		if (count + additional > buf.length) {
+			byte[] larger = new byte[Math.max(buf.length * 2, count + additional)];
+			System.arraycopy(buf, 0, larger, 0, count);
+			buf = larger;
+		}
+	}
+
+	public void writeByte(int b) {
+		ensureCapacity(1);
+		buf[count++] = (byte) b;
+	}
+
+	public void write(byte[] b, int off, int len) {
+		ensureCapacity(len);
+		System.arraycopy(b, off, buf, count, len);
+		count += len;
+	}
+
+	/** fixed 4 byte big-endian int */
+	public void writeFixedInt(int v) {
+		ensureCapacity(4);
+		for (int i=24; i>=0; i-=8)
+			buf[count++] = (byte) (v >>> i);
+	}
+
+	/** fixed 8 byte big-endian long */
+	public void writeFixedLong(long v) {
+		ensureCapacity(8);
+		for (int i=56; i>=0; i-=8)
+			buf[count++] = (byte) (v >>> i);
+	}
+
+	/** unsigned varint, 7 bits per byte, least significant group first */
+	public void writeVarInt(int v) {
+		ensureCapacity(5);
+		while ((v & ~0x7F) != 0) {
+			buf[count++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		buf[count++] = (byte) v;
+	}
+
+	/** unsigned varlong, 7 bits per byte, least significant group first */
+	public void writeVarLong(long v) {
+		ensureCapacity(10);
+		while ((v & ~0x7FL) != 0) {
+			buf[count++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		buf[count++] = (byte) v;
+	}
+
+	/** signed int as zig-zag varint (small absolute values need few bytes) */
+	public void writeZigZagInt(int v) {
+		writeVarInt((v << 1) ^ (v >> 31));
+	}
+
+	/** signed long as zig-zag varlong (small absolute values need few bytes) */
+	public void writeZigZagLong(long v) {
+		writeVarLong((v << 1) ^ (v >> 63));
+	}
+
+	/** UTF-8 string prefixed by its byte length + 1, a length of 0 denotes null */
+	public void writeString(String s) {
+		if (s == null) {
+			writeVarInt(0);
+			return;
+		}
+		byte[] b = utf8(s);
+		writeVarInt(b.length + 1);
+		write(b, 0, b.length);
+	}
+
+	/** int array of known length as zig-zag deltas to the previous element */
+	public void writeIntArray(int[] data) {
+		int prev = 0;
+		for (int v : data) {
+			writeZigZagInt(v - prev);
+			prev = v;
+		}
+	}
+
+	/** long array of known length as zig-zag deltas to the previous element (starting at base) */
+	public void writeLongArray(long[] data, long base) {
+		long prev = base;
+		for (long v : data) {
+			writeZigZagLong(v - prev);
+			prev = v;
+		}
+	}
+
+	/** string array of known length, each string is written as the number of leading chars shared with
+	 * the previous one followed by the remaining suffix (front coding) */
+	public void writeStringArray(String[] data) {
+		String prev = "";
+		for (String s : data) {
+			if (s == null) {
+				writeVarInt(0);
+				writeString(null);
+				continue;
+			}
+			int max = Math.min(prev.length(), s.length());
+			int common = 0;
+			while (common < max && prev.charAt(common) == s.charAt(common))
+				common++;
+			if (common > 0 && Character.isHighSurrogate(s.charAt(common-1)))
+				common--; // do not split surrogate pairs
+			writeVarInt(common);
+			writeString(s.substring(common));
+			prev = s;
+		}
+	}
+
+	/**
+	 * @return number of bytes written
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @return the internal buffer, valid up to {@link #size()}
+	 */
+	protected byte[] getBuffer() {
+		return buf;
+	}
+
+	/**
+	 * @return a copy of the bytes written
+	 */
+	public byte[] toByteArray() {
+		byte[] b = new byte[count];
+		System.arraycopy(buf, 0, b, 0, count);
+		return b;
+	}
+
+	private static byte[] utf8(String s) {
+		try {
+			return s.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException("Unexpected error: UTF-8 not supported.", e);
+		}
+	}
+
+}
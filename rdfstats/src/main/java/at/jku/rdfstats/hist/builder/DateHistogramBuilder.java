@@ -18,8 +18,8 @@ package at.jku.rdfstats.hist.builder;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.TreeMap;
 
 import at.jku.rdfstats.ParseException;
 import at.jku.rdfstats.RDFStatsConfiguration;
@@ -29,11 +29,17 @@ import at.jku.rdfstats.hist.Histogram;
 import com.hp.hpl.jena.graph.Node;
 
 /**
+ * Collects the values in a {@link LongCountMap} (keyed by Date.getTime()) instead of the generic
+ * values map in order to avoid keeping a Date object per distinct value.
+ * 
  * @author dorgon
  *
  */
 public class DateHistogramBuilder extends AbstractHistogramBuilder<Date> {
 
+	/** distinct values (milliseconds since epoch) and their frequencies */
+	protected LongCountMap counts = new LongCountMap();
+
 	/**
 	 * @param conf
 	 * @param typeUri
@@ -41,8 +47,11 @@ public class DateHistogramBuilder extends AbstractHistogramBuilder<Date> {
 	 */
 	public DateHistogramBuilder(RDFStatsConfiguration conf, String typeUri, int prefSize) {
 		super(conf, typeUri, prefSize);
-		
-		values = new TreeMap<Date, Integer>();
+	}
+	
+	@Override
+	public void addValue(Date val) {
+		counts.add(val.getTime());
 	}
 	
 	public void addNodeValue(Node val) throws HistogramBuilderException {
@@ -54,31 +63,40 @@ public class DateHistogramBuilder extends AbstractHistogramBuilder<Date> {
 		}		
 	}
 	
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#mergeData(at.jku.rdfstats.hist.builder.AbstractHistogramBuilder)
+	 */
+	@Override
+	protected void mergeData(AbstractHistogramBuilder<Date> other) {
+		counts.addAll(((DateHistogramBuilder) other).counts);
+	}
+	
 	/* (non-Javadoc)
 	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#generateHistogram()
 	 */
 	@Override
 	public Histogram<Date> generateHistogram() {
-		Date min = ((TreeMap<Date, Integer>) values).firstKey();
-		Date max = ((TreeMap<Date, Integer>) values).lastKey();
-		long range = max.getTime() - min.getTime();
+		long[] keys = counts.keys();
+		Arrays.sort(keys);
+		long minL = keys[0];
+		long maxL = keys[keys.length-1];
+		long range = maxL - minL;
 
 		int numBins = (range > 0) ? prefSize : 1;
-		if (values.size() < numBins) numBins = values.size();
+		if (keys.length < numBins) numBins = keys.length;
 		
 		double binWidth = range / (double) numBins;
-		long minL = min.getTime();
 		int[] data = new int[numBins];
 
-		for (Date val : values.keySet()) {
-			int idx = (int) Math.floor((val.getTime()-minL) / binWidth);
+		for (long val : keys) {
+			int idx = (int) Math.floor((val-minL) / binWidth);
 			if (idx >= data.length) idx = data.length-1; // corner case, last entry fits into last bin even if slightly higher
-			data[idx] += values.get(val);
+			data[idx] += counts.get(val);
 		}
-		int distinctValues = values.size();
-		values = null;
+		int distinctValues = keys.length;
+		counts = null;
 		
-		return new DateHistogram(typeUri, data, distinctValues, min, max, this.getClass());
+		return new DateHistogram(typeUri, data, distinctValues, new Date(minL), new Date(maxL), this.getClass());
 	}
 
 	public void writeData(ByteArrayOutputStream stream, Histogram<Date> h) {
@@ -97,5 +115,23 @@ public class DateHistogramBuilder extends AbstractHistogramBuilder<Date> {
 		return new DateHistogram(typeUri, bins,	distinctValues, new Date(min), new Date(max), this.getClass());
 	}
 
+	@Override
+	public void writeCompactData(CompactDataOutput out, Histogram<Date> h) {
+		DateHistogram hist = (DateHistogram) h;
+		out.writeZigZagLong(hist.getMin().getTime());
+		out.writeZigZagLong(hist.getMax().getTime() - hist.getMin().getTime());
+		out.writeIntArray(h.getBinData());
+		out.writeVarInt(h.getDistinctValues());
+	}
+	
+	@Override
+	public DateHistogram readCompactData(CompactDataInput in) {
+		Date min = new Date(in.readZigZagLong());
+		Date max = new Date(min.getTime() + in.readZigZagLong());
+		int[] bins = in.readIntArray(prefSize);
+		int distinctValues = in.readVarInt();
+		
+		return new DateHistogram(typeUri, bins, distinctValues, min, max, this.getClass());
+	}
 	
 }
@@ -18,7 +18,7 @@ package at.jku.rdfstats.hist.builder;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.util.TreeMap;
+import java.util.Arrays;
 
 import at.jku.rdfstats.ParseException;
 import at.jku.rdfstats.RDFStatsConfiguration;
@@ -28,51 +28,78 @@ import at.jku.rdfstats.hist.Histogram;
 import com.hp.hpl.jena.graph.Node;
 
 /**
+ * Collects the values in a {@link LongCountMap} (keyed by Double.doubleToLongBits()) instead of the
+ * generic values map in order to avoid boxing.
+ * 
  * @author dorgon
  *
  */
 public class DoubleHistogramBuilder extends AbstractHistogramBuilder<Double> {
 
+	/** distinct values (as long bits) and their frequencies */
+	protected LongCountMap counts = new LongCountMap();
+
 	/**
 	 * @param typeUri
 	 * @param prefSize
 	 */
 	public DoubleHistogramBuilder(RDFStatsConfiguration conf, String typeUri, int prefSize) {
 		super(conf, typeUri, prefSize);
-		
-		values = new TreeMap<Double, Integer>();
+	}
+	
+	@Override
+	public void addValue(Double val) {
+		counts.add(Double.doubleToLongBits(val));
+	}
+	
+	public void addValue(double val) {
+		counts.add(Double.doubleToLongBits(val));
 	}
 
 	public void addNodeValue(Node val) throws HistogramBuilderException {
 		try {
-			Double d = DoubleHistogram.parseNodeValueImpl(val);
+			double d = DoubleHistogram.parseNodeValueImpl(val);
 			addValue(d);
 		} catch (ParseException e) {
 			throw new HistogramBuilderException("Error parsing node value: " + e.getMessage(), e);
 		}
 	}
 	
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#mergeData(at.jku.rdfstats.hist.builder.AbstractHistogramBuilder)
+	 */
+	@Override
+	protected void mergeData(AbstractHistogramBuilder<Double> other) {
+		counts.addAll(((DoubleHistogramBuilder) other).counts);
+	}
+	
 	/* (non-Javadoc)
 	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#generateHistogram()
 	 */
 	@Override
 	public Histogram<Double> generateHistogram() {
-		Double min = ((TreeMap<Double, Integer>) values).firstKey();
-		Double max = ((TreeMap<Double, Integer>) values).lastKey();
-		Double range = max-min; // TODO use BigDecimal for calculation
+		long[] keys = counts.keys();
+		double[] sorted = new double[keys.length];
+		for (int i = 0; i < keys.length; i++)
+			sorted[i] = Double.longBitsToDouble(keys[i]);
+		Arrays.sort(sorted);
+		
+		double min = sorted[0];
+		double max = sorted[sorted.length-1];
+		double range = max-min; // TODO use BigDecimal for calculation
 	
 		int numBins = (range > 0) ? prefSize : 1;
-		if (values.size() < numBins) numBins = values.size();
+		if (sorted.length < numBins) numBins = sorted.length;
 
 		double binWidth = range / (double) numBins;
 		int[] data = new int[numBins];
-		for (Double val : values.keySet()) {
+		for (double val : sorted) {
 			int idx = (int) Math.floor((val-min) / binWidth);
 			if (idx >= data.length) idx = data.length-1; // corner case, last entry fits into last bin even if slightly higher
-			data[idx] += values.get(val);
+			data[idx] += counts.get(Double.doubleToLongBits(val));
 		}
-		int distinctValues = values.size();
-		values = null;
+		int distinctValues = sorted.length;
+		counts = null;
 		
 		return (Histogram<Double>) new DoubleHistogram(typeUri, data, distinctValues, min, max, this.getClass());
 	}
@@ -93,4 +120,23 @@ public class DoubleHistogramBuilder extends AbstractHistogramBuilder<Double> {
 		return new DoubleHistogram(typeUri, bins, distinctValues, min, max, this.getClass());
 	}
 
+	@Override
+	public void writeCompactData(CompactDataOutput out, Histogram<Double> h) {
+		DoubleHistogram hist = (DoubleHistogram) h;
+		out.writeFixedLong(Double.doubleToLongBits(hist.getMin()));
+		out.writeFixedLong(Double.doubleToLongBits(hist.getMax()));
+		out.writeIntArray(h.getBinData());
+		out.writeVarInt(h.getDistinctValues());
+	}
+	
+	@Override
+	public DoubleHistogram readCompactData(CompactDataInput in) {
+		double min = Double.longBitsToDouble(in.readFixedLong());
+		double max = Double.longBitsToDouble(in.readFixedLong());
+		int[] bins = in.readIntArray(prefSize);
+		int distinctValues = in.readVarInt();
+		
+		return new DoubleHistogram(typeUri, bins, distinctValues, min, max, this.getClass());
+	}
+	
 }
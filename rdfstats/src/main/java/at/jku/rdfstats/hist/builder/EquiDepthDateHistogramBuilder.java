@@ -0,0 +1,62 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.hist.builder;
+
+import java.util.Date;
+
+import at.jku.rdfstats.ParseException;
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.hist.AbstractEquiDepthHistogram;
+import at.jku.rdfstats.hist.EquiDepthDateHistogram;
+
+import com.hp.hpl.jena.graph.Node;
+
+/**
+ * Builds {@link EquiDepthDateHistogram}s, see {@link AbstractEquiDepthHistogramBuilder}.
+ * 
+ * @author dorgon
+ *
+ */
+public class EquiDepthDateHistogramBuilder extends AbstractEquiDepthHistogramBuilder<Date> {
+
+	/**
+	 * @param conf
+	 * @param typeUri
+	 * @param prefSize
+	 */
+	public EquiDepthDateHistogramBuilder(RDFStatsConfiguration conf, String typeUri, int prefSize) {
+		super(conf, typeUri, prefSize);
+	}
+
+	public void addNodeValue(Node val) throws HistogramBuilderException {
+		try {
+			addValue(EquiDepthDateHistogram.parseNodeValueImpl(val));
+		} catch (ParseException e) {
+			throw new HistogramBuilderException("Error parsing node value: " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	protected long toKey(Date val) {
+		return val.getTime();
+	}
+
+	@Override
+	protected AbstractEquiDepthHistogram<Date> createHistogram(int[] bins, int[] binDistinctValues, long minKey, long[] upperKeys, int distinctValues) {
+		return new EquiDepthDateHistogram(typeUri, bins, binDistinctValues, minKey, upperKeys, distinctValues, this.getClass());
+	}
+
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.hist.builder;
+
+import at.jku.rdfstats.ParseException;
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.hist.AbstractEquiDepthHistogram;
+import at.jku.rdfstats.hist.EquiDepthIntegerHistogram;
+
+import com.hp.hpl.jena.graph.Node;
+
+/**
+ * Builds {@link EquiDepthIntegerHistogram}s, see {@link AbstractEquiDepthHistogramBuilder}.
+ * 
+ * @author dorgon
+ *
+ */
+public class EquiDepthIntegerHistogramBuilder extends AbstractEquiDepthHistogramBuilder<Integer> {
+
+	/**
+	 * @param conf
+	 * @param typeUri
+	 * @param prefSize
+	 */
+	public EquiDepthIntegerHistogramBuilder(RDFStatsConfiguration conf, String typeUri, int prefSize) {
+		super(conf, typeUri, prefSize);
+	}
+
+	public void addNodeValue(Node val) throws HistogramBuilderException {
+		try {
+			addValue(EquiDepthIntegerHistogram.parseNodeValueImpl(val));
+		} catch (ParseException e) {
+			throw new HistogramBuilderException("Error parsing node value: " + e.getMessage(), e);
+		}
+	}
+
+	public void addValue(int val) {
+		addKey(val);
+	}
+
+	@Override
+	protected long toKey(Integer val) {
+		return val;
+	}
+
+	@Override
+	protected AbstractEquiDepthHistogram<Integer> createHistogram(int[] bins, int[] binDistinctValues, long minKey, long[] upperKeys, int distinctValues) {
+		return new EquiDepthIntegerHistogram(typeUri, bins, binDistinctValues, minKey, upperKeys, distinctValues, this.getClass());
+	}
+
+}
@@ -18,7 +18,7 @@ package at.jku.rdfstats.hist.builder;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.util.TreeMap;
+import java.util.Arrays;
 
 import at.jku.rdfstats.ParseException;
 import at.jku.rdfstats.RDFStatsConfiguration;
@@ -28,52 +28,79 @@ import at.jku.rdfstats.hist.Histogram;
 import com.hp.hpl.jena.graph.Node;
 
 /**
+ * Collects the values in a {@link LongCountMap} (keyed by Float.floatToIntBits()) instead of the
+ * generic values map in order to avoid boxing.
+ * 
  * @author dorgon
  *
  */
 public class FloatHistogramBuilder extends AbstractHistogramBuilder<Float> {
 
+	/** distinct values (as int bits) and their frequencies */
+	protected LongCountMap counts = new LongCountMap();
+
 	/**
 	 * @param typeUri
 	 * @param prefSize
 	 */
 	public FloatHistogramBuilder(RDFStatsConfiguration conf, String typeUri, int prefSize) {
 		super(conf, typeUri, prefSize);
-		
-		values = new TreeMap<Float, Integer>();
+	}
+	
+	@Override
+	public void addValue(Float val) {
+		counts.add(Float.floatToIntBits(val));
+	}
+	
+	public void addValue(float val) {
+		counts.add(Float.floatToIntBits(val));
 	}
 	
 	
 	public void addNodeValue(Node val) throws HistogramBuilderException {
 		try {
-			Float f = FloatHistogram.parseNodeValueImpl(val);
+			float f = FloatHistogram.parseNodeValueImpl(val);
 			addValue(f);
 		} catch (ParseException e) {
 			throw new HistogramBuilderException("Error parsing node value: " + e.getMessage(), e);
 		}		
 	}
 	
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#mergeData(at.jku.rdfstats.hist.builder.AbstractHistogramBuilder)
+	 */
+	@Override
+	protected void mergeData(AbstractHistogramBuilder<Float> other) {
+		counts.addAll(((FloatHistogramBuilder) other).counts);
+	}
+	
 	/* (non-Javadoc)
 	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#generateHistogram()
 	 */
 	@Override
 	public Histogram<Float> generateHistogram() {
-		Float min = ((TreeMap<Float, Integer>) values).firstKey();
-		Float max = ((TreeMap<Float, Integer>) values).lastKey();
-		Float range = max-min;
+		long[] keys = counts.keys();
+		float[] sorted = new float[keys.length];
+		for (int i = 0; i < keys.length; i++)
+			sorted[i] = Float.intBitsToFloat((int) keys[i]);
+		Arrays.sort(sorted);
+		
+		float min = sorted[0];
+		float max = sorted[sorted.length-1];
+		float range = max-min;
 	
 		int numBins = (range > 0) ? prefSize : 1;
-		if (values.size() < numBins) numBins = values.size();
+		if (sorted.length < numBins) numBins = sorted.length;
 
 		float binWidth = range / numBins;
 		int[] data = new int[numBins];
-		for (Float val : values.keySet()) {
+		for (float val : sorted) {
 			int idx = (int) Math.floor((val-min) / binWidth);
 			if (idx >= data.length) idx = data.length-1; // corner case, last entry fits into last bin even if slightly higher
-			data[idx] += values.get(val);
+			data[idx] += counts.get(Float.floatToIntBits(val));
 		}
-		int distinctValues = values.size();
-		values = null;
+		int distinctValues = sorted.length;
+		counts = null;
 		
 		return (Histogram<Float>) new FloatHistogram(typeUri, data, distinctValues, min, max, this.getClass());
 	}
@@ -94,4 +121,23 @@ public class FloatHistogramBuilder extends AbstractHistogramBuilder<Float> {
 		return new FloatHistogram(typeUri, bins, distinctValues, min, max, this.getClass());
 	}
 
+	@Override
+	public void writeCompactData(CompactDataOutput out, Histogram<Float> h) {
+		FloatHistogram hist = (FloatHistogram) h;
+		out.writeFixedInt(Float.floatToIntBits(hist.getMin()));
+		out.writeFixedInt(Float.floatToIntBits(hist.getMax()));
+		out.writeIntArray(h.getBinData());
+		out.writeVarInt(h.getDistinctValues());
+	}
+	
+	@Override
+	public FloatHistogram readCompactData(CompactDataInput in) {
+		float min = Float.intBitsToFloat(in.readFixedInt());
+		float max = Float.intBitsToFloat(in.readFixedInt());
+		int[] bins = in.readIntArray(prefSize);
+		int distinctValues = in.readVarInt();
+		
+		return new FloatHistogram(typeUri, bins, distinctValues, min, max, this.getClass());
+	}
+	
 }
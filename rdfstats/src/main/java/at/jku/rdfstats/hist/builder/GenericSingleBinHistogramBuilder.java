@@ -79,4 +79,17 @@ public class GenericSingleBinHistogramBuilder extends AbstractHistogramBuilder<O
 		int distinct = HistogramCodec.readInt(stream);
 		return new GenericSingleBinHistogram(typeUri, total, distinct, this.getClass());
 	}
+
+	@Override
+	public void writeCompactData(CompactDataOutput out, Histogram<Object> hist) {
+		out.writeVarInt(hist.getBinData()[0]); // only one bin
+		out.writeVarInt(hist.getDistinctValues());
+	}
+
+	@Override
+	public Histogram<Object> readCompactData(CompactDataInput in) {
+		int total = in.readVarInt();
+		int distinct = in.readVarInt();
+		return new GenericSingleBinHistogram(typeUri, total, distinct, this.getClass());
+	}
 }
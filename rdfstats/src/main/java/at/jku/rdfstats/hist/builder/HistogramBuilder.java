@@ -30,6 +30,7 @@ import com.hp.hpl.jena.graph.Node;
  * 
  * - Create concrete histogram builder instance or use {@link HistogramBuilderFactory}
  * - add values (data points) using addValue(NATIVE val) or addNodeValue(Node val) for RDF node values
+ * - optionally merge builders which collected other values of the same type using merge(HistogramBuilder other)
  * - finally get the histogram with getHistogram()
  * 
  */
@@ -41,6 +42,16 @@ public interface HistogramBuilder<NATIVE> {
 	/** adds a native node value, throws an exception if value cannot be parsed correctly */
 	public void addNodeValue(Node val) throws HistogramBuilderException;
 	
+	/**
+	 * merges the values added to other into this builder, afterwards the histogram summarizes the values
+	 * added to any of both as if they had been added to a single builder (e.g. to reduce the builders of
+	 * parallel workers or shards)
+	 * 
+	 * @param other a builder of the same class and type URI, the histogram of neither builder may have been generated yet
+	 * @throws HistogramBuilderException if the builders cannot be merged
+	 */
+	public void merge(HistogramBuilder<NATIVE> other) throws HistogramBuilderException;
+	
 	/** generates and returns the histogram (any further value added after calling getHistogram() will be ignored) */
 	public Histogram<NATIVE> getHistogram();
 	
@@ -49,6 +49,12 @@ public class HistogramBuilderFactory {
 	/** generated from registeredBuilders: list of types a builder accepts */
 	protected static final Map<Class<? extends HistogramBuilder<?>>, Set<String>> accepts = new Hashtable<Class<? extends HistogramBuilder<?>>, Set<String>>();
 	
+	/** exact builder classes -> bounded-memory approximate builder classes, used if {@link RDFStatsConfiguration#approximateHistograms()} is enabled */
+	protected static final Map<Class<? extends HistogramBuilder<?>>, Class<? extends HistogramBuilder<?>>> approximateBuilders = new Hashtable<Class<? extends HistogramBuilder<?>>, Class<? extends HistogramBuilder<?>>>();
+	
+	/** exact (equi-width) builder classes -> equi-depth builder classes, used for the data types listed by {@link RDFStatsConfiguration#getEquiDepthTypes()} */
+	protected static final Map<Class<? extends HistogramBuilder<?>>, Class<? extends HistogramBuilder<?>>> equiDepthBuilders = new Hashtable<Class<? extends HistogramBuilder<?>>, Class<? extends HistogramBuilder<?>>>();
+	
 	static {
 		// registered builders, used to get the matching builder for a type URI
 		registeredBuilders.put(Stats.blankNode.getURI(), GenericSingleBinHistogramBuilder.class); // explicitly register generic builder for blank Node values
@@ -101,6 +107,23 @@ public class HistogramBuilderFactory {
 
 		// DO NOT REMOVE: used as a special builder for rdf:type property values (range rdfs:Resource):
 		classHashtable.put(SimpleStringHistogramBuilder.class.getCanonicalName().hashCode(), SimpleStringHistogramBuilder.class);
+		
+		// approximate builders (histograms are encoded/decoded by the corresponding exact builders)
+		approximateBuilders.put(IntegerHistogramBuilder.class, ApproximateIntegerHistogramBuilder.class);
+		approximateBuilders.put(LongHistogramBuilder.class, ApproximateLongHistogramBuilder.class);
+		approximateBuilders.put(FloatHistogramBuilder.class, ApproximateFloatHistogramBuilder.class);
+		approximateBuilders.put(DoubleHistogramBuilder.class, ApproximateDoubleHistogramBuilder.class);
+		approximateBuilders.put(DateHistogramBuilder.class, ApproximateDateHistogramBuilder.class);
+		approximateBuilders.put(URIHistogramBuilder.class, ApproximateURIHistogramBuilder.class);
+		
+		// equi-depth builders, selectable per data type
+		equiDepthBuilders.put(IntegerHistogramBuilder.class, EquiDepthIntegerHistogramBuilder.class);
+		equiDepthBuilders.put(LongHistogramBuilder.class, EquiDepthLongHistogramBuilder.class);
+		equiDepthBuilders.put(FloatHistogramBuilder.class, EquiDepthFloatHistogramBuilder.class);
+		equiDepthBuilders.put(DoubleHistogramBuilder.class, EquiDepthDoubleHistogramBuilder.class);
+		equiDepthBuilders.put(DateHistogramBuilder.class, EquiDepthDateHistogramBuilder.class);
+		for (Class<? extends HistogramBuilder<?>> c : equiDepthBuilders.values())
+			classHashtable.put(c.getCanonicalName().hashCode(), c);
 	}
 	
 	/** register a new histogram builder impl class
@@ -214,9 +237,21 @@ public class HistogramBuilderFactory {
 	public static HistogramBuilder<?> createBuilder(String typeUri, String p, int preferredSize, RDFStatsConfiguration conf) throws HistogramBuilderException {
 		// get corresponding registered builder (or generic builder if not especially supported)
 		Class<? extends HistogramBuilder<?>> clazz = getBuilderClass(typeUri, p);
+		if (conf != null && conf.getEquiDepthTypes().contains(typeUri) && equiDepthBuilders.containsKey(clazz))
+			clazz = equiDepthBuilders.get(clazz); // equi-depth takes precedence over approximate builders
+		else if (conf != null && conf.approximateHistograms() && approximateBuilders.containsKey(clazz))
+			clazz = approximateBuilders.get(clazz);
 		return newInstance(clazz, typeUri, preferredSize, conf);
 	}
 	
+	/**
+	 * @param clazz an exact (equi-width) builder class
+	 * @return true if there is an equi-depth variant of clazz
+	 */
+	public static boolean equiDepthBuilderAvailable(Class<? extends HistogramBuilder<?>> clazz) {
+		return equiDepthBuilders.containsKey(clazz);
+	}
+	
 	private static HistogramBuilder<?> newInstance(Class<? extends HistogramBuilder<?>> clazz, String typeUri, int preferredSize, RDFStatsConfiguration conf) throws HistogramBuilderException {
 		if (typeUri == null)
 			throw new HistogramBuilderException("Type URI cannot be null.");
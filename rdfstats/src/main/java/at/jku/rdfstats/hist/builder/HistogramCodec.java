@@ -18,9 +18,12 @@ package at.jku.rdfstats.hist.builder;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -34,12 +37,31 @@ import com.hp.hpl.jena.sparql.util.Base64;
  * @author dorgon
  *
  * Histogram codec, statically used by histogram builders
+ * 
+ * Histograms are encoded in the compact format of {@link #VERSION}: header (varint version, 4 byte builder class hash,
+ * varint size, flags byte, type URI), followed by the builder specific data written by
+ * {@link AbstractHistogramBuilder#writeCompactData(CompactDataOutput, Histogram)} (varints, delta-encoded bins,
+ * front-coded labels). Larger payloads are deflated if this pays off.
+ * 
+ * Histograms encoded with the fixed-width format of {@link #VERSION_20090109} can still be decoded.
  */
 public class HistogramCodec {
 	protected static final Log log = LogFactory.getLog(HistogramCodec.class);
 	
 	/** Byte stream version, will be encoded into histograms for compatibility checks */
-	public static final int VERSION = 20090109;
+	public static final int VERSION = 20100301;
+
+	/** Legacy fixed-width byte stream version, still supported for decoding */
+	public static final int VERSION_20090109 = 20090109;
+	
+	/** header flag: the builder data is deflated */
+	protected static final int FLAG_DEFLATED = 0x01;
+	
+	/** builder data of at least this size (in bytes) is deflated if the result is smaller */
+	public static final int DEFLATE_THRESHOLD = 128;
+	
+	/** maximum compression ratio of deflate, bounds the inflated size of corrupt data */
+	private static final int MAX_DEFLATE_RATIO = 1032;
 	
 	/** magic char for string end */
 	protected static final char END_OF_STRING = 0x03;
@@ -51,50 +73,162 @@ public class HistogramCodec {
 	 * @return
 	 * @throws HistogramBuilderException
 	 */
-	@SuppressWarnings("unchecked")
 	public static <NATIVE> String base64encode(Histogram<NATIVE> h) throws HistogramBuilderException {
+		return Base64.encodeBytes(encode(h, VERSION));
+	}
+
+	/** decodes a base64 string and returns the corresponding histogram
+	 * 
+	 * @param encodedString
+	 * @return
+	 * @throws HistogramBuilderException
+	 */
+	public static Histogram<?> base64decode(String encodedString) throws HistogramBuilderException {
+		return decode(ByteBuffer.wrap(Base64.decode(encodedString)));
+	}
+
+	/** encodes an arbitrary histogram instance into a byte array
+	 * 
+	 * @param h
+	 * @param version either {@link #VERSION} or {@link #VERSION_20090109} (for older readers)
+	 * @return
+	 * @throws HistogramBuilderException
+	 */
+	@SuppressWarnings("unchecked")
+	public static <NATIVE> byte[] encode(Histogram<NATIVE> h, int version) throws HistogramBuilderException {
 		String typeUri = h.getDatatypeUri();
 		if (typeUri == null)
 			throw new HistogramBuilderException("Cannot encode histogram whose type URI is null.");
 		
-		HistogramBuilder<NATIVE> builder = (HistogramBuilder<NATIVE>) HistogramBuilderFactory.createBuilder(((AbstractHistogram<?>) h).getBuilderClass(), typeUri, h.getNumBins(), null);
+		AbstractHistogramBuilder<NATIVE> builder = (AbstractHistogramBuilder<NATIVE>) HistogramBuilderFactory.createBuilder(((AbstractHistogram<?>) h).getBuilderClass(), typeUri, h.getNumBins(), null);
 		
 		int builderClassHash = builder.getClass().getCanonicalName().hashCode();
 		int size = h.getNumBins();
 
-		ByteArrayOutputStream stream = new ByteArrayOutputStream();
-		writeInt(stream, VERSION);			// bytes 1-4
-		writeInt(stream, builderClassHash);	// bytes 5-8
-		writeInt(stream, size);				// bytes 9-12
-		writeString(stream, typeUri);
-		
-		((AbstractHistogramBuilder<NATIVE>) builder).writeData(stream, h);
+		if (version == VERSION_20090109) {
+			ByteArrayOutputStream stream = new ByteArrayOutputStream();
+			writeInt(stream, VERSION_20090109);	// bytes 1-4
+			writeInt(stream, builderClassHash);	// bytes 5-8
+			writeInt(stream, size);				// bytes 9-12
+			writeString(stream, typeUri);
+			
+			builder.writeData(stream, h);
+			return stream.toByteArray();
+		} else if (version != VERSION)
+			throw new HistogramBuilderException("Cannot encode histograms with unknown codec version " + version + ".");
+
+		CompactDataOutput data = new CompactDataOutput();
+		builder.writeCompactData(data, h);
+		byte[] deflated = (data.size() >= DEFLATE_THRESHOLD) ? deflate(data) : null;
 		
-		byte[] data = stream.toByteArray();
-		return Base64.encodeBytes(data);
+		CompactDataOutput out = new CompactDataOutput(data.size() + typeUri.length() + 16);
+		out.writeVarInt(VERSION);
+		out.writeFixedInt(builderClassHash);
+		out.writeVarInt(size);
+		out.writeByte((deflated != null) ? FLAG_DEFLATED : 0);
+		out.writeString(typeUri);
+		if (deflated != null) {
+			out.writeVarInt(data.size());
+			out.write(deflated, 0, deflated.length);
+		} else
+			out.write(data.getBuffer(), 0, data.size());
+		return out.toByteArray();
 	}
 
-	/** decodes a base64 string and returns the corresponding histogram
+	/** decodes a histogram of any supported version from the remaining bytes of buf
 	 * 
-	 * @param encodedString
+	 * @param buf
 	 * @return
 	 * @throws HistogramBuilderException
 	 */
-	public static Histogram<?> base64decode(String encodedString) throws HistogramBuilderException {
-		byte[] bytes = Base64.decode(encodedString);
-		
-		ByteArrayInputStream stream = new ByteArrayInputStream(bytes);
-		int version = readInt(stream);		 		// bytes 1-4
+	public static Histogram<?> decode(ByteBuffer buf) throws HistogramBuilderException {
+		if (buf.remaining() >= 4 && buf.getInt(buf.position()) == VERSION_20090109) {
+			if (buf.hasArray())
+				return decodeVersion20090109(new ByteArrayInputStream(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining()));
+			byte[] bytes = new byte[buf.remaining()];
+			buf.get(bytes);
+			return decodeVersion20090109(new ByteArrayInputStream(bytes));
+		}
+
+		try {
+			CompactDataInput in = new CompactDataInput(buf);
+			int version = in.readVarInt();
+			if (version != VERSION)
+				throw new HistogramBuilderException("Version missmatch: the histogram was encoded with version " + version + " but you are running version " + VERSION + " of the Codec.");
+			
+			int builderClassHash = in.readFixedInt();
+			int size = in.readVarInt();
+			int flags = in.readByte();
+			String typeUri = in.readString();
+			
+			if ((flags & FLAG_DEFLATED) != 0)
+				in = new CompactDataInput(ByteBuffer.wrap(inflate(buf, in.readVarInt())));
+			
+			HistogramBuilder<?> builder = HistogramBuilderFactory.createBuilder(builderClassHash, typeUri, size, null); // size is exact when decoding (not "preferred")
+			return ((AbstractHistogramBuilder<?>) builder).readCompactData(in);
+		} catch (BufferUnderflowException e) {
+			throw new HistogramBuilderException("Cannot decode histogram: unexpected end of data.", e);
+		} catch (IllegalArgumentException e) {
+			throw new HistogramBuilderException("Cannot decode histogram: " + e.getMessage(), e);
+		}
+	}
+
+	private static Histogram<?> decodeVersion20090109(ByteArrayInputStream stream) throws HistogramBuilderException {
+		readInt(stream);							// bytes 1-4: version
 		int builderClassHash = readInt(stream);		// bytes 5-8
 		int size = readInt(stream);          		// bytes 9-12
 		String typeUri = readString(stream);
 
-		if (version != VERSION)
-			throw new HistogramBuilderException("Version missmatch: the histogram was encoded with version " + version + " but you are running version " + VERSION + " of the Codec.");
-		
 		HistogramBuilder<?> builder = HistogramBuilderFactory.createBuilder(builderClassHash, typeUri, size, null); // size is exact when decoding (not "preferred")
 		return ((AbstractHistogramBuilder<?>) builder).readData(stream);
 	}
+	
+	private static byte[] deflate(CompactDataOutput data) {
+		Deflater deflater = new Deflater();
+		try {
+			deflater.setInput(data.getBuffer(), 0, data.size());
+			deflater.finish();
+			byte[] out = new byte[data.size()];
+			int len = 0;
+			while (!deflater.finished() && len < out.length)
+				len += deflater.deflate(out, len, out.length - len);
+			if (!deflater.finished())
+				return null; // doesn't pay off
+			
+			byte[] result = new byte[len];
+			System.arraycopy(out, 0, result, 0, len);
+			return result;
+		} finally {
+			deflater.end();
+		}
+	}
+	
+	private static byte[] inflate(ByteBuffer buf, int length) throws HistogramBuilderException {
+		if (length < 0 || length > (long) buf.remaining() * MAX_DEFLATE_RATIO)
+			throw new HistogramBuilderException("Cannot decode histogram: invalid inflated size " + length + " of " + buf.remaining() + " deflated bytes.");
+		
+		Inflater inflater = new Inflater();
+		try {
+			if (buf.hasArray())
+				inflater.setInput(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+			else {
+				byte[] in = new byte[buf.remaining()];
+				buf.get(in);
+				inflater.setInput(in);
+			}
+			byte[] out = new byte[length];
+			int len = 0;
+			while (len < length && !inflater.finished() && !inflater.needsInput())
+				len += inflater.inflate(out, len, length - len);
+			if (len != length)
+				throw new HistogramBuilderException("Cannot decode histogram: deflated data is corrupt.");
+			return out;
+		} catch (DataFormatException e) {
+			throw new HistogramBuilderException("Cannot decode histogram: deflated data is corrupt.", e);
+		} finally {
+			inflater.end();
+		}
+	}
 
 	protected static void writeShort(ByteArrayOutputStream stream, short s) {
 		stream.write((byte) (s >>> 8));
@@ -141,46 +275,39 @@ public class HistogramCodec {
 		return s;
 	}
 
+	/** reads a UTF-8 string written by {@link #writeString(ByteArrayOutputStream, String)}, the terminating byte
+	 * is searched on the byte level because the string may contain multibyte characters */
 	public static String readString(ByteArrayInputStream stream) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		int next;
+		while (true) {
+			next = stream.read();
+			if (next < 0 || next == END_OF_STRING)
+				break;
+			else if (next == EMPTY_STRING)
+				return "";
+			else
+				bytes.write(next);
+		}
 		try {
-			int next;
-			String s;
-			StringBuilder sb = new StringBuilder();
-			stream.mark(0);
-			InputStreamReader in = new InputStreamReader(stream);
-			
-			while (true) {
-				next = in.read();
-				if (next < 0 || (char) next == END_OF_STRING) {
-					s = sb.toString();
-					break;
-				} else if ((char) next == EMPTY_STRING) {
-					s = "";
-					break;
-				} else
-					sb.append((char) next);
-			}
-			
-			stream.reset();
-			stream.skip(s.length() + 1);
-			return s;
-		} catch (IOException e) {
-			throw new RuntimeException("Unexpected error: cannot read String from ByteArrayOutputStream.", e);
+			return bytes.toString("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException("Unexpected error: UTF-8 not supported.", e);
 		}
 	}
 
 	public static void writeString(ByteArrayOutputStream stream, String string) {
-		try {
-			OutputStreamWriter out = new OutputStreamWriter(stream);
-			if (string == null)
-				out.write((int)EMPTY_STRING);
-			else {
-				out.write(string);
-				out.write((int)END_OF_STRING);
+		if (string == null)
+			stream.write(EMPTY_STRING);
+		else {
+			byte[] bytes;
+			try {
+				bytes = string.getBytes("UTF-8");
+			} catch (UnsupportedEncodingException e) {
+				throw new RuntimeException("Unexpected error: UTF-8 not supported.", e);
 			}
-			out.flush();
-		} catch (IOException e) {
-			throw new RuntimeException("Unexpected error: cannot write String into ByteArrayOutputStream.", e);
+			stream.write(bytes, 0, bytes.length);
+			stream.write(END_OF_STRING);
 		}
 	}
 	
@@ -0,0 +1,115 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.hist.builder;
+
+/**
+ * HyperLogLog distinct value estimator (Flajolet et al., 2007) over long values.
+ *
+ * Uses 2^precision one-byte registers, the relative standard error of the estimate
+ * is 1.04 / sqrt(2^precision), e.g. 1.6% for the default precision of 12 (4 KB).
+ * Small cardinalities are estimated by linear counting and are practically exact.
+ *
+ * @author dorgon
+ *
+ */
+public class HyperLogLog {
+
+	/** default precision (number of index bits) */
+	public static final int DEFAULT_PRECISION = 12;
+
+	private final int precision;
+	private final byte[] registers;
+
+	public HyperLogLog() {
+		this(DEFAULT_PRECISION);
+	}
+
+	/**
+	 * @param precision number of index bits (4..16)
+	 */
+	public HyperLogLog(int precision) {
+		this.precision = Math.max(4, Math.min(16, precision));
+		this.registers = new byte[1 << this.precision];
+	}
+
+	/**
+	 * @param v value to add
+	 */
+	public void add(long v) {
+		long h = hash(v);
+		int idx = (int) (h >>> (64 - precision));
+		long rest = h << precision;
+		int rank = (rest == 0) ? (64 - precision + 1) : Long.numberOfLeadingZeros(rest) + 1;
+		if (rank > registers[idx])
+			registers[idx] = (byte) rank;
+	}
+
+	/**
+	 * @param s string value to add
+	 */
+	public void add(String s) {
+		long h = 0xcbf29ce484222325L; // 64 bit FNV-1a
+		for (int i = 0; i < s.length(); i++) {
+			h ^= s.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		add(h);
+	}
+
+	/**
+	 * @return estimated number of distinct values added
+	 */
+	public long estimate() {
+		int m = registers.length;
+		double sum = 0;
+		int zeros = 0;
+		for (int i = 0; i < m; i++) {
+			sum += 1.0 / (1L << registers[i]);
+			if (registers[i] == 0) zeros++;
+		}
+
+		double alpha = 0.7213 / (1 + 1.079 / m);
+		double e = alpha * m * m / sum;
+		if (e <= 2.5 * m && zeros > 0)
+			e = m * Math.log((double) m / zeros); // linear counting for small cardinalities
+		return Math.round(e);
+	}
+
+	/**
+	 * merges the registers of other into this estimator, afterwards it estimates the number of distinct
+	 * values added to any of both
+	 *
+	 * @param other an estimator with the same precision
+	 */
+	public void merge(HyperLogLog other) {
+		if (other.precision != precision)
+			throw new IllegalArgumentException("Cannot merge HyperLogLog estimators of different precision (" + precision + ", " + other.precision + ").");
+		for (int i = 0; i < registers.length; i++)
+			if (other.registers[i] > registers[i])
+				registers[i] = other.registers[i];
+	}
+
+	/** 64 bit finalizer of MurmurHash3 */
+	private static long hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return key;
+	}
+
+}
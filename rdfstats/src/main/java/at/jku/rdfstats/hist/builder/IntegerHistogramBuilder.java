@@ -18,7 +18,7 @@ package at.jku.rdfstats.hist.builder;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.util.TreeMap;
+import java.util.Arrays;
 
 import at.jku.rdfstats.ParseException;
 import at.jku.rdfstats.RDFStatsConfiguration;
@@ -28,48 +28,70 @@ import at.jku.rdfstats.hist.IntegerHistogram;
 import com.hp.hpl.jena.graph.Node;
 
 /**
+ * Collects the values in a {@link LongCountMap} instead of the generic values map in order to avoid boxing.
+ * 
  * @author dorgon
  *
  */
 public class IntegerHistogramBuilder extends AbstractHistogramBuilder<Integer> {
 
+	/** distinct values and their frequencies */
+	protected LongCountMap counts = new LongCountMap();
+
 	/**
 	 * @param typeUri
 	 * @param prefSize
 	 */
 	public IntegerHistogramBuilder(RDFStatsConfiguration conf, String typeUri, int prefSize) {
 		super(conf, typeUri, prefSize);
-		
-		values = new TreeMap<Integer, Integer>();		
+	}
+	
+	@Override
+	public void addValue(Integer val) {
+		counts.add(val);
+	}
+	
+	public void addValue(int val) {
+		counts.add(val);
 	}
 	
 	public void addNodeValue(Node val) throws HistogramBuilderException {
 		try {
-			Integer i = IntegerHistogram.parseNodeValueImpl(val);
-			addValue(i);
+			int i = IntegerHistogram.parseNodeValueImpl(val);
+			counts.add(i);
 		} catch (ParseException e) {
 			throw new HistogramBuilderException("Error parsing node value: " + e.getMessage(), e);
 		}		
 	}
 	
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#mergeData(at.jku.rdfstats.hist.builder.AbstractHistogramBuilder)
+	 */
+	@Override
+	protected void mergeData(AbstractHistogramBuilder<Integer> other) {
+		counts.addAll(((IntegerHistogramBuilder) other).counts);
+	}
+	
 	/* (non-Javadoc)
 	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#generateHistogram()
 	 */
 	@Override
 	public Histogram<Integer> generateHistogram() {
-		Integer min = ((TreeMap<Integer, Integer>) values).firstKey();
-		Integer max = ((TreeMap<Integer, Integer>) values).lastKey();
-		Long range = max - min + 1L; // add one in case of integer values, otherwise the last value would be out of the range
+		long[] keys = counts.keys();
+		Arrays.sort(keys);
+		int min = (int) keys[0];
+		int max = (int) keys[keys.length-1];
+		long range = (long) max - min + 1L; // add one in case of integer values, otherwise the last value would be out of the range
 	
 		int numBins = (range > 0) ? prefSize : 1;
-		if (values.size() < numBins) numBins = values.size();
+		if (keys.length < numBins) numBins = keys.length;
 		
 		double binWidth = range / (double) numBins;
 		int[] data = new int[numBins];
-		for (Integer val : values.keySet())
-			data[(int) Math.floor((val-min) / binWidth)] += values.get(val);
-		int distinctValues = values.size();
-		values = null;
+		for (long val : keys)
+			data[(int) Math.floor((val-min) / binWidth)] += counts.get(val);
+		int distinctValues = keys.length;
+		counts = null;
 		
 		return (Histogram<Integer>) new IntegerHistogram(typeUri, data, distinctValues, min, max, this.getClass());
 	}
@@ -89,4 +111,24 @@ public class IntegerHistogramBuilder extends AbstractHistogramBuilder<Integer> {
 		
 		return new IntegerHistogram(typeUri, bins, distinctValues, min, max, this.getClass());
 	}
+
+	@Override
+	public void writeCompactData(CompactDataOutput out, Histogram<Integer> h) {
+		IntegerHistogram hist = (IntegerHistogram) h;
+		out.writeZigZagInt(hist.getMin());
+		out.writeZigZagInt(hist.getMax() - hist.getMin());
+		out.writeIntArray(h.getBinData());
+		out.writeVarInt(h.getDistinctValues());
+	}
+	
+	@Override
+	public IntegerHistogram readCompactData(CompactDataInput in) {
+		int min = in.readZigZagInt();
+		int max = min + in.readZigZagInt();
+		int[] bins = in.readIntArray(prefSize);
+		int distinctValues = in.readVarInt();
+		
+		return new IntegerHistogram(typeUri, bins, distinctValues, min, max, this.getClass());
+	}
+	
 }
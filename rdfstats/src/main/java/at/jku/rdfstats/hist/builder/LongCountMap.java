@@ -0,0 +1,188 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.hist.builder;
+
+/**
+ * Counts the frequencies of primitive long keys using open addressing (linear probing).
+ *
+ * Compared to a TreeMap&lt;Long, Integer&gt;, no objects are allocated per value and a
+ * distinct value needs about 16 bytes instead of 60-80 bytes. Keys are not ordered, builders
+ * sort the distinct keys once when generating the histogram.
+ *
+ * Other primitive types are mapped to long keys by the builders (e.g. Double.doubleToLongBits()).
+ *
+ * @author dorgon
+ *
+ */
+public class LongCountMap {
+
+	private static final int DEFAULT_CAPACITY = 64;
+	private static final float LOAD_FACTOR = 0.75f;
+
+	/** keys, a slot is free if its count is 0 */
+	private long[] keys;
+
+	/** frequencies */
+	private int[] counts;
+
+	/** number of distinct keys */
+	private int size = 0;
+
+	/** size at which the tables are enlarged */
+	private int threshold;
+
+	public LongCountMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity initial capacity (number of slots, will be rounded up to a power of 2)
+	 */
+	public LongCountMap(int capacity) {
+		int c = 1;
+		while (c < capacity) c <<= 1;
+		keys = new long[c];
+		counts = new int[c];
+		threshold = (int) (c * LOAD_FACTOR);
+	}
+
+	/**
+	 * increments the frequency of key by one (saturates at Integer.MAX_VALUE)
+	 *
+	 * @param key
+	 */
+	public void add(long key) {
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (counts[i] != 0) {
+			if (keys[i] == key) {
+				if (counts[i] < Integer.MAX_VALUE)
+					counts[i]++;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+
+		keys[i] = key;
+		counts[i] = 1;
+		if (++size > threshold)
+			rehash(keys.length << 1);
+	}
+
+	/**
+	 * increments the frequency of key by count (saturates at Integer.MAX_VALUE)
+	 *
+	 * @param key
+	 * @param count a positive frequency
+	 */
+	public void add(long key, int count) {
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (counts[i] != 0) {
+			if (keys[i] == key) {
+				counts[i] = (counts[i] > Integer.MAX_VALUE - count) ? Integer.MAX_VALUE : counts[i] + count;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+
+		keys[i] = key;
+		counts[i] = count;
+		if (++size > threshold)
+			rehash(keys.length << 1);
+	}
+
+	/**
+	 * adds the frequencies of all keys of other
+	 *
+	 * @param other
+	 */
+	public void addAll(LongCountMap other) {
+		for (int i = 0; i < other.keys.length; i++)
+			if (other.counts[i] != 0)
+				add(other.keys[i], other.counts[i]);
+	}
+
+	/**
+	 * @param key
+	 * @return the frequency of key, 0 if not contained
+	 */
+	public int get(long key) {
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (counts[i] != 0) {
+			if (keys[i] == key)
+				return counts[i];
+			i = (i + 1) & mask;
+		}
+		return 0;
+	}
+
+	/**
+	 * @return number of distinct keys
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if no key has been added yet
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return a new array of all distinct keys (unordered)
+	 */
+	public long[] keys() {
+		long[] k = new long[size];
+		int n = 0;
+		for (int i = 0; i < keys.length; i++)
+			if (counts[i] != 0)
+				k[n++] = keys[i];
+		return k;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldCounts = counts;
+		keys = new long[capacity];
+		counts = new int[capacity];
+		threshold = (int) (capacity * LOAD_FACTOR);
+
+		int mask = capacity - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldCounts[j] == 0) continue;
+			int i = hash(oldKeys[j]) & mask;
+			while (counts[i] != 0)
+				i = (i + 1) & mask;
+			keys[i] = oldKeys[j];
+			counts[i] = oldCounts[j];
+		}
+	}
+
+	/** spreads the bits of key, otherwise sequential numbers or double bit patterns would cluster */
+	private static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+}
@@ -18,7 +18,7 @@ package at.jku.rdfstats.hist.builder;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.util.TreeMap;
+import java.util.Arrays;
 
 import at.jku.rdfstats.ParseException;
 import at.jku.rdfstats.RDFStatsConfiguration;
@@ -28,50 +28,71 @@ import at.jku.rdfstats.hist.LongHistogram;
 import com.hp.hpl.jena.graph.Node;
 
 /**
+ * Collects the values in a {@link LongCountMap} instead of the generic values map in order to avoid boxing.
+ * 
  * @author dorgon
  *
  */
 public class LongHistogramBuilder extends AbstractHistogramBuilder<Long> {
 
+	/** distinct values and their frequencies */
+	protected LongCountMap counts = new LongCountMap();
+
 	/**
 	 * @param typeUri
 	 * @param prefSize
 	 */
 	public LongHistogramBuilder(RDFStatsConfiguration conf, String typeUri, int prefSize) {
 		super(conf, typeUri, prefSize);
-		
-		values = new TreeMap<Long, Integer>();		
 	}
 	
+	@Override
+	public void addValue(Long val) {
+		counts.add(val);
+	}
+	
+	public void addValue(long val) {
+		counts.add(val);
+	}
 	
 	public void addNodeValue(Node val) throws HistogramBuilderException {
 		try {
-			Long l = LongHistogram.parseNodeValueImpl(val);
-			addValue(l);
+			long l = LongHistogram.parseNodeValueImpl(val);
+			counts.add(l);
 		} catch (ParseException e) {
 			throw new HistogramBuilderException("Error parsing node value: " + e.getMessage(), e);
 		}		
 	}
 	
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#mergeData(at.jku.rdfstats.hist.builder.AbstractHistogramBuilder)
+	 */
+	@Override
+	protected void mergeData(AbstractHistogramBuilder<Long> other) {
+		counts.addAll(((LongHistogramBuilder) other).counts);
+	}
+	
 	/* (non-Javadoc)
 	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#generateHistogram()
 	 */
 	@Override
 	public Histogram<Long> generateHistogram() {
-		Long min = ((TreeMap<Long, Integer>) values).firstKey();
-		Long max = ((TreeMap<Long, Integer>) values).lastKey();
-		// TODO use BigInteger for range (corner case if min = Integer.MIN_VALUE and max = Integer.MAX_VALUE
-		Long range = max - min + 1; // add one in case of integer values, otherwise the last value would be out of the range
+		long[] keys = counts.keys();
+		Arrays.sort(keys);
+		long min = keys[0];
+		long max = keys[keys.length-1];
+		// TODO use BigInteger for range (corner case if min = Long.MIN_VALUE and max = Long.MAX_VALUE
+		long range = max - min + 1; // add one in case of integer values, otherwise the last value would be out of the range
 	
 		int numBins = (range > 0) ? prefSize : 1;
-		if (values.size() < numBins) numBins = values.size();
+		if (keys.length < numBins) numBins = keys.length;
 		
 		double binWidth = range / (double) numBins;
 		int[] data = new int[numBins];
-		for (Long val : values.keySet())
-			data[(int) Math.floor((val-min) / binWidth)] += values.get(val);
-		int distinctValues = values.size();
-		values = null;
+		for (long val : keys)
+			data[(int) Math.floor((val-min) / binWidth)] += counts.get(val);
+		int distinctValues = keys.length;
+		counts = null;
 		
 		return (Histogram<Long>) new LongHistogram(typeUri, data, distinctValues, min, max, this.getClass());
 	}
@@ -91,4 +112,24 @@ public class LongHistogramBuilder extends AbstractHistogramBuilder<Long> {
 		
 		return new LongHistogram(typeUri, bins, distinctValues, min, max, this.getClass());
 	}
+
+	@Override
+	public void writeCompactData(CompactDataOutput out, Histogram<Long> h) {
+		LongHistogram hist = (LongHistogram) h;
+		out.writeZigZagLong(hist.getMin());
+		out.writeZigZagLong(hist.getMax() - hist.getMin());
+		out.writeIntArray(h.getBinData());
+		out.writeVarInt(h.getDistinctValues());
+	}
+	
+	@Override
+	public LongHistogram readCompactData(CompactDataInput in) {
+		long min = in.readZigZagLong();
+		long max = min + in.readZigZagLong();
+		int[] bins = in.readIntArray(prefSize);
+		int distinctValues = in.readVarInt();
+		
+		return new LongHistogram(typeUri, bins, distinctValues, min, max, this.getClass());
+	}
+	
 }
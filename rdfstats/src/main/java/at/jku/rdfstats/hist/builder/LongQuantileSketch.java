@@ -0,0 +1,230 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.hist.builder;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Streaming quantile sketch over long values following Karnin, Lang, and Liberty: "Optimal Quantile
+ * Approximation in Streams" (KLL), 2016.
+ *
+ * Values are kept in a hierarchy of compactors, an item on level h represents 2^h input values.
+ * If a compactor is full, it is sorted and every other item (random offset) is promoted to the next level.
+ * Level capacities decrease geometrically (factor 2/3) from the top level down, hence about 3k items plus
+ * two items per level are retained independent of the number of input values.
+ *
+ * Error bound: the rank of any value (and thus the number of values falling into any interval) is
+ * off by at most about 1.7% of n for k = 200 with 99% probability (the error scales with 1/k).
+ * The total weight of all retained items is always exactly n.
+ *
+ * @author dorgon
+ *
+ */
+public class LongQuantileSketch {
+
+	/** default accuracy parameter */
+	public static final int DEFAULT_K = 200;
+
+	private static final double CAPACITY_DECAY = 2.0 / 3.0;
+	private static final int MIN_CAPACITY = 2;
+
+	/** accuracy parameter (capacity of the top level compactor) */
+	private final int k;
+
+	/** compactors, levels[h] holds sizes[h] items of weight 2^h */
+	private long[][] levels = new long[1][];
+	private int[] sizes = new int[1];
+
+	/** number of items currently retained and the maximum before compacting */
+	private int retained = 0;
+	private int maxRetained;
+
+	/** number of values added */
+	private long n = 0;
+
+	/** used for choosing the offset when compacting, seeded for reproducible results */
+	private final Random random;
+
+	public LongQuantileSketch() {
+		this(DEFAULT_K);
+	}
+
+	/**
+	 * @param k accuracy parameter, the rank error is about 1.7% * (200 / k)
+	 */
+	public LongQuantileSketch(int k) {
+		this.k = Math.max(k, MIN_CAPACITY * 4);
+		this.random = new Random(k);
+		levels[0] = new long[this.k];
+		maxRetained = capacity(0);
+	}
+
+	/**
+	 * @param v value to add
+	 */
+	public void update(long v) {
+		append(0, v);
+		n++;
+		while (retained > maxRetained)
+			compress();
+	}
+
+	/**
+	 * merges the items of other into this sketch, afterwards it summarizes the values added to any of both
+	 * with the same error bound (relative to the total number of values)
+	 *
+	 * @param other
+	 */
+	public void merge(LongQuantileSketch other) {
+		while (levels.length < other.levels.length)
+			addLevel();
+		for (int h = 0; h < other.levels.length; h++)
+			for (int i = 0; i < other.sizes[h]; i++)
+				append(h, other.levels[h][i]);
+		n += other.n;
+		while (retained > maxRetained)
+			compress();
+	}
+
+	/**
+	 * @return number of values added
+	 */
+	public long getN() {
+		return n;
+	}
+
+	/**
+	 * @return number of items currently retained by the sketch
+	 */
+	public int getNumRetained() {
+		return retained;
+	}
+
+	/**
+	 * @return two arrays {values, weights} of all retained items sorted by value, the weights sum up to n
+	 */
+	public long[][] getWeightedItems() {
+		long[] values = new long[retained];
+		long[] weights = new long[retained];
+
+		// sort (value, level) pairs by value, weight is derived from the level
+		int idx = 0;
+		for (int h = 0; h < levels.length; h++) {
+			for (int i = 0; i < sizes[h]; i++) {
+				values[idx] = levels[h][i];
+				weights[idx] = 1L << h;
+				idx++;
+			}
+		}
+		sortByValue(values, weights);
+		return new long[][] { values, weights };
+	}
+
+	/**
+	 * @param v
+	 * @return approximate number of added values <= v
+	 */
+	public long getRank(long v) {
+		long rank = 0;
+		for (int h = 0; h < levels.length; h++)
+			for (int i = 0; i < sizes[h]; i++)
+				if (levels[h][i] <= v)
+					rank += 1L << h;
+		return rank;
+	}
+
+	private int capacity(int level) {
+		int depth = levels.length - 1 - level;
+		return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+	}
+
+	private void append(int level, long v) {
+		if (sizes[level] == levels[level].length) {
+			long[] larger = new long[Math.max(MIN_CAPACITY, levels[level].length * 2)];
+			System.arraycopy(levels[level], 0, larger, 0, sizes[level]);
+			levels[level] = larger;
+		}
+		levels[level][sizes[level]++] = v;
+		retained++;
+	}
+
+	/** compacts the lowest level which reached its capacity */
+	private void compress() {
+		for (int h = 0; h < levels.length; h++) {
+			if (sizes[h] < capacity(h))
+				continue;
+
+			if (h + 1 == levels.length)
+				addLevel();
+
+			long[] items = levels[h];
+			int len = sizes[h];
+			Arrays.sort(items, 0, len);
+
+			// an odd item stays on this level, all pairs are replaced by one item of twice the weight
+			int pairs = len / 2;
+			int offset = random.nextBoolean() ? 1 : 0;
+			int start = len % 2; // keep the smallest item if len is odd
+			for (int i = 0; i < pairs; i++)
+				append(h + 1, items[start + 2 * i + offset]);
+
+			if (start == 1) {
+				sizes[h] = 1; // items[0] already is the smallest one
+			} else
+				sizes[h] = 0;
+			retained -= 2 * pairs;
+
+			updateMaxRetained();
+			return;
+		}
+	}
+
+	private void addLevel() {
+		long[][] l = new long[levels.length + 1][];
+		System.arraycopy(levels, 0, l, 0, levels.length);
+		l[levels.length] = new long[MIN_CAPACITY];
+		int[] s = new int[sizes.length + 1];
+		System.arraycopy(sizes, 0, s, 0, sizes.length);
+		levels = l;
+		sizes = s;
+		updateMaxRetained();
+	}
+
+	private void updateMaxRetained() {
+		int max = 0;
+		for (int h = 0; h < levels.length; h++)
+			max += capacity(h);
+		maxRetained = max;
+	}
+
+	/** sorts values ascending and permutes weights accordingly (insertion sort is fine for the few items retained) */
+	private static void sortByValue(long[] values, long[] weights) {
+		for (int i = 1; i < values.length; i++) {
+			long v = values[i];
+			long w = weights[i];
+			int j = i - 1;
+			while (j >= 0 && values[j] > v) {
+				values[j + 1] = values[j];
+				weights[j + 1] = weights[j];
+				j--;
+			}
+			values[j + 1] = v;
+			weights[j + 1] = w;
+		}
+	}
+
+}
@@ -18,10 +18,6 @@ package at.jku.rdfstats.hist.builder;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.util.HashMap;
-import java.util.Hashtable;
-import java.util.Map;
-import java.util.TreeMap;
 
 import at.jku.rdfstats.ParseException;
 import at.jku.rdfstats.RDFStatsConfiguration;
@@ -33,26 +29,28 @@ import com.hp.hpl.jena.graph.Node;
 /**
  * @author dorgon
  *
+ * Builds prefix-labeled bins of strings. Values are inserted into a radix tree (path-compressed character trie)
+ * which maintains the number of values and distinct values of each subtree during insertion. When the histogram is
+ * generated, the prefix length is repetitively divided by COMPRESS_FACTOR until the number of distinct prefixes is
+ * smaller than prefSize. The number of distinct prefixes for every length is obtained by a single traversal of the tree,
+ * the bins are emitted in lexicographical order by a second one.
  */
 public class OrderedStringHistogramBuilder extends AbstractHistogramBuilder<String> {
 
 	/** default compression factor */
-	protected final static int COMPRESS_FACTOR = 2; // divide prefix table by 2; this is a good value
+	protected final static int COMPRESS_FACTOR = 2; // divide prefix length by 2; this is a good value
 	
 	/** cut-off length can be adjusted in configuration */
 	protected int cutOffLength = Integer.MAX_VALUE;
 	
-	/** current maximum lengths of prefix labels (after the first compression this value will be equal to (currentCutOffLength / COMPRESS_FACTOR) */
+	/** maximum length of all values added */
 	protected int currentMaxPrefixLength = 0;
 	
-	/** lexicographically lowest value found */
-	protected String min;
+	/** root of the radix tree, represents the empty prefix */
+	protected PrefixNode root = new PrefixNode(null, 0);
 	
-	/** lexicographically highest value found */
-	protected String max;
-	
-	/** distinct values map, filled during compression */
-	protected Map<String, Integer> distinctBinValues;
+	/** nodes of the current insertion path, reused */
+	private PrefixNode[] path = new PrefixNode[16];
 	
 	/**
 	 * @param typeUri
@@ -63,25 +61,94 @@ public class OrderedStringHistogramBuilder extends AbstractHistogramBuilder<Stri
 
 		if (conf != null)
 			cutOffLength = conf.getStrHistMaxLength();
-		
-		// values is a prefix table (basis for labeled histogram bins)
-		// first use hashing because we probably need to compress the table multiple times (faster) 
-		// finally build ordered tree map in generateHistogram()
-		values = new Hashtable<String, Integer>();
 	}
 	
 	@Override
 	public void addValue(String val) {
+		addValue(val, 1);
+	}
+	
+	/**
+	 * adds count occurrences of val
+	 * 
+	 * @param val
+	 * @param count
+	 */
+	protected void addValue(String val, int count) {
 		if (val.length() > cutOffLength)
 			val = val.substring(0, cutOffLength);
 
-		if (min == null || val.compareTo(min) < 0) min = val;
-		if (max == null || val.compareTo(max) > 0) max = val;
+		if (val.length() > currentMaxPrefixLength)
+			currentMaxPrefixLength = val.length();
 		
-		super.addValue(val);
+		// descend, split edges and create the leaf as necessary, record the path
+		PrefixNode node = root;
+		int pathLength = 0;
+		int pos = 0;
+		int len = val.length();
+		while (true) {
+			if (pathLength == path.length) {
+				PrefixNode[] tmp = new PrefixNode[path.length * 2];
+				System.arraycopy(path, 0, tmp, 0, path.length);
+				path = tmp;
+			}
+			path[pathLength++] = node;
+			
+			if (pos == len)
+				break;
+			
+			char c = val.charAt(pos);
+			PrefixNode prev = null;
+			PrefixNode child = node.child;
+			while (child != null && child.first < c) {
+				prev = child;
+				child = child.sibling;
+			}
+			
+			if (child == null || child.first != c) { // no edge starting with c, append new leaf
+				PrefixNode leaf = new PrefixNode(val, len);
+				leaf.first = c;
+				leaf.sibling = child;
+				if (prev == null) node.child = leaf;
+				else prev.sibling = leaf;
+				node = leaf;
+				pos = len;
+				continue;
+			}
+			
+			// compare the edge label
+			int end = Math.min(child.depth, len);
+			int i = pos + 1;
+			while (i < end && child.key.charAt(i) == val.charAt(i))
+				i++;
+			
+			if (i < child.depth) { // split the edge at i
+				PrefixNode mid = new PrefixNode(child.key, i);
+				mid.first = c;
+				child.first = child.key.charAt(i);
+				mid.total = child.total;
+				mid.distinct = child.distinct;
+				mid.child = child;
+				mid.sibling = child.sibling;
+				child.sibling = null;
+				if (prev == null) node.child = mid;
+				else prev.sibling = mid;
+				child = mid;
+			}
+			node = child;
+			pos = i;
+		}
 		
-		if (val.length() > currentMaxPrefixLength)
-			currentMaxPrefixLength = val.length();		
+		// node represents val now
+		boolean isNew = (node.count == 0);
+		node.count = (node.count > Integer.MAX_VALUE - count) ? Integer.MAX_VALUE : node.count + count;
+		for (int i = 0; i < pathLength; i++) {
+			PrefixNode n = path[i];
+			n.total = (n.total > Integer.MAX_VALUE - count) ? Integer.MAX_VALUE : n.total + count;
+			if (isNew)
+				n.distinct++;
+			path[i] = null;
+		}
 	}
 	
 	public void addNodeValue(Node val) throws HistogramBuilderException {
@@ -93,54 +160,66 @@ public class OrderedStringHistogramBuilder extends AbstractHistogramBuilder<Stri
 		}	
 	}
 
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#mergeData(at.jku.rdfstats.hist.builder.AbstractHistogramBuilder)
+	 */
+	@Override
+	protected void mergeData(AbstractHistogramBuilder<String> other) {
+		// re-insert the distinct values of the other tree with their frequencies
+		PrefixNode[] stack = new PrefixNode[16];
+		int size = 0;
+		stack[size++] = ((OrderedStringHistogramBuilder) other).root;
+		while (size > 0) {
+			PrefixNode n = stack[--size];
+			if (n.count > 0)
+				addValue(n.getPrefix(n.depth), n.count);
+			for (PrefixNode c = n.child; c != null; c = c.sibling)
+				stack = push(stack, size++, c);
+		}
+	}
+	
 	/**
-	 * repetitive compress the prefix table by factor 1 / COMPRESS_FACTOR until it is smaller than prefSize
-	 * several prefixes will fall into equal bins as a result and the table will become smaller
+	 * determines the prefix length: starting with the maximum length, the length is repetitively divided by COMPRESS_FACTOR
+	 * until there are at most prefSize distinct prefixes, at least for each first character we want one bin
 	 * 
-	 * will the distinctValues map also
+	 * @return the prefix length of the bin labels
 	 */
-	protected void compressPrefixTable() {
-		Map<String, Integer> prevTable = values;
-		Map<String, Integer> newTable;
-		Map<String, Integer> newDistinct;
-		
-		int currentLength = currentMaxPrefixLength;
-
-		boolean cancelled;
-		do {
-			cancelled = false;
-			newTable = new Hashtable<String, Integer>();
-			newDistinct = new Hashtable<String, Integer>();
-			currentLength /= COMPRESS_FACTOR;	
-			String newPrefix;
-			
-			for (String prevPrefix : prevTable.keySet()) {
-				newPrefix = (prevPrefix.length() > currentLength) ? prevPrefix.substring(0, currentLength) : prevPrefix; 
-				
-				Integer l = newTable.get(newPrefix);
-				if (l == null) {
-					if (newTable.size() <= prefSize || currentLength == 1) {
-						newTable.put(newPrefix, prevTable.get(prevPrefix));
-						newDistinct.put(newPrefix, distinctBinValues.get(prevPrefix));
-					} else {
-						cancelled = true;
-						break; // exceeding prefSize, break and continue with next compression step
-					}
-				} else { // bin already exists
-					newTable.put(newPrefix, prevTable.get(prevPrefix) + l);
-					newDistinct.put(newPrefix, newDistinct.get(newPrefix) + distinctBinValues.get(prevPrefix));
-				}
+	protected int getPrefixLength() {
+		// prefixes[l] = number of distinct prefixes of length l (shorter values count as prefixes of their own),
+		// computed as a difference array: a child covers the lengths (parent depth; depth], a value covers all lengths > its length
+		int[] prefixes = new int[currentMaxPrefixLength + 2];
+		PrefixNode[] stack = new PrefixNode[16];
+		int size = 0;
+		stack[size++] = root;
+		while (size > 0) {
+			PrefixNode n = stack[--size];
+			if (n.count > 0)
+				prefixes[n.depth + 1]++;
+			for (PrefixNode c = n.child; c != null; c = c.sibling) {
+				prefixes[n.depth + 1]++;
+				prefixes[c.depth + 1]--;
+				stack = push(stack, size++, c);
 			}
-			
-			if (!cancelled) {
-				prevTable = newTable;
-				distinctBinValues = newDistinct;
-			}
-			// continue compression while size is bigger than prefSize
-			// at least for each first character we want one bin, set prefSize to maximum
-		} while (prevTable.size() > prefSize && currentLength > 1);
-
-		values = newTable;
+		}
+		for (int l = 1; l < prefixes.length; l++)
+			prefixes[l] += prefixes[l - 1];
+		
+		int length = currentMaxPrefixLength;
+		if (prefixes[length] > prefSize)
+			do {
+				length /= COMPRESS_FACTOR;
+			} while (prefixes[length] > prefSize && length > 1);
+		return length;
+	}
+	
+	private static PrefixNode[] push(PrefixNode[] stack, int size, PrefixNode n) {
+		if (size == stack.length) {
+			PrefixNode[] tmp = new PrefixNode[stack.length * 2];
+			System.arraycopy(stack, 0, tmp, 0, stack.length);
+			stack = tmp;
+		}
+		stack[size] = n;
+		return stack;
 	}
 	
 	/* (non-Javadoc)
@@ -148,33 +227,80 @@ public class OrderedStringHistogramBuilder extends AbstractHistogramBuilder<Stri
 	 */
 	@Override
 	public OrderedStringHistogram generateHistogram() {
-		distinctBinValues = new HashMap<String, Integer>();
-		for (String prefix : values.keySet())
-			distinctBinValues.put(prefix, 1);
-
-		if (values.size() > prefSize)
-			compressPrefixTable();
+		int length = getPrefixLength();
 		
-		TreeMap<String, Integer> orderedBins = new TreeMap<String, Integer>();
-		orderedBins.putAll(values);
-		values = null;
+		// count bins
+		int numBins = 0;
+		PrefixNode[] stack = new PrefixNode[16];
+		int size = 0;
+		stack[size++] = root;
+		while (size > 0) {
+			PrefixNode n = stack[--size];
+			if (n.depth >= length) {
+				if (n.total > 0)
+					numBins++;
+			}
+			else {
+				if (n.count > 0)
+					numBins++;
+				for (PrefixNode c = n.child; c != null; c = c.sibling)
+					stack = push(stack, size++, c);
+			}
+		}
 		
+		// emit bins in pre-order, children are sorted, hence labels are sorted
+		String[] labels = new String[numBins];
+		int[] bins = new int[numBins];
+		int[] distinct = new int[numBins];
 		int distinctTotal = 0;
-		String[] labels = new String[orderedBins.size()];
-		int[] bins = new int[labels.length];
-		int[] distinct = new int[labels.length];
-
 		int i = 0;
-		for (String label : orderedBins.keySet()) {
-			labels[i] = label;
-			bins[i] = orderedBins.get(label);
-			distinct[i] = distinctBinValues.get(label);
-			distinctTotal += distinct[i];
-			i++;
+		size = 0;
+		stack[size++] = root;
+		while (size > 0) {
+			PrefixNode n = stack[--size];
+			if (n.depth >= length) {
+				if (n.total == 0)
+					continue;
+				labels[i] = n.getPrefix(length);
+				bins[i] = n.total;
+				distinct[i] = n.distinct;
+				distinctTotal += distinct[i++];
+			} else {
+				if (n.count > 0) {
+					labels[i] = n.getPrefix(n.depth);
+					bins[i] = n.count;
+					distinct[i] = 1;
+					distinctTotal += distinct[i++];
+				}
+				// push in reverse order to pop the lowest child first
+				int first = size;
+				for (PrefixNode c = n.child; c != null; c = c.sibling)
+					stack = push(stack, size++, c);
+				for (int a = first, b = size - 1; a < b; a++, b--) {
+					PrefixNode tmp = stack[a];
+					stack[a] = stack[b];
+					stack[b] = tmp;
+				}
+			}
+		}
+		
+		String min = null, max = null;
+		if (root.total > 0) {
+			PrefixNode n = root;
+			while (n.count == 0)
+				n = n.child;
+			min = n.getPrefix(n.depth);
+			
+			n = root;
+			while (n.child != null) {
+				n = n.child;
+				while (n.sibling != null)
+					n = n.sibling;
+			}
+			max = n.getPrefix(n.depth);
 		}
 		
-		distinctBinValues = null;
-		orderedBins = null;
+		root = null;
 		
 		return new OrderedStringHistogram(typeUri,
 				bins,
@@ -185,6 +311,42 @@ public class OrderedStringHistogramBuilder extends AbstractHistogramBuilder<Stri
 				this.getClass());
 	}
 	
+	/** node of the radix tree, the edge from the parent is labeled with key[parent depth; depth) */
+	protected static class PrefixNode {
+		/** a value passing this node, its first depth characters are the prefix represented by this node */
+		final String key;
+		
+		/** length of the prefix */
+		final int depth;
+		
+		/** first character of the edge */
+		char first;
+		
+		/** number of values equal to the prefix */
+		int count;
+		
+		/** number of values in the subtree */
+		int total;
+		
+		/** number of distinct values in the subtree */
+		int distinct;
+		
+		/** first child, children are ordered by the first character of their edge */
+		PrefixNode child;
+		
+		/** next sibling */
+		PrefixNode sibling;
+		
+		PrefixNode(String key, int depth) {
+			this.key = key;
+			this.depth = depth;
+		}
+		
+		String getPrefix(int length) {
+			return (key == null) ? "" : (key.length() == length) ? key : key.substring(0, length);
+		}
+	}
+	
 	/* (non-Javadoc)
 	 * @see at.jku.rdfstats.hist.builder.HistogramBuilder#writeData(java.io.ByteArrayOutputStream, at.jku.rdfstats.hist.Histogram)
 	 */
@@ -219,4 +381,35 @@ public class OrderedStringHistogramBuilder extends AbstractHistogramBuilder<Stri
 		
 		return new OrderedStringHistogram(typeUri, bins, distinctValues, distinctBinValues, labels, min, max, this.getClass());
 	}
+	
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#writeCompactData(at.jku.rdfstats.hist.builder.CompactDataOutput, at.jku.rdfstats.hist.Histogram)
+	 */
+	@Override
+	public void writeCompactData(CompactDataOutput out, Histogram<String> hist) {
+		OrderedStringHistogram h = (OrderedStringHistogram) hist;
+		out.writeString(h.getMin());
+		out.writeString(h.getMax());
+		out.writeIntArray(h.getBinData());
+		out.writeIntArray(h.getDistinctBinValues());
+		out.writeStringArray(h.getLabels()); // labels are sorted, hence front-coding pays off
+	}
+	
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#readCompactData(at.jku.rdfstats.hist.builder.CompactDataInput)
+	 */
+	@Override
+	public OrderedStringHistogram readCompactData(CompactDataInput in) {
+		String min = in.readString();
+		String max = in.readString();
+		int[] bins = in.readIntArray(prefSize);
+		int[] distinctBinValues = in.readIntArray(prefSize);
+		
+		int distinctValues = 0;
+		for (int l : distinctBinValues)
+			distinctValues += l;
+		
+		String[] labels = in.readStringArray(prefSize);
+		return new OrderedStringHistogram(typeUri, bins, distinctValues, distinctBinValues, labels, min, max, this.getClass());
+	}
 }
@@ -109,4 +109,25 @@ public class SimpleStringHistogramBuilder extends AbstractHistogramBuilder<Strin
 		}	
 	}
 
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#writeCompactData(at.jku.rdfstats.hist.builder.CompactDataOutput, at.jku.rdfstats.hist.Histogram)
+	 */
+	@Override
+	public void writeCompactData(CompactDataOutput out, Histogram<String> hist) {
+		SimpleStringHistogram h = (SimpleStringHistogram) hist;
+		out.writeIntArray(h.getBinData());
+		out.writeStringArray(h.getLabels());
+	}
+
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#readCompactData(at.jku.rdfstats.hist.builder.CompactDataInput)
+	 */
+	@Override
+	public Histogram<String> readCompactData(CompactDataInput in) {
+		int[] bins = in.readIntArray(prefSize);
+		String[] labels = in.readStringArray(prefSize);
+		
+		return new SimpleStringHistogram(typeUri, bins, labels, this.getClass());
+	}
+	
 }
@@ -64,6 +64,18 @@ public class URIHistogramBuilder extends AbstractHistogramBuilder<String> {
 		super.addValue(uri);
 	}
 	
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#mergeData(at.jku.rdfstats.hist.builder.AbstractHistogramBuilder)
+	 */
+	@Override
+	protected void mergeData(AbstractHistogramBuilder<String> other) {
+		URIHistogramBuilder o = (URIHistogramBuilder) other;
+		if (o.min != null && (min == null || o.min.compareTo(min) < 0)) min = o.min;
+		if (o.max != null && (max == null || o.max.compareTo(max) > 0)) max = o.max;
+		
+		super.mergeData(other);
+	}
+	
 	public void addNodeValue(Node val) throws HistogramBuilderException {
 		try {
 			if (val.isURI()) { // don't add blank nodes
@@ -218,4 +230,35 @@ public class URIHistogramBuilder extends AbstractHistogramBuilder<String> {
 		
 		return new URIHistogram(typeUri, bins, distinctValues, distinctBinValues, labels, min, max, this.getClass());
 	}
+	
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#writeCompactData(at.jku.rdfstats.hist.builder.CompactDataOutput, at.jku.rdfstats.hist.Histogram)
+	 */
+	@Override
+	public void writeCompactData(CompactDataOutput out, Histogram<String> hist) {
+		URIHistogram h = (URIHistogram) hist;
+		out.writeString(h.getMin());
+		out.writeString(h.getMax());
+		out.writeIntArray(h.getBinData());
+		out.writeIntArray(h.getDistinctBinValues());
+		out.writeStringArray(h.getLabels()); // labels are sorted, hence front-coding pays off
+	}
+	
+	/* (non-Javadoc)
+	 * @see at.jku.rdfstats.hist.builder.AbstractHistogramBuilder#readCompactData(at.jku.rdfstats.hist.builder.CompactDataInput)
+	 */
+	@Override
+	public URIHistogram readCompactData(CompactDataInput in) {
+		String min = in.readString();
+		String max = in.readString();
+		int[] bins = in.readIntArray(prefSize);
+		int[] distinctBinValues = in.readIntArray(prefSize);
+		
+		int distinctValues = 0;
+		for (int l : distinctBinValues)
+			distinctValues += l;
+		
+		String[] labels = in.readStringArray(prefSize);
+		return new URIHistogram(typeUri, bins, distinctValues, distinctBinValues, labels, min, max, this.getClass());
+	}
 }
@@ -42,6 +42,24 @@ public class Config {
 
     /* Vocabulary properties */
 
+    /** <p>Use bounded-memory approximate histogram builders (quantile sketches) for numeric 
+     *  and date values instead of keeping all distinct values in memory, default is false</p>
+     */
+    public static final OntProperty approximateHistograms = m_model.createOntProperty( "http://purl.org/rdfstats/config#approximateHistograms" );
+    
+    /** <p>Maximum number of characteristic sets (distinct combinations of properties used by subjects) stored 
+     *  per dataset, less frequent sets are merged into a residual, 0 disables them, default is 0. 
+     *  Generating them requires all triples of a source ordered by subject (a full export and sort for SPARQL 
+     *  endpoints, which should be paged for endpoints truncating results) and for documents the properties of 
+     *  every subject are kept in memory until the end</p>
+     */
+    public static final OntProperty characteristicSetsSize = m_model.createOntProperty( "http://purl.org/rdfstats/config#characteristicSetsSize" );
+    
+    /** <p>Directory where checkpoint files are written during generation, an interrupted run for a source 
+     *  resumes with the properties not completed before, disabled by default</p>
+     */
+    public static final OntProperty checkpointDirectory = m_model.createOntProperty( "http://purl.org/rdfstats/config#checkpointDirectory" );
+    
     /** <p>Time zone to use for dates which have no time zone information (a string value 
      *  as defined in http://java.sun.com/j2se/1.5.0/docs/api/java/util/TimeZone.html).</p>
      */
@@ -50,9 +68,20 @@ public class Config {
     /** <p>An RDF document source URL (may be file:... or http://... etc.)</p> */
     public static final OntProperty documentUrl = m_model.createOntProperty( "http://purl.org/rdfstats/config#documentUrl" );
     
+    /** <p>Data type URI for which equi-depth instead of equi-width histograms are built 
+     *  (numeric and date types, multiple values allowed)</p>
+     */
+    public static final OntProperty equiDepthDatatype = m_model.createOntProperty( "http://purl.org/rdfstats/config#equiDepthDatatype" );
+    
     /** <p>A SPARQL end-point to process (multiple values allowed)</p> */
     public static final OntProperty endpointUri = m_model.createOntProperty( "http://purl.org/rdfstats/config#endpointUri" );
     
+    /** <p>Number of worker threads used to generate property histograms concurrently 
+     *  (each worker issues its own queries) and to read local N-Triples/N-Quads documents 
+     *  in parallel, default is 1</p>
+     */
+    public static final OntProperty generatorThreads = m_model.createOntProperty( "http://purl.org/rdfstats/config#generatorThreads" );
+    
     /** <p>Preferred number of absolute bins</p> */
     public static final OntProperty histogramSize = m_model.createOntProperty( "http://purl.org/rdfstats/config#histogramSize" );
     
@@ -64,17 +93,45 @@ public class Config {
      */
     public static final OntProperty outputFormat = m_model.createOntProperty( "http://purl.org/rdfstats/config#outputFormat" );
     
+    /** <p>Initial number of solutions per page when querying sources, the page size is adapted to the 
+     *  response times, 0 disables paging, default is 0</p>
+     */
+    public static final OntProperty pageSize = m_model.createOntProperty( "http://purl.org/rdfstats/config#pageSize" );
+    
     /** <p>Quick mode: only generate histograms for new classes or if the number of total 
      *  instances has changed from previous statistics</p>
      */
     public static final OntProperty quickMode = m_model.createOntProperty( "http://purl.org/rdfstats/config#quickMode" );
     
+    /** <p>Maximum number of sources (endpoints and documents) processed concurrently, 
+     *  sources with the oldest statistics are processed first, default is 1</p>
+     */
+    public static final OntProperty sourceThreads = m_model.createOntProperty( "http://purl.org/rdfstats/config#sourceThreads" );
+    
+    /** <p>Maximum number of sources on the same host processed concurrently, default is 1</p> */
+    public static final OntProperty sourceThreadsPerHost = m_model.createOntProperty( "http://purl.org/rdfstats/config#sourceThreadsPerHost" );
+    
+    /** <p>Maximum time in seconds for generating the statistics of a single source, the source 
+     *  is skipped when exceeded, 0 means unlimited, default is 0</p>
+     */
+    public static final OntProperty sourceTimeout = m_model.createOntProperty( "http://purl.org/rdfstats/config#sourceTimeout" );
+    
     /** <p>A Jena Assembler model - the target model where to store the created statistics</p> */
     public static final OntProperty statsModel = m_model.createOntProperty( "http://purl.org/rdfstats/config#statsModel" );
     
     /** <p>Maximal length of strings processed for StringOrderedHistogram</p> */
     public static final OntProperty stringHistMaxLength = m_model.createOntProperty( "http://purl.org/rdfstats/config#stringHistMaxLength" );
     
+    /** <p>Targeted false positive rate of the Bloom filters over URI subjects, which are stored together with 
+     *  the subject histograms and allow for exact negative subject lookups, 0 disables them, default is 0</p>
+     */
+    public static final OntProperty subjectFilterFalsePositiveRate = m_model.createOntProperty( "http://purl.org/rdfstats/config#subjectFilterFalsePositiveRate" );
+    
+    /** <p>Maximum number of prefix nodes kept in memory by the approximate URI histogram builder, 
+     *  deeper path segments are merged into their parents when exceeded, default is 10000</p>
+     */
+    public static final OntProperty uriHistogramNodeBudget = m_model.createOntProperty( "http://purl.org/rdfstats/config#uriHistogramNodeBudget" );
+    
 
     /* Vocabulary classes */
 
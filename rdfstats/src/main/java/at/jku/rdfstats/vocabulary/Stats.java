@@ -44,6 +44,10 @@ public class Stats {
 
     public static final OntProperty classDimension = m_model.createOntProperty( "http://purl.org/rdfstats/stats#classDimension" );
     
+    public static final OntProperty distinctObjects = m_model.createOntProperty( "http://purl.org/rdfstats/stats#distinctObjects" );
+    
+    public static final OntProperty distinctSubjects = m_model.createOntProperty( "http://purl.org/rdfstats/stats#distinctSubjects" );
+    
     public static final OntProperty propertyDimension = m_model.createOntProperty( "http://purl.org/rdfstats/stats#propertyDimension" );
     
     public static final OntProperty rangeDimension = m_model.createOntProperty( "http://purl.org/rdfstats/stats#rangeDimension" );
@@ -52,13 +56,19 @@ public class Stats {
     
     public static final OntProperty sourceUrl = m_model.createOntProperty( "http://purl.org/rdfstats/stats#sourceUrl" );
     
+    public static final OntProperty subjectFilter = m_model.createOntProperty( "http://purl.org/rdfstats/stats#subjectFilter" );
+    
 
     /* Vocabulary classes */
 
+    public static final OntClass CharacteristicSets = m_model.createClass( "http://purl.org/rdfstats/stats#CharacteristicSets" );
+    
     public static final OntClass Histogram = m_model.createClass( "http://purl.org/rdfstats/stats#Histogram" );
     
     public static final OntClass PropertyHistogram = m_model.createClass( "http://purl.org/rdfstats/stats#PropertyHistogram" );
     
+    public static final OntClass PropertyStatistics = m_model.createClass( "http://purl.org/rdfstats/stats#PropertyStatistics" );
+    
     public static final OntClass RDFDocument = m_model.createClass( "http://purl.org/rdfstats/stats#RDFDocument" );
     
     public static final OntClass RDFStatsDataset = m_model.createClass( "http://purl.org/rdfstats/stats#RDFStatsDataset" );
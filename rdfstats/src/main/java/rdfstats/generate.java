@@ -18,6 +18,7 @@ package rdfstats;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.TimeZone;
 
@@ -37,6 +38,7 @@ import at.jku.rdfstats.GeneratorMultiple;
 import at.jku.rdfstats.RDFStatsConfiguration;
 
 import com.hp.hpl.jena.assembler.assemblers.FileModelAssembler;
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
 import com.hp.hpl.jena.shared.ReificationStyle;
@@ -81,6 +83,38 @@ public class generate {
 		Option timeZone = new Option("t", "timezone", true, "The time zone to use when parsing date values (default is your locale: " + TimeZone.getDefault().getDisplayName() + ")");
 		timeZone.setArgName("timezone");
 		
+		Option approximate = new Option("a", "approximate", false, "Use bounded-memory approximate histograms for numeric, date and URI values (quantile sketches, bin counts are accurate to about 3% of the total)");
+
+		Option uriNodes = new Option("n", "uri-nodes", true, "Maximum number of prefix nodes kept by approximate URI histograms (-a), default is " + RDFStatsConfiguration.DEFAULT_URIHIST_NODE_BUDGET);
+		uriNodes.setArgName("nodes");
+
+		Option equiDepth = new Option("b", "equidepth", true, "Comma-separated data type URIs for which equi-depth histograms (bins of about equal size, better for skewed distributions) are built instead of equi-width histograms, e.g. " + XSDDatatype.XSDint.getURI());
+		equiDepth.setArgName("types");
+
+		Option threads = new Option("w", "workers", true, "Number of property histograms generated concurrently (i.e. concurrent queries per source) and threads reading local N-Triples/N-Quads documents, default is " + RDFStatsConfiguration.DEFAULT_GENERATOR_THREADS);
+		threads.setArgName("threads");
+
+		Option charSets = new Option("k", "characteristic-sets", true, "Maximum number of characteristic sets (property combinations of subjects, used for star-join estimation) stored per source, disabled by default. Expensive: endpoints are queried for all triples ordered by subject (use -l for endpoints truncating results), documents keep the properties of all subjects in memory");
+		charSets.setArgName("size");
+
+		Option subjectFilter = new Option("r", "subject-filter", true, "Store Bloom filters over URI subjects with the given false positive rate (e.g. 0.01, about 10 bits per subject) for exact negative subject lookups, disabled by default");
+		subjectFilter.setArgName("rate");
+
+		Option pageSize = new Option("l", "page-size", true, "Query SPARQL endpoints in pages of initially this many results (adapted to the response times) instead of single queries which may be truncated, disabled by default");
+		pageSize.setArgName("size");
+
+		Option checkpoints = new Option("x", "checkpoint-dir", true, "Directory for checkpoint files, an interrupted run resumes with the properties not completed before");
+		checkpoints.setArgName("dir");
+
+		Option sourceThreads = new Option("j", "sources", true, "Number of sources (endpoints and documents) processed concurrently, the ones with the oldest statistics first, default is " + RDFStatsConfiguration.DEFAULT_SOURCE_THREADS);
+		sourceThreads.setArgName("threads");
+
+		Option hostThreads = new Option("u", "sources-per-host", true, "Number of sources on the same host processed concurrently, default is " + RDFStatsConfiguration.DEFAULT_SOURCE_THREADS_PER_HOST);
+		hostThreads.setArgName("threads");
+
+		Option sourceTimeout = new Option("y", "source-timeout", true, "Maximum time for generating the statistics of a single source, which is skipped when exceeded, unlimited by default");
+		sourceTimeout.setArgName("seconds");
+		
 //		Option classSpecHists = new Option("p", "class-specific", false, "Generate class-specific histograms (and an additional one for all untyped resources)");
 		
 		opts = new Options();
@@ -93,6 +127,17 @@ public class generate {
 		opts.addOption(strHistMaxLen);
 		opts.addOption(quickMode);
 		opts.addOption(timeZone);
+		opts.addOption(threads);
+		opts.addOption(approximate);
+		opts.addOption(equiDepth);
+		opts.addOption(uriNodes);
+		opts.addOption(charSets);
+		opts.addOption(subjectFilter);
+		opts.addOption(pageSize);
+		opts.addOption(checkpoints);
+		opts.addOption(sourceThreads);
+		opts.addOption(hostThreads);
+		opts.addOption(sourceTimeout);
 //		opts.addOption(classSpecHists);
 		
 		// create the parser
@@ -145,17 +190,29 @@ public class generate {
 	        			} else
 	        				model = ModelFactory.createDefaultModel();
 	        			
-	        			cfg = RDFStatsConfiguration.create(
-	        					model,
-	        					endpointUris,
-	        					documentUrls,
-//	        					cmd.hasOption("p"),
-	        					(cmd.hasOption("s")) ? Integer.parseInt(cmd.getOptionValue("s")) : null,
-	        					cmd.getOptionValue("o"),
-	        					cmd.getOptionValue("f"),
-	        					(cmd.hasOption("m")) ? Integer.parseInt(cmd.getOptionValue("m")) : null,
-	        					cmd.hasOption("q"),
-	        					cmd.hasOption("t") ? TimeZone.getTimeZone(cmd.getOptionValue("t")) : null);
+	        			cfg = RDFStatsConfiguration.builder()
+	        					.statsModel(model)
+	        					.endpoints(endpointUris)
+	        					.documentURLs(documentUrls)
+//	        					.classSpecific(cmd.hasOption("p"))
+	        					.prefSize((cmd.hasOption("s")) ? Integer.parseInt(cmd.getOptionValue("s")) : null)
+	        					.outFile(cmd.getOptionValue("o"))
+	        					.outFormat(cmd.getOptionValue("f"))
+	        					.strHistMaxLength((cmd.hasOption("m")) ? Integer.parseInt(cmd.getOptionValue("m")) : null)
+	        					.quickMode(cmd.hasOption("q"))
+	        					.defaultTimeZone(cmd.hasOption("t") ? TimeZone.getTimeZone(cmd.getOptionValue("t")) : null)
+	        					.generatorThreads((cmd.hasOption("w")) ? Integer.parseInt(cmd.getOptionValue("w")) : null)
+	        					.approximateHistograms(cmd.hasOption("a"))
+	        					.equiDepthTypes((cmd.hasOption("b")) ? Arrays.asList(cmd.getOptionValue("b").split(",")) : null)
+	        					.uriHistogramNodeBudget((cmd.hasOption("n")) ? Integer.parseInt(cmd.getOptionValue("n")) : null)
+	        					.characteristicSetsSize((cmd.hasOption("k")) ? Integer.parseInt(cmd.getOptionValue("k")) : null)
+	        					.subjectFilterFalsePositiveRate((cmd.hasOption("r")) ? Double.parseDouble(cmd.getOptionValue("r")) : null)
+	        					.pageSize((cmd.hasOption("l")) ? Integer.parseInt(cmd.getOptionValue("l")) : null)
+	        					.checkpointDirectory(cmd.getOptionValue("x"))
+	        					.sourceThreads((cmd.hasOption("j")) ? Integer.parseInt(cmd.getOptionValue("j")) : null)
+	        					.sourceThreadsPerHost((cmd.hasOption("u")) ? Integer.parseInt(cmd.getOptionValue("u")) : null)
+	        					.sourceTimeout((cmd.hasOption("y")) ? Integer.parseInt(cmd.getOptionValue("y")) : null)
+	        					.build();
 	        		}
 	        		
 	        		if (cfg.getEndpoints().size() > 0)
@@ -168,6 +225,10 @@ public class generate {
 	    			log.info("Default time zone is " + cfg.getDefaultTimeZone().getDisplayName());
 	    			log.info("Maximum length of strings processed for StringOrderedHistogram: " + cfg.getStrHistMaxLength() + " characters");
 	    			log.info("Quick mode " + ((cfg.quickMode()) ? "ENABLED" : "DISABLED"));
+	    			log.info("Approximate histograms " + ((cfg.approximateHistograms()) ? "ENABLED" : "DISABLED"));
+	    			log.info("Generating histograms with " + cfg.getGeneratorThreads() + " worker thread" + ((cfg.getGeneratorThreads() != 1) ? "s" : ""));
+	    			log.info("Processing up to " + cfg.getSourceThreads() + " source" + ((cfg.getSourceThreads() != 1) ? "s" : "") + " concurrently, " + cfg.getSourceThreadsPerHost() + " per host" +
+	    					((cfg.getSourceTimeout() > 0) ? ", timeout " + cfg.getSourceTimeout() + " s" : ""));
 
 	        		GeneratorMultiple multiGen = new GeneratorMultiple(cfg);
 	        		Model stats = multiGen.generate();
@@ -0,0 +1,60 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.test.benchmark;
+
+/**
+ * @author dorgon
+ *
+ * A single micro benchmark executed by {@link BenchmarkRunner}. The result of each {@link #run()} is consumed by the
+ * runner, so that the JIT cannot eliminate the measured code.
+ */
+public abstract class Benchmark {
+	private final String name;
+
+	/**
+	 * @param name group/benchmark:parameters, used for filtering
+	 */
+	public Benchmark(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * prepares input data, called once before the warm-up (not measured)
+	 *
+	 * @throws Exception
+	 */
+	public void setUp() throws Exception {}
+
+	/**
+	 * executes the measured code once
+	 *
+	 * @return any result depending on the computation
+	 * @throws Exception
+	 */
+	public abstract Object run() throws Exception;
+
+	/**
+	 * @return number of operations performed by a single {@link #run()}, used to report the time per operation
+	 */
+	public int getOperationsPerRun() {
+		return 1;
+	}
+
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.test.benchmark;
+
+import java.io.PrintStream;
+
+/**
+ * @author dorgon
+ *
+ * Executes {@link Benchmark}s: a number of warm-up iterations followed by measured iterations, each of them calls
+ * {@link Benchmark#run()} repeatedly for a fixed amount of time. The reported score is the mean time per operation over
+ * the measured iterations with its standard deviation.
+ */
+public class BenchmarkRunner {
+	private final int warmupIterations;
+	private final int iterations;
+	private final long iterationNanos;
+	private final PrintStream out;
+
+	/** consumes benchmark results */
+	private volatile int sink;
+
+	/**
+	 * @param warmupIterations
+	 * @param iterations measured iterations
+	 * @param iterationMillis minimum duration of an iteration
+	 * @param out
+	 */
+	public BenchmarkRunner(int warmupIterations, int iterations, long iterationMillis, PrintStream out) {
+		this.warmupIterations = warmupIterations;
+		this.iterations = iterations;
+		this.iterationNanos = iterationMillis * 1000000L;
+		this.out = out;
+	}
+
+	/**
+	 * @param b
+	 * @return the result
+	 * @throws Exception
+	 */
+	public Result run(Benchmark b) throws Exception {
+		b.setUp();
+
+		for (int i = 0; i < warmupIterations; i++)
+			iteration(b);
+
+		double[] nsPerOp = new double[iterations];
+		for (int i = 0; i < iterations; i++) {
+			System.gc();
+			nsPerOp[i] = iteration(b);
+		}
+
+		Result r = new Result(b.getName(), nsPerOp);
+		if (out != null)
+			out.println(r);
+		return r;
+	}
+
+	/**
+	 * @param b
+	 * @return ns per operation
+	 * @throws Exception
+	 */
+	private double iteration(Benchmark b) throws Exception {
+		long runs = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			Object o = b.run();
+			sink ^= (o != null) ? System.identityHashCode(o) : 0;
+			runs++;
+		} while ((elapsed = System.nanoTime() - start) < iterationNanos);
+		return elapsed / (double) (runs * b.getOperationsPerRun());
+	}
+
+	/** score of a benchmark */
+	public static class Result {
+		private final String name;
+		private final double mean;
+		private final double stdDev;
+
+		Result(String name, double[] nsPerOp) {
+			this.name = name;
+			double sum = 0;
+			for (double d : nsPerOp)
+				sum += d;
+			mean = sum / nsPerOp.length;
+			double sq = 0;
+			for (double d : nsPerOp)
+				sq += (d - mean) * (d - mean);
+			stdDev = (nsPerOp.length > 1) ? Math.sqrt(sq / (nsPerOp.length - 1)) : 0;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/** @return mean ns per operation */
+		public double getMean() {
+			return mean;
+		}
+
+		/** @return standard deviation of ns per operation */
+		public double getStdDev() {
+			return stdDev;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-60s %14.1f ns/op  +- %10.1f  %14.0f ops/s", name, mean, stdDev, 1e9 / mean);
+		}
+	}
+
+}
@@ -0,0 +1,446 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.test.benchmark;
+
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.RDFStatsDataset;
+import at.jku.rdfstats.RDFStatsModel;
+import at.jku.rdfstats.RDFStatsModelFactory;
+import at.jku.rdfstats.expr.CoverageBuilder;
+import at.jku.rdfstats.generator.RDFStatsGeneratorModel;
+import at.jku.rdfstats.hist.Histogram;
+import at.jku.rdfstats.hist.PrefixLabelIndex;
+import at.jku.rdfstats.hist.PrefixSearchTreeMap;
+import at.jku.rdfstats.hist.builder.ApproximateDoubleHistogramBuilder;
+import at.jku.rdfstats.hist.builder.ApproximateIntegerHistogramBuilder;
+import at.jku.rdfstats.hist.builder.ApproximateLongHistogramBuilder;
+import at.jku.rdfstats.hist.builder.ApproximateURIHistogramBuilder;
+import at.jku.rdfstats.hist.builder.BooleanHistogramBuilder;
+import at.jku.rdfstats.hist.builder.DateHistogramBuilder;
+import at.jku.rdfstats.hist.builder.DoubleHistogramBuilder;
+import at.jku.rdfstats.hist.builder.EquiDepthDoubleHistogramBuilder;
+import at.jku.rdfstats.hist.builder.EquiDepthIntegerHistogramBuilder;
+import at.jku.rdfstats.hist.builder.EquiDepthLongHistogramBuilder;
+import at.jku.rdfstats.hist.builder.FloatHistogramBuilder;
+import at.jku.rdfstats.hist.builder.GenericSingleBinHistogramBuilder;
+import at.jku.rdfstats.hist.builder.HistogramBuilder;
+import at.jku.rdfstats.hist.builder.HistogramCodec;
+import at.jku.rdfstats.hist.builder.IntegerHistogramBuilder;
+import at.jku.rdfstats.hist.builder.LongHistogramBuilder;
+import at.jku.rdfstats.hist.builder.OrderedStringHistogramBuilder;
+import at.jku.rdfstats.hist.builder.SimpleStringHistogramBuilder;
+import at.jku.rdfstats.hist.builder.URIHistogramBuilder;
+import at.jku.rdfstats.test.benchmark.SyntheticData.Distribution;
+import at.jku.rdfstats.vocabulary.Stats;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.sparql.core.BasicPattern;
+import com.hp.hpl.jena.sparql.expr.Expr;
+import com.hp.hpl.jena.sparql.expr.ExprList;
+import com.hp.hpl.jena.sparql.util.ExprUtils;
+import com.hp.hpl.jena.vocabulary.RDFS;
+
+/**
+ * @author dorgon
+ *
+ * Performance regression benchmarks for histogram builders, the codec, prefix lookups, filter coverage estimation,
+ * query cardinality estimation and statistics model lookups over synthetic uniform, Zipf and URI-heavy data.
+ *
+ * Usage: BenchmarkSuite [-quick] [name filter...]
+ *
+ * All benchmarks whose name contains one of the filters are executed (all benchmarks if no filter is given). For reliable
+ * numbers run with a fixed heap, e.g. -Xms1g -Xmx1g, and without other load on the machine.
+ */
+public class BenchmarkSuite {
+	private static final int VALUES = 100000;
+	private static final int BINS = 100;
+
+	public static void main(String[] args) throws Exception {
+		boolean quick = false;
+		List<String> filters = new ArrayList<String>();
+		for (String a : args) {
+			if (a.equals("-quick"))
+				quick = true;
+			else
+				filters.add(a);
+		}
+
+		BenchmarkRunner runner = quick ? new BenchmarkRunner(1, 3, 200, System.out) : new BenchmarkRunner(5, 10, 1000, System.out);
+		for (Benchmark b : createBenchmarks()) {
+			if (matches(b.getName(), filters))
+				runner.run(b);
+		}
+	}
+
+	private static boolean matches(String name, List<String> filters) {
+		if (filters.isEmpty())
+			return true;
+		for (String f : filters)
+			if (name.contains(f))
+				return true;
+		return false;
+	}
+
+	/**
+	 * @return all benchmarks
+	 */
+	public static List<Benchmark> createBenchmarks() {
+		List<Benchmark> list = new ArrayList<Benchmark>();
+
+		// builders: addValue for all values + generateHistogram
+		for (Distribution d : new Distribution[] { Distribution.UNIFORM, Distribution.ZIPF }) {
+			list.add(new BuilderBenchmark(IntegerHistogramBuilder.class, XSDDatatype.XSDint, d, ValueType.INT));
+			list.add(new BuilderBenchmark(ApproximateIntegerHistogramBuilder.class, XSDDatatype.XSDint, d, ValueType.INT));
+			list.add(new BuilderBenchmark(EquiDepthIntegerHistogramBuilder.class, XSDDatatype.XSDint, d, ValueType.INT));
+			list.add(new BuilderBenchmark(LongHistogramBuilder.class, XSDDatatype.XSDlong, d, ValueType.LONG));
+			list.add(new BuilderBenchmark(ApproximateLongHistogramBuilder.class, XSDDatatype.XSDlong, d, ValueType.LONG));
+			list.add(new BuilderBenchmark(EquiDepthLongHistogramBuilder.class, XSDDatatype.XSDlong, d, ValueType.LONG));
+			list.add(new BuilderBenchmark(FloatHistogramBuilder.class, XSDDatatype.XSDfloat, d, ValueType.FLOAT));
+			list.add(new BuilderBenchmark(DoubleHistogramBuilder.class, XSDDatatype.XSDdouble, d, ValueType.DOUBLE));
+			list.add(new BuilderBenchmark(ApproximateDoubleHistogramBuilder.class, XSDDatatype.XSDdouble, d, ValueType.DOUBLE));
+			list.add(new BuilderBenchmark(EquiDepthDoubleHistogramBuilder.class, XSDDatatype.XSDdouble, d, ValueType.DOUBLE));
+			list.add(new BuilderBenchmark(DateHistogramBuilder.class, XSDDatatype.XSDdateTime, d, ValueType.DATE));
+			list.add(new BuilderBenchmark(BooleanHistogramBuilder.class, XSDDatatype.XSDboolean, d, ValueType.BOOLEAN));
+			list.add(new BuilderBenchmark(OrderedStringHistogramBuilder.class, XSDDatatype.XSDstring, d, ValueType.STRING));
+			list.add(new BuilderBenchmark(SimpleStringHistogramBuilder.class, XSDDatatype.XSDstring, d, ValueType.STRING));
+		}
+		list.add(new BuilderBenchmark(URIHistogramBuilder.class, RDFS.Resource.getURI(), Distribution.URIS, ValueType.STRING));
+		list.add(new BuilderBenchmark(ApproximateURIHistogramBuilder.class, RDFS.Resource.getURI(), Distribution.URIS, ValueType.STRING));
+		list.add(new BuilderBenchmark(OrderedStringHistogramBuilder.class, XSDDatatype.XSDstring.getURI(), Distribution.URIS, ValueType.STRING));
+		list.add(new BuilderBenchmark(GenericSingleBinHistogramBuilder.class, Stats.blankNode.getURI(), Distribution.URIS, ValueType.STRING));
+
+		// codec
+		for (int version : new int[] { HistogramCodec.VERSION_20090109, HistogramCodec.VERSION }) {
+			list.add(new CodecBenchmark(IntegerHistogramBuilder.class, XSDDatatype.XSDint.getURI(), Distribution.ZIPF, ValueType.INT, version));
+			list.add(new CodecBenchmark(OrderedStringHistogramBuilder.class, XSDDatatype.XSDstring.getURI(), Distribution.URIS, ValueType.STRING, version));
+			list.add(new CodecBenchmark(URIHistogramBuilder.class, RDFS.Resource.getURI(), Distribution.URIS, ValueType.STRING, version));
+		}
+
+		list.add(new PrefixLookupBenchmark(false));
+		list.add(new PrefixLookupBenchmark(true));
+		list.add(new CoverageBenchmark("?o < 500 && ?o > 100"));
+		list.add(new CoverageBenchmark("?o = 42 || ?o >= 900"));
+
+		for (Distribution d : new Distribution[] { Distribution.UNIFORM, Distribution.ZIPF }) {
+			list.add(new QueryBenchmark(d, "SELECT * WHERE { ?s <" + SyntheticData.NS + "p0> ?o . }"));
+			list.add(new QueryBenchmark(d, "SELECT * WHERE { ?s <" + SyntheticData.NS + "p0> ?o ; <" + SyntheticData.NS + "p1> ?o2 . FILTER (?o < 100) }"));
+			list.add(new QueryBenchmark(d, "SELECT * WHERE { ?s ?p ?o . ?o ?p2 ?o2 . }"));
+		}
+
+		list.add(new PlanEnumerationBenchmark(false));
+		list.add(new PlanEnumerationBenchmark(true));
+
+		list.add(new ModelLookupBenchmark(true));
+		list.add(new ModelLookupBenchmark(false));
+		return list;
+	}
+
+	/** native value types handed to builders */
+	enum ValueType { INT, LONG, FLOAT, DOUBLE, DATE, BOOLEAN, STRING }
+
+	/**
+	 * @param n
+	 * @param dist
+	 * @param type
+	 * @return n native values
+	 */
+	static Object[] values(int n, Distribution dist, ValueType type) {
+		SyntheticData data = new SyntheticData(4711);
+		Object[] values = new Object[n];
+		if (type == ValueType.STRING) {
+			String[] s = data.strings(n, dist);
+			System.arraycopy(s, 0, values, 0, n);
+			return values;
+		}
+
+		int[] ints = (dist == Distribution.ZIPF) ? data.zipf(n, 10000, 1.0) : data.uniform(n, 1000000);
+		for (int i = 0; i < n; i++) {
+			switch (type) {
+			case INT: values[i] = ints[i]; break;
+			case LONG: values[i] = ints[i] * 1000003L; break;
+			case FLOAT: values[i] = ints[i] / 7f; break;
+			case DOUBLE: values[i] = ints[i] / 7d; break;
+			case DATE: values[i] = new Date(1200000000000L + ints[i] * 60000L); break;
+			case BOOLEAN: values[i] = (ints[i] % 3 == 0); break;
+			default: values[i] = ints[i];
+			}
+		}
+		return values;
+	}
+
+	@SuppressWarnings("unchecked")
+	static Histogram<?> build(Constructor<?> c, String typeUri, Object[] values) throws Exception {
+		HistogramBuilder<Object> b = (HistogramBuilder<Object>) c.newInstance(RDFStatsConfiguration.getDefault(), typeUri, BINS);
+		for (Object v : values)
+			b.addValue(v);
+		return b.getHistogram();
+	}
+
+	static Constructor<?> constructor(Class<?> builder) throws Exception {
+		return builder.getConstructor(RDFStatsConfiguration.class, String.class, int.class);
+	}
+
+	/** addValue() for all values and histogram generation */
+	static class BuilderBenchmark extends Benchmark {
+		private final Class<?> builder;
+		private final String typeUri;
+		private final Distribution dist;
+		private final ValueType type;
+		private Constructor<?> constructor;
+		private Object[] values;
+
+		BuilderBenchmark(Class<?> builder, XSDDatatype type, Distribution dist, ValueType valueType) {
+			this(builder, type.getURI(), dist, valueType);
+		}
+
+		BuilderBenchmark(Class<?> builder, String typeUri, Distribution dist, ValueType type) {
+			super("builder/" + builder.getSimpleName() + ":" + dist.name().toLowerCase());
+			this.builder = builder;
+			this.typeUri = typeUri;
+			this.dist = dist;
+			this.type = type;
+		}
+
+		@Override
+		public void setUp() throws Exception {
+			constructor = constructor(builder);
+			values = values(VALUES, dist, type);
+		}
+
+		@Override
+		public Object run() throws Exception {
+			return build(constructor, typeUri, values);
+		}
+
+		@Override
+		public int getOperationsPerRun() {
+			return VALUES;
+		}
+	}
+
+	/** encoding and decoding of a histogram */
+	static class CodecBenchmark extends Benchmark {
+		private final Class<?> builder;
+		private final String typeUri;
+		private final Distribution dist;
+		private final ValueType type;
+		private final int version;
+		private Histogram<?> histogram;
+
+		CodecBenchmark(Class<?> builder, String typeUri, Distribution dist, ValueType type, int version) {
+			super("codec/" + builder.getSimpleName() + ":" + dist.name().toLowerCase() + ":v" + version);
+			this.builder = builder;
+			this.typeUri = typeUri;
+			this.dist = dist;
+			this.type = type;
+			this.version = version;
+		}
+
+		@Override
+		public void setUp() throws Exception {
+			histogram = build(constructor(builder), typeUri, values(VALUES, dist, type));
+		}
+
+		@Override
+		public Object run() throws Exception {
+			byte[] encoded = HistogramCodec.encode(histogram, version);
+			return HistogramCodec.decode(ByteBuffer.wrap(encoded));
+		}
+	}
+
+	/** PrefixSearchTreeMap.getClosestPrefix() or PrefixLabelIndex.getClosestPrefix() for URI-heavy keys */
+	static class PrefixLookupBenchmark extends Benchmark {
+		private final PrefixSearchTreeMap<String, Integer> map = new PrefixSearchTreeMap<String, Integer>();
+		private final boolean labelIndex;
+		private PrefixLabelIndex index;
+		private String[] lookups;
+		private int next = 0;
+
+		PrefixLookupBenchmark(boolean labelIndex) {
+			super("prefix/getClosestPrefix:" + (labelIndex ? "PrefixLabelIndex" : "PrefixSearchTreeMap") + ":uris");
+			this.labelIndex = labelIndex;
+		}
+
+		@Override
+		public void setUp() throws Exception {
+			SyntheticData data = new SyntheticData(4711);
+			String[] uris = data.uris(10000, 50, 6);
+			for (String u : uris)
+				map.put(u.substring(0, u.lastIndexOf('/') + 1), 1);
+			index = new PrefixLabelIndex(map.keySet().toArray(new String[map.size()]));
+			lookups = data.uris(1024, 60, 6);
+		}
+
+		@Override
+		public Object run() throws Exception {
+			next = (next + 1) & 1023;
+			return labelIndex ? index.getClosestPrefix(lookups[next]) : map.getClosestPrefix(lookups[next]);
+		}
+	}
+
+	/** CoverageBuilder.estimate() of a filter expression over an integer histogram */
+	static class CoverageBenchmark extends Benchmark {
+		private final String exprStr;
+		private Expr expr;
+		private Histogram<?> histogram;
+
+		CoverageBenchmark(String exprStr) {
+			super("coverage/estimate:" + exprStr);
+			this.exprStr = exprStr;
+		}
+
+		@Override
+		public void setUp() throws Exception {
+			histogram = build(constructor(IntegerHistogramBuilder.class), XSDDatatype.XSDint.getURI(), values(VALUES, Distribution.ZIPF, ValueType.INT));
+			expr = ExprUtils.parse(exprStr);
+		}
+
+		@Override
+		public Object run() throws Exception {
+			return CoverageBuilder.estimate(expr, histogram);
+		}
+	}
+
+	/**
+	 * @param dist
+	 * @return statistics model generated from a synthetic model with 5000 subjects
+	 */
+	static RDFStatsModel generateStats(Distribution dist) throws Exception {
+		RDFStatsConfiguration conf = RDFStatsConfiguration.builder().statsModel(ModelFactory.createDefaultModel()).build();
+		new RDFStatsGeneratorModel(conf, new SyntheticData(4711).model(5000, 8, dist), Stats.RDFDocument.getURI(), SyntheticData.NS + "source").generate();
+		return RDFStatsModelFactory.create(conf.getStatsModel());
+	}
+
+	/** RDFStatsDatasetImpl.triplesForQuery() */
+	static class QueryBenchmark extends Benchmark {
+		private final Distribution dist;
+		private final String query;
+		private RDFStatsDataset dataset;
+
+		QueryBenchmark(Distribution dist, String query) {
+			super("query/triplesForQuery:" + dist.name().toLowerCase() + ":" + query.replace(SyntheticData.NS, ""));
+			this.dist = dist;
+			this.query = query;
+		}
+
+		@Override
+		public void setUp() throws Exception {
+			dataset = generateStats(dist).getDataset(SyntheticData.NS + "source");
+		}
+
+		@Override
+		public Object run() throws Exception {
+			return dataset.triplesForQuery(query);
+		}
+	}
+
+	/**
+	 * estimates all sub-BGPs with up to 3 of the 10 triple patterns of a star-shaped BGP, like a plan enumeration
+	 * does, either one by one or with a single batch call
+	 */
+	static class PlanEnumerationBenchmark extends Benchmark {
+		private final boolean batch;
+		private RDFStatsDataset dataset;
+		private final List<BasicPattern> bgps = new ArrayList<BasicPattern>();
+		private final List<ExprList> exprs = new ArrayList<ExprList>();
+
+		PlanEnumerationBenchmark(boolean batch) {
+			super("query/planEnumeration:" + (batch ? "triplesForFilteredBGPs" : "triplesForFilteredBGP"));
+			this.batch = batch;
+		}
+
+		@Override
+		public void setUp() throws Exception {
+			dataset = generateStats(Distribution.ZIPF).getDataset(SyntheticData.NS + "source");
+
+			Node s = Node.createVariable("s");
+			List<Triple> patterns = new ArrayList<Triple>();
+			for (int i = 0; i < 8; i++)
+				patterns.add(Triple.create(s, Node.createURI(SyntheticData.NS + "p" + i), Node.createVariable("o" + i)));
+			patterns.add(Triple.create(s, Node.createURI(SyntheticData.NS + "name"), Node.createVariable("name")));
+			patterns.add(Triple.create(s, Node.createURI(SyntheticData.NS + "link"), Node.createVariable("link")));
+
+			ExprList filter = new ExprList(ExprUtils.parse("?o0 < 100"));
+			int n = patterns.size();
+			for (int a = 0; a < n; a++)
+				for (int b = a; b < n; b++)
+					for (int c = b; c < n; c++) {
+						BasicPattern bgp = new BasicPattern();
+						bgp.add(patterns.get(a));
+						if (b > a)
+							bgp.add(patterns.get(b));
+						if (c > b)
+							bgp.add(patterns.get(c));
+						bgps.add(bgp);
+						exprs.add(filter);
+					}
+		}
+
+		@Override
+		public Object run() throws Exception {
+			if (batch)
+				return dataset.triplesForFilteredBGPs(bgps, exprs);
+			Integer[] last = null;
+			for (int i = 0; i < bgps.size(); i++)
+				last = dataset.triplesForFilteredBGP(bgps.get(i), exprs.get(i));
+			return last;
+		}
+
+		@Override
+		public int getOperationsPerRun() {
+			return bgps.size();
+		}
+	}
+
+	/** RDFStatsModelImpl histogram retrieval: range lookup and decoded histogram (cached or decoded each time) */
+	static class ModelLookupBenchmark extends Benchmark {
+		private final boolean cached;
+		private RDFStatsModel stats;
+		private final String source = SyntheticData.NS + "source";
+		private List<String> props;
+		private int next = 0;
+
+		ModelLookupBenchmark(boolean cached) {
+			super("model/getPropertyHistogram:" + (cached ? "cached" : "uncached"));
+			this.cached = cached;
+		}
+
+		@Override
+		public void setUp() throws Exception {
+			stats = generateStats(Distribution.UNIFORM);
+			if (!cached)
+				stats.getHistogramCache().setMaximumSize(0);
+			props = stats.getPropertyHistogramProperties(source);
+		}
+
+		@Override
+		public Object run() throws Exception {
+			next = (next + 1) % props.size();
+			String p = props.get(next);
+			return stats.getPropertyHistogram(source, p, stats.getPropertyHistogramRanges(source, p).get(0));
+		}
+	}
+
+}
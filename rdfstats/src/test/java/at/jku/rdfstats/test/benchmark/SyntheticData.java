@@ -0,0 +1,148 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.test.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+
+/**
+ * @author dorgon
+ *
+ * Reproducible synthetic value and RDF data generators for the benchmarks: uniform and Zipf-distributed numbers,
+ * and URI-heavy data with deep, shared prefixes.
+ */
+public class SyntheticData {
+	public static final String NS = "http://example.org/bench/";
+
+	/** value distributions */
+	public enum Distribution { UNIFORM, ZIPF, URIS }
+
+	private final Random rnd;
+
+	/**
+	 * @param seed
+	 */
+	public SyntheticData(long seed) {
+		this.rnd = new Random(seed);
+	}
+
+	/**
+	 * @param n
+	 * @param max exclusive
+	 * @return n uniformly distributed ints in [0; max)
+	 */
+	public int[] uniform(int n, int max) {
+		int[] data = new int[n];
+		for (int i = 0; i < n; i++)
+			data[i] = rnd.nextInt(max);
+		return data;
+	}
+
+	/**
+	 * @param n
+	 * @param distinct number of ranks
+	 * @param exponent Zipf exponent, 1.0 is the classic distribution
+	 * @return n ints in [0; distinct), rank k is drawn with probability proportional to 1/(k+1)^exponent
+	 */
+	public int[] zipf(int n, int distinct, double exponent) {
+		double[] cdf = new double[distinct];
+		double sum = 0;
+		for (int k = 0; k < distinct; k++)
+			cdf[k] = sum += 1d / Math.pow(k + 1, exponent);
+		for (int k = 0; k < distinct; k++)
+			cdf[k] /= sum;
+
+		int[] data = new int[n];
+		for (int i = 0; i < n; i++) {
+			int k = Arrays.binarySearch(cdf, rnd.nextDouble());
+			data[i] = Math.min(distinct - 1, (k >= 0) ? k : -k - 1);
+		}
+		return data;
+	}
+
+	/**
+	 * @param n
+	 * @param hosts number of distinct hosts
+	 * @param depth maximum path depth
+	 * @return n URIs of the form http://hostX.example.org/seg/seg/.../localName
+	 */
+	public String[] uris(int n, int hosts, int depth) {
+		String[] data = new String[n];
+		StringBuilder sb = new StringBuilder();
+		int[] ranks = zipf(n, hosts, 1.0);
+		for (int i = 0; i < n; i++) {
+			sb.setLength(0);
+			sb.append("http://host").append(ranks[i]).append(".example.org/");
+			int d = 1 + rnd.nextInt(depth);
+			for (int j = 0; j < d; j++)
+				sb.append("seg").append(rnd.nextInt(4)).append('/');
+			sb.append("resource").append(rnd.nextInt(n));
+			data[i] = sb.toString();
+		}
+		return data;
+	}
+
+	/**
+	 * @param n
+	 * @param dist
+	 * @return n values as strings (numbers for UNIFORM and ZIPF)
+	 */
+	public String[] strings(int n, Distribution dist) {
+		if (dist == Distribution.URIS)
+			return uris(n, 50, 6);
+		int[] ints = (dist == Distribution.ZIPF) ? zipf(n, 10000, 1.0) : uniform(n, 1000000);
+		String[] data = new String[n];
+		for (int i = 0; i < n; i++)
+			data[i] = "value" + ints[i];
+		return data;
+	}
+
+	/**
+	 * creates an RDF model with subjects described by numeric properties p0..p(props-1) using the given distribution,
+	 * an rdfs:label-like string property "name" and an object property "link" to other URI-heavy resources
+	 *
+	 * @param subjects
+	 * @param props number of numeric properties
+	 * @param dist distribution of the numeric values
+	 * @return the model
+	 */
+	public Model model(int subjects, int props, Distribution dist) {
+		Model m = ModelFactory.createDefaultModel();
+		Property[] p = new Property[props];
+		for (int i = 0; i < props; i++)
+			p[i] = m.createProperty(NS + "p" + i);
+		Property name = m.createProperty(NS + "name");
+		Property link = m.createProperty(NS + "link");
+
+		int[] values = (dist == Distribution.ZIPF) ? zipf(subjects * props, 1000, 1.0) : uniform(subjects * props, 1000);
+		String[] targets = uris(subjects, 20, 4);
+		for (int s = 0; s < subjects; s++) {
+			Resource r = m.createResource(NS + "s" + s);
+			for (int i = 0; i < props; i++)
+				r.addProperty(p[i], m.createTypedLiteral(Integer.toString(values[s * props + i]), XSDDatatype.XSDint));
+			r.addProperty(name, "name" + s);
+			r.addProperty(link, m.createResource(targets[s]));
+		}
+		return m;
+	}
+
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.test.builder;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.hist.DoubleHistogram;
+import at.jku.rdfstats.hist.Histogram;
+import at.jku.rdfstats.hist.IntegerHistogram;
+import at.jku.rdfstats.hist.LongHistogram;
+import at.jku.rdfstats.hist.builder.ApproximateDoubleHistogramBuilder;
+import at.jku.rdfstats.hist.builder.ApproximateIntegerHistogramBuilder;
+import at.jku.rdfstats.hist.builder.ApproximateLongHistogramBuilder;
+import at.jku.rdfstats.hist.builder.DoubleHistogramBuilder;
+import at.jku.rdfstats.hist.builder.HistogramBuilderException;
+import at.jku.rdfstats.hist.builder.HistogramBuilderFactory;
+import at.jku.rdfstats.hist.builder.HistogramCodec;
+import at.jku.rdfstats.hist.builder.IntegerHistogramBuilder;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+
+/**
+ * @author dorgon
+ *
+ */
+public class ApproximateHistogramBuilderTest extends TestCase {
+
+	/** allowed deviation of a bin relative to the total number of values */
+	private static final double MAX_BIN_ERROR = 0.034;
+
+	/** allowed relative deviation of the number of distinct values */
+	private static final double MAX_DISTINCT_ERROR = 0.05;
+
+	public void testSmallInputIsExact() throws HistogramBuilderException {
+		IntegerHistogramBuilder exact = new IntegerHistogramBuilder(RDFStatsConfiguration.getDefault(), XSDDatatype.XSDint.getURI(), 10);
+		ApproximateIntegerHistogramBuilder approx = new ApproximateIntegerHistogramBuilder(RDFStatsConfiguration.getDefault(), XSDDatatype.XSDint.getURI(), 10);
+		for (int i = 0; i < 100; i++) {
+			exact.addValue(i * 3 % 71);
+			approx.addValue(i * 3 % 71);
+		}
+
+		IntegerHistogram he = (IntegerHistogram) exact.getHistogram();
+		IntegerHistogram ha = (IntegerHistogram) approx.getHistogram();
+		assertEquals(he.getMin(), ha.getMin());
+		assertEquals(he.getMax(), ha.getMax());
+		assertEquals(he.getDistinctValues(), ha.getDistinctValues());
+		for (int i = 0; i < he.getNumBins(); i++)
+			assertEquals(he.getBinQuantity(i), ha.getBinQuantity(i));
+	}
+
+	public void testIntegerErrorBound() throws HistogramBuilderException {
+		Random rnd = new Random(42);
+		IntegerHistogramBuilder exact = new IntegerHistogramBuilder(RDFStatsConfiguration.getDefault(), XSDDatatype.XSDint.getURI(), 50);
+		ApproximateIntegerHistogramBuilder approx = new ApproximateIntegerHistogramBuilder(RDFStatsConfiguration.getDefault(), XSDDatatype.XSDint.getURI(), 50);
+		int n = 300000;
+		for (int i = 0; i < n; i++) {
+			int v = (int) Math.abs(rnd.nextGaussian() * 100000);
+			exact.addValue(v);
+			approx.addValue(v);
+		}
+		checkBins(exact.getHistogram(), approx.getHistogram(), n);
+	}
+
+	public void testDoubleErrorBound() throws HistogramBuilderException {
+		Random rnd = new Random(4711);
+		DoubleHistogramBuilder exact = new DoubleHistogramBuilder(RDFStatsConfiguration.getDefault(), XSDDatatype.XSDdouble.getURI(), 20);
+		ApproximateDoubleHistogramBuilder approx = new ApproximateDoubleHistogramBuilder(RDFStatsConfiguration.getDefault(), XSDDatatype.XSDdouble.getURI(), 20);
+		int n = 200000;
+		for (int i = 0; i < n; i++) {
+			double v = rnd.nextGaussian() * 1000 - 250;
+			exact.addValue(v);
+			approx.addValue(v);
+		}
+
+		DoubleHistogram he = (DoubleHistogram) exact.getHistogram();
+		DoubleHistogram ha = (DoubleHistogram) approx.getHistogram();
+		assertEquals(he.getMin(), ha.getMin());
+		assertEquals(he.getMax(), ha.getMax());
+		checkBins(he, ha, n);
+	}
+
+	public void testFullDomain() throws HistogramBuilderException {
+		ApproximateLongHistogramBuilder longs = new ApproximateLongHistogramBuilder(RDFStatsConfiguration.getDefault(), XSDDatatype.XSDlong.getURI(), 4);
+		for (long v : new long[] { Long.MIN_VALUE, -1, 0, 1, Long.MAX_VALUE })
+			longs.addValue(v);
+		LongHistogram hl = (LongHistogram) longs.getHistogram();
+		assertEquals(Long.MIN_VALUE, hl.getMin().longValue());
+		assertEquals(Long.MAX_VALUE, hl.getMax().longValue());
+		assertEquals(4, hl.getNumBins());
+		assertEquals(1, hl.getBinQuantity(0));
+		assertEquals(3, hl.getBinQuantity(2)); // -1, 0 and 1 are close to the center
+		assertEquals(1, hl.getBinQuantity(3));
+
+		ApproximateDoubleHistogramBuilder doubles = new ApproximateDoubleHistogramBuilder(RDFStatsConfiguration.getDefault(), XSDDatatype.XSDdouble.getURI(), 4);
+		for (double v : new double[] { -Double.MAX_VALUE, -1, 0, 1, Double.MAX_VALUE })
+			doubles.addValue(v);
+		DoubleHistogram hd = (DoubleHistogram) doubles.getHistogram();
+		assertEquals(4, hd.getNumBins());
+		assertEquals(1, hd.getBinQuantity(0));
+		assertEquals(3, hd.getBinQuantity(2)); // -1, 0 and 1 are close to the center
+		assertEquals(1, hd.getBinQuantity(3));
+	}
+
+	public void testCodecUsesExactBuilder() throws HistogramBuilderException {
+		ApproximateIntegerHistogramBuilder approx = new ApproximateIntegerHistogramBuilder(RDFStatsConfiguration.getDefault(), XSDDatatype.XSDint.getURI(), 10);
+		for (int i = 0; i < 1000; i++)
+			approx.addValue(i);
+
+		Histogram<Integer> h = approx.getHistogram();
+		IntegerHistogram decoded = (IntegerHistogram) HistogramCodec.base64decode(HistogramCodec.base64encode(h));
+		assertEquals(IntegerHistogramBuilder.class, decoded.getBuilderClass());
+		assertEquals(0, decoded.getMin().intValue());
+		assertEquals(999, decoded.getMax().intValue());
+		assertEquals(1000, decoded.getTotalValues());
+	}
+
+	public void testSelectedByConfiguration() throws HistogramBuilderException {
+		RDFStatsConfiguration conf = RDFStatsConfiguration.builder().statsModel(ModelFactory.createDefaultModel()).approximateHistograms(true).build();
+		assertEquals(ApproximateIntegerHistogramBuilder.class, HistogramBuilderFactory.createBuilder(XSDDatatype.XSDint.getURI(), null, 10, conf).getClass());
+		assertEquals(IntegerHistogramBuilder.class, HistogramBuilderFactory.createBuilder(XSDDatatype.XSDint.getURI(), null, 10, RDFStatsConfiguration.getDefault()).getClass());
+	}
+
+	private void checkBins(Histogram<?> exact, Histogram<?> approx, int n) {
+		assertEquals(n, approx.getTotalValues());
+		assertEquals(exact.getNumBins(), approx.getNumBins());
+		for (int i = 0; i < exact.getNumBins(); i++) {
+			int diff = Math.abs(exact.getBinQuantity(i) - approx.getBinQuantity(i));
+			assertTrue("bin " + i + " differs by " + diff, diff <= MAX_BIN_ERROR * n);
+		}
+
+		double distinctErr = Math.abs(exact.getDistinctValues() - approx.getDistinctValues()) / (double) exact.getDistinctValues();
+		assertTrue("distinct values differ by " + distinctErr, distinctErr <= MAX_DISTINCT_ERROR);
+	}
+
+}
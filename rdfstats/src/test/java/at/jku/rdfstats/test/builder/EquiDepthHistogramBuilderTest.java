@@ -0,0 +1,147 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.test.builder;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.hist.EquiDepthDoubleHistogram;
+import at.jku.rdfstats.hist.EquiDepthIntegerHistogram;
+import at.jku.rdfstats.hist.IntegerHistogram;
+import at.jku.rdfstats.hist.builder.EquiDepthDoubleHistogramBuilder;
+import at.jku.rdfstats.hist.builder.EquiDepthIntegerHistogramBuilder;
+import at.jku.rdfstats.hist.builder.HistogramBuilderException;
+import at.jku.rdfstats.hist.builder.HistogramBuilderFactory;
+import at.jku.rdfstats.hist.builder.HistogramCodec;
+import at.jku.rdfstats.hist.builder.IntegerHistogramBuilder;
+import at.jku.rdfstats.hist.builder.LongHistogramBuilder;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+
+/**
+ * @author dorgon
+ *
+ */
+public class EquiDepthHistogramBuilderTest extends TestCase {
+
+	public void testBinsAreBalanced() throws HistogramBuilderException {
+		EquiDepthIntegerHistogramBuilder b = new EquiDepthIntegerHistogramBuilder(RDFStatsConfiguration.getDefault(), XSDDatatype.XSDint.getURI(), 10);
+		for (int i = 1; i <= 1000; i++)
+			b.addValue(i);
+
+		EquiDepthIntegerHistogram h = (EquiDepthIntegerHistogram) b.getHistogram();
+		assertEquals(10, h.getNumBins());
+		assertEquals(1, h.getMin().intValue());
+		assertEquals(1000, h.getMax().intValue());
+		assertEquals(1000, h.getDistinctValues());
+		for (int i = 0; i < h.getNumBins(); i++) {
+			assertEquals(100, h.getBinQuantity(i));
+			assertEquals(100, h.getBinDistinctValues(i));
+			assertEquals((i + 1) * 100, h.getBinUpperBound(i).intValue());
+		}
+
+		assertEquals(0, h.getBinIndex(1));
+		assertEquals(0, h.getBinIndex(100));
+		assertEquals(1, h.getBinIndex(101));
+		assertEquals(9, h.getBinIndex(1000));
+		assertEquals(-1, h.getBinIndex(0));
+		assertEquals(-1, h.getBinIndex(1001));
+
+		assertEquals(0, h.getCumulativeQuantity(0));
+		assertEquals(250, h.getCumulativeQuantity(250));
+		assertEquals(1000, h.getCumulativeQuantity(1000));
+		assertEquals(1, h.getEstimatedQuantity(500));
+	}
+
+	public void testSkewedRangeSelectivity() throws HistogramBuilderException {
+		// 90% of the values are 0..99, the rest spreads up to 1000000
+		Random rnd = new Random(7);
+		EquiDepthIntegerHistogramBuilder equiDepth = new EquiDepthIntegerHistogramBuilder(RDFStatsConfiguration.getDefault(), XSDDatatype.XSDint.getURI(), 20);
+		IntegerHistogramBuilder equiWidth = new IntegerHistogramBuilder(RDFStatsConfiguration.getDefault(), XSDDatatype.XSDint.getURI(), 20);
+		int[] values = new int[10000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (i % 10 == 0) ? rnd.nextInt(1000000) : rnd.nextInt(100);
+			equiDepth.addValue(values[i]);
+			equiWidth.addValue(values[i]);
+		}
+		Arrays.sort(values);
+		int exact = 0;
+		while (exact < values.length && values[exact] <= 50)
+			exact++;
+
+		EquiDepthIntegerHistogram ed = (EquiDepthIntegerHistogram) equiDepth.getHistogram();
+		IntegerHistogram ew = (IntegerHistogram) equiWidth.getHistogram();
+		int errEquiDepth = Math.abs(ed.getCumulativeQuantity(50) - exact);
+		int errEquiWidth = Math.abs(ew.getCumulativeQuantity(50) - exact);
+		assertTrue("equi-depth error " + errEquiDepth + " too high", errEquiDepth <= 0.02 * values.length);
+		assertTrue(errEquiDepth < errEquiWidth);
+	}
+
+	public void testFrequentValueGetsOwnBin() throws HistogramBuilderException {
+		EquiDepthIntegerHistogramBuilder b = new EquiDepthIntegerHistogramBuilder(RDFStatsConfiguration.getDefault(), XSDDatatype.XSDint.getURI(), 5);
+		for (int i = 0; i < 100; i++)
+			b.addValue(i);
+		for (int i = 0; i < 500; i++)
+			b.addValue(42);
+
+		EquiDepthIntegerHistogram h = (EquiDepthIntegerHistogram) b.getHistogram();
+		assertEquals(600, h.getTotalValues());
+		int idx = h.getBinIndex(42);
+		assertEquals(1, h.getBinDistinctValues(idx));
+		assertEquals(501, h.getEstimatedQuantity(42));
+	}
+
+	public void testDoubleNegativeValues() throws HistogramBuilderException {
+		EquiDepthDoubleHistogramBuilder b = new EquiDepthDoubleHistogramBuilder(RDFStatsConfiguration.getDefault(), XSDDatatype.XSDdouble.getURI(), 4);
+		for (int i = -200; i < 200; i++)
+			b.addValue(i / 10d);
+
+		EquiDepthDoubleHistogram h = (EquiDepthDoubleHistogram) b.getHistogram();
+		assertEquals(-20d, h.getMin());
+		assertEquals(19.9d, h.getMax());
+		assertEquals(4, h.getNumBins());
+		assertEquals(0, h.getBinIndex(-15d));
+		assertEquals(3, h.getBinIndex(15d));
+		assertEquals(200, h.getCumulativeQuantity(-0.1d));
+		assertEquals(-10.1d, h.getBinUpperBound(0));
+	}
+
+	public void testCodec() throws HistogramBuilderException {
+		EquiDepthIntegerHistogramBuilder b = new EquiDepthIntegerHistogramBuilder(RDFStatsConfiguration.getDefault(), XSDDatatype.XSDint.getURI(), 7);
+		for (int i = 0; i < 1000; i++)
+			b.addValue(i * i % 977);
+
+		EquiDepthIntegerHistogram h = (EquiDepthIntegerHistogram) b.getHistogram();
+		EquiDepthIntegerHistogram d = (EquiDepthIntegerHistogram) HistogramCodec.base64decode(HistogramCodec.base64encode(h));
+		assertEquals(EquiDepthIntegerHistogramBuilder.class, d.getBuilderClass());
+		assertEquals(h.getMin(), d.getMin());
+		assertEquals(h.getMax(), d.getMax());
+		assertEquals(h.getDistinctValues(), d.getDistinctValues());
+		assertTrue(Arrays.equals(h.getBinData(), d.getBinData()));
+		assertTrue(Arrays.equals(h.getBinDistinctData(), d.getBinDistinctData()));
+		assertTrue(Arrays.equals(h.getUpperKeys(), d.getUpperKeys()));
+	}
+
+	public void testSelectedPerDatatype() throws HistogramBuilderException {
+		RDFStatsConfiguration conf = RDFStatsConfiguration.builder().statsModel(ModelFactory.createDefaultModel()).equiDepthTypes(Arrays.asList(XSDDatatype.XSDint.getURI())).build();
+		assertEquals(EquiDepthIntegerHistogramBuilder.class, HistogramBuilderFactory.createBuilder(XSDDatatype.XSDint.getURI(), null, 10, conf).getClass());
+		assertEquals(LongHistogramBuilder.class, HistogramBuilderFactory.createBuilder(XSDDatatype.XSDlong.getURI(), null, 10, conf).getClass());
+	}
+
+}
@@ -35,6 +35,9 @@ public class HistogramBuilderTestPackage extends TestCase {
 		s.addTestSuite(DateHistogramBuilderTest.class);
 		s.addTestSuite(OrderedStringHistogramBuilderTest.class);
 		s.addTestSuite(URIHistogramBuilderTest.class);
+		s.addTestSuite(ApproximateHistogramBuilderTest.class);
+		s.addTestSuite(EquiDepthHistogramBuilderTest.class);
+		s.addTestSuite(HistogramMergeTest.class);
 		return s;
 	}
 }
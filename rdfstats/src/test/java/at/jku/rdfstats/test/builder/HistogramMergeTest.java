@@ -0,0 +1,271 @@
+/**
+ * Copyright 2007-2008 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.test.builder;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.hist.AbstractEquiDepthHistogram;
+import at.jku.rdfstats.hist.BooleanHistogram;
+import at.jku.rdfstats.hist.Histogram;
+import at.jku.rdfstats.hist.HistogramException;
+import at.jku.rdfstats.hist.HistogramMerger;
+import at.jku.rdfstats.hist.IntegerHistogram;
+import at.jku.rdfstats.hist.OrderedStringHistogram;
+import at.jku.rdfstats.hist.URIHistogram;
+import at.jku.rdfstats.hist.builder.ApproximateIntegerHistogramBuilder;
+import at.jku.rdfstats.hist.builder.ApproximateURIHistogramBuilder;
+import at.jku.rdfstats.hist.builder.BooleanHistogramBuilder;
+import at.jku.rdfstats.hist.builder.EquiDepthIntegerHistogramBuilder;
+import at.jku.rdfstats.hist.builder.HistogramBuilderException;
+import at.jku.rdfstats.hist.builder.IntegerHistogramBuilder;
+import at.jku.rdfstats.hist.builder.OrderedStringHistogramBuilder;
+import at.jku.rdfstats.hist.builder.URIHistogramBuilder;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.vocabulary.RDFS;
+
+/**
+ * @author dorgon
+ *
+ */
+public class HistogramMergeTest extends TestCase {
+
+	private static final String INT = XSDDatatype.XSDint.getURI();
+	private static final String STRING = XSDDatatype.XSDstring.getURI();
+
+	public void testMergeIntegerBuilders() throws HistogramBuilderException {
+		Random rnd = new Random(42);
+		IntegerHistogramBuilder all = new IntegerHistogramBuilder(RDFStatsConfiguration.getDefault(), INT, 20);
+		IntegerHistogramBuilder[] parts = new IntegerHistogramBuilder[3];
+		for (int i = 0; i < parts.length; i++)
+			parts[i] = new IntegerHistogramBuilder(RDFStatsConfiguration.getDefault(), INT, 20);
+		for (int i = 0; i < 10000; i++) {
+			int v = rnd.nextInt(5000) - 1000;
+			all.addValue(v);
+			parts[i % parts.length].addValue(v);
+		}
+		parts[0].merge(parts[1]);
+		parts[0].merge(parts[2]);
+		
+		IntegerHistogram expected = (IntegerHistogram) all.getHistogram();
+		IntegerHistogram merged = (IntegerHistogram) parts[0].getHistogram();
+		assertEquals(expected.getMin(), merged.getMin());
+		assertEquals(expected.getMax(), merged.getMax());
+		assertEquals(expected.getDistinctValues(), merged.getDistinctValues());
+		assertBinsEqual(expected, merged);
+	}
+	
+	public void testMergeStringBuilders() throws HistogramBuilderException {
+		OrderedStringHistogramBuilder all = new OrderedStringHistogramBuilder(RDFStatsConfiguration.getDefault(), STRING, 10);
+		OrderedStringHistogramBuilder b1 = new OrderedStringHistogramBuilder(RDFStatsConfiguration.getDefault(), STRING, 10);
+		OrderedStringHistogramBuilder b2 = new OrderedStringHistogramBuilder(RDFStatsConfiguration.getDefault(), STRING, 10);
+		String[] data = { "Daniel", "Dani", "Andreas", "Anna", "Berta", "Daniel", "Zoe", "Xaver", "Anna", "Bernhard", "Christoph", "Dani" };
+		for (int i = 0; i < data.length; i++) {
+			all.addValue(data[i]);
+			((i < 5) ? b1 : b2).addValue(data[i]);
+		}
+		b1.merge(b2);
+		
+		OrderedStringHistogram expected = (OrderedStringHistogram) all.getHistogram();
+		OrderedStringHistogram merged = (OrderedStringHistogram) b1.getHistogram();
+		assertEquals(expected.getMin(), merged.getMin());
+		assertEquals(expected.getMax(), merged.getMax());
+		assertEquals(expected.getDistinctValues(), merged.getDistinctValues());
+		assertEquals(expected.getNumBins(), merged.getNumBins());
+		for (int i = 0; i < expected.getNumBins(); i++) {
+			assertEquals(expected.getLabel(i), merged.getLabel(i));
+			assertEquals(expected.getDistinctBinValues(i), merged.getDistinctBinValues(i));
+		}
+		assertBinsEqual(expected, merged);
+	}
+	
+	public void testMergeURIBuilders() throws HistogramBuilderException {
+		URIHistogramBuilder all = new URIHistogramBuilder(RDFStatsConfiguration.getDefault(), RDFS.Resource.getURI(), 3);
+		URIHistogramBuilder b1 = new URIHistogramBuilder(RDFStatsConfiguration.getDefault(), RDFS.Resource.getURI(), 3);
+		URIHistogramBuilder b2 = new URIHistogramBuilder(RDFStatsConfiguration.getDefault(), RDFS.Resource.getURI(), 3);
+		ApproximateURIHistogramBuilder a1 = new ApproximateURIHistogramBuilder(RDFStatsConfiguration.getDefault(), RDFS.Resource.getURI(), 3);
+		ApproximateURIHistogramBuilder a2 = new ApproximateURIHistogramBuilder(RDFStatsConfiguration.getDefault(), RDFS.Resource.getURI(), 3);
+		for (int i = 0; i < URIHistogramBuilderTest.data.length; i++) {
+			all.addValue(URIHistogramBuilderTest.data[i]);
+			((i % 2 == 0) ? b1 : b2).addValue(URIHistogramBuilderTest.data[i]);
+			((i % 2 == 0) ? a1 : a2).addValue(URIHistogramBuilderTest.data[i]);
+		}
+		b1.merge(b2);
+		a1.merge(a2);
+		
+		URIHistogram expected = (URIHistogram) all.getHistogram();
+		URIHistogram merged = (URIHistogram) b1.getHistogram();
+		assertEquals(expected.getMin(), merged.getMin());
+		assertEquals(expected.getMax(), merged.getMax());
+		assertBinsEqual(expected, merged);
+		
+		URIHistogram approx = (URIHistogram) a1.getHistogram();
+		assertEquals(expected.getMin(), approx.getMin());
+		assertEquals(expected.getMax(), approx.getMax());
+		assertEquals(expected.getTotalValues(), approx.getTotalValues());
+	}
+	
+	public void testMergeApproximateBuilders() throws HistogramBuilderException {
+		Random rnd = new Random(4711);
+		IntegerHistogramBuilder exact = new IntegerHistogramBuilder(RDFStatsConfiguration.getDefault(), INT, 20);
+		ApproximateIntegerHistogramBuilder a1 = new ApproximateIntegerHistogramBuilder(RDFStatsConfiguration.getDefault(), INT, 20);
+		ApproximateIntegerHistogramBuilder a2 = new ApproximateIntegerHistogramBuilder(RDFStatsConfiguration.getDefault(), INT, 20);
+		int n = 200000;
+		for (int i = 0; i < n; i++) {
+			int v = (int) Math.abs(rnd.nextGaussian() * 100000);
+			exact.addValue(v);
+			((i % 2 == 0) ? a1 : a2).addValue(v);
+		}
+		a1.merge(a2);
+		
+		IntegerHistogram he = (IntegerHistogram) exact.getHistogram();
+		IntegerHistogram ha = (IntegerHistogram) a1.getHistogram();
+		assertEquals(he.getMin(), ha.getMin());
+		assertEquals(he.getMax(), ha.getMax());
+		assertEquals(n, ha.getTotalValues());
+		assertEquals(he.getDistinctValues(), ha.getDistinctValues(), he.getDistinctValues() * 0.05);
+		for (int i = 0; i < he.getNumBins(); i++)
+			assertEquals(he.getBinQuantity(i), ha.getBinQuantity(i), n * 0.034);
+	}
+	
+	public void testInvalidBuilderMerge() throws HistogramBuilderException {
+		IntegerHistogramBuilder b1 = new IntegerHistogramBuilder(RDFStatsConfiguration.getDefault(), INT, 10);
+		EquiDepthIntegerHistogramBuilder b2 = new EquiDepthIntegerHistogramBuilder(RDFStatsConfiguration.getDefault(), INT, 10);
+		b1.addValue(1);
+		b2.addValue(2);
+		try {
+			b1.merge(b2);
+			fail("Merged builders of different classes.");
+		} catch (HistogramBuilderException expected) {}
+		
+		IntegerHistogramBuilder b3 = new IntegerHistogramBuilder(RDFStatsConfiguration.getDefault(), INT, 10);
+		b3.addValue(3);
+		b3.getHistogram();
+		try {
+			b1.merge(b3);
+			fail("Merged a builder after generating its histogram.");
+		} catch (HistogramBuilderException expected) {}
+	}
+	
+	public void testMergeIntegerHistograms() throws HistogramException {
+		// same range and number of bins, hence the bins are summed up exactly
+		IntegerHistogramBuilder b1 = new IntegerHistogramBuilder(RDFStatsConfiguration.getDefault(), INT, 10);
+		IntegerHistogramBuilder b2 = new IntegerHistogramBuilder(RDFStatsConfiguration.getDefault(), INT, 10);
+		for (int i = 0; i <= 100; i += 2)
+			b1.addValue(i);
+		for (int i = 0; i <= 100; i += 5)
+			b2.addValue(i);
+		Histogram<Integer> h1 = b1.getHistogram();
+		Histogram<Integer> h2 = b2.getHistogram();
+		IntegerHistogram merged = (IntegerHistogram) HistogramMerger.merge(h1, h2, 10);
+		assertEquals(0, (int) merged.getMin());
+		assertEquals(100, (int) merged.getMax());
+		for (int i = 0; i < merged.getNumBins(); i++)
+			assertEquals(h1.getBinQuantity(i) + h2.getBinQuantity(i), merged.getBinQuantity(i));
+		// 0, 10, ..., 100 are shared: distinct values are over-estimated by 11
+		assertEquals(h1.getDistinctValues() + h2.getDistinctValues(), merged.getDistinctValues());
+		
+		// disjoint ranges are re-binned, distinct values are exact
+		IntegerHistogramBuilder b3 = new IntegerHistogramBuilder(RDFStatsConfiguration.getDefault(), INT, 10);
+		for (int i = 200; i < 300; i++)
+			b3.addValue(i);
+		Histogram<Integer> h3 = b3.getHistogram();
+		merged = (IntegerHistogram) HistogramMerger.merge(h1, h3, 10);
+		assertEquals(0, (int) merged.getMin());
+		assertEquals(299, (int) merged.getMax());
+		assertEquals(h1.getTotalValues() + h3.getTotalValues(), merged.getTotalValues());
+		assertEquals(h1.getDistinctValues() + h3.getDistinctValues(), merged.getDistinctValues());
+		assertEquals(10, merged.getNumBins());
+		assertEquals(h1.getTotalValues(), merged.getCumulativeBinQuantity(3)); // bins cover [0; 30), [30; 60), ...
+		assertEquals(0, merged.getBinQuantity(4));
+	}
+	
+	public void testMergeEquiDepthHistograms() throws HistogramException {
+		Random rnd = new Random(23);
+		EquiDepthIntegerHistogramBuilder all = new EquiDepthIntegerHistogramBuilder(RDFStatsConfiguration.getDefault(), INT, 10);
+		EquiDepthIntegerHistogramBuilder b1 = new EquiDepthIntegerHistogramBuilder(RDFStatsConfiguration.getDefault(), INT, 10);
+		EquiDepthIntegerHistogramBuilder b2 = new EquiDepthIntegerHistogramBuilder(RDFStatsConfiguration.getDefault(), INT, 10);
+		int n = 20000;
+		int[] freq = new int[2500];
+		for (int i = 0; i < n; i++) {
+			int v = (i % 2 == 0) ? rnd.nextInt(1000) : 500 + rnd.nextInt(2000);
+			freq[v]++;
+			all.addValue(v);
+			((i % 2 == 0) ? b1 : b2).addValue(v);
+		}
+		Histogram<Integer> h1 = b1.getHistogram();
+		Histogram<Integer> h2 = b2.getHistogram();
+		AbstractEquiDepthHistogram<Integer> expected = (AbstractEquiDepthHistogram<Integer>) all.getHistogram();
+		AbstractEquiDepthHistogram<Integer> merged = (AbstractEquiDepthHistogram<Integer>) HistogramMerger.merge(h1, h2, 10);
+		
+		assertTrue(merged.getNumBins() <= 10);
+		assertEquals(n, merged.getTotalValues());
+		assertEquals(expected.getMin(), merged.getMin());
+		assertEquals(expected.getMax(), merged.getMax());
+		assertTrue(merged.getDistinctValues() >= Math.max(h1.getDistinctValues(), h2.getDistinctValues()));
+		assertTrue(merged.getDistinctValues() <= h1.getDistinctValues() + h2.getDistinctValues());
+		
+		// bin boundaries are split proportionally, the cumulative quantities at the new boundaries are close to the actual ones
+		int cumulative = 0;
+		int v = 0;
+		for (int i = 0; i < merged.getNumBins(); i++) {
+			int upper = merged.getBinUpperBound(i);
+			while (v <= upper)
+				cumulative += freq[v++];
+			assertEquals(cumulative, merged.getCumulativeQuantity(upper), n * 0.01);
+		}
+	}
+	
+	public void testMergeLabelHistograms() throws HistogramException, HistogramBuilderException {
+		BooleanHistogramBuilder bb1 = new BooleanHistogramBuilder(RDFStatsConfiguration.getDefault(), XSDDatatype.XSDboolean.getURI(), 2);
+		BooleanHistogramBuilder bb2 = new BooleanHistogramBuilder(RDFStatsConfiguration.getDefault(), XSDDatatype.XSDboolean.getURI(), 2);
+		bb1.addValue(true);
+		bb1.addValue(true);
+		bb2.addValue(true);
+		BooleanHistogram bool = (BooleanHistogram) HistogramMerger.merge(bb1.getHistogram(), bb2.getHistogram(), 2);
+		assertEquals(3, bool.getEstimatedQuantity(true));
+		assertEquals(0, bool.getEstimatedQuantity(false));
+		assertEquals(1, bool.getDistinctValues());
+		
+		URIHistogramBuilder u1 = new URIHistogramBuilder(RDFStatsConfiguration.getDefault(), RDFS.Resource.getURI(), 20);
+		URIHistogramBuilder u2 = new URIHistogramBuilder(RDFStatsConfiguration.getDefault(), RDFS.Resource.getURI(), 20);
+		for (int i = 0; i < URIHistogramBuilderTest.data.length; i++)
+			((i < 8) ? u1 : u2).addValue(URIHistogramBuilderTest.data[i]);
+		Histogram<String> h1 = u1.getHistogram();
+		Histogram<String> h2 = u2.getHistogram();
+		
+		URIHistogram union = (URIHistogram) HistogramMerger.merge(h1, h2, 20);
+		assertEquals(URIHistogramBuilderTest.data.length, union.getTotalValues());
+		assertEquals("http://asdf.com", union.getMin());
+		assertEquals("http://yahoo.com", union.getMax());
+		assertEquals(2, union.getEstimatedQuantity("http://dbpedia.org/"));
+		
+		URIHistogram compressed = (URIHistogram) HistogramMerger.merge(h1, h2, 5);
+		assertTrue(compressed.getNumBins() <= 5);
+		assertEquals(URIHistogramBuilderTest.data.length, compressed.getTotalValues());
+		assertEquals(8, compressed.getBinQuantity(compressed.getBinIndex("http://dbpedia.org/resource/Vienna"))); // all values of http://dbpedia.org
+		assertTrue(compressed.getDistinctValues() <= h1.getDistinctValues() + h2.getDistinctValues());
+	}
+	
+	private static void assertBinsEqual(Histogram<?> expected, Histogram<?> actual) {
+		assertEquals(expected.getNumBins(), actual.getNumBins());
+		for (int i = 0; i < expected.getNumBins(); i++)
+			assertEquals(expected.getBinQuantity(i), actual.getBinQuantity(i));
+	}
+
+}
@@ -180,4 +180,32 @@ public class IntegerHistogramBuilderTest extends TestCase {
 		assertEquals(70, h.getCumulativeBinQuantity(6));
 		assertEquals(100, h.getCumulativeBinQuantity(9));
 	}
+
+	public void testCumulativeQuantities() throws HistogramBuilderException {
+		int[] data = generateIntData();
+		IntegerHistogramBuilder b = new IntegerHistogramBuilder(RDFStatsConfiguration.getDefault(), XSDDatatype.XSDint.getURI(), 10);
+		for (int val : data) 
+			b.addValue(val);
+		IntegerHistogram h = (IntegerHistogram) b.getHistogram();
+		
+		// precomputed sums equal the sums over the bins
+		int sum = 0;
+		for (int i=0; i<h.getNumBins(); i++) {
+			sum += h.getBinQuantity(i);
+			assertEquals(sum, h.getCumulativeBinQuantity(i));
+		}
+		assertEquals(0, h.getCumulativeBinQuantity(-1)); // bounds test
+		assertEquals(h.getTotalValues(), h.getCumulativeBinQuantity(h.getNumBins())); // bounds test
+		
+		// interpolation is monotonic and stays within the enclosing bin
+		int last = 0;
+		for (int val=h.getMin(); val<=h.getMax(); val++) {
+			int cq = h.getCumulativeQuantity(val);
+			int idx = h.getBinIndex(val);
+			assertTrue(cq >= last);
+			assertTrue(cq >= ((idx > 0) ? h.getCumulativeBinQuantity(idx-1) : 0));
+			assertTrue(cq <= h.getCumulativeBinQuantity(idx));
+			last = cq;
+		}
+	}
 }
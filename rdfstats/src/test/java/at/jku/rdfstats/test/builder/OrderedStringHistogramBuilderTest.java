@@ -176,4 +176,31 @@ public class OrderedStringHistogramBuilderTest extends TestCase {
 		assertEquals(2, h.getEstimatedQuantity("Google"));
 		assertEquals(2, h.getEstimatedQuantity("Google, Inc."));
 	}
+
+	public void testPrefixBinsAreSortedAndComplete() {
+		OrderedStringHistogramBuilder b = new OrderedStringHistogramBuilder(RDFStatsConfiguration.getDefault(), XSDDatatype.XSDstring.getURI(), 50);
+		int total = 0;
+		for (int i=0; i<2000; i++)
+			for (int j=0; j<=i%3; j++, total++)
+				b.addValue("http://example.org/" + (i % 7) + "/item" + i);
+		b.addValue("");
+		total++;
+		
+		OrderedStringHistogram h = (OrderedStringHistogram) b.getHistogram();
+		assertEquals("", h.getMin());
+		assertEquals("http://example.org/6/item993", h.getMax());
+		assertTrue(h.getNumBins() <= 50);
+		assertEquals(total, h.getTotalValues());
+		assertEquals(2001, h.getDistinctValues());
+		
+		String[] labels = h.getLabels();
+		int sum = 0;
+		for (int i=0; i<labels.length; i++) {
+			if (i > 0)
+				assertTrue(labels[i-1].compareTo(labels[i]) < 0);
+			sum += h.getBinQuantity(i);
+		}
+		assertEquals(total, sum);
+		assertEquals(1, h.getEstimatedQuantity(""));
+	}
 }
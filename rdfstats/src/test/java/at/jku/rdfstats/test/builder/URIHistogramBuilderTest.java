@@ -18,7 +18,10 @@ package at.jku.rdfstats.test.builder;
 import at.jku.rdfstats.RDFStatsConfiguration;
 import at.jku.rdfstats.hist.OrderedStringHistogram;
 import at.jku.rdfstats.hist.URIHistogram;
+import at.jku.rdfstats.hist.builder.ApproximateURIHistogramBuilder;
 import at.jku.rdfstats.hist.builder.HistogramBuilderException;
+import at.jku.rdfstats.hist.builder.HistogramBuilderFactory;
+import at.jku.rdfstats.hist.builder.HistogramCodec;
 import at.jku.rdfstats.hist.builder.OrderedStringHistogramBuilder;
 import at.jku.rdfstats.hist.builder.URIHistogramBuilder;
 
@@ -74,4 +77,49 @@ public class URIHistogramBuilderTest extends TestCase {
 //		System.out.println(h);
 		assertEquals(7, h.getNumBins());
 	}
+
+	public void testApproximateMinHistogramSize() {
+		ApproximateURIHistogramBuilder b = new ApproximateURIHistogramBuilder(RDFStatsConfiguration.getDefault(), RDFS.Resource.getURI(), 3);
+		for (String string : data)
+			b.addValue(string);
+		
+		URIHistogram h = (URIHistogram) b.getHistogram();
+		assertEquals(5, h.getNumBins());
+		assertEquals("http://asdf.com", h.getLabel(0));
+		assertEquals("http://dbpedia.org", h.getLabel(1));
+		assertEquals("http://google.com", h.getLabel(2));
+		assertEquals("http://langegger.at", h.getLabel(3));
+		assertEquals("http://yahoo.com", h.getLabel(4));
+		assertEquals(8, h.getBinQuantity(1));
+		assertEquals(7, h.getDistinctBinValues()[1]); // exact below the budget
+		assertEquals(data.length, h.getTotalValues());
+		assertEquals("http://asdf.com", h.getMin());
+		assertEquals("http://yahoo.com", h.getMax());
+	}
+	
+	public void testApproximateNodeBudget() throws Exception {
+		RDFStatsConfiguration conf = RDFStatsConfiguration.builder().prefSize(20).approximateHistograms(true).uriHistogramNodeBudget(100).build();
+		ApproximateURIHistogramBuilder b = (ApproximateURIHistogramBuilder) HistogramBuilderFactory.createBuilder(RDFS.Resource.getURI(), null, conf.getPrefSize(), conf);
+		int n = 20000;
+		for (int i=0; i<n; i++) {
+			b.addValue("http://host" + (i % 5) + ".org/" + (i % 7) + "/" + (i % 11) + "/item" + i);
+			assertTrue(b.getNumNodes() <= 100 + 4); // at most one URI's path beyond the budget
+		}
+		
+		URIHistogram h = (URIHistogram) b.getHistogram();
+		assertTrue(h.getNumBins() <= 20);
+		assertEquals(n, h.getTotalValues());
+		int host3 = 0;
+		for (int i=0; i<h.getNumBins(); i++)
+			if (h.getLabel(i).startsWith("http://host3.org"))
+				host3 += h.getBinQuantity(i);
+		assertEquals(n / 5, host3);
+		assertEquals(n, h.getDistinctValues(), n / 10f);
+		
+		// encoded by the exact builder
+		URIHistogram decoded = (URIHistogram) HistogramCodec.base64decode(HistogramCodec.base64encode(h));
+		assertEquals(URIHistogramBuilder.class, decoded.getBuilderClass());
+		assertEquals(h.getNumBins(), decoded.getNumBins());
+		assertEquals(n, decoded.getTotalValues());
+	}
 }
@@ -17,11 +17,23 @@ package at.jku.rdfstats.test.codec;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 
 import junit.framework.TestCase;
 import at.jku.rdfstats.hist.Histogram;
+import at.jku.rdfstats.hist.IntegerHistogram;
+import at.jku.rdfstats.hist.OrderedStringHistogram;
+import at.jku.rdfstats.hist.URIHistogram;
+import at.jku.rdfstats.hist.builder.CompactDataInput;
+import at.jku.rdfstats.hist.builder.CompactDataOutput;
 import at.jku.rdfstats.hist.builder.HistogramBuilderException;
 import at.jku.rdfstats.hist.builder.HistogramCodec;
+import at.jku.rdfstats.hist.builder.IntegerHistogramBuilder;
+import at.jku.rdfstats.hist.builder.OrderedStringHistogramBuilder;
+import at.jku.rdfstats.hist.builder.URIHistogramBuilder;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.vocabulary.RDFS;
 
 /**
  * @author dorgon
@@ -67,6 +79,151 @@ public class CodecTest extends TestCase {
 		t.performTests();
 	}
 
+	public void testCompactDataStreams() {
+		int[] ints = { 1, 344, 12340, 0, -1342, 1239, Integer.MAX_VALUE, Integer.MIN_VALUE, -1 };
+		long[] longs = { 1L, 7131452343432123124L, 0L, -1342L, Long.MAX_VALUE, Long.MIN_VALUE, -1L };
+		String[] strings = { "http://example.org/a", "http://example.org/ab", null, "http://example.org/\u00d6sterreich", "http://\u4f8b\u3048.jp/", "", "\ud834\udd1e" };
+		CompactDataOutput out = new CompactDataOutput(1);
+		for (int i : ints)
+			out.writeZigZagInt(i);
+		for (long l : longs)
+			out.writeZigZagLong(l);
+		out.writeIntArray(ints);
+		out.writeLongArray(longs, 42L);
+		out.writeStringArray(strings);
+		out.writeFixedInt(-5);
+		
+		ByteBuffer direct = ByteBuffer.allocateDirect(out.size());
+		direct.put(out.toByteArray());
+		direct.flip();
+		CompactDataInput in = new CompactDataInput(direct);
+		for (int i : ints)
+			assertEquals(i, in.readZigZagInt());
+		for (long l : longs)
+			assertEquals(l, in.readZigZagLong());
+		int[] i2 = in.readIntArray(ints.length);
+		for (int i=0; i<ints.length; i++)
+			assertEquals(ints[i], i2[i]);
+		long[] l2 = in.readLongArray(longs.length, 42L);
+		for (int i=0; i<longs.length; i++)
+			assertEquals(longs[i], l2[i]);
+		String[] s2 = in.readStringArray(strings.length);
+		for (int i=0; i<strings.length; i++)
+			assertEquals(strings[i], s2[i]);
+		assertEquals(-5, in.readFixedInt());
+		assertEquals(0, direct.remaining());
+	}
+	
+	public void testMultibyteStrings() throws HistogramBuilderException {
+		URIHistogram h = new URIHistogram(
+				RDFS.Resource.getURI(),
+				new int[] { 3, 30 },
+				4,
+				new int[] { 3, 1 },
+				new String[] { "http://example.org/\u00d6sterreich", "http://\u4f8b\u3048.jp" },
+				"http://example.org/\u00d6sterreich/Wien",
+				"http://\u4f8b\u3048.jp/",
+				URIHistogramBuilder.class);
+		
+		for (int version : new int[] { HistogramCodec.VERSION, HistogramCodec.VERSION_20090109 }) {
+			URIHistogram d = (URIHistogram) HistogramCodec.decode(ByteBuffer.wrap(HistogramCodec.encode(h, version)));
+			assertEquals(h.getMin(), d.getMin());
+			assertEquals(h.getMax(), d.getMax());
+			assertEquals(h.getLabel(0), d.getLabel(0));
+			assertEquals(h.getLabel(1), d.getLabel(1));
+			assertEquals(30, d.getBinQuantity(1));
+		}
+	}
+	
+	public void testLegacyVersionDecodes() throws HistogramBuilderException {
+		IntegerHistogramBuilder b = new IntegerHistogramBuilder(null, XSDDatatype.XSDint.getURI(), 20);
+		for (int i=0; i<1000; i++)
+			b.addValue(i * 7 % 331);
+		Histogram<Integer> h = b.getHistogram();
+		
+		byte[] legacy = HistogramCodec.encode(h, HistogramCodec.VERSION_20090109);
+		byte[] compact = HistogramCodec.encode(h, HistogramCodec.VERSION);
+		assertTrue(compact.length < legacy.length);
+		
+		for (byte[] bytes : new byte[][] { legacy, compact }) {
+			IntegerHistogram d = (IntegerHistogram) HistogramCodec.decode(ByteBuffer.wrap(bytes));
+			assertEquals(h.getDistinctValues(), d.getDistinctValues());
+			assertEquals(((IntegerHistogram) h).getMin(), d.getMin());
+			assertEquals(((IntegerHistogram) h).getMax(), d.getMax());
+			for (int i=0; i<h.getNumBins(); i++)
+				assertEquals(h.getBinQuantity(i), d.getBinQuantity(i));
+		}
+	}
+	
+	public void testDeflatedLabels() throws HistogramBuilderException {
+		int size = 200;
+		int[] bins = new int[size];
+		int[] distinct = new int[size];
+		String[] labels = new String[size];
+		for (int i=0; i<size; i++) {
+			bins[i] = 1000 + i % 7;
+			distinct[i] = 1 + i % 3;
+			labels[i] = "http://dbpedia.org/resource/Entity_" + (1000 + i);
+		}
+		OrderedStringHistogram h = new OrderedStringHistogram(XSDDatatype.XSDstring.getURI(), bins, 400, distinct, labels, labels[0], labels[size-1] + "_last", OrderedStringHistogramBuilder.class);
+		
+		String encoded = HistogramCodec.base64encode(h);
+		OrderedStringHistogram d = (OrderedStringHistogram) HistogramCodec.base64decode(encoded);
+		assertEquals(h.getNumBins(), d.getNumBins());
+		assertEquals(h.getMax(), d.getMax());
+		assertEquals(h.getTotalValues(), d.getTotalValues());
+		for (int i=0; i<h.getNumBins(); i++) {
+			assertEquals(h.getLabel(i), d.getLabel(i));
+			assertEquals(h.getDistinctBinValues(i), d.getDistinctBinValues(i));
+		}
+		assertTrue(HistogramCodec.encode(h, HistogramCodec.VERSION).length < HistogramCodec.encode(h, HistogramCodec.VERSION_20090109).length / 4);
+	}
+
+	public void testCorruptLengths() {
+		int builderClassHash = IntegerHistogramBuilder.class.getCanonicalName().hashCode();
+		
+		// type URI longer than the data
+		CompactDataOutput out = new CompactDataOutput();
+		out.writeVarInt(HistogramCodec.VERSION);
+		out.writeFixedInt(builderClassHash);
+		out.writeVarInt(2);
+		out.writeByte(0);
+		out.writeVarInt(1000);
+		out.writeFixedInt(0);
+		assertNotDecoded(out.toByteArray());
+		
+		// inflated size out of range
+		for (int length : new int[] { -1, Integer.MAX_VALUE }) {
+			out = new CompactDataOutput();
+			out.writeVarInt(HistogramCodec.VERSION);
+			out.writeFixedInt(builderClassHash);
+			out.writeVarInt(2);
+			out.writeByte(0x01);
+			out.writeString(XSDDatatype.XSDint.getURI());
+			out.writeVarInt(length);
+			out.writeFixedInt(0);
+			assertNotDecoded(out.toByteArray());
+		}
+		
+		// common prefix longer than the previous label
+		out = new CompactDataOutput();
+		out.writeVarInt(0);
+		out.writeString("a");
+		out.writeVarInt(5);
+		out.writeString("b");
+		try {
+			new CompactDataInput(ByteBuffer.wrap(out.toByteArray())).readStringArray(2);
+			fail("Malformed prefix length must be rejected.");
+		} catch (IllegalArgumentException expected) {}
+	}
+	
+	private static void assertNotDecoded(byte[] bytes) {
+		try {
+			HistogramCodec.decode(ByteBuffer.wrap(bytes));
+			fail("Corrupt data must be rejected.");
+		} catch (HistogramBuilderException expected) {}
+	}
+
 	/**
 	 * @param h
 	 * @throws HistogramBuilderException
@@ -0,0 +1,161 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.test.misc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.RDFStatsDataset;
+import at.jku.rdfstats.RDFStatsModelFactory;
+import at.jku.rdfstats.generator.RDFStatsGeneratorModel;
+import at.jku.rdfstats.vocabulary.Stats;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.shared.Lock;
+import com.hp.hpl.jena.sparql.core.BasicPattern;
+import com.hp.hpl.jena.sparql.expr.ExprList;
+import com.hp.hpl.jena.sparql.util.ExprUtils;
+
+/**
+ * checks that batch estimations equal the estimations of the single triple patterns and BGPs
+ *
+ * @author dorgon
+ *
+ */
+public class BatchEstimationTest extends TestCase {
+
+	private static final String NS = "http://example.org/";
+	private static final String SOURCE = NS + "source";
+
+	private Model stats;
+	private RDFStatsDataset ds;
+
+	@Override
+	protected void setUp() throws Exception {
+		Model data = ModelFactory.createDefaultModel();
+		for (int i = 0; i < 200; i++) {
+			Resource s = data.createResource(NS + "s" + (i % 50));
+			for (int p = 0; p < 6; p++)
+				s.addProperty(data.createProperty(NS + "p" + p), data.createTypedLiteral(Integer.toString(i * (p + 1) % 97), XSDDatatype.XSDint));
+			s.addProperty(data.createProperty(NS + "name"), "name" + i);
+		}
+
+		RDFStatsConfiguration conf = RDFStatsConfiguration.getDefault();
+		new RDFStatsGeneratorModel(conf, data, Stats.RDFDocument.getURI(), SOURCE).generate();
+		stats = conf.getStatsModel();
+		ds = RDFStatsModelFactory.create(stats).getDataset(SOURCE);
+	}
+
+	public void testPatterns() throws Exception {
+		List<Triple> patterns = createPatterns();
+		ExprList filter = new ExprList(ExprUtils.parse("?o < 50"));
+
+		List<Integer> batch = ds.triplesForPatterns(patterns, null);
+		List<Integer> filteredBatch = ds.triplesForPatterns(patterns, filter);
+		assertEquals(patterns.size(), batch.size());
+		assertEquals(patterns.size(), filteredBatch.size());
+		for (int i = 0; i < patterns.size(); i++) {
+			Triple t = patterns.get(i);
+			assertEquals(t.toString(), ds.triplesForPattern(t.getSubject(), t.getPredicate(), t.getObject()), batch.get(i));
+			assertEquals(t.toString(), ds.triplesForFilteredPattern(t.getSubject(), t.getPredicate(), t.getObject(), filter), filteredBatch.get(i));
+		}
+		assertEquals(Integer.valueOf(0), batch.get(patterns.size() - 1)); // unknown subject
+	}
+
+	public void testBGPs() throws Exception {
+		List<Triple> patterns = createPatterns();
+		List<BasicPattern> bgps = new ArrayList<BasicPattern>();
+		List<ExprList> exprs = new ArrayList<ExprList>();
+		ExprList filter = new ExprList(ExprUtils.parse("?o > 20 && ?o < 80"));
+		for (int i = 0; i + 2 < patterns.size(); i++) {
+			BasicPattern bgp = new BasicPattern();
+			bgp.add(patterns.get(i));
+			bgp.add(patterns.get(i + 2));
+			bgps.add(bgp);
+			exprs.add((i % 2 == 0) ? filter : null);
+		}
+
+		List<Integer[]> batch = ds.triplesForBGPs(bgps);
+		List<Integer[]> filteredBatch = ds.triplesForFilteredBGPs(bgps, exprs);
+		assertEquals(bgps.size(), batch.size());
+		for (int i = 0; i < bgps.size(); i++) {
+			assertEquals(avg(ds.triplesForBGP(bgps.get(i))), avg(batch.get(i)));
+			Integer[] expected = (exprs.get(i) != null) ? ds.triplesForFilteredBGP(bgps.get(i), exprs.get(i)) : ds.triplesForBGP(bgps.get(i));
+			assertEquals(avg(expected), avg(filteredBatch.get(i)));
+		}
+	}
+
+	public void testEmptyBGP() throws Exception {
+		Integer[] estimate = ds.triplesForBGP(new BasicPattern());
+		for (Integer l : estimate)
+			assertEquals(Integer.valueOf(Integer.MAX_VALUE), l);
+	}
+
+	public void testWriteLockHeld() throws Exception {
+		final List<Triple> patterns = createPatterns();
+		final List<Integer> expected = ds.triplesForPatterns(patterns, null);
+		final List<Object> actual = new ArrayList<Object>();
+		
+		// the worker threads cannot take the read lock while the estimating thread holds the write lock
+		Thread t = new Thread() {
+			@Override
+			public void run() {
+				stats.enterCriticalSection(Lock.WRITE);
+				try {
+					actual.addAll(ds.triplesForPatterns(patterns, null));
+				} catch (Exception e) {
+					actual.add(e);
+				} finally {
+					stats.leaveCriticalSection();
+				}
+			}
+		};
+		t.start();
+		t.join(10000);
+		assertFalse("Batch estimation dead-locked.", t.isAlive());
+		assertEquals(expected, actual);
+	}
+
+	private static Integer avg(Integer[] estimate) {
+		return (estimate != null) ? estimate[1] : null;
+	}
+
+	/** @return patterns with concrete and variable predicates, objects and subjects */
+	private List<Triple> createPatterns() {
+		List<Triple> patterns = new ArrayList<Triple>();
+		Node s = Node.createVariable("s");
+		Node o = Node.createVariable("o");
+		for (int p = 0; p < 6; p++) {
+			Node pred = Node.createURI(NS + "p" + p);
+			patterns.add(Triple.create(s, pred, o));
+			patterns.add(Triple.create(Node.createURI(NS + "s" + p), pred, o));
+			for (int v = 0; v < 97; v += 12)
+				patterns.add(Triple.create(s, pred, Node.createLiteral(Integer.toString(v), null, XSDDatatype.XSDint)));
+		}
+		patterns.add(Triple.create(s, Node.createVariable("p"), o));
+		patterns.add(Triple.create(s, Node.createVariable("p"), Node.createLiteral("5", null, XSDDatatype.XSDint)));
+		patterns.add(Triple.create(Node.createURI(NS + "unknown"), Node.createVariable("p"), o));
+		return patterns;
+	}
+
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.test.misc;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import at.jku.rdfstats.CharacteristicSets;
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.RDFStatsModel;
+import at.jku.rdfstats.RDFStatsModelFactory;
+import at.jku.rdfstats.generator.RDFStatsGeneratorModel;
+import at.jku.rdfstats.vocabulary.Stats;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+
+/**
+ * checks generation of characteristic sets and their use for estimating subject stars
+ *
+ * @author dorgon
+ *
+ */
+public class CharacteristicSetsTest extends TestCase {
+
+	private static final String NS = "http://example.org/";
+	private static final String SOURCE = NS + "source";
+	private static final String PREFIX = "PREFIX ex: <" + NS + "> ";
+	private static final String STAR = PREFIX + "SELECT * WHERE { ?s ex:knows ?o . ?s ex:age ?a }";
+
+	private Model data;
+
+	@Override
+	protected void setUp() throws Exception {
+		data = ModelFactory.createDefaultModel();
+		Property knows = data.createProperty(NS + "knows");
+		Property name = data.createProperty(NS + "name");
+		Property age = data.createProperty(NS + "age");
+		// 100 subjects have a name, 10 of them know 10 resources each, every second subject has an age
+		for (int i = 0; i < 100; i++) {
+			Resource s = data.createResource(NS + "s" + i);
+			s.addProperty(name, "name" + i);
+			if (i < 10)
+				for (int j = 0; j < 10; j++)
+					s.addProperty(knows, data.createResource(NS + "s" + j));
+			if (i % 2 == 0)
+				s.addProperty(age, data.createTypedLiteral(20 + i % 50));
+		}
+	}
+
+	private RDFStatsModel generate(Integer maxSets) throws Exception {
+		RDFStatsConfiguration conf = RDFStatsConfiguration.builder().statsModel(ModelFactory.createDefaultModel()).characteristicSetsSize(maxSets).build();
+		new RDFStatsGeneratorModel(conf, data, Stats.RDFDocument.getURI(), SOURCE).generate();
+		return RDFStatsModelFactory.create(conf.getStatsModel());
+	}
+
+	public void testGenerated() throws Exception {
+		CharacteristicSets sets = generate(null).getCharacteristicSets(SOURCE);
+		assertNotNull(sets);
+		assertEquals(4, sets.size()); // {name}, {name, age}, {name, knows}, {name, knows, age}
+		assertEquals(0, sets.getResidualSubjects());
+		assertEquals(10.0, sets.estimateSubjects(Arrays.asList(NS + "knows", NS + "name")), 0.001);
+		assertEquals(100.0, sets.estimateResults(Arrays.asList(NS + "knows", NS + "name"), null), 0.001);
+		assertEquals(0.0, sets.estimateSubjects(Arrays.asList(NS + "unknown")), 0.001);
+
+		CharacteristicSets decoded = CharacteristicSets.base64decode(sets.base64encode());
+		assertEquals(sets.toString(), decoded.toString());
+	}
+
+	public void testStarEstimate() throws Exception {
+		// 5 subjects know 10 resources and have an age
+		Integer[] star = generate(null).getDataset(SOURCE).triplesForQuery(STAR);
+		assertEquals(50, star[1].intValue());
+		assertTrue(star[0] <= star[1] && star[1] <= star[2]);
+	}
+
+	public void testResidual() throws Exception {
+		RDFStatsModel stats = generate(1);
+		CharacteristicSets sets = stats.getCharacteristicSets(SOURCE);
+		assertEquals(1, sets.size());
+		assertEquals(55, sets.getResidualSubjects());
+		Integer[] star = stats.getDataset(SOURCE).triplesForQuery(STAR);
+		assertTrue(star[1] > 0 && star[1] <= 100);
+	}
+
+	public void testDisabled() throws Exception {
+		RDFStatsModel stats = generate(0);
+		assertNull(stats.getCharacteristicSets(SOURCE));
+		assertNotNull(stats.getDataset(SOURCE).triplesForQuery(STAR));
+	}
+
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.test.misc;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.RDFStatsModel;
+import at.jku.rdfstats.RDFStatsModelFactory;
+import at.jku.rdfstats.generator.RDFStatsGeneratorModel;
+import at.jku.rdfstats.vocabulary.Stats;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Resource;
+
+/**
+ * checks that property histograms generated by multiple worker threads equal the serially generated ones
+ *
+ * @author dorgon
+ *
+ */
+public class ConcurrentGeneratorTest extends TestCase {
+
+	private static final String NS = "http://example.org/";
+	private static final String SOURCE = NS + "source";
+
+	public void testConcurrentEqualsSerial() throws Exception {
+		Model data = ModelFactory.createDefaultModel();
+		for (int i = 0; i < 200; i++) {
+			Resource s = data.createResource(NS + "s" + (i % 50));
+			for (int p = 0; p < 12; p++)
+				s.addLiteral(data.createProperty(NS + "p" + p), data.createTypedLiteral(Integer.toString(i * (p + 1) % 97), XSDDatatype.XSDint));
+			s.addProperty(data.createProperty(NS + "name"), "name" + i);
+		}
+
+		RDFStatsModel serial = generate(data, 1);
+		RDFStatsModel concurrent = generate(data, 4);
+
+		List<String> props = serial.getPropertyHistogramProperties(SOURCE);
+		assertEquals(13, props.size());
+		assertEquals(props.size(), concurrent.getPropertyHistogramProperties(SOURCE).size());
+		for (String p : props)
+			for (String r : serial.getPropertyHistogramRanges(SOURCE, p))
+				assertEquals(serial.getPropertyHistogramEncoded(SOURCE, p, r), concurrent.getPropertyHistogramEncoded(SOURCE, p, r));
+	}
+
+	private RDFStatsModel generate(Model data, int threads) throws Exception {
+		RDFStatsConfiguration conf = RDFStatsConfiguration.builder().statsModel(ModelFactory.createDefaultModel()).generatorThreads(threads).build();
+		assertEquals(threads, conf.getGeneratorThreads());
+		new RDFStatsGeneratorModel(conf, data, Stats.RDFDocument.getURI(), SOURCE).generate();
+		return RDFStatsModelFactory.create(conf.getStatsModel());
+	}
+
+}
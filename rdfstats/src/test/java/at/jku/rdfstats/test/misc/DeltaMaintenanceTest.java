@@ -0,0 +1,180 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.test.misc;
+
+import junit.framework.TestCase;
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.RDFStatsDataset;
+import at.jku.rdfstats.RDFStatsModel;
+import at.jku.rdfstats.RDFStatsModelFactory;
+import at.jku.rdfstats.RDFStatsUpdatableModel;
+import at.jku.rdfstats.generator.RDFStatsGeneratorModel;
+import at.jku.rdfstats.hist.Histogram;
+import at.jku.rdfstats.vocabulary.Stats;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.vocabulary.RDFS;
+
+/**
+ * checks that statistics maintained by applyDelta() match the statistics regenerated from the changed source
+ *
+ * @author dorgon
+ *
+ */
+public class DeltaMaintenanceTest extends TestCase {
+
+	private static final String NS = "http://example.org/";
+	private static final String SOURCE = NS + "source";
+
+	private Model data;
+	private Model added;
+	private Model removed;
+	private Property age;
+	private Property name;
+	private Property knows;
+
+	@Override
+	protected void setUp() throws Exception {
+		data = ModelFactory.createDefaultModel();
+		age = data.createProperty(NS + "age");
+		name = data.createProperty(NS + "name");
+		knows = data.createProperty(NS + "knows");
+		for (int i = 0; i < 100; i++) {
+			Resource s = data.createResource(NS + "s" + i);
+			s.addProperty(age, data.createTypedLiteral(i % 50));
+			s.addProperty(name, "n" + i);
+		}
+
+		// s5 disappears (its age value remains used by s55), s100 and property knows are new
+		added = ModelFactory.createDefaultModel();
+		added.createResource(NS + "s100").addProperty(age, added.createTypedLiteral(7)).addProperty(name, "n100");
+		added.createResource(NS + "s0").addProperty(knows, added.createResource(NS + "s1"));
+		removed = ModelFactory.createDefaultModel();
+		removed.createResource(NS + "s5").addProperty(age, removed.createTypedLiteral(5)).addProperty(name, "n5");
+	}
+
+	private RDFStatsConfiguration config(Double subjectFilterFalsePositiveRate) {
+		return config(subjectFilterFalsePositiveRate, 0);
+	}
+
+	private RDFStatsConfiguration config(Double subjectFilterFalsePositiveRate, int characteristicSetsSize) {
+		return RDFStatsConfiguration.builder().statsModel(ModelFactory.createDefaultModel()).characteristicSetsSize(characteristicSetsSize).subjectFilterFalsePositiveRate(subjectFilterFalsePositiveRate).build();
+	}
+
+	private RDFStatsModel generate(RDFStatsConfiguration conf) throws Exception {
+		new RDFStatsGeneratorModel(conf, data, Stats.RDFDocument.getURI(), SOURCE).generate();
+		return RDFStatsModelFactory.create(conf.getStatsModel());
+	}
+
+	private void applyChanges() {
+		data.remove(removed);
+		data.add(added);
+	}
+
+	private void assertEqualCounts(RDFStatsModel expected, RDFStatsModel actual, boolean exactDistinct) throws Exception {
+		assertEquals(expected.getPropertyHistogramProperties(SOURCE).size(), actual.getPropertyHistogramProperties(SOURCE).size());
+		for (String p : expected.getPropertyHistogramProperties(SOURCE)) {
+			for (String r : expected.getPropertyHistogramRanges(SOURCE, p)) {
+				Histogram<?> e = expected.getPropertyHistogram(SOURCE, p, r);
+				Histogram<?> a = actual.getPropertyHistogram(SOURCE, p, r);
+				assertNotNull("missing histogram for <" + p + ">, range <" + r + ">", a);
+				assertEquals(e.getTotalValues(), a.getTotalValues());
+				if (exactDistinct)
+					assertEquals(e.getDistinctValues(), a.getDistinctValues());
+			}
+			if (exactDistinct) { // generated property statistics are estimates themselves
+				assertEquals(expected.getDistinctSubjects(SOURCE, p), actual.getDistinctSubjects(SOURCE, p), 1);
+				assertEquals(expected.getDistinctObjects(SOURCE, p), actual.getDistinctObjects(SOURCE, p), 1);
+			}
+		}
+	}
+
+	public void testWithSource() throws Exception {
+		RDFStatsUpdatableModel stats = generate(config(null)).asUpdatableModel();
+		RDFStatsDataset ds = stats.getDataset(SOURCE);
+		
+		applyChanges();
+		assertTrue(stats.applyDelta(ds, added, removed, data));
+		RDFStatsModel expected = generate(config(null));
+		assertEqualCounts(expected, stats, true);
+		assertEquals(expected.getSubjectHistogram(SOURCE, false).getTotalValues(), stats.getSubjectHistogram(SOURCE, false).getTotalValues());
+		assertEquals(1, stats.getPropertyHistogram(SOURCE, knows.getURI(), RDFS.Resource.getURI()).getTotalValues());
+	}
+
+	public void testRemoveProperty() throws Exception {
+		RDFStatsUpdatableModel stats = generate(config(null)).asUpdatableModel();
+		RDFStatsDataset ds = stats.getDataset(SOURCE);
+		
+		stats.applyDelta(ds, added, ModelFactory.createDefaultModel(), null);
+		assertNotNull(stats.getDistinctSubjects(SOURCE, knows.getURI()));
+		stats.applyDelta(ds, ModelFactory.createDefaultModel(), added, null);
+		assertTrue(stats.getPropertyHistogramRanges(SOURCE, knows.getURI()).isEmpty());
+		assertNull(stats.getDistinctSubjects(SOURCE, knows.getURI()));
+	}
+
+	public void testCharacteristicSetsRemoved() throws Exception {
+		RDFStatsUpdatableModel stats = generate(config(null, 1000)).asUpdatableModel();
+		RDFStatsDataset ds = stats.getDataset(SOURCE);
+		assertNotNull(stats.getCharacteristicSets(SOURCE));
+		
+		stats.applyDelta(ds, ModelFactory.createDefaultModel(), ModelFactory.createDefaultModel(), null);
+		assertNotNull(stats.getCharacteristicSets(SOURCE));
+		
+		applyChanges();
+		assertTrue(stats.applyDelta(ds, added, removed, data));
+		assertNull(stats.getCharacteristicSets(SOURCE));
+		assertNull(stats.getCharacteristicSetsEncoded(SOURCE));
+	}
+
+	public void testEmptiedBin() throws Exception {
+		RDFStatsUpdatableModel stats = generate(config(null)).asUpdatableModel();
+		RDFStatsDataset ds = stats.getDataset(SOURCE);
+		Histogram<String> sh = stats.getSubjectHistogram(SOURCE, false);
+		
+		// remove all subjects of the bin of s5
+		int bin = sh.getBinIndex(NS + "s5");
+		Model emptied = ModelFactory.createDefaultModel();
+		for (int i = 0; i < 100; i++)
+			if (sh.getBinIndex(NS + "s" + i) == bin)
+				emptied.add(data.listStatements(data.getResource(NS + "s" + i), null, (RDFNode) null));
+		assertTrue(emptied.size() < data.size());
+		data.remove(emptied);
+		
+		assertTrue(stats.applyDelta(ds, ModelFactory.createDefaultModel(), emptied, data));
+		assertEquals(0, stats.getSubjectHistogram(SOURCE, false).getBinData()[bin]);
+		assertTrue(ds.subjectNotExists(NS + "s5"));
+		assertEquals(0, (int) ds.triplesForPattern(Node.createURI(NS + "s5"), Node.ANY, Node.ANY));
+		assertNotNull(ds.triplesForPattern(Node.ANY, name.asNode(), Node.createLiteral("n5")));
+	}
+
+	public void testEstimatedWithoutSource() throws Exception {
+		RDFStatsUpdatableModel stats = generate(config(0.01)).asUpdatableModel();
+		RDFStatsDataset ds = stats.getDataset(SOURCE);
+		
+		applyChanges();
+		assertFalse(stats.applyDelta(ds, added, removed));
+		assertEqualCounts(generate(config(0.01)), stats, false);
+		
+		// s100 is proven to be new by the subject filter, the removal of s5 cannot be detected without the source
+		assertEquals(101, stats.getSubjectHistogram(SOURCE, false).getTotalValues());
+		assertTrue(stats.getSubjectFilter(SOURCE).mightContain(NS + "s100"));
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.test.misc;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.List;
+
+import junit.framework.TestCase;
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.RDFStatsModel;
+import at.jku.rdfstats.RDFStatsModelFactory;
+import at.jku.rdfstats.generator.RDFStatsGeneratorDoc;
+import at.jku.rdfstats.generator.RDFStatsGeneratorModel;
+import at.jku.rdfstats.test.Constants;
+import at.jku.rdfstats.vocabulary.Stats;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.util.FileManager;
+import com.hp.hpl.jena.util.FileUtils;
+
+/**
+ * checks that the single-pass document generator produces the same histograms and
+ * characteristic sets as the query-based generator
+ *
+ * @author dorgon
+ *
+ */
+public class DocumentGeneratorTest extends TestCase {
+
+	private static final String XSD = "http://www.w3.org/2001/XMLSchema#";
+
+	private File doc;
+
+	@Override
+	protected void setUp() throws Exception {
+		doc = File.createTempFile("rdfstats-doc", ".nt");
+		FileWriter w = new FileWriter(doc);
+		for (int i = 0; i < 50; i++) {
+			String s = "<http://example.org/s" + (i % 20) + ">";
+			w.write(s + " <" + Constants.intnumber + "> \"" + (i * 7 % 31) + "\"^^<" + XSD + "int> .\n");
+			w.write(s + " <" + Constants.words + "> \"word" + (i % 13) + "\" .\n");
+			w.write(s + " <" + Constants.url + "> <http://example.com/page/" + i + "> .\n");
+			w.write("_:b" + (i % 5) + " <" + Constants.city + "> \"city" + i + "\"^^<" + XSD + "string> .\n");
+		}
+		w.close();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		doc.delete();
+	}
+
+	public void testSinglePassEqualsQueries() throws Exception {
+		String url = FileUtils.toURL(doc.getPath());
+
+		RDFStatsConfiguration confDoc = RDFStatsConfiguration.builder().statsModel(ModelFactory.createDefaultModel()).characteristicSetsSize(1000).build();
+		new RDFStatsGeneratorDoc(confDoc, url).generate();
+
+		Model data = FileManager.get().loadModel(url);
+		RDFStatsConfiguration confModel = RDFStatsConfiguration.builder().statsModel(ModelFactory.createDefaultModel()).characteristicSetsSize(1000).build();
+		new RDFStatsGeneratorModel(confModel, data, Stats.RDFDocument.getURI(), url).generate();
+
+		RDFStatsModel expected = RDFStatsModelFactory.create(confModel.getStatsModel());
+		RDFStatsModel actual = RDFStatsModelFactory.create(confDoc.getStatsModel());
+
+		assertEquals(expected.getSubjectHistogramEncoded(url, false), actual.getSubjectHistogramEncoded(url, false));
+		assertEquals(expected.getSubjectHistogramEncoded(url, true), actual.getSubjectHistogramEncoded(url, true));
+
+		List<String> props = expected.getPropertyHistogramProperties(url);
+		assertEquals(4, props.size());
+		assertEquals(props.size(), actual.getPropertyHistogramProperties(url).size());
+		for (String p : props) {
+			List<String> ranges = expected.getPropertyHistogramRanges(url, p);
+			assertEquals(ranges.size(), actual.getPropertyHistogramRanges(url, p).size());
+			for (String r : ranges)
+				assertEquals(expected.getPropertyHistogramEncoded(url, p, r), actual.getPropertyHistogramEncoded(url, p, r));
+		}
+
+		assertNotNull(expected.getCharacteristicSetsEncoded(url));
+		assertEquals(expected.getCharacteristicSetsEncoded(url), actual.getCharacteristicSetsEncoded(url));
+	}
+
+}
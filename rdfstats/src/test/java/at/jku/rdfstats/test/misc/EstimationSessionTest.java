@@ -0,0 +1,176 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.test.misc;
+
+import java.util.Calendar;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import junit.framework.TestCase;
+import at.jku.rdfstats.EstimationSession;
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.RDFStatsDataset;
+import at.jku.rdfstats.RDFStatsModel;
+import at.jku.rdfstats.RDFStatsModelFactory;
+import at.jku.rdfstats.RDFStatsUpdatableModel;
+import at.jku.rdfstats.generator.RDFStatsGeneratorModel;
+import at.jku.rdfstats.vocabulary.Stats;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.sparql.algebra.AlgebraGenerator;
+import com.hp.hpl.jena.sparql.algebra.Op;
+
+/**
+ * checks memoization of triple pattern estimates across query plans and invalidation upon statistics changes
+ *
+ * @author dorgon
+ *
+ */
+public class EstimationSessionTest extends TestCase {
+
+	private static final String NS = "http://example.org/";
+	private static final String SOURCE = NS + "source";
+
+	private RDFStatsModel stats;
+	private RDFStatsDataset ds;
+
+	@Override
+	protected void setUp() throws Exception {
+		Model data = ModelFactory.createDefaultModel();
+		for (int i = 0; i < 200; i++) {
+			Resource s = data.createResource(NS + "s" + (i % 50));
+			for (int p = 0; p < 4; p++)
+				s.addProperty(data.createProperty(NS + "p" + p), data.createTypedLiteral(Integer.toString(i * (p + 1) % 97), XSDDatatype.XSDint));
+		}
+
+		RDFStatsConfiguration conf = RDFStatsConfiguration.getDefault();
+		new RDFStatsGeneratorModel(conf, data, Stats.RDFDocument.getURI(), SOURCE).generate();
+		stats = RDFStatsModelFactory.create(conf.getStatsModel());
+		ds = stats.getDataset(SOURCE);
+	}
+
+	public void testMemoization() throws Exception {
+		EstimationSession session = ds.createEstimationSession();
+		assertEquals(SOURCE, session.getSourceUrl());
+
+		Op plan = plan("SELECT * WHERE { ?s <" + NS + "p0> ?o ; <" + NS + "p1> ?o1 . FILTER (?o < 50) }");
+		assertEquals(ds.triplesForQueryPlan(plan)[1], ds.triplesForQueryPlan(plan, session)[1]);
+		assertEquals(0, session.getHitCount());
+		assertEquals(2, session.size());
+
+		// same shape, other variable names
+		Op renamed = plan("SELECT * WHERE { ?x <" + NS + "p0> ?y ; <" + NS + "p1> ?z . FILTER (?y < 50) }");
+		assertEquals(ds.triplesForQueryPlan(renamed)[1], ds.triplesForQueryPlan(renamed, session)[1]);
+		assertEquals(2, session.getHitCount());
+		assertEquals(2, session.size());
+
+		// overlapping plan, other filter constant
+		Op other = plan("SELECT * WHERE { ?s <" + NS + "p1> ?o1 ; <" + NS + "p0> ?o . FILTER (?o < 10) }");
+		assertEquals(ds.triplesForQueryPlan(other)[1], ds.triplesForQueryPlan(other, session)[1]);
+		assertEquals(3, session.getHitCount());
+		assertEquals(3, session.size());
+	}
+
+	public void testInvalidation() throws Exception {
+		EstimationSession session = ds.createEstimationSession();
+		Op plan = plan("SELECT * WHERE { ?s <" + NS + "p0> ?o . }");
+		Integer before = ds.triplesForQueryPlan(plan, session)[1];
+		assertEquals(1, session.size());
+
+		// replace the histogram of p0 by a histogram with another total
+		RDFStatsUpdatableModel updatable = stats.asUpdatableModel();
+		String range = XSDDatatype.XSDint.getURI();
+		String encoded = updatable.getPropertyHistogramEncoded(SOURCE, NS + "p0", range);
+		updatable.requestExclusiveWriteLock(ds);
+		try {
+			Model m = ModelFactory.createDefaultModel();
+			RDFStatsConfiguration conf = RDFStatsConfiguration.builder().statsModel(m).build();
+			Model data = ModelFactory.createDefaultModel();
+			data.createResource(NS + "s").addProperty(data.createProperty(NS + "p0"), data.createTypedLiteral("1", XSDDatatype.XSDint));
+			new RDFStatsGeneratorModel(conf, data, Stats.RDFDocument.getURI(), SOURCE).generate();
+			String replacement = RDFStatsModelFactory.create(m).getPropertyHistogramEncoded(SOURCE, NS + "p0", range);
+			assertFalse(encoded.equals(replacement));
+			updatable.addOrUpdatePropertyHistogram(ds, NS + "p0", range, replacement);
+		} finally {
+			updatable.returnExclusiveWriteLock(ds);
+		}
+
+		Integer after = ds.triplesForQueryPlan(plan, session)[1];
+		assertEquals(ds.triplesForQueryPlan(plan)[1], after);
+		assertEquals(Integer.valueOf(1), after);
+		assertFalse(before.equals(after));
+		assertEquals(0, session.getHitCount());
+	}
+
+	public void testConcurrentInvalidation() throws Exception {
+		final EstimationSession session = ds.createEstimationSession();
+		final Op plan = plan("SELECT * WHERE { ?s <" + NS + "p0> ?o . }");
+		RDFStatsUpdatableModel updatable = stats.asUpdatableModel();
+
+		for (int round = 0; round < 20; round++) {
+			final AtomicBoolean stop = new AtomicBoolean();
+			final Throwable[] error = new Throwable[1];
+			Thread[] threads = new Thread[4];
+			for (int t = 0; t < threads.length; t++) {
+				threads[t] = new Thread() {
+					@Override
+					public void run() {
+						try {
+							while (!stop.get())
+								ds.triplesForQueryPlan(plan, session);
+						} catch (Throwable e) {
+							error[0] = e;
+						}
+					}
+				};
+				threads[t].start();
+			}
+
+			// modify the statistics while estimates are memoized concurrently
+			Model added = ModelFactory.createDefaultModel();
+			added.createResource(NS + "new" + round).addProperty(added.createProperty(NS + "p0"), added.createTypedLiteral(Integer.toString(round), XSDDatatype.XSDint));
+			Thread.sleep(5);
+			updatable.applyDelta(ds, added, ModelFactory.createDefaultModel(), null);
+			Thread.sleep(5);
+
+			stop.set(true);
+			for (Thread t : threads)
+				t.join();
+			assertNull(error[0]);
+
+			// an estimate of the outdated statistics must not have survived
+			assertEquals(ds.triplesForQueryPlan(plan)[1], ds.triplesForQueryPlan(plan, session)[1]);
+		}
+	}
+
+	public void testForeignSession() throws Exception {
+		RDFStatsUpdatableModel updatable = stats.asUpdatableModel();
+		RDFStatsDataset other = updatable.addDatasetAndLock(NS + "other", Stats.RDFDocument.getURI(), "test", Calendar.getInstance());
+		updatable.returnExclusiveWriteLock(other);
+		try {
+			other.triplesForQueryPlan(plan("SELECT * WHERE { ?s ?p ?o }"), ds.createEstimationSession());
+			fail("Session of another dataset must be rejected.");
+		} catch (IllegalArgumentException expected) {}
+	}
+
+	private static Op plan(String qry) {
+		return new AlgebraGenerator().compile(QueryFactory.create(qry));
+	}
+
+}
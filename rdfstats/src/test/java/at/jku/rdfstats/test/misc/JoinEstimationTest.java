@@ -0,0 +1,89 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.test.misc;
+
+import junit.framework.TestCase;
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.RDFStatsDataset;
+import at.jku.rdfstats.RDFStatsModel;
+import at.jku.rdfstats.RDFStatsModelFactory;
+import at.jku.rdfstats.generator.RDFStatsGeneratorModel;
+import at.jku.rdfstats.vocabulary.Stats;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+
+/**
+ * checks that per-property distinct subject and object counts are generated and used for join estimation
+ *
+ * @author dorgon
+ *
+ */
+public class JoinEstimationTest extends TestCase {
+
+	private static final String NS = "http://example.org/";
+	private static final String SOURCE = NS + "source";
+	private static final String PREFIX = "PREFIX ex: <" + NS + "> ";
+
+	private RDFStatsModel stats;
+	private RDFStatsDataset ds;
+
+	@Override
+	protected void setUp() throws Exception {
+		Model data = ModelFactory.createDefaultModel();
+		Property knows = data.createProperty(NS + "knows");
+		Property name = data.createProperty(NS + "name");
+		// 10 subjects know 10 resources each, 100 subjects have a name each
+		for (int i = 0; i < 100; i++) {
+			Resource s = data.createResource(NS + "s" + i);
+			s.addProperty(name, "name" + i);
+			if (i < 10)
+				for (int j = 0; j < 10; j++)
+					s.addProperty(knows, data.createResource(NS + "s" + j));
+		}
+
+		RDFStatsConfiguration conf = RDFStatsConfiguration.builder().statsModel(ModelFactory.createDefaultModel()).characteristicSetsSize(1000).build();
+		new RDFStatsGeneratorModel(conf, data, Stats.RDFDocument.getURI(), SOURCE).generate();
+		stats = RDFStatsModelFactory.create(conf.getStatsModel());
+		ds = stats.getDataset(SOURCE);
+	}
+
+	public void testPropertyStatistics() throws Exception {
+		assertEquals(10, stats.getDistinctSubjects(SOURCE, NS + "knows"), 1);
+		assertEquals(Integer.valueOf(10), stats.getDistinctObjects(SOURCE, NS + "knows"));
+		assertEquals(100, stats.getDistinctSubjects(SOURCE, NS + "name"), 3);
+		assertNull(stats.getDistinctSubjects(SOURCE, NS + "unknown"));
+	}
+
+	public void testChainJoin() throws Exception {
+		// each of the 100 knows triples joins with 10 knows triples of its object
+		Integer[] bgp = ds.triplesForQuery(PREFIX + "SELECT * WHERE { ?a ex:knows ?b . ?b ex:knows ?c }");
+		assertEquals(1000, bgp[1], 100);
+		assertTrue(bgp[0] <= bgp[1] && bgp[1] <= bgp[2]);
+
+		Integer[] join = ds.triplesForQuery(PREFIX + "SELECT * WHERE { { ?a ex:knows ?b } { ?b ex:knows ?c } }");
+		assertEquals(1000, join[1], 100);
+	}
+
+	public void testStarJoin() throws Exception {
+		// every knows subject has exactly one name
+		Integer[] bgp = ds.triplesForQuery(PREFIX + "SELECT * WHERE { ?s ex:knows ?o . ?s ex:name ?n }");
+		assertEquals(100, bgp[1], 10);
+	}
+
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.test.misc;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import at.jku.rdfstats.hist.builder.LongCountMap;
+
+/**
+ * @author dorgon
+ *
+ */
+public class LongCountMapTest extends TestCase {
+
+	public void testCounts() {
+		LongCountMap map = new LongCountMap(2);
+		assertTrue(map.isEmpty());
+
+		map.add(0);
+		map.add(0);
+		map.add(-1);
+		map.add(Long.MIN_VALUE);
+		map.add(Long.MAX_VALUE);
+		map.add(Long.MAX_VALUE);
+		map.add(Long.MAX_VALUE);
+
+		assertEquals(4, map.size());
+		assertEquals(2, map.get(0));
+		assertEquals(1, map.get(-1));
+		assertEquals(1, map.get(Long.MIN_VALUE));
+		assertEquals(3, map.get(Long.MAX_VALUE));
+		assertEquals(0, map.get(1));
+
+		long[] keys = map.keys();
+		Arrays.sort(keys);
+		assertTrue(Arrays.equals(new long[] { Long.MIN_VALUE, -1, 0, Long.MAX_VALUE }, keys));
+	}
+
+	public void testRandom() {
+		Random rnd = new Random(4711);
+		LongCountMap map = new LongCountMap();
+		Map<Long, Integer> expected = new HashMap<Long, Integer>();
+
+		for (int i = 0; i < 100000; i++) {
+			long v = rnd.nextInt(20000) * 1000L;
+			map.add(v);
+			Integer old = expected.get(v);
+			expected.put(v, (old == null) ? 1 : old + 1);
+		}
+
+		assertEquals(expected.size(), map.size());
+		assertEquals(expected.size(), map.keys().length);
+		for (long k : map.keys())
+			assertEquals(expected.get(k).intValue(), map.get(k));
+	}
+
+}
@@ -29,6 +29,20 @@ public class MiscTestPackage extends TestCase {
 		TestSuite s = new TestSuite("Misc tests");
 		s.addTestSuite(HistogramBuilderFactoryTest.class);
 		s.addTestSuite(PrefixSearchTreeMapTest.class);
+		s.addTestSuite(PrefixLabelIndexTest.class);
+		s.addTestSuite(LongCountMapTest.class);
+		s.addTestSuite(DocumentGeneratorTest.class);
+		s.addTestSuite(ConcurrentGeneratorTest.class);
+		s.addTestSuite(BatchEstimationTest.class);
+		s.addTestSuite(EstimationSessionTest.class);
+		s.addTestSuite(JoinEstimationTest.class);
+		s.addTestSuite(CharacteristicSetsTest.class);
+		s.addTestSuite(SourceSelectionTest.class);
+		s.addTestSuite(SubjectFilterTest.class);
+		s.addTestSuite(PagedGeneratorTest.class);
+		s.addTestSuite(DeltaMaintenanceTest.class);
+		s.addTestSuite(ParallelDocumentReaderTest.class);
+		s.addTestSuite(MultipleGeneratorTest.class);
 		return s;
 	}
 }
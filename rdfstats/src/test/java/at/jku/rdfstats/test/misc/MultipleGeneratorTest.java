@@ -0,0 +1,207 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.test.misc;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Calendar;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import at.jku.rdfstats.GeneratorMultiple;
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.RDFStatsDataset;
+import at.jku.rdfstats.RDFStatsModel;
+import at.jku.rdfstats.RDFStatsModelFactory;
+import at.jku.rdfstats.RDFStatsUpdatableModel;
+import at.jku.rdfstats.GeneratorMultiple.Outcome;
+import at.jku.rdfstats.GeneratorMultiple.SourceResult;
+import at.jku.rdfstats.vocabulary.Stats;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.util.FileUtils;
+
+/**
+ * checks the scheduling of multiple sources: limits, timeouts, priorities, and results
+ *
+ * @author dorgon
+ *
+ */
+public class MultipleGeneratorTest extends TestCase {
+
+	private final List<File> docs = new ArrayList<File>();
+
+	@Override
+	protected void setUp() throws Exception {
+		for (int d = 0; d < 3; d++) {
+			File doc = File.createTempFile("rdfstats-multi", ".nt");
+			FileWriter w = new FileWriter(doc);
+			for (int i = 0; i < 30; i++)
+				w.write("<http://example.org/d" + d + "/s" + (i % 10) + "> <http://example.org/p> \"v" + i + "\" .\n");
+			w.close();
+			docs.add(doc);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (File doc : docs)
+			doc.delete();
+	}
+
+	public void testDocumentsConcurrently() throws Exception {
+		List<String> urls = new ArrayList<String>();
+		for (File doc : docs)
+			urls.add(doc.getPath());
+		urls.add(docs.get(0).getPath() + ".missing");
+
+		RDFStatsConfiguration conf = config(ModelFactory.createDefaultModel(), null, urls, 4, 1, 0);
+		GeneratorMultiple gen = new GeneratorMultiple(conf);
+		RDFStatsModel stats = RDFStatsModelFactory.create(gen.generate());
+
+		assertEquals(4, gen.getResults().size());
+		for (SourceResult r : gen.getResults()) {
+			if (r.getSourceUrl().endsWith(".missing")) {
+				assertEquals(Outcome.FAILED, r.getOutcome());
+				assertNotNull(r.getError());
+			} else {
+				assertEquals(Outcome.SUCCEEDED, r.getOutcome());
+				assertNotNull(stats.getDataset(FileUtils.toURL(r.getSourceUrl())));
+			}
+		}
+	}
+
+	public void testLimits() throws Exception {
+		List<String> endpoints = new ArrayList<String>();
+		for (int i = 0; i < 4; i++) {
+			endpoints.add("http://a.example.org/sparql" + i);
+			endpoints.add("http://b.example.org/sparql" + i);
+			endpoints.add("http://c.example.org/sparql" + i);
+		}
+		SleepingGenerator gen = new SleepingGenerator(config(null, endpoints, null, 4, 2, 0), 100);
+		gen.generate();
+
+		assertEquals(12, gen.getResults().size());
+		for (SourceResult r : gen.getResults())
+			assertEquals(Outcome.SUCCEEDED, r.getOutcome());
+		assertEquals(4, gen.maxRunning);
+		for (int max : gen.maxPerHost.values())
+			assertTrue(max <= 2);
+	}
+
+	public void testTimeout() throws Exception {
+		List<String> endpoints = Arrays.asList("http://slow.example.org/sparql", "http://fast.example.org/sparql");
+		SleepingGenerator gen = new SleepingGenerator(config(null, endpoints, null, 2, 1, 1), 100);
+		long start = System.currentTimeMillis();
+		RDFStatsModel stats = RDFStatsModelFactory.create(gen.generate());
+		assertTrue(System.currentTimeMillis() - start < 1900);
+
+		assertEquals(2, gen.getResults().size());
+		assertEquals("http://fast.example.org/sparql", gen.getResults().get(0).getSourceUrl());
+		assertEquals(Outcome.SUCCEEDED, gen.getResults().get(0).getOutcome());
+		assertEquals(Outcome.TIMED_OUT, gen.getResults().get(1).getOutcome());
+		assertTrue(gen.getResults().get(1).getDuration() >= 1000);
+
+		// the abandoned source finishes later, but must not write into the statistics model
+		Thread.sleep(1500);
+		assertNotNull(stats.getDataset("http://fast.example.org/sparql"));
+		assertNull(stats.getDataset("http://slow.example.org/sparql"));
+	}
+
+	public void testAbandonedKeepsHostSlot() throws Exception {
+		List<String> endpoints = Arrays.asList("http://slow.example.org/sparql0", "http://slow.example.org/sparql1");
+		SleepingGenerator gen = new SleepingGenerator(config(null, endpoints, null, 2, 1, 1), 100);
+		gen.generate();
+
+		assertEquals(2, gen.getResults().size());
+		for (SourceResult r : gen.getResults())
+			assertEquals(Outcome.TIMED_OUT, r.getOutcome());
+		// the second source waits until the abandoned thread of the first one has terminated
+		assertEquals(Integer.valueOf(1), gen.maxPerHost.get("slow.example.org"));
+		assertTrue(gen.getResults().get(1).getStarted() - gen.getResults().get(0).getStarted() >= 2000);
+	}
+
+	public void testStaleFirst() throws Exception {
+		Model stats = ModelFactory.createDefaultModel();
+		String fresh = docs.get(0).getPath(), stale = docs.get(1).getPath(), missing = docs.get(2).getPath();
+		new GeneratorMultiple(config(stats, null, Arrays.asList(stale), 1, 1, 0)).generate();
+		Thread.sleep(1100); // dates are stored in seconds
+		new GeneratorMultiple(config(stats, null, Arrays.asList(fresh), 1, 1, 0)).generate();
+
+		GeneratorMultiple gen = new GeneratorMultiple(config(stats, null, Arrays.asList(fresh, stale, missing), 1, 1, 0));
+		gen.generate();
+		assertEquals(3, gen.getResults().size());
+		assertEquals(missing, gen.getResults().get(0).getSourceUrl());
+		assertNull(gen.getResults().get(0).getLastGenerated());
+		assertEquals(stale, gen.getResults().get(1).getSourceUrl());
+		assertEquals(fresh, gen.getResults().get(2).getSourceUrl());
+	}
+
+	private static RDFStatsConfiguration config(Model stats, List<String> endpoints, List<String> docs, int threads, int perHost, int timeout) {
+		return RDFStatsConfiguration.builder().statsModel(stats).endpoints(endpoints).documentURLs(docs).sourceThreads(threads).sourceThreadsPerHost(perHost).sourceTimeout(timeout).build();
+	}
+
+	/** sleeps instead of querying and adds an empty dataset, "slow" sources take 2 seconds and ignore interrupts */
+	private static class SleepingGenerator extends GeneratorMultiple {
+		private final long millis;
+		private int running = 0;
+		int maxRunning = 0;
+		private final Map<String, Integer> perHost = new HashMap<String, Integer>();
+		final Map<String, Integer> maxPerHost = new HashMap<String, Integer>();
+
+		SleepingGenerator(RDFStatsConfiguration config, long millis) {
+			super(config);
+			this.millis = millis;
+		}
+
+		@Override
+		protected void generate(RDFStatsConfiguration sourceConfig, String sourceUrl, boolean endpoint) throws Exception {
+			String host = sourceUrl.substring(7, sourceUrl.indexOf('/', 7));
+			synchronized (this) {
+				maxRunning = Math.max(maxRunning, ++running);
+				int n = (perHost.containsKey(host) ? perHost.get(host) : 0) + 1;
+				perHost.put(host, n);
+				maxPerHost.put(host, Math.max(n, maxPerHost.containsKey(host) ? maxPerHost.get(host) : 0));
+			}
+			try {
+				if (host.startsWith("slow")) {
+					long until = System.currentTimeMillis() + 2000;
+					while (System.currentTimeMillis() < until) {
+						try {
+							Thread.sleep(until - System.currentTimeMillis());
+						} catch (InterruptedException ignored) {}
+					}
+				} else
+					Thread.sleep(millis);
+
+				RDFStatsUpdatableModel stats = RDFStatsModelFactory.createUpdatable(sourceConfig.getStatsModel());
+				RDFStatsDataset ds = stats.addDatasetAndLock(sourceUrl, Stats.SPARQLEndpoint.getURI(), "test@localhost", Calendar.getInstance());
+				stats.returnExclusiveWriteLock(ds);
+			} finally {
+				synchronized (this) {
+					running--;
+					perHost.put(host, perHost.get(host) - 1);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,235 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.test.misc;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import at.jku.rdfstats.GeneratorException;
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.RDFStatsModel;
+import at.jku.rdfstats.RDFStatsModelFactory;
+import at.jku.rdfstats.generator.RDFStatsGeneratorModel;
+import at.jku.rdfstats.vocabulary.Stats;
+
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+
+/**
+ * checks that paged queries produce the same statistics as single queries, and that an interrupted run resumes
+ * from its checkpoint
+ *
+ * @author dorgon
+ *
+ */
+public class PagedGeneratorTest extends TestCase {
+
+	private static final String NS = "http://example.org/";
+	private static final String SOURCE = NS + "source";
+
+	private Model data;
+	private File checkpoints;
+
+	@Override
+	protected void setUp() throws Exception {
+		data = ModelFactory.createDefaultModel();
+		Property number = data.createProperty(NS + "number");
+		Property name = data.createProperty(NS + "name");
+		Property link = data.createProperty(NS + "link");
+		for (int i = 0; i < 300; i++) {
+			Resource s = (i % 3 == 0) ? data.createResource() : data.createResource(NS + "s\"" + i);
+			s.addProperty(number, data.createTypedLiteral(i % 17));
+			s.addProperty(number, data.createTypedLiteral(i % 5));
+			s.addProperty(name, "name" + (i % 23));
+			if (i % 2 == 0)
+				s.addProperty(link, data.createResource(NS + "s\"" + (i / 2)));
+		}
+		
+		checkpoints = File.createTempFile("rdfstats-checkpoints", "");
+		checkpoints.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		File[] files = checkpoints.listFiles();
+		if (files != null)
+			for (File f : files)
+				f.delete();
+		checkpoints.delete();
+	}
+
+	private RDFStatsConfiguration config(Integer pageSize, String checkpointDirectory) {
+		return config(pageSize, checkpointDirectory, false);
+	}
+
+	private RDFStatsConfiguration config(Integer pageSize, String checkpointDirectory, boolean approximate) {
+		return RDFStatsConfiguration.builder().statsModel(ModelFactory.createDefaultModel()).approximateHistograms(approximate).characteristicSetsSize(1000).pageSize(pageSize).checkpointDirectory(checkpointDirectory).build();
+	}
+
+	private void assertEqualStatistics(RDFStatsConfiguration expectedConf, RDFStatsConfiguration actualConf) throws Exception {
+		RDFStatsModel expected = RDFStatsModelFactory.create(expectedConf.getStatsModel());
+		RDFStatsModel actual = RDFStatsModelFactory.create(actualConf.getStatsModel());
+		assertEquals(expected.getSubjectHistogramEncoded(SOURCE, false), actual.getSubjectHistogramEncoded(SOURCE, false));
+		assertEquals(expected.getSubjectHistogramEncoded(SOURCE, true), actual.getSubjectHistogramEncoded(SOURCE, true));
+
+		List<String> props = expected.getPropertyHistogramProperties(SOURCE);
+		assertEquals(3, props.size());
+		assertEquals(props.size(), actual.getPropertyHistogramProperties(SOURCE).size());
+		for (String p : props) {
+			for (String r : expected.getPropertyHistogramRanges(SOURCE, p))
+				assertEquals(expected.getPropertyHistogramEncoded(SOURCE, p, r), actual.getPropertyHistogramEncoded(SOURCE, p, r));
+			assertEquals(expected.getDistinctSubjects(SOURCE, p), actual.getDistinctSubjects(SOURCE, p));
+		}
+		assertEquals(expected.getCharacteristicSetsEncoded(SOURCE), actual.getCharacteristicSetsEncoded(SOURCE));
+	}
+
+	public void testPagedEqualsSingleQueries() throws Exception {
+		RDFStatsConfiguration single = config(null, null);
+		new RDFStatsGeneratorModel(single, data, Stats.RDFDocument.getURI(), SOURCE).generate();
+		RDFStatsConfiguration paged = config(100, null);
+		new RDFStatsGeneratorModel(paged, data, Stats.RDFDocument.getURI(), SOURCE).generate();
+		assertEqualStatistics(single, paged);
+	}
+
+	public void testResumeFromCheckpoint() throws Exception {
+		RDFStatsConfiguration clean = config(null, null);
+		new RDFStatsGeneratorModel(clean, data, Stats.RDFDocument.getURI(), SOURCE).generate();
+
+		// interrupted while querying the second property
+		RDFStatsConfiguration conf = config(null, checkpoints.getPath());
+		CountingGenerator interrupted = new CountingGenerator(conf, 2);
+		try {
+			interrupted.generate();
+			fail("Generator has not been interrupted.");
+		} catch (Interrupted expected) {}
+		assertEquals(1, checkpoints.listFiles().length);
+
+		RDFStatsConfiguration resumedConf = config(null, checkpoints.getPath());
+		CountingGenerator resumed = new CountingGenerator(resumedConf, 0);
+		resumed.generate();
+		assertEquals(2, resumed.properties.size());
+		String completed = interrupted.properties.iterator().next();
+		assertFalse(resumed.properties.contains(completed));
+		assertEquals(0, checkpoints.listFiles().length);
+		assertEqualStatistics(clean, resumedConf);
+	}
+
+	public void testResumeFromTruncatedCheckpoint() throws Exception {
+		RDFStatsConfiguration clean = config(null, null);
+		new RDFStatsGeneratorModel(clean, data, Stats.RDFDocument.getURI(), SOURCE).generate();
+
+		// two properties completed, the second one is only partially written
+		CountingGenerator interrupted = new CountingGenerator(config(null, checkpoints.getPath()), 3);
+		try {
+			interrupted.generate();
+			fail("Generator has not been interrupted.");
+		} catch (Interrupted expected) {}
+		File checkpoint = checkpoints.listFiles()[0];
+		RandomAccessFile raf = new RandomAccessFile(checkpoint, "rw");
+		raf.setLength(raf.length() - 10);
+		raf.close();
+
+		// the first resume appends a property after the truncated line and is interrupted again
+		CountingGenerator resumed1 = new CountingGenerator(config(null, checkpoints.getPath()), 2);
+		try {
+			resumed1.generate();
+			fail("Generator has not been interrupted.");
+		} catch (Interrupted expected) {}
+		assertEquals(1, resumed1.properties.size());
+
+		RDFStatsConfiguration resumedConf = config(null, checkpoints.getPath());
+		CountingGenerator resumed2 = new CountingGenerator(resumedConf, 0);
+		resumed2.generate();
+		assertEquals(1, resumed2.properties.size());
+		assertFalse(resumed1.properties.containsAll(resumed2.properties));
+		assertEquals(0, checkpoints.listFiles().length);
+		assertEqualStatistics(clean, resumedConf);
+	}
+
+	public void testCheckpointOfOtherSettingsDiscarded() throws Exception {
+		CountingGenerator interrupted = new CountingGenerator(config(null, checkpoints.getPath()), 3);
+		try {
+			interrupted.generate();
+			fail("Generator has not been interrupted.");
+		} catch (Interrupted expected) {}
+
+		CountingGenerator approximate = new CountingGenerator(config(null, checkpoints.getPath(), true), 0);
+		approximate.generate();
+		assertEquals(3, approximate.properties.size());
+	}
+
+	public void testCheckpointsOfOtherSourcesKept() throws Exception {
+		// "Aa" and "BB" have the same String.hashCode()
+		String source1 = SOURCE + "/Aa", source2 = SOURCE + "/BB";
+		CountingGenerator interrupted = new CountingGenerator(config(null, checkpoints.getPath()), source1, 2);
+		try {
+			interrupted.generate();
+			fail("Generator has not been interrupted.");
+		} catch (Interrupted expected) {}
+		try {
+			new CountingGenerator(config(null, checkpoints.getPath()), source2, 2).generate();
+			fail("Generator has not been interrupted.");
+		} catch (Interrupted expected) {}
+		assertEquals(2, checkpoints.listFiles().length);
+
+		CountingGenerator resumed = new CountingGenerator(config(null, checkpoints.getPath()), source1, 0);
+		resumed.generate();
+		assertEquals(2, resumed.properties.size());
+		assertFalse(resumed.properties.contains(interrupted.properties.iterator().next()));
+		assertEquals(1, checkpoints.listFiles().length);
+	}
+
+	/** thrown to simulate an interruption, not caught by the generator */
+	private static class Interrupted extends Error {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/** records the property queries, throws {@link Interrupted} when the n-th property is queried */
+	private class CountingGenerator extends RDFStatsGeneratorModel {
+		final Set<String> properties = new HashSet<String>();
+		private final int interruptAt;
+
+		CountingGenerator(RDFStatsConfiguration conf, int interruptAt) throws GeneratorException {
+			this(conf, SOURCE, interruptAt);
+		}
+
+		CountingGenerator(RDFStatsConfiguration conf, String sourceUrl, int interruptAt) throws GeneratorException {
+			super(conf, data, Stats.RDFDocument.getURI(), sourceUrl);
+			this.interruptAt = interruptAt;
+		}
+
+		@Override
+		public QueryExecution getQueryExecution(Query q) {
+			String qry = q.toString();
+			if (qry.contains("?val")) {
+				int start = qry.indexOf('<') + 1;
+				if (properties.size() + 1 == interruptAt)
+					throw new Interrupted();
+				properties.add(qry.substring(start, qry.indexOf('>', start)));
+			}
+			return super.getQueryExecution(q);
+		}
+	}
+
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.test.misc;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import at.jku.rdfstats.ParseException;
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.generator.HistogramBuilderSink;
+import at.jku.rdfstats.generator.NTriplesLineParser;
+import at.jku.rdfstats.generator.ParallelDocumentReader;
+import at.jku.rdfstats.hist.builder.HistogramBuilder;
+import at.jku.rdfstats.test.Constants;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.AnonId;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.util.FileManager;
+import com.hp.hpl.jena.util.FileUtils;
+
+/**
+ * checks that reading a document in parallel ranges produces the same builders as a single pass
+ *
+ * @author dorgon
+ *
+ */
+public class ParallelDocumentReaderTest extends TestCase {
+
+	private static final String XSD = "http://www.w3.org/2001/XMLSchema#";
+
+	private File nt, nq;
+	private RDFStatsConfiguration conf;
+
+	@Override
+	protected void setUp() throws Exception {
+		nt = File.createTempFile("rdfstats-doc", ".nt");
+		nq = File.createTempFile("rdfstats-doc", ".nq");
+		FileWriter w = new FileWriter(nt);
+		FileWriter q = new FileWriter(nq);
+		for (int i = 0; i < 200; i++) {
+			String s = "<http://example.org/s" + (i % 70) + ">";
+			String[] lines = {
+				s + " <" + Constants.intnumber + "> \"" + (i * 7 % 31) + "\"^^<" + XSD + "int> ",
+				s + " <" + Constants.words + "> \"word \\\"" + (i % 13) + "\\\"\\u00E4\"@en ",
+				s + " <" + Constants.url + "> <http://example.com/page/" + i + "> ",
+				"_:b" + (i % 5) + " <" + Constants.city + "> \"city" + i + "\"^^<" + XSD + "string> "
+			};
+			for (String l : lines) {
+				w.write(l + ".\n");
+				q.write(l + "<http://example.org/graph" + (i % 3) + "> .\n");
+			}
+		}
+		q.write("this is not a quad .\n");
+		w.close();
+		q.close();
+		conf = RDFStatsConfiguration.builder().statsModel(ModelFactory.createDefaultModel()).characteristicSetsSize(1000).build();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		nt.delete();
+		nq.delete();
+	}
+
+	public void testParallelEqualsSinglePass() throws Exception {
+		HistogramBuilderSink expected = new HistogramBuilderSink(conf);
+		FileManager.get().readModel(expected.getModel(), FileUtils.toURL(nt.getPath()));
+
+		assertSameBuilders(expected, new ParallelDocumentReader(conf, nt, 4, 100).read());
+	}
+
+	public void testNQuads() throws Exception {
+		HistogramBuilderSink expected = new HistogramBuilderSink(conf);
+		FileManager.get().readModel(expected.getModel(), FileUtils.toURL(nt.getPath()));
+
+		// graph labels are ignored, the invalid line is skipped
+		assertSameBuilders(expected, new ParallelDocumentReader(conf, nq, 3, 100).read());
+	}
+
+	public void testLineParser() throws Exception {
+		NTriplesLineParser parser = new NTriplesLineParser();
+		assertNull(parser.parse("   "));
+		assertNull(parser.parse("# comment"));
+
+		Triple t = parser.parse("_:a <http://example.org/p> _:b1.");
+		assertTrue(t.getSubject().isBlank());
+		assertEquals(Node.createAnon(new AnonId("b1")), t.getObject());
+		assertEquals(t.getSubject(), new NTriplesLineParser().parse("_:a <http://example.org/q> \"x\" .").getSubject());
+
+		t = parser.parse("<http://example.org/s> <http://example.org/p> \"a\\tb\"^^<" + XSD + "string> <http://example.org/g> . # quad");
+		assertEquals("a\tb", t.getObject().getLiteralLexicalForm());
+		assertEquals(XSD + "string", t.getObject().getLiteralDatatypeURI());
+
+		try {
+			parser.parse("<http://example.org/s> <http://example.org/p> \"unterminated .");
+			fail("Invalid line accepted.");
+		} catch (ParseException expectedException) {}
+	}
+
+	private void assertSameBuilders(HistogramBuilderSink expected, HistogramBuilderSink actual) throws Exception {
+		assertEquals(800, actual.getTriplesProcessed());
+		assertEquals(expected.getTriplesProcessed(), actual.getTriplesProcessed());
+		assertEquals(expected.getSubjectBuilder(false).getHistogram().toString(), actual.getSubjectBuilder(false).getHistogram().toString());
+		assertEquals(expected.getSubjectBuilder(true).getHistogram().toString(), actual.getSubjectBuilder(true).getHistogram().toString());
+
+		assertEquals(expected.getProperties(), actual.getProperties());
+		for (String p : expected.getProperties()) {
+			assertEquals(expected.getDistinctSubjects(p), actual.getDistinctSubjects(p));
+			Map<String, HistogramBuilder<?>> e = expected.getPropertyBuilders(p);
+			Map<String, HistogramBuilder<?>> a = actual.getPropertyBuilders(p);
+			assertEquals(e.keySet(), a.keySet());
+			for (String r : e.keySet())
+				assertEquals(e.get(r).getHistogram().toString(), a.get(r).getHistogram().toString());
+		}
+
+		assertEquals(expected.getCharacteristicSets().base64encode(), actual.getCharacteristicSets().base64encode());
+	}
+
+}
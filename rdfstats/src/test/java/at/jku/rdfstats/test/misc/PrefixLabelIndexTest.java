@@ -0,0 +1,94 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.test.misc;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import at.jku.rdfstats.hist.PrefixLabelIndex;
+
+/**
+ * @author dorgon
+ *
+ */
+public class PrefixLabelIndexTest extends TestCase {
+	
+	public void testClosestPrefix() {
+		String[] labels = new String[] { "AAAAA", "ABRA", "B", "BULU", "Z", "ZALPHA", "ZBETA", "ZDELTA", "ZERO", "ZERO21", "ZGAMMA", "ZOO", "ZOO1", "ZOO2", "ZOO3", "ZOO4", "ZOO5" };
+		PrefixLabelIndex idx = new PrefixLabelIndex(labels);
+		
+		assertEquals("ABRA", labels[idx.getClosestPrefix("ABRACADABRA")]);
+		assertEquals("ABRA", labels[idx.getClosestPrefix("ABRA")]);
+		assertEquals("ABRA", labels[idx.getClosestPrefix("ABRAÖÜß&2^#´")]);
+		assertEquals("ZERO", labels[idx.getClosestPrefix("ZERO")]);
+		assertEquals("ZERO", labels[idx.getClosestPrefix("ZERO20")]);
+		assertEquals("ZERO21", labels[idx.getClosestPrefix("ZERO21")]);
+		assertEquals("ZERO21", labels[idx.getClosestPrefix("ZERO21141203")]);
+		assertEquals("Z", labels[idx.getClosestPrefix("ZKAPA")]);
+		assertEquals("ZOO4", labels[idx.getClosestPrefix("ZOO442")]);
+		assertEquals("ZOO", labels[idx.getClosestPrefix("ZOO6")]);
+		assertEquals("B", labels[idx.getClosestPrefix("BULA")]);
+		assertEquals("AAAAA", labels[idx.getClosestPrefix("AAAAA")]);
+		
+		assertEquals(-1, idx.getClosestPrefix("FOO"));
+		assertEquals(-1, idx.getClosestPrefix("ABR"));
+		assertEquals(-1, idx.getClosestPrefix("A"));
+		assertEquals(-1, idx.getClosestPrefix(""));
+		
+		assertEquals(0, idx.getLowerCount("A"));
+		assertEquals(1, idx.getLowerCount("ABRA"));
+		assertEquals(2, idx.getLowerCount("ABRACADABRA"));
+		assertEquals(labels.length, idx.getLowerCount("ZZ"));
+	}
+	
+	public void testUnsortedLabels() {
+		String[] labels = new String[] { "http://google.com", "http://www.example.org", "http://dbpedia.org", "http://yahoo.com" };
+		PrefixLabelIndex idx = new PrefixLabelIndex(labels);
+		
+		assertEquals(2, idx.getClosestPrefix("http://dbpedia.org/resource/Vienna"));
+		assertEquals(1, idx.getClosestPrefix("http://www.example.org/"));
+		assertEquals(-1, idx.getClosestPrefix("http://example.org/"));
+		assertEquals(2, idx.getBinIndex(0));
+		assertEquals(1, idx.getLowerCount("http://example.org"));
+	}
+	
+	public void testLongestPrefix() {
+		Random rnd = new Random(42);
+		String[] labels = new String[300];
+		for (int i=0; i<labels.length; i++)
+			labels[i] = randomString(rnd, 1 + rnd.nextInt(5));
+		Arrays.sort(labels);
+		PrefixLabelIndex idx = new PrefixLabelIndex(labels);
+		
+		for (int n=0; n<2000; n++) {
+			String val = randomString(rnd, rnd.nextInt(8));
+			int expected = -1;
+			for (int i=0; i<labels.length; i++)
+				if (val.startsWith(labels[i]) && (expected < 0 || labels[i].length() > labels[expected].length()))
+					expected = i;
+			int found = idx.getClosestPrefix(val);
+			assertEquals(val, (expected < 0) ? null : labels[expected], (found < 0) ? null : labels[found]);
+		}
+	}
+	
+	private static String randomString(Random rnd, int length) {
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<length; i++)
+			sb.append((char) ('a' + rnd.nextInt(3)));
+		return sb.toString();
+	}
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.test.misc;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.RDFStatsDataset;
+import at.jku.rdfstats.RDFStatsModel;
+import at.jku.rdfstats.RDFStatsModelFactory;
+import at.jku.rdfstats.RDFStatsUpdatableModel;
+import at.jku.rdfstats.generator.RDFStatsGeneratorModel;
+import at.jku.rdfstats.hist.Histogram;
+import at.jku.rdfstats.vocabulary.Stats;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+
+/**
+ * checks the source selection index against probing the subject histograms of each dataset
+ *
+ * @author dorgon
+ *
+ */
+public class SourceSelectionTest extends TestCase {
+
+	private static final String NS = "http://example.org/";
+
+	private RDFStatsConfiguration conf;
+
+	@Override
+	protected void setUp() throws Exception {
+		conf = RDFStatsConfiguration.builder().statsModel(ModelFactory.createDefaultModel()).build();
+		generate("people", "person", "name", 200);
+		generate("places", "place", "label", 50);
+		generate("mixed", "person", "label", 20);
+	}
+
+	private Model generate(String source, String local, String property, int subjects) throws Exception {
+		Model data = ModelFactory.createDefaultModel();
+		Property p = data.createProperty(NS + property);
+		for (int i = 0; i < subjects; i++)
+			data.createResource(NS + local + "/" + source + i).addProperty(p, "value" + i);
+		new RDFStatsGeneratorModel(conf, data, Stats.RDFDocument.getURI(), NS + source).generate();
+		return data;
+	}
+
+	public void testDescribing() throws Exception {
+		RDFStatsModel stats = RDFStatsModelFactory.create(conf.getStatsModel());
+		String[] uris = { NS + "person/people7", NS + "place/places3", NS + "person/mixed1", NS + "person/", NS + "thing/1", "urn:x", "" };
+		for (String uri : uris) {
+			List<RDFStatsDataset> selected = stats.getDatasetsDescribingResource(uri);
+			for (RDFStatsDataset ds : stats.getDatasets())
+				assertEquals(uri + " in " + ds.getSourceUrl(), !ds.subjectNotExists(uri), contains(selected, ds.getSourceUrl()));
+		}
+		assertTrue(contains(stats.getDatasetsDescribingResource(NS + "place/places3"), NS + "places"));
+		assertTrue(stats.getDatasetsDescribingResource("urn:x").isEmpty());
+	}
+
+	public void testUsingProperty() throws Exception {
+		RDFStatsModel stats = RDFStatsModelFactory.create(conf.getStatsModel());
+		List<RDFStatsDataset> label = stats.getDatasetsUsingProperty(NS + "label");
+		assertEquals(2, label.size());
+		assertTrue(contains(label, NS + "places"));
+		assertTrue(contains(label, NS + "mixed"));
+		assertEquals(1, stats.getDatasetsUsingProperty(NS + "name").size());
+		assertTrue(stats.getDatasetsUsingProperty(NS + "unknown").isEmpty());
+		assertEquals(2, stats.getProperties().size());
+	}
+
+	public void testRebuiltAfterModification() throws Exception {
+		RDFStatsModel stats = RDFStatsModelFactory.create(conf.getStatsModel());
+		assertTrue(stats.getDatasetsUsingProperty(NS + "age").isEmpty());
+		generate("more", "thing", "age", 10);
+		assertEquals(1, stats.getDatasetsUsingProperty(NS + "age").size());
+		assertTrue(contains(stats.getDatasetsDescribingResource(NS + "thing/more1"), NS + "more"));
+	}
+
+	public void testEmptiedBin() throws Exception {
+		Model data = generate("changed", "thing", "label", 100);
+		RDFStatsUpdatableModel stats = RDFStatsModelFactory.createUpdatable(conf.getStatsModel());
+		String uri = NS + "thing/changed5";
+		assertTrue(contains(stats.getDatasetsDescribingResource(uri), NS + "changed"));
+		
+		// remove all subjects of the bin of uri, the bin remains empty
+		Histogram<String> h = stats.getSubjectHistogram(NS + "changed", false);
+		Model removed = ModelFactory.createDefaultModel();
+		for (int i = 0; i < 100; i++)
+			if (h.getBinIndex(NS + "thing/changed" + i) == h.getBinIndex(uri))
+				removed.add(data.listStatements(data.getResource(NS + "thing/changed" + i), null, (RDFNode) null));
+		data.remove(removed);
+		stats.applyDelta(stats.getDataset(NS + "changed"), ModelFactory.createDefaultModel(), removed, data);
+		
+		assertFalse(contains(stats.getDatasetsDescribingResource(uri), NS + "changed"));
+		assertTrue(stats.getDataset(NS + "changed").subjectNotExists(uri));
+	}
+
+	private static boolean contains(List<RDFStatsDataset> datasets, String sourceUrl) {
+		for (RDFStatsDataset ds : datasets)
+			if (ds.getSourceUrl().equals(sourceUrl))
+				return true;
+		return false;
+	}
+
+}
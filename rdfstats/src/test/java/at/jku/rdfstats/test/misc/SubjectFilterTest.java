@@ -0,0 +1,96 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.test.misc;
+
+import junit.framework.TestCase;
+import at.jku.rdfstats.RDFStatsConfiguration;
+import at.jku.rdfstats.RDFStatsDataset;
+import at.jku.rdfstats.RDFStatsModel;
+import at.jku.rdfstats.RDFStatsModelFactory;
+import at.jku.rdfstats.SubjectFilter;
+import at.jku.rdfstats.generator.RDFStatsGeneratorModel;
+import at.jku.rdfstats.vocabulary.Stats;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+
+/**
+ * checks generation of subject filters and their use for subject existence checks and source selection
+ *
+ * @author dorgon
+ *
+ */
+public class SubjectFilterTest extends TestCase {
+
+	private static final String NS = "http://example.org/";
+	private static final String SOURCE = NS + "source";
+	private static final int SUBJECTS = 500;
+
+	private Model data;
+
+	@Override
+	protected void setUp() throws Exception {
+		data = ModelFactory.createDefaultModel();
+		Property p = data.createProperty(NS + "p");
+		// every second resource is a subject, all share the same prefix
+		for (int i = 0; i < 2 * SUBJECTS; i += 2)
+			data.createResource(NS + "item/" + i).addProperty(p, "value" + i);
+	}
+
+	private RDFStatsModel generate(Double falsePositiveRate) throws Exception {
+		RDFStatsConfiguration conf = RDFStatsConfiguration.builder().statsModel(ModelFactory.createDefaultModel()).subjectFilterFalsePositiveRate(falsePositiveRate).build();
+		new RDFStatsGeneratorModel(conf, data, Stats.RDFDocument.getURI(), SOURCE).generate();
+		return RDFStatsModelFactory.create(conf.getStatsModel());
+	}
+
+	public void testFilter() throws Exception {
+		RDFStatsModel stats = generate(0.01);
+		SubjectFilter filter = stats.getSubjectFilter(SOURCE);
+		assertNotNull(filter);
+		assertEquals(SUBJECTS, filter.getSubjects());
+		assertEquals(0.01, filter.getFalsePositiveRate(), 0.005);
+		assertEquals(filter.base64encode(), SubjectFilter.base64decode(stats.getSubjectFilterEncoded(SOURCE)).base64encode());
+
+		RDFStatsDataset ds = stats.getDataset(SOURCE);
+		int falsePositives = 0;
+		for (int i = 0; i < 2 * SUBJECTS; i++) {
+			boolean notExists = ds.subjectNotExists(NS + "item/" + i);
+			if (i % 2 == 0)
+				assertFalse(notExists); // no false negatives
+			else if (!notExists)
+				falsePositives++;
+		}
+		assertTrue("false positives: " + falsePositives, falsePositives < SUBJECTS / 20);
+	}
+
+	public void testSourceSelection() throws Exception {
+		RDFStatsModel stats = generate(0.01);
+		assertEquals(1, stats.getDatasetsDescribingResource(NS + "item/0").size());
+		int selected = 0;
+		for (int i = 1; i < 2 * SUBJECTS; i += 2)
+			selected += stats.getDatasetsDescribingResource(NS + "item/" + i).size();
+		assertTrue("selected: " + selected, selected < SUBJECTS / 20);
+	}
+
+	public void testDisabled() throws Exception {
+		RDFStatsModel stats = generate(null);
+		assertNull(stats.getSubjectFilter(SOURCE));
+		assertNotNull(stats.getSubjectHistogram(SOURCE, false));
+		assertFalse(stats.getDataset(SOURCE).subjectNotExists(NS + "item/0"));
+	}
+
+}
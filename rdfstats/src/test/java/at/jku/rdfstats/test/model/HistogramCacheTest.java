@@ -0,0 +1,113 @@
+/**
+ * Copyright 2008-2009 Institute for Applied Knowledge Processing, Johannes Kepler University Linz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.jku.rdfstats.test.model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+import at.jku.rdfstats.HistogramCache;
+import at.jku.rdfstats.hist.Histogram;
+import at.jku.rdfstats.hist.IntegerHistogram;
+import at.jku.rdfstats.hist.builder.IntegerHistogramBuilder;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+
+/**
+ * @author dorgon
+ *
+ */
+public class HistogramCacheTest extends TestCase {
+	private static final String INT = XSDDatatype.XSDint.getURI();
+
+	private static Histogram<?> hist(int n) {
+		return new IntegerHistogram(INT, new int[] { n }, n, 0, 0, IntegerHistogramBuilder.class);
+	}
+
+	public void testCompositeKeys() {
+		HistogramCache c = new HistogramCache();
+		// "Aa" and "BB" have the same hash code
+		c.put("http://example.org/Aa", "p", INT, hist(1));
+		c.put("http://example.org/BB", "p", INT, hist(2));
+		c.put("http://example.org/Aa", null, INT, hist(3));
+		assertEquals(1, c.get("http://example.org/Aa", "p", INT).getTotalValues());
+		assertEquals(2, c.get("http://example.org/BB", "p", INT).getTotalValues());
+		assertEquals(3, c.get("http://example.org/Aa", null, INT).getTotalValues());
+		assertNull(c.get("http://example.org/Aa", "q", INT));
+
+		assertEquals(3, c.getHitCount());
+		assertEquals(1, c.getMissCount());
+		assertEquals(0.75f, c.getHitRate());
+
+		c.removeAll("http://example.org/Aa");
+		assertEquals(1, c.size());
+		c.remove("http://example.org/BB", "p", INT);
+		assertNull(c.get("http://example.org/BB", "p", INT));
+	}
+
+	public void testBoundedLRU() {
+		HistogramCache c = new HistogramCache(160, false);
+		for (int i = 0; i < 1000; i++) {
+			c.put("http://example.org/sparql", "http://example.org/p" + i, INT, hist(i));
+			c.get("http://example.org/sparql", "http://example.org/p0", INT); // keep p0 recently used
+		}
+		assertTrue(c.size() <= 160);
+		assertEquals(1000 - c.size(), c.getEvictionCount());
+		assertNotNull(c.get("http://example.org/sparql", "http://example.org/p0", INT));
+		assertNotNull(c.get("http://example.org/sparql", "http://example.org/p999", INT));
+
+		c.setMaximumSize(0);
+		assertEquals(0, c.size());
+		c.put("http://example.org/sparql", "http://example.org/p0", INT, hist(0));
+		assertNull(c.get("http://example.org/sparql", "http://example.org/p0", INT));
+	}
+
+	public void testSoftValues() {
+		HistogramCache c = new HistogramCache(100, true);
+		c.put("http://example.org/sparql", "p", INT, hist(5));
+		Histogram<?> h = c.get("http://example.org/sparql", "p", INT);
+		if (h != null) // may have been collected already
+			assertEquals(5, h.getTotalValues());
+	}
+
+	public void testConcurrentAccess() throws InterruptedException {
+		final HistogramCache c = new HistogramCache(64, false);
+		final AtomicInteger wrong = new AtomicInteger();
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 5000; i++) {
+						int n = i % 200;
+						Histogram<?> h = c.get("http://example.org/sparql", "http://example.org/p" + n, INT);
+						if (h == null)
+							c.put("http://example.org/sparql", "http://example.org/p" + n, INT, hist(n));
+						else if (h.getTotalValues() != n)
+							wrong.incrementAndGet();
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread t : threads)
+			t.join();
+
+		assertEquals(0, wrong.get());
+		assertTrue(c.size() <= 64);
+		assertEquals(8 * 5000, c.getHitCount() + c.getMissCount());
+	}
+
+}
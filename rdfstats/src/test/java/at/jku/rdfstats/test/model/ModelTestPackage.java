@@ -29,6 +29,7 @@ public class ModelTestPackage extends TestCase {
 		TestSuite s = new TestSuite("RDFStatsModel tests");
 		s.addTestSuite(RDFStatsModelTest.class);
 		s.addTestSuite(RDFStatsUpdatableModelTest.class);
+		s.addTestSuite(HistogramCacheTest.class);
 		return s;
 	}
 }
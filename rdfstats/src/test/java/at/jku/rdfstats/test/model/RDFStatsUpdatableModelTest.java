@@ -17,10 +17,14 @@ package at.jku.rdfstats.test.model;
 
 import java.util.Calendar;
 import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.TestCase;
 import at.jku.rdfstats.RDFStatsDataset;
 import at.jku.rdfstats.RDFStatsModelException;
+import at.jku.rdfstats.RDFStatsModel;
 import at.jku.rdfstats.RDFStatsModelFactory;
 import at.jku.rdfstats.RDFStatsUpdatableModel;
 import at.jku.rdfstats.hist.Histogram;
@@ -33,6 +37,7 @@ import at.jku.rdfstats.vocabulary.Stats;
 import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.shared.Lock;
 import com.hp.hpl.jena.sparql.vocabulary.FOAF;
 import com.hp.hpl.jena.vocabulary.RDFS;
 
@@ -139,6 +144,182 @@ public class RDFStatsUpdatableModelTest extends TestCase {
 		assertEquals(h3.getBinWidth(), ((IntegerHistogram) m.getPropertyHistogram(endpoint3, p, range)).getBinWidth());
 	}
 	
+	public void testCatalogFollowsModifications() throws RDFStatsModelException, HistogramBuilderException {
+		Model wrapped = ModelFactory.createDefaultModel();
+		RDFStatsUpdatableModel m = RDFStatsModelFactory.createUpdatable(wrapped);
+		String endpoint = "http://localhost:8888/sparql";
+		String p1 = RDFS.label.getURI();
+		String p2 = FOAF.name.getURI();
+		String r1 = XSDDatatype.XSDstring.getURI();
+		String r2 = XSDDatatype.XSDint.getURI();
+		String h = HistogramCodec.base64encode(new IntegerHistogram(r2, new int[] {3, 0, 10, 0, 1}, 14, 0, 10, IntegerHistogramBuilder.class));
+
+		// another model on the same graph, its catalog is built before the modifications
+		RDFStatsModel other = RDFStatsModelFactory.create(wrapped);
+		assertNull(other.getDataset(endpoint));
+		assertEquals(0, other.getPropertyHistogramProperties(endpoint).size());
+
+		RDFStatsDataset ds = m.addDatasetAndLock(endpoint, Stats.SPARQLEndpoint.getURI(), "me@localhost", Calendar.getInstance());
+		assertTrue(m.addOrUpdatePropertyHistogram(ds, p1, r1, h));
+		assertTrue(m.addOrUpdatePropertyHistogram(ds, p1, r2, h));
+		assertTrue(m.addOrUpdatePropertyHistogram(ds, p2, r1, h));
+		assertFalse(m.addOrUpdatePropertyHistogram(ds, p2, r1, h));
+		assertTrue(m.addOrUpdateSubjectHistogram(ds, false, h));
+		m.returnExclusiveWriteLock(ds);
+
+		assertEquals(ds.getWrappedResource(), other.getDataset(endpoint).getWrappedResource());
+		assertEquals(2, other.getPropertyHistogramProperties(endpoint).size());
+		assertEquals(2, other.getPropertyHistogramProperties(endpoint, r1).size());
+		assertEquals(1, other.getPropertyHistogramProperties(endpoint, r2).size());
+		assertEquals(2, other.getPropertyHistogramRanges(endpoint, p1).size());
+		assertNotNull(other.getPropertyHistogramEncoded(endpoint, p2, r1));
+		assertNotNull(other.getSubjectHistogramEncoded(endpoint, false));
+		assertNull(other.getSubjectHistogramEncoded(endpoint, true));
+
+		// keep only p1/r1
+		m.requestExclusiveWriteLock(ds);
+		m.keepPropertyHistogram(ds, p1, r1);
+		m.removeUnchangedItems(ds);
+		m.returnExclusiveWriteLock(ds);
+
+		assertEquals(1, other.getPropertyHistogramProperties(endpoint).size());
+		assertEquals(1, other.getPropertyHistogramRanges(endpoint, p1).size());
+		assertEquals(0, other.getPropertyHistogramRanges(endpoint, p2).size());
+		assertEquals(0, other.getPropertyHistogramProperties(endpoint, r2).size());
+		assertNull(other.getSubjectHistogramEncoded(endpoint, false));
+
+		// a fresh model indexes the same
+		RDFStatsModel fresh = RDFStatsModelFactory.create(wrapped);
+		assertEquals(other.getPropertyHistogramProperties(endpoint), fresh.getPropertyHistogramProperties(endpoint));
+		assertEquals(1, fresh.getDatasets().size());
+
+		m.requestExclusiveWriteLock(ds);
+		m.removeDataset(ds);
+		m.returnExclusiveWriteLock(ds);
+		assertNull(other.getDataset(endpoint));
+		assertEquals(0, other.getDatasets().size());
+		assertEquals(0, other.getPropertyHistogramProperties(endpoint).size());
+	}
+
+	public void testCatalogFollowsDirectModifications() throws RDFStatsModelException, HistogramBuilderException {
+		Model wrapped = ModelFactory.createDefaultModel();
+		RDFStatsModel m = RDFStatsModelFactory.create(wrapped);
+		String endpoint = "http://localhost:8888/sparql";
+		String p = RDFS.label.getURI();
+		String r = XSDDatatype.XSDint.getURI();
+		String h = HistogramCodec.base64encode(new IntegerHistogram(r, new int[] {3, 0, 10, 0, 1}, 14, 0, 10, IntegerHistogramBuilder.class));
+
+		// statistics generated elsewhere
+		Model imported = ModelFactory.createDefaultModel();
+		RDFStatsUpdatableModel u = RDFStatsModelFactory.createUpdatable(imported);
+		RDFStatsDataset ds = u.addDatasetAndLock(endpoint, Stats.SPARQLEndpoint.getURI(), "me@localhost", Calendar.getInstance());
+		u.addOrUpdatePropertyHistogram(ds, p, r, h);
+		u.returnExclusiveWriteLock(ds);
+
+		// catalog is built before the model is modified directly
+		assertNull(m.getDataset(endpoint));
+		wrapped.add(imported);
+		assertNotNull(m.getDataset(endpoint));
+		assertEquals(1, m.getPropertyHistogramProperties(endpoint).size());
+		assertNotNull(m.getPropertyHistogramEncoded(endpoint, p, r));
+
+		wrapped.remove(imported);
+		assertNull(m.getDataset(endpoint));
+		assertEquals(0, m.getPropertyHistogramProperties(endpoint).size());
+	}
+	
+	public void testCatalogRebuiltAtOnce() throws Exception {
+		final Model wrapped = ModelFactory.createDefaultModel();
+		final RDFStatsModel m = RDFStatsModelFactory.create(wrapped);
+		final String endpoint = "http://localhost:8888/sparql";
+		String r = XSDDatatype.XSDint.getURI();
+		RDFStatsUpdatableModel u = RDFStatsModelFactory.createUpdatable(wrapped);
+		RDFStatsDataset ds = u.addDatasetAndLock(endpoint, Stats.SPARQLEndpoint.getURI(), "me@localhost", Calendar.getInstance());
+		u.addOrUpdatePropertyHistogram(ds, RDFS.label.getURI(), r, HistogramCodec.base64encode(new IntegerHistogram(r, new int[] {3, 0, 10, 0, 1}, 14, 0, 10, IntegerHistogramBuilder.class)));
+		u.returnExclusiveWriteLock(ds);
+
+		// lookups while the catalog is rebuilt over and over must see either the previous or the rebuilt index
+		final AtomicBoolean stop = new AtomicBoolean();
+		final AtomicInteger failures = new AtomicInteger();
+		Thread[] readers = new Thread[4];
+		for (int i = 0; i < readers.length; i++) {
+			readers[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						while (!stop.get())
+							if (m.getDataset(endpoint) == null || m.getPropertyHistogramProperties(endpoint).size() != 1)
+								failures.incrementAndGet();
+					} catch (Exception e) {
+						failures.incrementAndGet();
+					}
+				}
+			};
+			readers[i].start();
+		}
+		for (int i = 0; i < 200; i++) {
+			wrapped.enterCriticalSection(Lock.WRITE);
+			try {
+				wrapped.add(wrapped.createResource("http://example.org/r" + i), RDFS.label, "unrelated"); // invalidates the catalog
+			} finally {
+				wrapped.leaveCriticalSection();
+			}
+			m.getDataset(endpoint);
+		}
+		stop.set(true);
+		for (Thread t : readers)
+			t.join();
+		assertEquals(0, failures.get());
+	}
+	
+	public void testExclusiveWriteLocks() throws Exception {
+		final RDFStatsUpdatableModel m = RDFStatsModelFactory.createUpdatable(ModelFactory.createDefaultModel());
+		final RDFStatsDataset ds1 = m.addDatasetAndLock("http://localhost:8888/sparql1", Stats.SPARQLEndpoint.getURI(), "me@localhost", Calendar.getInstance());
+		final RDFStatsDataset ds2 = m.addDatasetAndLock("http://localhost:8888/sparql2", Stats.SPARQLEndpoint.getURI(), "me@localhost", Calendar.getInstance());
+		m.returnExclusiveWriteLock(ds2);
+		assertTrue(m.hasExclusiveWriteLock(ds1));
+		assertFalse(m.hasExclusiveWriteLock(ds2));
+
+		// re-entrant
+		assertTrue(m.tryExclusiveWriteLock(ds1, 0, TimeUnit.MILLISECONDS));
+		m.returnExclusiveWriteLock(ds1);
+		assertTrue(m.hasExclusiveWriteLock(ds1));
+
+		// another thread may lock ds2 but not ds1 or all statistics
+		final boolean[] result = new boolean[4];
+		Thread t = new Thread() {
+			@Override
+			public void run() {
+				try {
+					result[0] = m.tryExclusiveWriteLock(ds2, 0, TimeUnit.MILLISECONDS);
+					result[1] = m.tryExclusiveWriteLock(ds1, 50, TimeUnit.MILLISECONDS);
+					try {
+						m.addOrUpdateSubjectHistogram(ds1, false, "");
+					} catch (RDFStatsModelException expected) {
+						result[2] = true;
+					}
+					m.returnExclusiveWriteLock(ds2);
+					result[3] = m.tryExclusiveWriteLock(null, 0, TimeUnit.MILLISECONDS);
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		t.start();
+		t.join();
+		assertTrue(result[0]);
+		assertFalse(result[1]);
+		assertTrue(result[2]);
+		assertFalse(result[3]);
+
+		// the lock for all statistics is available after returning ds1
+		m.returnExclusiveWriteLock(ds1);
+		assertFalse(m.hasExclusiveWriteLock(ds1));
+		assertTrue(m.tryExclusiveWriteLock(null, 0, TimeUnit.MILLISECONDS));
+		assertTrue(m.hasExclusiveWriteLock(ds1));
+		m.returnExclusiveWriteLock(null);
+	}
+	
 //	public void testGetOrCreateDimensions() {
 //		RDFStatsUpdatableTestModel m = new RDFStatsUpdatableTestModel(FileManager.get().loadModel("file:testing/statistics.n3", "N3"));
 //		m.testRangeDim();